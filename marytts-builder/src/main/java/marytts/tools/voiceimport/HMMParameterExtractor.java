@@ -204,7 +204,7 @@ public class HMMParameterExtractor extends VoiceImportComponent {
               FileWriter outputStream;
               durFile      = outputDir + file + labExt;   /* realised durations */
               outputStream = new FileWriter(durFile);
-              outputStream.write(hmm_tts.getRealisedDurations());
+              outputStream.write(um.getRealisedDurations());
               outputStream.close();
           }
           if(getProp(PSLAB).equals("true")){
@@ -23,8 +23,11 @@ import static org.junit.Assert.assertEquals;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
 import java.util.Random;
 
 import marytts.exceptions.MaryConfigurationException;
@@ -467,13 +470,123 @@ public class TimelineTest {
         Assert.assertEquals(2, ds.length);
         Assert.assertEquals(origDatagrams[1].getLength(), ds[0].getLength());
     }
-    
-    
-    
-    
-    
-    
-    
+    @Test
+    public void canReadDatagramsStraddlingBlockBoundaries() throws Exception {
+        // setup custom fixture for this method: piecewise reading uses blocks of 64 kB,
+        // and the datagrams are laid out so that a header crosses the first block boundary
+        // and the data of a datagram crosses the second one.
+        String fileName = "timelineBlockTest.bin";
+        final int blockSize = 0x10000;
+        TimelineWriter tlw = new TimelineWriter(fileName, hdrContents, sampleRate, 0.1d);
+        long startPos = tlw.getDatagramsBytePos();
+        int[] lengths = new int[6];
+        lengths[0] = (int) (blockSize - 6 - startPos) - Datagram.NUM_HEADER_BYTES;
+        lengths[1] = 8;
+        lengths[2] = 2 * blockSize - 20 - (blockSize - 6 + Datagram.NUM_HEADER_BYTES + lengths[1]) - Datagram.NUM_HEADER_BYTES;
+        lengths[3] = 40;
+        lengths[4] = 10;
+        lengths[5] = 10;
+        Datagram[] written = new Datagram[lengths.length];
+        for (int i = 0; i < lengths.length; i++) {
+            byte[] data = new byte[lengths[i]];
+            Arrays.fill(data, (byte) (i+1));
+            written[i] = new Datagram(10, data);
+        }
+        tlw.feed(written, sampleRate);
+        tlw.close();
+        try {
+            TimelineReader timeline = new TimelineReader(fileName, false); // do not try memory mapping
+            // exercise
+            Datagram[] ds = timeline.getDatagrams(0, lengths.length, sampleRate, null);
+            // verify
+            Assert.assertEquals(lengths.length, ds.length);
+            for (int i = 0; i < lengths.length; i++) {
+                Assert.assertEquals(lengths[i], ds[i].getLength());
+                Assert.assertEquals(i+1, ds[i].getData()[0]);
+                Assert.assertEquals(i+1, ds[i].getData()[lengths[i]-1]);
+                Datagram d = timeline.getDatagram(10 * i);
+                Assert.assertEquals(lengths[i], d.getLength());
+                Assert.assertEquals(i+1, d.getData()[0]);
+            }
+        } finally {
+            new File(fileName).delete();
+        }
+    }
+
+    @Test
+    public void canReadAcrossSmallMappedSegments() throws Exception {
+        // setup custom fixture for this method: 200 datagrams of 100 bytes and an index field every 2 datagrams,
+        // mapped in segments that start at most 1000 bytes apart and are at most 2000 bytes long
+        String fileName = "timelineSegmentTest.bin";
+        int num = 200;
+        TimelineWriter tlw = new TimelineWriter(fileName, hdrContents, sampleRate, 0.02d);
+        Datagram[] written = new Datagram[num];
+        for (int i = 0; i < num; i++) {
+            byte[] data = new byte[100];
+            Arrays.fill(data, (byte) i);
+            written[i] = new Datagram(10, data);
+        }
+        tlw.feed(written, sampleRate);
+        tlw.close();
+        try {
+            TimelineReader timeline = new TimelineReader(fileName, true, 1000, 2000);
+            // exercise
+            Datagram[] all = timeline.getDatagrams(0, num, sampleRate, null);
+            Datagram last = timeline.getDatagram(10 * (num - 5));
+            Datagram[] acrossSegments = timeline.getDatagrams(10 * 7, 10 * 20); // 20 datagrams
+            // verify
+            Assert.assertTrue(timeline.getNumMappedSegments() > 10);
+            Assert.assertEquals(num, all.length);
+            for (int i = 0; i < num; i++) {
+                Assert.assertEquals(100, all[i].getLength());
+                Assert.assertEquals((byte) i, all[i].getData()[0]);
+                Assert.assertEquals((byte) i, all[i].getData()[99]);
+            }
+            Assert.assertEquals((byte) (num - 5), last.getData()[0]);
+            Assert.assertEquals(20, acrossSegments.length);
+            for (int i = 0; i < acrossSegments.length; i++) {
+                Assert.assertEquals((byte) (7 + i), acrossSegments[i].getData()[0]);
+            }
+        } finally {
+            new File(fileName).delete();
+        }
+    }
+
+    @Test
+    public void blockCacheReusesEvictedPagesOnlyOnceReleased() throws Exception {
+        // setup custom fixture for this method: a cache of two 16-byte pages over the test timeline file
+        RandomAccessFile file = new RandomAccessFile(tlFileName, "r");
+        try {
+            FileChannel fc = file.getChannel();
+            TimelineBlockCache cache = new TimelineBlockCache(fc, 16, 2, fc.size());
+            ByteBuffer expected = ByteBuffer.allocate(16);
+            fc.read(expected, 0);
+            expected.flip();
+            // exercise: page 0 stays pinned while it is evicted and other pages are loaded
+            ByteBuffer page0 = cache.getPage(0);
+            cache.getPage(16);
+            cache.getPage(32);
+            int freeWhilePinned = cache.getNumFreePages();
+            boolean page0Intact = expected.equals(page0);
+            cache.releasePages();
+            int freeAfterRelease = cache.getNumFreePages();
+            long allocationsBefore = TimelineBlockCache.getAllocations();
+            ByteBuffer page3 = cache.getPage(48);
+            // verify
+            Assert.assertTrue(page0Intact);
+            Assert.assertEquals(0, freeWhilePinned);
+            Assert.assertEquals(1, freeAfterRelease);
+            Assert.assertEquals(1, cache.getNumFreePages()); // the buffer of page 16, evicted for page 48
+            Assert.assertEquals(allocationsBefore, TimelineBlockCache.getAllocations());
+            ByteBuffer expected3 = ByteBuffer.allocate(16);
+            fc.read(expected3, 48);
+            expected3.flip();
+            Assert.assertEquals(expected3, page3);
+            cache.releasePages();
+        } finally {
+            file.close();
+        }
+    }
 
     @AfterClass
     public static void tearDown() throws IOException {
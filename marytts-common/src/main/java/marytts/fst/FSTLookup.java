@@ -41,6 +41,10 @@ public class FSTLookup
      * Map "filename encoding" or "filename" to FST.
      */
     private static Map<String,FST> knownFSTs = new HashMap<String, FST>();
+    /**
+     * Map filename to memory-mapped FST.
+     */
+    private static Map<String,MappedFST> knownMappedFSTs = new HashMap<String, MappedFST>();
     
     
     
@@ -48,14 +52,26 @@ public class FSTLookup
     ////////////////////// An individual FSTLookup class //////////////
     
     private FST fst;
+    // used instead of fst if the file is in the memory-mappable format:
+    private MappedFST mappedFst;
 
     /**
      * Initialise the finite state transducer lookup. This constructor will
-     * assume that the file contains a header indicating the proper encoding.
+     * assume that the file contains a header indicating the proper encoding,
+     * or that it is in the memory-mappable format of {@link MappedFST}; in the latter
+     * case, the file is used directly without loading it.
      * @param fileName the name of the file from which to load the FST.
      * @throws IOException if the FST cannot be loaded from the given file.
      */
     public FSTLookup(String fileName) throws IOException {
+    	if (MappedFST.isMappedFST(fileName)) {
+    		mappedFst = knownMappedFSTs.get(fileName);
+    		if (mappedFst == null) {
+    			mappedFst = new MappedFST(fileName);
+    			knownMappedFSTs.put(fileName, mappedFst);
+    		}
+    		return;
+    	}
     	InputStream inStream = new FileInputStream(fileName);
     	try {
     		init(inStream, fileName);
@@ -154,7 +170,11 @@ public class FSTLookup
         StringBuilder buffer2=new StringBuilder();
         List<String> results=new ArrayList<String>();
         
-        lookup(word, 0, 0, generate, buffer2, results);
+        if (mappedFst != null) {
+            mappedFst.lookup(word, generate, results);
+        } else {
+            lookup(word, 0, 0, generate, buffer2, results);
+        }
         
         String[] resultArray=new String[results.size()];
         resultArray = (String[]) results.toArray(resultArray);
@@ -0,0 +1,248 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.fst;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * A finite state transducer which is used directly from a memory-mapped file.
+ * Nothing is parsed or copied when the file is opened, and several processes using
+ * the same file share its pages through the operating system's page cache.
+ * <p>
+ * The file format is created from an {@link FST} by {@link #write(FST, String)},
+ * or from the command line by the {@link #main(String[])} method.
+ * All numbers are big-endian; the label strings are decoded into UTF-16 characters,
+ * so that the file does not depend on the encoding of the original FST:
+ * <pre>
+ * int   magic number "MFST"
+ * int   format version
+ * int   nArcs, nLabels, nStrings, nChars
+ * int[nArcs]       arcs, as in the FST file: target (bits 0-19), label (bits 20-30), isLast (bit 31)
+ * int[2*nLabels]   for each label, the numbers of its input and its output string
+ * int[nStrings+1]  the position of each string in the characters; the last entry is nChars
+ * char[nChars]     the characters of all strings
+ * </pre>
+ *
+ * @author agent
+ */
+public class MappedFST
+{
+    public static final int MAGIC = 0x4D465354; // "MFST"
+    public static final int VERSION = 1;
+    private static final int HEADER_SIZE = 6 * 4;
+
+    private final IntBuffer arcs;
+    private final IntBuffer labelStrings;
+    private final IntBuffer stringStarts;
+    private final CharBuffer chars;
+
+    /**
+     * Map the given file into memory.
+     * @param fileName a file in the format written by {@link #write(FST, String)}
+     * @throws IOException if the file cannot be read or is not in the expected format.
+     */
+    public MappedFST(String fileName) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(fileName, "r");
+        ByteBuffer bb;
+        try {
+            FileChannel fc = raf.getChannel();
+            // The mapping remains valid after the channel is closed:
+            bb = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+        } finally {
+            raf.close();
+        }
+        if (bb.limit() < HEADER_SIZE || bb.getInt(0) != MAGIC) {
+            throw new IOException("File '"+fileName+"' is not a memory-mappable FST");
+        }
+        int version = bb.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("File '"+fileName+"' has FST format version "+version+", expected "+VERSION);
+        }
+        int nArcs = bb.getInt(8);
+        int nLabels = bb.getInt(12);
+        int nStrings = bb.getInt(16);
+        int nChars = bb.getInt(20);
+        int pos = HEADER_SIZE;
+        arcs = section(bb, pos, 4 * nArcs).asIntBuffer();
+        pos += 4 * nArcs;
+        labelStrings = section(bb, pos, 8 * nLabels).asIntBuffer();
+        pos += 8 * nLabels;
+        stringStarts = section(bb, pos, 4 * (nStrings + 1)).asIntBuffer();
+        pos += 4 * (nStrings + 1);
+        chars = section(bb, pos, 2 * nChars).asCharBuffer();
+    }
+
+    private static ByteBuffer section(ByteBuffer bb, int pos, int length) throws IOException
+    {
+        if (pos + length > bb.limit()) {
+            throw new IOException("Memory-mappable FST file is truncated");
+        }
+        ByteBuffer dup = bb.duplicate();
+        dup.position(pos);
+        dup.limit(pos + length);
+        return dup.slice();
+    }
+
+    /**
+     * Check whether the given file starts like a file in the format of this class.
+     */
+    public static boolean isMappedFST(String fileName) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new FileInputStream(fileName));
+        try {
+            return in.readInt() == MAGIC;
+        } catch (java.io.EOFException e) {
+            return false;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Add all results of looking up word to the given list, in the same order as
+     * {@link FSTLookup#lookup(String, boolean)} for the original FST.
+     * This method is thread-safe.
+     */
+    void lookup(String word, boolean generate, List<String> results)
+    {
+        lookup(word, 0, 0, generate, new StringBuilder(), results);
+    }
+
+    private void lookup(String word, int offset1, int arc, boolean generate,
+                        StringBuilder buffer2, List<String> results) {
+        int thisArc;
+        do {
+            thisArc = arcs.get(arc);
+            int label = (thisArc >> 20) & 2047;
+            int offset2 = buffer2.length();
+            if (label == 0) {
+                if (offset1 == word.length()) {
+                    results.add(buffer2.toString());
+                }
+            } else {
+                int s1 = labelStrings.get(2*label + (generate ? 1 : 0));
+                int start = stringStarts.get(s1);
+                int len = stringStarts.get(s1+1) - start;
+                if (matches(word, offset1, start, len)) {
+                    int s2 = labelStrings.get(2*label + (generate ? 0 : 1));
+                    int end = stringStarts.get(s2+1);
+                    for (int i = stringStarts.get(s2); i < end; i++) {
+                        buffer2.append(chars.get(i));
+                    }
+                    lookup(word, offset1+len, thisArc & 1048575, generate, buffer2, results);
+                    if (offset2<buffer2.length()) buffer2.delete(offset2, buffer2.length());
+                }
+            }
+            arc++;
+        } while (thisArc >= 0); // the isLast bit is the sign bit
+    }
+
+    /**
+     * Like word.startsWith(s, offset) for the string s of length len at position start in the characters.
+     */
+    private boolean matches(String word, int offset, int start, int len)
+    {
+        if (offset + len > word.length()) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (word.charAt(offset + i) != chars.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write the given FST in the format of this class.
+     * @param fst an FST loaded from a file in either the current or the legacy headerless format.
+     * @param fileName the file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(FST fst, String fileName) throws IOException
+    {
+        int nArcs = fst.targets.length;
+        int nLabels = fst.offsets.length / 2;
+        int nStrings = fst.strings.size();
+        int nChars = 0;
+        for (int i = 0; i < nStrings; i++) {
+            nChars += ((String) fst.strings.get(i)).length();
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(nArcs);
+            out.writeInt(nLabels);
+            out.writeInt(nStrings);
+            out.writeInt(nChars);
+            for (int i = 0; i < nArcs; i++) {
+                out.writeInt(fst.targets[i] | (fst.labels[i] << 20) | (fst.isLast[i] ? 1 << 31 : 0));
+            }
+            for (int i = 0; i < 2 * nLabels; i++) {
+                // as looked up by FSTLookup:
+                out.writeInt(fst.mapping[fst.offsets[i]]);
+            }
+            int pos = 0;
+            for (int i = 0; i < nStrings; i++) {
+                out.writeInt(pos);
+                pos += ((String) fst.strings.get(i)).length();
+            }
+            out.writeInt(pos);
+            for (int i = 0; i < nStrings; i++) {
+                out.writeChars((String) fst.strings.get(i));
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Convert an FST file into the memory-mappable format.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 2) {
+            System.err.println("usage: java marytts.fst.MappedFST FstFile MappedFstFile [encoding]");
+            System.err.println("  (the encoding is needed only for FST files in the legacy headerless format)");
+            System.exit(-1);
+        }
+        FST fst;
+        if (args.length > 2) {
+            fst = new FST(args[0], args[2]);
+        } else {
+            fst = new FST(args[0]);
+        }
+        write(fst, args[1]);
+        System.err.println("Wrote " + args[1]);
+    }
+}
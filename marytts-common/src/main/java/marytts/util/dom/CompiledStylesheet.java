@@ -0,0 +1,90 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util.dom;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.URIResolver;
+
+/**
+ * An XSLT stylesheet which is compiled once and then used by several threads.
+ * Each thread gets its own {@link Transformer}, which it reuses for all its transformations
+ * instead of creating a new one from the {@link Templates} every time.
+ *
+ * @author agent
+ */
+public class CompiledStylesheet
+{
+    private final Templates templates;
+    private final URIResolver uriResolver;
+    private final ThreadLocal<Transformer> transformers = new ThreadLocal<Transformer>();
+
+    /**
+     * Compile the stylesheet with a default transformer factory.
+     * @throws TransformerConfigurationException if the stylesheet cannot be compiled
+     */
+    public CompiledStylesheet(Source stylesheet) throws TransformerConfigurationException
+    {
+        this(TransformerFactory.newInstance(), stylesheet);
+    }
+
+    /**
+     * Compile the stylesheet with the given transformer factory. The factory's URI resolver, if any,
+     * is also used by the transformers at transformation time.
+     * @throws TransformerConfigurationException if the stylesheet cannot be compiled
+     */
+    public CompiledStylesheet(TransformerFactory factory, Source stylesheet) throws TransformerConfigurationException
+    {
+        this.templates = factory.newTemplates(stylesheet);
+        this.uriResolver = factory.getURIResolver();
+    }
+
+    public Templates getTemplates()
+    {
+        return templates;
+    }
+
+    /**
+     * Get the transformer of the current thread. It is in the state of a new transformer,
+     * i.e. without parameters or a custom error listener, so these must be set again for each transformation.
+     * The transformer must not be passed to other threads.
+     * @throws TransformerConfigurationException if the transformer cannot be created
+     */
+    public Transformer getTransformer() throws TransformerConfigurationException
+    {
+        Transformer transformer = transformers.get();
+        if (transformer == null) {
+            transformer = templates.newTransformer();
+            transformers.set(transformer);
+        } else {
+            transformer.reset();
+            // Not all implementations of reset() clear the parameters:
+            transformer.clearParameters();
+            // reset() also removes the URI resolver:
+            if (uriResolver != null) {
+                transformer.setURIResolver(uriResolver);
+            }
+        }
+        return transformer;
+    }
+}
@@ -35,8 +35,13 @@ import java.util.List;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.XMLConstants;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.Source;
 import javax.xml.transform.TransformerException;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
 
 import marytts.exceptions.MaryConfigurationException;
 import marytts.util.MaryUtils;
@@ -74,6 +79,18 @@ public class DomUtils
 {
     protected static DocumentBuilderFactory factory;
     protected static DocumentBuilderFactory validatingFactory;
+    // The MaryXML Schema is compiled only once, and shared by all validating parsers:
+    protected static Schema maryxmlSchema;
+
+    // DocumentBuilders are not thread-safe, so each thread reuses its own:
+    private static final ThreadLocal<DocumentBuilder> builders = new ThreadLocal<DocumentBuilder>();
+    private static final ThreadLocal<DocumentBuilder> validatingBuilders = new ThreadLocal<DocumentBuilder>();
+
+    private static final ErrorHandler throwingErrorHandler = new ErrorHandler() {
+        public void error(SAXParseException e) throws SAXParseException { throw e; }  
+        public void fatalError(SAXParseException e) throws SAXParseException { throw e; }  
+        public void warning(SAXParseException e) throws SAXParseException { throw e; }  
+    };
     
     protected static Logger logger = MaryUtils.getLogger("DomUtils");
 
@@ -87,18 +104,16 @@ public class DomUtils
         validatingFactory.setExpandEntityReferences(true);
         validatingFactory.setNamespaceAware(true);
         validatingFactory.setIgnoringElementContentWhitespace(true);
-        validatingFactory.setValidating(true);
         try {
-            validatingFactory.setAttribute("http://java.sun.com/xml/jaxp/properties/schemaLanguage", "http://www.w3.org/2001/XMLSchema");
-            // Specify other factory configuration settings
-            Object[] schemas = new Object[] {
-            		DomUtils.class.getResource("xml.xsd").toString(),
-            		DomUtils.class.getResource("MaryXML.xsd").toString()
-            };
-            validatingFactory.setAttribute("http://java.sun.com/xml/jaxp/properties/schemaSource", schemas);
+            SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            maryxmlSchema = schemaFactory.newSchema(new Source[] {
+                    new StreamSource(DomUtils.class.getResource("xml.xsd").toString()),
+                    new StreamSource(DomUtils.class.getResource("MaryXML.xsd").toString())
+            });
+            validatingFactory.setSchema(maryxmlSchema);
         } catch (Exception x) {
-            // This can happen if the parser does not support JAXP 1.2
-            logger.warn("Cannot use Schema validation -- disabling validating parser factory.");
+            // This can happen if the parser does not support JAXP 1.3
+            logger.warn("Cannot use Schema validation -- disabling validating parser factory.", x);
             validatingFactory = null;
         }
     }
@@ -130,7 +145,7 @@ public class DomUtils
      */
     public static Document parseDocument(Reader inputData, boolean validating)
     throws ParserConfigurationException, SAXException, IOException {
-        DocumentBuilder builder = createDocumentBuilder(validating);
+        DocumentBuilder builder = getDocumentBuilder(validating);
         return builder.parse(new InputSource(inputData));
     }
     
@@ -159,37 +174,52 @@ public class DomUtils
      */
     public static Document parseDocument(InputStream is, boolean validating)
     throws ParserConfigurationException, SAXException, IOException {
-        DocumentBuilder builder = createDocumentBuilder(validating);
+        DocumentBuilder builder = getDocumentBuilder(validating);
         return builder.parse(is);
     }
 
 
 	/**
-	 * @param validating
-	 * @return
-	 * @throws ParserConfigurationException
+	 * Get the document builder of the current thread, reset to its initial state.
+	 * It is created on first use, and reused by later calls from the same thread.
+	 * @param validating whether the builder should Schema-validate against MaryXML
+	 * @return a document builder for use by the current thread only
+	 * @throws ParserConfigurationException if no (validating) builder can be created
 	 */
-	private static DocumentBuilder createDocumentBuilder(boolean validating)
+	private static DocumentBuilder getDocumentBuilder(boolean validating)
 			throws ParserConfigurationException {
-		DocumentBuilder builder;
-		if (validating) {
+		ThreadLocal<DocumentBuilder> threadBuilders = validating ? validatingBuilders : builders;
+		DocumentBuilder builder = threadBuilders.get();
+		if (builder != null) {
+			builder.reset();
+		} else if (validating) {
         	if (validatingFactory == null) {
         		throw new ParserConfigurationException("No validating parser factory available");
-        	} else if (!validatingFactory.isValidating()) {
+        	} else if (validatingFactory.getSchema() == null) {
             	throw new ParserConfigurationException("factory should be validating but isn't");
         	}
             builder = validatingFactory.newDocumentBuilder();
-            assert builder.isValidating();
-            builder.setErrorHandler(new ErrorHandler() {
-                public void error(SAXParseException e) throws SAXParseException { throw e; }  
-                public void fatalError(SAXParseException e) throws SAXParseException { throw e; }  
-                public void warning(SAXParseException e) throws SAXParseException { throw e; }  
-            });
+            assert builder.getSchema() != null;
+            threadBuilders.set(builder);
         } else {
             builder = factory.newDocumentBuilder();
+            threadBuilders.set(builder);
         }
+		if (validating) {
+			// reset() has removed the error handler
+			builder.setErrorHandler(throwingErrorHandler);
+		}
 		return builder;
 	}
+
+	/**
+	 * Create a new, empty DOM document, using the document builder of the current thread.
+	 * @return the new document
+	 * @throws ParserConfigurationException if no document builder could be created
+	 */
+	public static Document createDocument() throws ParserConfigurationException {
+		return getDocumentBuilder(false).newDocument();
+	}
     
     /**
      * DOM-parse the given input data. Namespace-aware but non-validating.
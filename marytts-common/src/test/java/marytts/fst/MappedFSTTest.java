@@ -0,0 +1,106 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package marytts.fst;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Compare the lookups in a memory-mapped FST with those in the FST it was converted from.
+ * @author agent
+ *
+ */
+public class MappedFSTTest {
+    private static final String[] WORDS = new String[] {
+        "Fahrrad", "fahren", "fahre", "Umwelt", "übersetzen", "über", "a"
+    };
+    private static final String[] TRANSCRIPTIONS = new String[] {
+        "'fa:6-Ra:t", "'fa:-R@n", "'fa:-R@", "'Um-vElt", "y:-b6-'zE-ts@n", "'y:-b6", "a:"
+    };
+    private static File fstFile;
+    private static File mappedFile;
+
+    @BeforeClass
+    public static void createFiles() throws IOException {
+        AlignerTrainer at = new AlignerTrainer(false, false);
+        for (int i = 0; i < WORDS.length; i++) {
+            at.splitAndAdd(WORDS[i], TRANSCRIPTIONS[i]);
+        }
+        at.alignIteration();
+        TransducerTrie t = new TransducerTrie();
+        for (int i = 0; i < at.lexiconSize(); i++) {
+            t.add(at.getAlignment(i));
+        }
+        t.computeMinimization();
+        fstFile = File.createTempFile("lexicon", ".fst");
+        DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fstFile)));
+        t.writeFST(os, "UTF-8");
+        os.close();
+        mappedFile = File.createTempFile("lexicon", ".mfst");
+        MappedFST.write(new FST(fstFile.getPath()), mappedFile.getPath());
+    }
+
+    @AfterClass
+    public static void deleteFiles() {
+        fstFile.delete();
+        mappedFile.delete();
+    }
+
+    @Test
+    public void recognisesFormat() throws IOException {
+        assertTrue(MappedFST.isMappedFST(mappedFile.getPath()));
+        assertFalse(MappedFST.isMappedFST(fstFile.getPath()));
+    }
+
+    @Test
+    public void sameLookupResults() throws IOException {
+        FSTLookup original = new FSTLookup(fstFile.getPath());
+        FSTLookup mapped = new FSTLookup(mappedFile.getPath());
+        for (String word : WORDS) {
+            assertArrayEquals(original.lookup(word), mapped.lookup(word));
+            String prefix = word.substring(0, word.length() - 1);
+            assertArrayEquals(original.lookup(prefix), mapped.lookup(prefix));
+            assertArrayEquals(original.lookup(word + "x"), mapped.lookup(word + "x"));
+        }
+        for (String transcription : TRANSCRIPTIONS) {
+            assertArrayEquals(original.lookup(transcription, true), mapped.lookup(transcription, true));
+        }
+    }
+
+    @Test
+    public void findsTranscriptions() throws IOException {
+        FSTLookup mapped = new FSTLookup(mappedFile.getPath());
+        for (int i = 0; i < WORDS.length; i++) {
+            assertArrayEquals(new String[] {TRANSCRIPTIONS[i]}, mapped.lookup(WORDS[i]));
+        }
+    }
+}
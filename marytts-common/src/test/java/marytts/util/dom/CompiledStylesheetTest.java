@@ -0,0 +1,38 @@
+package marytts.util.dom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+
+public class CompiledStylesheetTest {
+
+	private static final String STYLESHEET = "<xsl:stylesheet version='1.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>"
+		+ "<xsl:output method='text'/><xsl:param name='p'>default</xsl:param>"
+		+ "<xsl:template match='/'><xsl:value-of select='$p'/></xsl:template></xsl:stylesheet>";
+
+	private static String transform(Transformer transformer) throws Exception {
+		StringWriter out = new StringWriter();
+		transformer.transform(new StreamSource(new StringReader("<a/>")), new StreamResult(out));
+		return out.toString();
+	}
+
+	@Test
+	public void transformerIsReusedWithoutParameters() throws Exception {
+		CompiledStylesheet stylesheet = new CompiledStylesheet(new StreamSource(new StringReader(STYLESHEET)));
+		Transformer transformer = stylesheet.getTransformer();
+		transformer.setParameter("p", "set");
+		assertEquals("set", transform(transformer));
+		Transformer again = stylesheet.getTransformer();
+		assertSame(transformer, again);
+		assertEquals("default", transform(again));
+	}
+}
@@ -19,6 +19,13 @@ public class DomUtilsTest {
 	public void validatingParseStream() throws Exception {
 		DomUtils.parseDocument(DomUtilsTest.class.getResourceAsStream("sample.maryxml"), true);
 	}
+
+	@Test
+	public void validatingParseReusesBuilder() throws Exception {
+		for (int i=0; i<3; i++) {
+			DomUtils.parseDocument(DomUtilsTest.class.getResourceAsStream("sample.maryxml"), true);
+		}
+	}
 	
 
 }
@@ -248,7 +248,14 @@ public class JPhonemiser extends marytts.modules.JPhonemiser
                                 helper.append("foreign:en");
                         }
                         if (phon == null) {
-                            phon = phonemise(graph, pos, helper);                            
+                            phon = phonemise(graph, pos, helper);
+                            // count every occurrence, also of words the cache remembers:
+                            String method = helper.toString();
+                            if (method.equals("foreign:en") && logEnglishFileName != null) {
+                                countWord(english2Frequency, graph);
+                            } else if (method.equals("rules") && logUnknownFileName != null) {
+                                countWord(unknown2Frequency, graph);
+                            }
                         }
                         if (ph.length() == 0) { // first part
                             // The g2pMethod of the combined beast is
@@ -273,6 +280,18 @@ public class JPhonemiser extends marytts.modules.JPhonemiser
         return result;
     }
 
+    private static void countWord(Map<String,Integer> word2Frequency, String word)
+    {
+        String text = word.trim();
+        if (word2Frequency.containsKey(text)) {
+            int textFreq = word2Frequency.get(text);
+            textFreq++;
+            word2Frequency.put(text, textFreq);
+        } else {
+            word2Frequency.put(text, 1);
+        }
+    }
+
     /**
      * Phonemise the word text. This starts with a simple lexicon lookup,
      * followed by some heuristics, and finally applies letter-to-sound rules
@@ -286,7 +305,7 @@ public class JPhonemiser extends marytts.modules.JPhonemiser
      * null if no phonemisation method was successful.
      */
     @Override
-    public String phonemise(String text, String pos, StringBuilder g2pMethod)
+    protected String phonemiseUncached(String text, String pos, StringBuilder g2pMethod)
     {
         // First, try a simple userdict and lexicon lookup:
         String result = userdictLookup(text, pos);
@@ -340,16 +359,6 @@ public class JPhonemiser extends marytts.modules.JPhonemiser
             if (englishTranscription != null) {
                 g2pMethod.append("foreign:en");
                 logger.debug(text+" is English");
-                if(logEnglishFileName != null) {
-                    String englishText = text.trim();
-                    if (english2Frequency.containsKey(englishText)){
-                        int textFreq = english2Frequency.get(englishText);
-                        textFreq++;
-                        english2Frequency.put(englishText, textFreq);
-                    } else {
-                        english2Frequency.put(englishText, 1);
-                    }
-                }                
                 return englishTranscription;
             }
         }
@@ -379,16 +388,6 @@ public class JPhonemiser extends marytts.modules.JPhonemiser
         String phones = lts.predictPronunciation(normalised);
         result = lts.syllabify(phones);
         if (result != null) {
-            if(logUnknownFileName != null) {
-                String unknownText = text.trim();
-                if (unknown2Frequency.containsKey(unknownText)){
-                    int textFreq = unknown2Frequency.get(unknownText);
-                    textFreq++;
-                    unknown2Frequency.put(unknownText, textFreq);
-                } else {
-                    unknown2Frequency.put(unknownText, new Integer(1));
-                }
-            }
         	g2pMethod.append("rules");
            return result;
         }
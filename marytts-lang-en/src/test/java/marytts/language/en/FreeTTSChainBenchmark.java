@@ -0,0 +1,110 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.language.en;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import marytts.LocalMaryInterface;
+import marytts.MaryInterface;
+import marytts.datatypes.MaryData;
+import marytts.datatypes.MaryDataType;
+import marytts.modules.MaryModule;
+import marytts.modules.UtterancePassThrough;
+import marytts.util.dom.DomUtils;
+import marytts.util.io.FileUtils;
+
+import org.w3c.dom.Document;
+
+/**
+ * Compares the time the English FreeTTS-based modules from phonemes to intonation take
+ * when each of them converts MaryXML into FreeTTS utterances and back,
+ * and when they share their utterances through {@link UtterancePassThrough}.
+ * Not a unit test; run it manually with
+ * <code>java marytts.language.en.FreeTTSChainBenchmark [path/to/english.txt]</code>;
+ * without a text file, a long text is made up by repeating a few sentences.
+ * {@link UtterancePassThroughIT} checks that both give the same MaryXML.
+ *
+ * @author agent
+ *
+ */
+public class FreeTTSChainBenchmark {
+
+    private static final String SENTENCES = "The quick brown fox jumps over the lazy dog, while the cat watches from the window. "
+        + "On the 3rd of May, Dr. Smith paid $25.50 for 12 apples at the market on Main St. "
+        + "Would you like to hear the whole story, or just the end of it? ";
+
+    public static void main(String[] args) throws Exception {
+        String text;
+        if (args.length > 0) {
+            text = FileUtils.getFileAsString(new File(args[0]), "UTF-8");
+        } else {
+            StringBuilder buf = new StringBuilder();
+            for (int i = 0; i < 100; i++) {
+                buf.append(SENTENCES);
+            }
+            text = buf.toString();
+        }
+        MaryInterface mary = new LocalMaryInterface();
+        // The FreeTTS modules need phrases, syllables and phones, which in MaryXML
+        // are only added after the phonemes, by the prosody and pronunciation modules:
+        mary.setOutputType(MaryDataType.ALLOPHONES.name());
+        Document phonemes = mary.generateXML(text);
+
+        List<MaryModule> chain = new ArrayList<MaryModule>();
+        chain.add(new XML2UttSegmentsEn());
+        chain.add(new FreeTTSPauseGenerator());
+        chain.add(new Utt2XMLPausesEn());
+        chain.add(new XML2UttPausesEn());
+        chain.add(new FreeTTSIntonator());
+        chain.add(new Utt2XMLIntonationEn());
+        for (MaryModule m : chain) {
+            m.startup();
+        }
+        List<MaryModule> fused = UtterancePassThrough.fuse(chain);
+
+        int numRuns = 10;
+        String separateOutput = null;
+        String fusedOutput = null;
+        for (int run = 0; run < numRuns; run++) {
+            long startTime = System.nanoTime();
+            separateOutput = process(chain, phonemes);
+            long separateNanos = System.nanoTime() - startTime;
+            startTime = System.nanoTime();
+            fusedOutput = process(fused, phonemes);
+            long fusedNanos = System.nanoTime() - startTime;
+            System.out.printf("Run %d: separate modules %.1f ms, shared utterances %.1f ms%n",
+                    run, separateNanos / 1e6, fusedNanos / 1e6);
+        }
+        System.out.println("Same MaryXML output: " + separateOutput.equals(fusedOutput));
+    }
+
+    private static String process(List<MaryModule> modules, Document phonemes) throws Exception {
+        MaryData data = new MaryData(MaryDataType.PHONEMES, Locale.US);
+        // a copy, so that all runs start from the same document:
+        data.setDocument((Document) phonemes.cloneNode(true));
+        for (MaryModule m : modules) {
+            data = m.process(data);
+        }
+        return DomUtils.serializeToString(data.getDocument());
+    }
+}
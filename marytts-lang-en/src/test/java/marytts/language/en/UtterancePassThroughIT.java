@@ -0,0 +1,118 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.language.en;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import marytts.LocalMaryInterface;
+import marytts.MaryInterface;
+import marytts.datatypes.MaryData;
+import marytts.datatypes.MaryDataType;
+import marytts.modules.MaryModule;
+import marytts.modules.UtterancePassThrough;
+import marytts.util.dom.DomUtils;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+/**
+ * Checks that the English FreeTTS-based modules from phonemes to intonation give the same MaryXML
+ * when they share their utterances through {@link UtterancePassThrough} as when each of them
+ * converts MaryXML into FreeTTS utterances and back.
+ * {@link FreeTTSChainBenchmark} compares the time both take.
+ *
+ * @author agent
+ *
+ */
+public class UtterancePassThroughIT {
+
+    private static final String TEXT = "The quick brown fox jumps over the lazy dog, while the cat watches from the window. "
+        + "On the 3rd of May, Dr. Smith paid $25.50 for 12 apples at the market on Main St. "
+        + "Would you like to hear the whole story, or just the end of it?";
+
+    private static Document phonemes;
+    private static List<MaryModule> chain;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        MaryInterface mary = new LocalMaryInterface();
+        // The FreeTTS modules need phrases, syllables and phones, which in MaryXML
+        // are only added after the phonemes, by the prosody and pronunciation modules:
+        mary.setOutputType(MaryDataType.ALLOPHONES.name());
+        phonemes = mary.generateXML(TEXT);
+
+        chain = new ArrayList<MaryModule>();
+        chain.add(new XML2UttSegmentsEn());
+        chain.add(new FreeTTSPauseGenerator());
+        chain.add(new Utt2XMLPausesEn());
+        chain.add(new XML2UttPausesEn());
+        chain.add(new FreeTTSIntonator());
+        chain.add(new Utt2XMLIntonationEn());
+        for (MaryModule m : chain) {
+            m.startup();
+        }
+    }
+
+    private static MaryData process(List<MaryModule> modules) throws Exception {
+        MaryData data = new MaryData(MaryDataType.PHONEMES, Locale.US);
+        // a copy, so that both runs start from the same document:
+        data.setDocument((Document) phonemes.cloneNode(true));
+        for (MaryModule m : modules) {
+            data = m.process(data);
+        }
+        return data;
+    }
+
+    @Test
+    public void fusesUtt2XMLFollowedByXML2Utt() {
+        List<MaryModule> fused = UtterancePassThrough.fuse(chain);
+        assertEquals(chain.size() - 1, fused.size());
+        assertTrue(fused.get(2) instanceof UtterancePassThrough);
+        assertSame(chain.get(4), fused.get(3));
+    }
+
+    @Test
+    public void sharedUtterancesGiveSameMaryXML() throws Exception {
+        String separate = DomUtils.serializeToString(process(chain).getDocument());
+        String fused = DomUtils.serializeToString(process(UtterancePassThrough.fuse(chain)).getDocument());
+        assertEquals(separate, fused);
+    }
+
+    @Test
+    public void passThroughKeepsRequestSettings() throws Exception {
+        MaryData data = process(chain.subList(0, 2));
+        data.setDefaultStyle("cheerful");
+        data.setDefaultEffects("Robot(amount:50)");
+        data.setOutputParams("phone stressed");
+        MaryModule passThrough = UtterancePassThrough.fuse(chain).get(2);
+        MaryData output = passThrough.process(data);
+        assertSame(data.getUtterances(), output.getUtterances());
+        assertEquals("cheerful", output.getDefaultStyle());
+        assertEquals("Robot(amount:50)", output.getDefaultEffects());
+        assertEquals("phone stressed", output.getOutputParams());
+    }
+}
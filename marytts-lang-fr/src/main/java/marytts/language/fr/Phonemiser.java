@@ -31,7 +31,7 @@ public class Phonemiser extends marytts.modules.JPhonemiser {
     }
     
     @Override
-    public String phonemise(String text, String pos, StringBuilder g2pMethod)
+    protected String phonemiseUncached(String text, String pos, StringBuilder g2pMethod)
     {
         // First, try a simple userdict and lexicon lookup:
 
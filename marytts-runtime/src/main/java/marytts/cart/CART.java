@@ -115,6 +115,10 @@ public class CART extends DirectedGraph
      * @return the Node
      */
     public Node interpretToNode(FeatureVector featureVector, int minNumberOfData) {
+        CompiledGraph c = getCompiledGraph();
+        if (c != null && !c.hasGraphNodes) {
+            return c.interpretToNode(featureVector, minNumberOfData);
+        }
         Node currentNode = rootNode;
         Node prevNode = null;
 
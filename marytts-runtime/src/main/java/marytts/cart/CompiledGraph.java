@@ -0,0 +1,293 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.cart;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import marytts.features.FeatureVector;
+
+/**
+ * A flat representation of a directed graph or CART, for fast interpretation.
+ * Each node of the graph is numbered, the root node being number 0; the decision
+ * of a node is described by entries in parallel arrays (kind, feature index,
+ * criterion value and the position of its daughters in a shared array of child numbers),
+ * so that walking down the graph does not need virtual calls or type checks.
+ * The original nodes are kept in a table, so that the interpreter returns the very
+ * same nodes and data as the object graph.
+ * <p>
+ * The compiled graph is a snapshot of the graph at the time it was created;
+ * it must be created again whenever the graph is modified, which
+ * {@link #isUpToDate(Node)} finds out from the root node's structure version.
+ *
+ * @author agent
+ */
+class CompiledGraph
+{
+    static final int LEAF = 0;
+    static final int BINARY_BYTE = 1;
+    static final int BINARY_SHORT = 2;
+    static final int BINARY_FLOAT = 3;
+    /** A BinaryFloatDecisionNode on a byte feature */
+    static final int BINARY_FLOAT_ON_BYTE = 4;
+    static final int BYTE = 5;
+    static final int SHORT = 6;
+    static final int GRAPH = 7;
+
+    /** The original node for each node number */
+    final Node[] nodes;
+    final int[] kind;
+    final int[] featureIndex;
+    /** The criterion value of binary byte and short decision nodes */
+    final int[] value;
+    /** The criterion value of binary float decision nodes */
+    final float[] threshold;
+    /** The position of the first daughter of each node in {@link #children} */
+    final int[] firstChild;
+    final int[] numChildren;
+    final int[] numberOfData;
+    /** The node numbers of the daughters, -1 for null daughters.
+     * For directed graph nodes, the decision node comes first and the leaf node second. */
+    final int[] children;
+    final boolean hasGraphNodes;
+    /** The root node and its structure version at the time the graph was compiled */
+    private final Node root;
+    private final int rootVersion;
+    /** The stack of fallback leaves for {@link #interpret(FeatureVector)}, one per thread */
+    private final ThreadLocal<int[]> fallbackStack;
+
+    /**
+     * Compile the graph below the given root node.
+     * @param rootNode the root node, may be null for an empty graph.
+     * @throws IllegalArgumentException if the graph contains a node of an unknown type.
+     */
+    CompiledGraph(Node rootNode)
+    {
+        // Read the version first, so that a change during compilation makes the result outdated:
+        root = rootNode;
+        rootVersion = rootNode != null ? rootNode.getStructureVersion() : 0;
+        // Number the nodes in breadth-first order, so that nodes near the root,
+        // which are visited for every feature vector, are close together in memory:
+        IdentityHashMap<Node, Integer> numbers = new IdentityHashMap<Node, Integer>();
+        List<Node> list = new ArrayList<Node>();
+        int numChildSlots = 0;
+        if (rootNode != null) {
+            numbers.put(rootNode, 0);
+            list.add(rootNode);
+        }
+        for (int i=0; i<list.size(); i++) {
+            Node[] daughters = daughtersOf(list.get(i));
+            numChildSlots += daughters.length;
+            for (Node d : daughters) {
+                if (d != null && !numbers.containsKey(d)) {
+                    numbers.put(d, list.size());
+                    list.add(d);
+                }
+            }
+        }
+
+        int n = list.size();
+        nodes = list.toArray(new Node[n]);
+        kind = new int[n];
+        featureIndex = new int[n];
+        value = new int[n];
+        threshold = new float[n];
+        firstChild = new int[n];
+        numChildren = new int[n];
+        numberOfData = new int[n];
+        children = new int[numChildSlots];
+        int numGraphNodes = 0;
+        int pos = 0;
+        for (int i=0; i<n; i++) {
+            Node node = nodes[i];
+            numberOfData[i] = node.getNumberOfData();
+            if (node instanceof DecisionNode) {
+                DecisionNode dn = (DecisionNode) node;
+                featureIndex[i] = dn.getFeatureIndex();
+                switch (dn.getDecisionNodeType()) {
+                case BinaryByteDecisionNode:
+                    kind[i] = BINARY_BYTE;
+                    value[i] = ((DecisionNode.BinaryByteDecisionNode) dn).getCriterionValueAsByte();
+                    break;
+                case BinaryShortDecisionNode:
+                    kind[i] = BINARY_SHORT;
+                    value[i] = ((DecisionNode.BinaryShortDecisionNode) dn).getCriterionValueAsShort();
+                    break;
+                case BinaryFloatDecisionNode:
+                    DecisionNode.BinaryFloatDecisionNode fdn = (DecisionNode.BinaryFloatDecisionNode) dn;
+                    kind[i] = fdn.isByteFeature() ? BINARY_FLOAT_ON_BYTE : BINARY_FLOAT;
+                    threshold[i] = fdn.getCriterionValueAsFloat();
+                    break;
+                case ByteDecisionNode:
+                    kind[i] = BYTE;
+                    break;
+                case ShortDecisionNode:
+                    kind[i] = SHORT;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown decision node type: "+dn.getDecisionNodeType());
+                }
+            } else if (node instanceof DirectedGraphNode) {
+                kind[i] = GRAPH;
+                numGraphNodes++;
+            } else if (node instanceof LeafNode) {
+                kind[i] = LEAF;
+            } else {
+                throw new IllegalArgumentException("Unknown node type: "+node.getClass());
+            }
+            Node[] daughters = daughtersOf(node);
+            firstChild[i] = pos;
+            numChildren[i] = daughters.length;
+            for (Node d : daughters) {
+                children[pos++] = d == null ? -1 : numbers.get(d);
+            }
+        }
+        hasGraphNodes = numGraphNodes > 0;
+        // A path through the graph passes each directed graph node at most once,
+        // so there cannot be more fallbacks than directed graph nodes:
+        final int maxFallbacks = numGraphNodes;
+        fallbackStack = !hasGraphNodes ? null : new ThreadLocal<int[]>() {
+            @Override
+            protected int[] initialValue() {
+                return new int[maxFallbacks];
+            }
+        };
+    }
+
+    /**
+     * Whether this is a compiled version of the graph below the given root node in its current state.
+     */
+    boolean isUpToDate(Node rootNode)
+    {
+        return rootNode == root
+            && (root == null || root.getStructureVersion() == rootVersion);
+    }
+
+    private static Node[] daughtersOf(Node node)
+    {
+        if (node instanceof DecisionNode) {
+            DecisionNode dn = (DecisionNode) node;
+            Node[] daughters = new Node[dn.getNumberOfDaugthers()];
+            for (int k=0; k<daughters.length; k++) {
+                daughters[k] = dn.getDaughter(k);
+            }
+            return daughters;
+        } else if (node instanceof DirectedGraphNode) {
+            DirectedGraphNode g = (DirectedGraphNode) node;
+            return new Node[] {g.getDecisionNode(), g.getLeafNode()};
+        }
+        return new Node[0];
+    }
+
+    /**
+     * The number of the daughter of decision node i selected by the given feature vector,
+     * as in {@link DecisionNode#getNextNode(FeatureVector)}.
+     * @return the daughter's number, or -1 if the daughter is null.
+     */
+    private int nextNode(int i, FeatureVector fv)
+    {
+        int first = firstChild[i];
+        switch (kind[i]) {
+        case BINARY_BYTE:
+            return children[first + (fv.getByteFeature(featureIndex[i]) == value[i] ? 0 : 1)];
+        case BINARY_SHORT:
+            return children[first + (fv.getShortFeature(featureIndex[i]) == value[i] ? 0 : 1)];
+        case BINARY_FLOAT:
+            return children[first + (fv.getContinuousFeature(featureIndex[i]) < threshold[i] ? 0 : 1)];
+        case BINARY_FLOAT_ON_BYTE:
+            return children[first + ((float) fv.getByteFeature(featureIndex[i]) < threshold[i] ? 0 : 1)];
+        case BYTE:
+            return children[first + checkedIndex(fv.getByteFeature(featureIndex[i]), numChildren[i])];
+        case SHORT:
+            return children[first + checkedIndex(fv.getShortFeature(featureIndex[i]), numChildren[i])];
+        default:
+            throw new IllegalStateException("Node "+i+" is not a decision node");
+        }
+    }
+
+    /**
+     * The daughters of a node share the children array with other nodes, so an out-of-range
+     * feature value must fail here as it would fail on the node's own daughters array.
+     */
+    private static int checkedIndex(int val, int length)
+    {
+        if (val < 0 || val >= length) {
+            throw new ArrayIndexOutOfBoundsException(val);
+        }
+        return val;
+    }
+
+    /**
+     * Walk down the tree as in {@link CART#interpretToNode(FeatureVector, int)}.
+     * The graph must not contain directed graph nodes.
+     */
+    Node interpretToNode(FeatureVector fv, int minNumberOfData)
+    {
+        int current = nodes.length > 0 ? 0 : -1;
+        int prev = -1;
+        while (current >= 0 && numberOfData[current] > minNumberOfData
+                && kind[current] != LEAF) {
+            prev = current;
+            current = nextNode(current, fv);
+        }
+        if (current < 0
+                || numberOfData[current] < minNumberOfData
+                   && prev >= 0) {
+            current = prev;
+        }
+        return current >= 0 ? nodes[current] : null;
+    }
+
+    /**
+     * Follow the graph down to the most specific leaf with data,
+     * as in {@link DirectedGraph#interpret(FeatureVector)}.
+     */
+    Object interpret(FeatureVector fv)
+    {
+        // The leaf nodes of the directed graph nodes passed on the way down, to fall back to
+        // if no data is found below the respective decision node; the innermost comes last.
+        int[] fallbacks = hasGraphNodes ? fallbackStack.get() : null;
+        int numFallbacks = 0;
+        int current = nodes.length > 0 ? 0 : -1;
+        while (true) {
+            if (current >= 0) {
+                int k = kind[current];
+                if (k == LEAF) {
+                    Object data = nodes[current].getAllData();
+                    if (data != null) {
+                        return data;
+                    }
+                } else if (k == GRAPH) {
+                    fallbacks[numFallbacks++] = children[firstChild[current]+1];
+                    current = children[firstChild[current]];
+                    continue;
+                } else {
+                    current = nextNode(current, fv);
+                    continue;
+                }
+            }
+            if (numFallbacks == 0) {
+                return null;
+            }
+            current = fallbacks[--numFallbacks];
+        }
+    }
+}
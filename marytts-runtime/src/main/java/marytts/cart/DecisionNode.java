@@ -143,6 +143,7 @@ public abstract class DecisionNode extends Node
             daughter.setMother(this, lastDaughter);
         }
         lastDaughter++;
+        structureChanged();
     }
 
     /**
@@ -175,6 +176,7 @@ public abstract class DecisionNode extends Node
         }
         daughters[index] = newDaughter;
         newDaughter.setMother(this, index);
+        structureChanged();
     }
 
     /**
@@ -261,6 +263,7 @@ public abstract class DecisionNode extends Node
                 nData += daughters[i].getNumberOfData();
             }
         }
+        structureChanged();
     }
     
     
@@ -360,6 +363,7 @@ public abstract class DecisionNode extends Node
             this.feature = feature;
             this.featureIndex = featureDefinition.getFeatureIndex(feature);
             this.value = featureDefinition.getFeatureValueAsByte(feature, value);
+            structureChanged();
         }
         
         public byte getCriterionValueAsByte()
@@ -557,6 +561,14 @@ public abstract class DecisionNode extends Node
         {
             return value;
         }
+
+        /**
+         * Whether the criterion is applied to a byte feature rather than a continuous feature.
+         */
+        public boolean isByteFeature()
+        {
+            return isByteFeature;
+        }
         
         public String getCriterionValueAsString()
         {
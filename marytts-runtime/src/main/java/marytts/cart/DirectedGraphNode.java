@@ -70,6 +70,7 @@ public class DirectedGraphNode extends Node
         this.decisionNode = newNode;
         if (newNode != null)
             newNode.setMother(this, 0);
+        structureChanged();
     }
     
     public Node getLeafNode()
@@ -87,8 +88,22 @@ public class DirectedGraphNode extends Node
         this.leafNode = newNode;
         if (newNode != null)
             newNode.setMother(this, 0);
+        structureChanged();
     }
     
+    /**
+     * A directed graph node can be below several mothers,
+     * so a change below it must be passed on to all of them.
+     */
+    @Override
+    protected void structureChanged()
+    {
+        super.structureChanged();
+        for (int i=1; i<mothers.size(); i++) {
+            mothers.get(i).structureChanged();
+        }
+    }
+
     @Override
     public void setMother(Node node, int nodeIndex)
     {
@@ -253,6 +253,7 @@ public abstract class LeafNode extends Node {
         	}
         	data = newData;
         	floats = newFloats;
+        	structureChanged();
         }
         
         public LeafType getLeafNodeType()
@@ -336,6 +337,7 @@ public abstract class LeafNode extends Node {
         
         public void addFeatureVector(FeatureVector fv){
             featureVectorList.add(fv);
+            structureChanged();
         }
         
         /**
@@ -357,6 +359,7 @@ public abstract class LeafNode extends Node {
 	public void setFeatureVectors(FeatureVector[] fv)
 	{
 	    this.featureVectors = fv;
+	    structureChanged();
 	}
 
         /**
@@ -527,6 +530,24 @@ public abstract class LeafNode extends Node {
           
         }
              
+        /**
+         * Create a leaf node from its parts, e.g. when reading a tree written before.
+         * @param idx, a unique index number
+         * @param vectorSize, the vector size as given by {@link #getVectorSize()}
+         * @param mean, the mean vector
+         * @param variance, the diagonal covariance
+         * @param voicedWeight, the voiced weight (only for lf0 trees)
+         */
+        public PdfLeafNode(int idx, int vectorSize, double[] mean, double[] variance, double voicedWeight)
+        {
+          super();
+          this.setUniqueLeafId(idx);
+          this.vectorSize = vectorSize;
+          this.mean = mean;
+          this.variance = variance;
+          this.voicedWeight = voicedWeight;
+        }
+             
         public int getDataLength() {return mean.length; }
         public double[] getMean() { return mean; }
         public double[] getVariance() { return variance; }
@@ -46,7 +46,10 @@ public abstract class Node
     // the index of the node in the daughters array of its mother
     protected int nodeIndex;
 
- 
+    // counts the changes to the subgraph below this node, see structureChanged()
+    private volatile int structureVersion;
+
+
     /**
      * set the mother node of this node, and remember this node's index in mother.
      * 
@@ -96,6 +99,29 @@ public abstract class Node
         return isRoot;
     }
 
+    /**
+     * The version of the subgraph below this node, which is increased by every
+     * change to the daughters or data of this node or of any node below it.
+     * A {@link CompiledGraph} compares it to the version it was created from.
+     */
+    int getStructureVersion()
+    {
+        return structureVersion;
+    }
+
+    /**
+     * Tell this node and all nodes above it that the subgraph below them has changed.
+     * Must be called by every method which changes the daughters or data of a node.
+     */
+    protected void structureChanged()
+    {
+        structureVersion++;
+        Node m = getMother();
+        if (m != null) {
+            m.structureChanged();
+        }
+    }
+
     public boolean isDecisionNode()
     {
         return false;
@@ -270,7 +270,9 @@ public class DirectedGraphReader
         }
 
         // set the rootNode as the rootNode of cart
-        return new DirectedGraph(rootNode, featureDefinition, props);
+        DirectedGraph graph = new DirectedGraph(rootNode, featureDefinition, props);
+        graph.compile();
+        return graph;
     }
 
     private Node childIndexToNode(int childIndexAndType, DecisionNode[] dns, LeafNode[] lns, DirectedGraphNode[] graphNodes)
@@ -57,6 +57,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Scanner;
 import java.util.StringTokenizer;
 
@@ -164,6 +166,7 @@ public class HTSCARTReader
     			// will return the correct figure.
     			if (treeSet[state-2].getRootNode() instanceof DecisionNode)
     				((DecisionNode)treeSet[state-2].getRootNode()).countData();
+    			treeSet[state-2].compile();
 
     			logger.debug("load: CART[" + (state-2) + "], total number of nodes in this CART: " + treeSet[state-2].getNumNodes());            
     		}         
@@ -200,6 +203,9 @@ private Node loadStateTree(BufferedReader s, double pdf[][][]) throws IOExceptio
   // this is the rootNode
   rootNode = nextNode;
   nextNode.setIsRoot(true);
+  // the decision nodes created so far, by unique id:
+  Map<Integer, Node> decisionNodes = new HashMap<Integer, Node>();
+  decisionNodes.put(0, rootNode);
  
   int iaux, feaIndex, ndec, nleaf;
   ndec=0;
@@ -224,7 +230,7 @@ private Node loadStateTree(BufferedReader s, double pdf[][][]) throws IOExceptio
         else
           throw new MaryConfigurationException("LoadStateTree: line does not start with a decision node (-id), line=" +  aux);   
         // 1. find the node in the tree, it has to be already created.
-        node = findDecisionNode(rootNode,id);
+        node = decisionNodes.get(id);
         
         if(node == null)
             throw new MaryConfigurationException("LoadStateTree: Node not found, index = " +  buf); 
@@ -263,6 +269,7 @@ private Node loadStateTree(BufferedReader s, double pdf[][][]) throws IOExceptio
             // create an empty binary decision node with unique id
             BinaryByteDecisionNode auxnode = new DecisionNode.BinaryByteDecisionNode(iaux, featDef);
             ((DecisionNode) node).replaceDaughter(auxnode, 1);
+            decisionNodes.put(iaux, auxnode);
           } else {                  // LeafNode
             iaux = Integer.parseInt(buf.substring(buf.lastIndexOf("_")+1, buf.length()-1));
             // create an empty PdfLeafNode
@@ -278,6 +285,7 @@ private Node loadStateTree(BufferedReader s, double pdf[][][]) throws IOExceptio
             // create an empty binary decision node with unique id=0
             BinaryByteDecisionNode auxnode = new DecisionNode.BinaryByteDecisionNode(iaux, featDef);
             ((DecisionNode) node).replaceDaughter(auxnode, 0);
+            decisionNodes.put(iaux, auxnode);
           } else {                   // LeafNode
             iaux = Integer.parseInt(buf.substring(buf.lastIndexOf("_")+1, buf.length()-1));
             // create an empty PdfLeafNode
@@ -295,32 +303,6 @@ private Node loadStateTree(BufferedReader s, double pdf[][][]) throws IOExceptio
   
 } /* method loadTree() */
 
-/**
- * @param node, decision node
- * @param numId, index to look for.
- * @return
- */ 
-private Node findDecisionNode(Node node, int numId){
-    
-    Node aux = null;  
-      
-      if (node instanceof DecisionNode){
-        //System.out.print(" id=" + ((DecisionNode)node).getUniqueDecisionNodeId());  
-        if( ((DecisionNode)node).getUniqueDecisionNodeId() == numId ) 
-          return node;
-        else {
-          for(int i=0; i< ((DecisionNode)node).getNumberOfDaugthers(); i++){
-            aux = findDecisionNode( ((DecisionNode)node).getDaughter(i), numId );
-            if(aux != null)
-              return aux;
-          }
-        }
-      }
-      return aux;
-       
-  } /* method findDecisionNode */
-
-
 /** Load pdf's, mean and variance 
 * the #leaves corresponds to the unique leaf node id
 * pdf --> [#states][#leaves][#streams][vectorsize]   
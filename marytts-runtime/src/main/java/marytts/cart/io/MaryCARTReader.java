@@ -235,7 +235,9 @@ public class MaryCARTReader
         }
 
         // set the rootNode as the rootNode of cart
-        return new CART(rootNode, featureDefinition, props);
+        CART cart = new CART(rootNode, featureDefinition, props);
+        cart.compile();
+        return cart;
     }
 
     /**
@@ -408,7 +410,9 @@ public class MaryCARTReader
         }
 
         // set the rootNode as the rootNode of cart
-        return new CART(rootNode, featureDefinition, props);
+        CART cart = new CART(rootNode, featureDefinition, props);
+        cart.compile();
+        return cart;
     }
     
 }
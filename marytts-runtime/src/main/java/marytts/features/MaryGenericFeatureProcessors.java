@@ -75,6 +75,19 @@ public class MaryGenericFeatureProcessors
         public Element getElement(Target target);
     }
 
+    /**
+     * Get the utterance index attached to the target, if there is one and it covers the
+     * target's element. If this returns null, the feature processors walk the DOM tree instead.
+     * @param target the target to process
+     * @param segment the MaryXML element of the target
+     */
+    private static UtteranceIndex getIndex(Target target, Element segment)
+    {
+        UtteranceIndex index = target.getUtteranceIndex();
+        if (index != null && index.contains(segment)) return index;
+        return null;
+    }
+
     /**
      * Retrieve the segment belonging to this target.
      * @author Marc Schr&ouml;der
@@ -99,6 +112,8 @@ public class MaryGenericFeatureProcessors
         {
             Element segment = target.getMaryxmlElement();
             if (segment == null) return null;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return index.getPrevious(UtteranceIndex.SEGMENTS, segment, 1);
             Element sentence = (Element) MaryDomUtils.getAncestor(segment, MaryXML.SENTENCE);
             if (sentence == null) return null;
             TreeWalker tw = MaryDomUtils.createTreeWalker(sentence, MaryXML.PHONE, MaryXML.BOUNDARY);
@@ -119,6 +134,8 @@ public class MaryGenericFeatureProcessors
         {
             Element segment = target.getMaryxmlElement();
             if (segment == null) return null;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return index.getPrevious(UtteranceIndex.SEGMENTS, segment, 2);
             Element sentence = (Element) MaryDomUtils.getAncestor(segment, MaryXML.SENTENCE);
             if (sentence == null) return null;
             TreeWalker tw = MaryDomUtils.createTreeWalker(sentence, MaryXML.PHONE, MaryXML.BOUNDARY);
@@ -140,6 +157,8 @@ public class MaryGenericFeatureProcessors
         {
             Element segment = target.getMaryxmlElement();
             if (segment == null) return null;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return index.getNext(UtteranceIndex.SEGMENTS, segment, 1);
             Element sentence = (Element) MaryDomUtils.getAncestor(segment, MaryXML.SENTENCE);
             if (sentence == null) return null;
             TreeWalker tw = MaryDomUtils.createTreeWalker(sentence, MaryXML.PHONE, MaryXML.BOUNDARY);
@@ -160,6 +179,8 @@ public class MaryGenericFeatureProcessors
         {
             Element segment = target.getMaryxmlElement();
             if (segment == null) return null;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return index.getNext(UtteranceIndex.SEGMENTS, segment, 2);
             Element sentence = (Element) MaryDomUtils.getAncestor(segment, MaryXML.SENTENCE);
             if (sentence == null) return null;
             TreeWalker tw = MaryDomUtils.createTreeWalker(sentence, MaryXML.PHONE, MaryXML.BOUNDARY);
@@ -182,6 +203,8 @@ public class MaryGenericFeatureProcessors
             if (segment == null) return null;
             Element word = (Element) MaryDomUtils.getAncestor(segment, MaryXML.TOKEN);
             if (word == null) return null;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return index.getFirst(UtteranceIndex.PHONES, word);
             TreeWalker tw = MaryDomUtils.createTreeWalker(word, MaryXML.PHONE);
             Element first = (Element) tw.firstChild();
             if (first != null) {
@@ -203,6 +226,8 @@ public class MaryGenericFeatureProcessors
             if (segment == null) return null;
             Element word = (Element) MaryDomUtils.getAncestor(segment, MaryXML.TOKEN);
             if (word == null) return null;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return index.getLast(UtteranceIndex.PHONES, word);
             TreeWalker tw = MaryDomUtils.createTreeWalker(word, MaryXML.PHONE);
             Element last = (Element) tw.lastChild();
             if (last != null) {
@@ -224,6 +249,8 @@ public class MaryGenericFeatureProcessors
             if (segment == null) return null;
             Element word = (Element) MaryDomUtils.getAncestor(segment, MaryXML.TOKEN);
             if (word == null) return null;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return index.getFirst(UtteranceIndex.SYLLABLES, word);
             TreeWalker tw = MaryDomUtils.createTreeWalker(word, MaryXML.SYLLABLE);
             Element first = (Element) tw.firstChild();
             if (first != null) {
@@ -245,6 +272,8 @@ public class MaryGenericFeatureProcessors
             if (segment == null) return null;
             Element word = (Element) MaryDomUtils.getAncestor(segment, MaryXML.TOKEN);
             if (word == null) return null;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return index.getLast(UtteranceIndex.SYLLABLES, word);
             TreeWalker tw = MaryDomUtils.createTreeWalker(word, MaryXML.SYLLABLE);
             Element last = (Element) tw.lastChild();
             if (last != null) {
@@ -293,6 +322,8 @@ public class MaryGenericFeatureProcessors
             } else { // boundary
                 current = segment;
             }
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return index.getPrevious(UtteranceIndex.SYLLABLES, current, 1);
             Element sentence = (Element) MaryDomUtils.getAncestor(segment, MaryXML.SENTENCE);
             if (sentence == null) return null;
             TreeWalker tw = MaryDomUtils.createTreeWalker(sentence, MaryXML.SYLLABLE);
@@ -324,6 +355,8 @@ public class MaryGenericFeatureProcessors
             } else { // boundary
                 current = segment;
             }
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return index.getPrevious(UtteranceIndex.SYLLABLES, current, 2);
             Element sentence = (Element) MaryDomUtils.getAncestor(segment, MaryXML.SENTENCE);
             if (sentence == null) return null;
             TreeWalker tw = MaryDomUtils.createTreeWalker(sentence, MaryXML.SYLLABLE);
@@ -356,6 +389,8 @@ public class MaryGenericFeatureProcessors
             } else { // boundary
                 current = segment;
             }
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return index.getNext(UtteranceIndex.SYLLABLES, current, 1);
             Element sentence = (Element) MaryDomUtils.getAncestor(segment, MaryXML.SENTENCE);
             if (sentence == null) return null;
             TreeWalker tw = MaryDomUtils.createTreeWalker(sentence, MaryXML.SYLLABLE);
@@ -387,6 +422,8 @@ public class MaryGenericFeatureProcessors
             } else { // boundary
                 current = segment;
             }
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return index.getNext(UtteranceIndex.SYLLABLES, current, 2);
             Element sentence = (Element) MaryDomUtils.getAncestor(segment, MaryXML.SENTENCE);
             if (sentence == null) return null;
             TreeWalker tw = MaryDomUtils.createTreeWalker(sentence, MaryXML.SYLLABLE);
@@ -429,6 +466,8 @@ public class MaryGenericFeatureProcessors
             if (segment == null) return null;
             Element phrase = (Element) MaryDomUtils.getAncestor(segment, MaryXML.PHRASE);
             if (phrase == null) return null;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return index.getLast(UtteranceIndex.SYLLABLES, phrase);
             TreeWalker tw = MaryDomUtils.createTreeWalker(phrase, MaryXML.SYLLABLE);
             Element last = (Element) tw.lastChild();
             if (last != null) {
@@ -453,6 +492,8 @@ public class MaryGenericFeatureProcessors
             } else { // boundary
                 current = segment;
             }
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return index.getNext(UtteranceIndex.WORDS, current, 1);
             Element sentence = (Element) MaryDomUtils.getAncestor(segment, MaryXML.SENTENCE);
             if (sentence == null) return null;
             TreeWalker tw = MaryDomUtils.createTreeWalker(sentence, MaryXML.TOKEN);
@@ -487,6 +528,8 @@ public class MaryGenericFeatureProcessors
             } else { // boundary
                 current = segment;
             }
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return index.getPrevious(UtteranceIndex.WORDS, current, 1);
             Element sentence = (Element) MaryDomUtils.getAncestor(segment, MaryXML.SENTENCE);
             if (sentence == null) return null;
             TreeWalker tw = MaryDomUtils.createTreeWalker(sentence, MaryXML.TOKEN);
@@ -522,6 +565,11 @@ public class MaryGenericFeatureProcessors
             } else { // boundary
                 current = segment;
             }
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) {
+                Element nextWord = index.getNext(UtteranceIndex.WORDS, current, 1);
+                return nextWord != null ? index.getFirst(UtteranceIndex.PHONES, nextWord) : null;
+            }
             Element sentence = (Element) MaryDomUtils.getAncestor(segment, MaryXML.SENTENCE);
             if (sentence == null) return null;
             TreeWalker tw = MaryDomUtils.createTreeWalker(sentence, MaryXML.TOKEN);
@@ -557,6 +605,8 @@ public class MaryGenericFeatureProcessors
             if (segment == null) return null;
             Element sentence = (Element) MaryDomUtils.getAncestor(segment, MaryXML.SENTENCE);
             if (sentence == null) return null;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return index.getLast(UtteranceIndex.WORDS, sentence);
             TreeWalker tw = MaryDomUtils.createTreeWalker(sentence, MaryXML.TOKEN);
             Element lastWord = null;
             Element lastToken = (Element) tw.lastChild();
@@ -826,6 +876,8 @@ public class MaryGenericFeatureProcessors
             if (segment == null) return (byte)0;
             Element sentence = (Element) MaryDomUtils.getAncestor(segment, MaryXML.SENTENCE);
             if (sentence == null) return (byte)0;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return (byte) rail(index.count(UtteranceIndex.PHRASES, sentence));
             TreeWalker tw = MaryDomUtils.createTreeWalker(sentence, MaryXML.PHRASE);
             int count = 0;
             Element e;
@@ -856,6 +908,8 @@ public class MaryGenericFeatureProcessors
             if (segment == null) return (byte)0;
             Element sentence = (Element) MaryDomUtils.getAncestor(segment, MaryXML.SENTENCE);
             if (sentence == null) return (byte)0;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return (byte) rail(index.count(UtteranceIndex.WORDS, sentence));
             TreeWalker tw = MaryDomUtils.createTreeWalker(sentence, MaryXML.TOKEN);
             int count = 0;
             Element e;
@@ -886,6 +940,8 @@ public class MaryGenericFeatureProcessors
             if (segment == null) return (byte)0;
             Element phrase = (Element) MaryDomUtils.getAncestor(segment, MaryXML.PHRASE);
             if (phrase == null) return (byte)0;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return (byte) rail(index.count(UtteranceIndex.SYLLABLES, phrase));
             TreeWalker tw = MaryDomUtils.createTreeWalker(phrase, MaryXML.SYLLABLE);
             int count = 0;
             Element e;
@@ -919,6 +975,8 @@ public class MaryGenericFeatureProcessors
             if (segment == null) return (byte)0;
             Element phrase = (Element) MaryDomUtils.getAncestor(segment, MaryXML.PHRASE);
             if (phrase == null) return (byte)0;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return (byte) rail(index.count(UtteranceIndex.TOKENS, phrase));
             TreeWalker tw = MaryDomUtils.createTreeWalker(phrase, MaryXML.TOKEN);
             int count = 0;
             Element e;
@@ -950,6 +1008,8 @@ public class MaryGenericFeatureProcessors
             if (segment == null) return (byte)0;
             Element word = (Element) MaryDomUtils.getAncestor(segment, MaryXML.TOKEN);
             if (word == null) return (byte)0;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return (byte) rail(index.count(UtteranceIndex.SYLLABLES, word));
             TreeWalker tw = MaryDomUtils.createTreeWalker(word, MaryXML.SYLLABLE);
             int count = 0;
             Element e;
@@ -978,6 +1038,8 @@ public class MaryGenericFeatureProcessors
             if (segment == null) return (byte)0;
             Element word = (Element) MaryDomUtils.getAncestor(segment, MaryXML.TOKEN);
             if (word == null) return (byte)0;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return (byte) rail(index.count(UtteranceIndex.PHONES, word));
             TreeWalker tw = MaryDomUtils.createTreeWalker(word, MaryXML.PHONE);
             int count = 0;
             Element e;
@@ -1014,6 +1076,8 @@ public class MaryGenericFeatureProcessors
             if (!segment.getTagName().equals(MaryXML.PHONE)) return 0;
             Element syllable = (Element) segment.getParentNode();
             if (syllable == null) return (byte)0;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return (byte) rail(index.count(UtteranceIndex.PHONES, syllable));
             TreeWalker tw = MaryDomUtils.createTreeWalker(syllable, MaryXML.PHONE);
             int count = 0;
             Element e;
@@ -1108,6 +1172,8 @@ public class MaryGenericFeatureProcessors
             if (segment == null) return (byte)0;
             Element word = (Element) MaryDomUtils.getAncestor(segment, MaryXML.TOKEN);
             if (word == null) return (byte)0;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return (byte) rail(index.countBefore(UtteranceIndex.PHONES, word, segment));
             TreeWalker tw = MaryDomUtils.createTreeWalker(word, MaryXML.PHONE);
             tw.setCurrentNode(segment);
             int count = 0;
@@ -1139,6 +1205,8 @@ public class MaryGenericFeatureProcessors
             if (segment == null) return (byte)0;
             Element word = (Element) MaryDomUtils.getAncestor(segment, MaryXML.TOKEN);
             if (word == null) return (byte)0;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return (byte) rail(index.countAfter(UtteranceIndex.PHONES, word, segment));
             TreeWalker tw = MaryDomUtils.createTreeWalker(word, MaryXML.PHONE);
             tw.setCurrentNode(segment);
             int count = 0;
@@ -1637,6 +1705,11 @@ public class MaryGenericFeatureProcessors
             if (segment == null) return 0;
             Element phrase = (Element) MaryDomUtils.getAncestor(segment, MaryXML.PHRASE);
             if (phrase == null) return 0;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) {
+                Element syllable = (Element) MaryDomUtils.getAncestor(segment, MaryXML.SYLLABLE);
+                return (byte) rail(index.countBefore(UtteranceIndex.SYLLABLES, phrase, syllable != null ? syllable : segment));
+            }
             int count = 0;
             TreeWalker tw = MaryDomUtils.createTreeWalker(phrase, MaryXML.SYLLABLE);
             Element syllable = (Element) MaryDomUtils.getAncestor(segment, MaryXML.SYLLABLE);
@@ -1673,6 +1746,8 @@ public class MaryGenericFeatureProcessors
             if (segment == null) return 0;
             Element phrase = (Element) MaryDomUtils.getAncestor(segment, MaryXML.PHRASE);
             if (phrase == null) return 0;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return (byte) rail(index.countAfter(UtteranceIndex.SYLLABLES, phrase, segment));
             int count = 0;
             TreeWalker tw = MaryDomUtils.createTreeWalker(phrase, MaryXML.SYLLABLE);
             tw.setCurrentNode(segment);
@@ -1848,6 +1923,11 @@ public class MaryGenericFeatureProcessors
             if (segment == null) return 0;
             Element phrase = (Element) MaryDomUtils.getAncestor(segment, MaryXML.PHRASE);
             if (phrase == null) return 0;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) {
+                Element word = (Element) MaryDomUtils.getAncestor(segment, MaryXML.TOKEN);
+                return (byte) rail(index.countBefore(UtteranceIndex.WORDS, phrase, word != null ? word : segment));
+            }
             int count = 0;
             TreeWalker tw = MaryDomUtils.createTreeWalker(phrase, MaryXML.TOKEN);
             Element word = (Element) MaryDomUtils.getAncestor(segment, MaryXML.TOKEN);
@@ -1886,6 +1966,8 @@ public class MaryGenericFeatureProcessors
             if (segment == null) return 0;
             Element phrase = (Element) MaryDomUtils.getAncestor(segment, MaryXML.PHRASE);
             if (phrase == null) return 0;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return (byte) rail(index.countAfter(UtteranceIndex.WORDS, phrase, segment));
             int count = 0;
             TreeWalker tw = MaryDomUtils.createTreeWalker(phrase, MaryXML.TOKEN);
             tw.setCurrentNode(segment);
@@ -1919,6 +2001,11 @@ public class MaryGenericFeatureProcessors
             if (segment == null) return 0;
             Element sentence = (Element) MaryDomUtils.getAncestor(segment, MaryXML.SENTENCE);
             if (sentence == null) return 0;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) {
+                Element word = (Element) MaryDomUtils.getAncestor(segment, MaryXML.TOKEN);
+                return (byte) rail(index.countBefore(UtteranceIndex.WORDS, sentence, word != null ? word : segment));
+            }
             int count = 0;
             TreeWalker tw = MaryDomUtils.createTreeWalker(sentence, MaryXML.TOKEN);
             Element word = (Element) MaryDomUtils.getAncestor(segment, MaryXML.TOKEN);
@@ -1957,6 +2044,8 @@ public class MaryGenericFeatureProcessors
             if (segment == null) return 0;
             Element sentence = (Element) MaryDomUtils.getAncestor(segment, MaryXML.SENTENCE);
             if (sentence == null) return 0;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return (byte) rail(index.countAfter(UtteranceIndex.WORDS, sentence, segment));
             int count = 0;
             TreeWalker tw = MaryDomUtils.createTreeWalker(sentence, MaryXML.TOKEN);
             tw.setCurrentNode(segment);
@@ -1990,6 +2079,11 @@ public class MaryGenericFeatureProcessors
             if (segment == null) return 0;
             Element sentence = (Element) MaryDomUtils.getAncestor(segment, MaryXML.SENTENCE);
             if (sentence == null) return 0;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) {
+                Element phrase = (Element) MaryDomUtils.getAncestor(segment, MaryXML.PHRASE);
+                return (byte) rail(index.countBefore(UtteranceIndex.PHRASES, sentence, phrase != null ? phrase : segment));
+            }
             int count = 0;
             TreeWalker tw = MaryDomUtils.createTreeWalker(sentence, MaryXML.PHRASE);
             Element phrase = (Element) MaryDomUtils.getAncestor(segment, MaryXML.PHRASE);
@@ -2026,6 +2120,8 @@ public class MaryGenericFeatureProcessors
             if (segment == null) return 0;
             Element sentence = (Element) MaryDomUtils.getAncestor(segment, MaryXML.SENTENCE);
             if (sentence == null) return 0;
+            UtteranceIndex index = getIndex(target, segment);
+            if (index != null) return (byte) rail(index.countAfter(UtteranceIndex.PHRASES, sentence, segment));
             int count = 0;
             TreeWalker tw = MaryDomUtils.createTreeWalker(sentence, MaryXML.PHRASE);
             tw.setCurrentNode(segment);
@@ -145,6 +145,46 @@ public class TargetFeatureComputer
         return new FeatureVector(byteFeatures, shortFeatures, floatFeatures, 0);
     }
 
+    /**
+     * Using the set of feature processors defined when creating the target feature computer,
+     * compute the feature vectors of all the given targets, e.g. of all targets in a sentence.
+     * The feature processors are applied one after the other, each to all targets in turn,
+     * so that each processor works on neighbouring targets back to back.
+     * @param targets the targets
+     * @return the feature vectors, in the order of targets, as computed by {@link #computeFeatureVector(Target)}.
+     */
+    public FeatureVector[] computeFeatureVectors(List<? extends Target> targets)
+    {
+        int n = targets.size();
+        Target[] t = targets.toArray(new Target[n]);
+        byte[][] byteFeatures = new byte[n][byteValuedDiscreteFeatureProcessors.length];
+        short[][] shortFeatures = new short[n][shortValuedDiscreteFeatureProcessors.length];
+        float[][] floatFeatures = new float[n][continuousFeatureProcessors.length];
+        for (int i=0; i<byteValuedDiscreteFeatureProcessors.length; i++) {
+            ByteValuedFeatureProcessor fp = byteValuedDiscreteFeatureProcessors[i];
+            for (int k=0; k<n; k++) {
+                byteFeatures[k][i] = fp.process(t[k]);
+            }
+        }
+        for (int i=0; i<shortValuedDiscreteFeatureProcessors.length; i++) {
+            ShortValuedFeatureProcessor fp = shortValuedDiscreteFeatureProcessors[i];
+            for (int k=0; k<n; k++) {
+                shortFeatures[k][i] = fp.process(t[k]);
+            }
+        }
+        for (int i=0; i<continuousFeatureProcessors.length; i++) {
+            ContinuousFeatureProcessor fp = continuousFeatureProcessors[i];
+            for (int k=0; k<n; k++) {
+                floatFeatures[k][i] = fp.process(t[k]);
+            }
+        }
+        FeatureVector[] vectors = new FeatureVector[n];
+        for (int k=0; k<n; k++) {
+            vectors[k] = new FeatureVector(byteFeatures[k], shortFeatures[k], floatFeatures[k], 0);
+        }
+        return vectors;
+    }
+
     /**
      * For the given feature vector, convert each encoded value into its string representation.
      * @param features a feature vector, which must match the feature processors known to this feature computer.
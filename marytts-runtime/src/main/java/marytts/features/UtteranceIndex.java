@@ -0,0 +1,284 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.features;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import marytts.datatypes.MaryXML;
+import marytts.unitselection.select.DiphoneTarget;
+import marytts.unitselection.select.Target;
+import marytts.util.dom.MaryDomUtils;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * An array-based index of the elements in one MaryXML sentence, built in a single pass
+ * over the sentence. It allows the feature processors to find neighbouring segments,
+ * syllables, words and phrases, and to count them, without creating a TreeWalker and walking
+ * the DOM tree for every feature of every target.
+ * <p>
+ * Every element of the sentence is numbered in document order (preorder); for each kind of element,
+ * the index keeps the elements of that kind and their numbers in sorted arrays. The answers given
+ * by the index are the same as the ones of a TreeWalker over the sentence, filtered to the
+ * respective tag names, as used by the feature processors in {@link MaryGenericFeatureProcessors}.
+ * <p>
+ * The index reflects the structure of the document at the time it was built; it must not be
+ * used after elements have been added to or removed from the sentence.
+ * Attribute values are not copied, except for the presence of the "ph" attribute
+ * which distinguishes words from other tokens.
+ *
+ * @author agent
+ */
+public class UtteranceIndex
+{
+    /** Phones and boundaries */
+    public static final int SEGMENTS = 0;
+    /** Phones only */
+    public static final int PHONES = 1;
+    public static final int SYLLABLES = 2;
+    /** All tokens */
+    public static final int TOKENS = 3;
+    /** Tokens with a "ph" attribute */
+    public static final int WORDS = 4;
+    public static final int PHRASES = 5;
+    private static final int NUM_KINDS = 6;
+
+    private final Element sentence;
+    /** For each element in the sentence: its own number and the highest number in its subtree */
+    private final IdentityHashMap<Element, int[]> positions = new IdentityHashMap<Element, int[]>();
+    private final Element[][] elements = new Element[NUM_KINDS][];
+    private final int[][] numbers = new int[NUM_KINDS][];
+
+    /**
+     * Index the given sentence.
+     * @param sentence a MaryXML sentence element.
+     */
+    public UtteranceIndex(Element sentence)
+    {
+        this.sentence = sentence;
+        List<List<Element>> lists = new ArrayList<List<Element>>(NUM_KINDS);
+        for (int k=0; k<NUM_KINDS; k++) {
+            lists.add(new ArrayList<Element>());
+        }
+        visit(sentence, 0, lists);
+        for (int k=0; k<NUM_KINDS; k++) {
+            List<Element> list = lists.get(k);
+            elements[k] = list.toArray(new Element[list.size()]);
+            numbers[k] = new int[elements[k].length];
+            for (int i=0; i<elements[k].length; i++) {
+                numbers[k][i] = positions.get(elements[k][i])[0];
+            }
+        }
+    }
+
+    /**
+     * Number e and its descendants in preorder, starting with the given number.
+     * @return the highest number given out in the subtree of e
+     */
+    private int visit(Element e, int number, List<List<Element>> lists)
+    {
+        int[] pos = new int[] {number, number};
+        positions.put(e, pos);
+        String tag = e.getTagName();
+        if (tag.equals(MaryXML.PHONE)) {
+            lists.get(SEGMENTS).add(e);
+            lists.get(PHONES).add(e);
+        } else if (tag.equals(MaryXML.BOUNDARY)) {
+            lists.get(SEGMENTS).add(e);
+        } else if (tag.equals(MaryXML.SYLLABLE)) {
+            lists.get(SYLLABLES).add(e);
+        } else if (tag.equals(MaryXML.TOKEN)) {
+            lists.get(TOKENS).add(e);
+            if (e.hasAttribute("ph")) {
+                lists.get(WORDS).add(e);
+            }
+        } else if (tag.equals(MaryXML.PHRASE)) {
+            lists.get(PHRASES).add(e);
+        }
+        int last = number;
+        for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n.getNodeType() == Node.ELEMENT_NODE) {
+                last = visit((Element) n, last+1, lists);
+            }
+        }
+        pos[1] = last;
+        return last;
+    }
+
+    public Element getSentence()
+    {
+        return sentence;
+    }
+
+    /**
+     * Whether the given element is part of the indexed sentence.
+     */
+    public boolean contains(Element e)
+    {
+        return positions.containsKey(e);
+    }
+
+    private int[] positionOf(Element e)
+    {
+        int[] pos = positions.get(e);
+        if (pos == null) {
+            throw new IllegalArgumentException("Element "+e.getTagName()+" is not part of the indexed sentence");
+        }
+        return pos;
+    }
+
+    /**
+     * The number of elements of the given kind whose number is less than n.
+     */
+    private int countBelow(int kind, int n)
+    {
+        int[] a = numbers[kind];
+        int lo = 0;
+        int hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < n) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * The n-th element of the given kind preceding the current element in the sentence.
+     * @param kind one of the kinds defined in this class, e.g. {@link #SYLLABLES}
+     * @param current an element of the sentence, not necessarily of the given kind
+     * @param n 1 for the immediately preceding element, 2 for the one before, etc.
+     * @return the element, or null if there is no such element in the sentence.
+     */
+    public Element getPrevious(int kind, Element current, int n)
+    {
+        int i = countBelow(kind, positionOf(current)[0]) - n;
+        return i >= 0 ? elements[kind][i] : null;
+    }
+
+    /**
+     * The n-th element of the given kind following the current element in the sentence.
+     * As with a TreeWalker, the elements inside current come first.
+     * @param kind one of the kinds defined in this class, e.g. {@link #SYLLABLES}
+     * @param current an element of the sentence, not necessarily of the given kind
+     * @param n 1 for the immediately following element, 2 for the one after, etc.
+     * @return the element, or null if there is no such element in the sentence.
+     */
+    public Element getNext(int kind, Element current, int n)
+    {
+        int i = countBelow(kind, positionOf(current)[0]+1) + n - 1;
+        return i < elements[kind].length ? elements[kind][i] : null;
+    }
+
+    /**
+     * The first element of the given kind inside root.
+     * @return the element, or null if root contains no element of this kind.
+     */
+    public Element getFirst(int kind, Element root)
+    {
+        int[] pos = positionOf(root);
+        int i = countBelow(kind, pos[0]+1);
+        if (i < elements[kind].length && numbers[kind][i] <= pos[1]) {
+            return elements[kind][i];
+        }
+        return null;
+    }
+
+    /**
+     * The last element of the given kind inside root.
+     * @return the element, or null if root contains no element of this kind.
+     */
+    public Element getLast(int kind, Element root)
+    {
+        int[] pos = positionOf(root);
+        int i = countBelow(kind, pos[1]+1) - 1;
+        if (i >= 0 && numbers[kind][i] > pos[0]) {
+            return elements[kind][i];
+        }
+        return null;
+    }
+
+    /**
+     * The number of elements of the given kind inside root.
+     */
+    public int count(int kind, Element root)
+    {
+        int[] pos = positionOf(root);
+        return countBelow(kind, pos[1]+1) - countBelow(kind, pos[0]+1);
+    }
+
+    /**
+     * The number of elements of the given kind inside root which precede current,
+     * i.e. the number of times a TreeWalker from root positioned at current could move to the previous node.
+     * @param current an element inside root
+     */
+    public int countBefore(int kind, Element root, Element current)
+    {
+        // like a TreeWalker, this includes root itself if it is of the given kind:
+        return countBelow(kind, positionOf(current)[0]) - countBelow(kind, positionOf(root)[0]);
+    }
+
+    /**
+     * The number of elements of the given kind inside root which follow current,
+     * i.e. the number of times a TreeWalker from root positioned at current could move to the next node.
+     * @param current an element inside root
+     */
+    public int countAfter(int kind, Element root, Element current)
+    {
+        return countBelow(kind, positionOf(root)[1]+1) - countBelow(kind, positionOf(current)[0]+1);
+    }
+
+    /**
+     * Give each of the targets the index of the sentence its MaryXML element belongs to.
+     * Each sentence is indexed only once, so this is best called with all targets of a document or paragraph
+     * after the targets have been created, and before their features are computed.
+     * Targets without a MaryXML element, or whose element is not inside a sentence, remain without index.
+     * @param targets a list of targets; for diphone targets, their two halves are indexed.
+     */
+    public static void attachTo(List<? extends Target> targets)
+    {
+        IdentityHashMap<Element, UtteranceIndex> indexes = new IdentityHashMap<Element, UtteranceIndex>();
+        for (Target t : targets) {
+            if (t instanceof DiphoneTarget) {
+                attachTo(((DiphoneTarget) t).left, indexes);
+                attachTo(((DiphoneTarget) t).right, indexes);
+            } else {
+                attachTo(t, indexes);
+            }
+        }
+    }
+
+    private static void attachTo(Target t, IdentityHashMap<Element, UtteranceIndex> indexes)
+    {
+        Element e = t.getMaryxmlElement();
+        if (e == null) return;
+        Element s = (Element) MaryDomUtils.getAncestor(e, MaryXML.SENTENCE);
+        if (s == null) return;
+        UtteranceIndex index = indexes.get(s);
+        if (index == null) {
+            index = new UtteranceIndex(s);
+            indexes.put(s, index);
+        }
+        t.setUtteranceIndex(index);
+    }
+}
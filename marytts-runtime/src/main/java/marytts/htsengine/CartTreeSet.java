@@ -64,10 +64,22 @@
 
 package marytts.htsengine;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
 
 import marytts.cart.CART;
+import marytts.cart.DecisionNode;
 import marytts.cart.Node;
+import marytts.cart.DecisionNode.BinaryByteDecisionNode;
 import marytts.cart.LeafNode.PdfLeafNode;
 import marytts.cart.io.HTSCARTReader;
 import marytts.exceptions.MaryConfigurationException;
@@ -100,6 +112,12 @@ public class CartTreeSet {
     private int magVsize;             /* vector size for Fourier magnitudes modeling */
    
     HTSCARTReader htsReader = new HTSCARTReader(); 
+
+    private static final int SNAPSHOT_MAGIC = 0x48545353; // "HTSS"
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final byte NULL_NODE = 0;
+    private static final byte DECISION_NODE = 1;
+    private static final byte PDF_LEAF_NODE = 2;
     
     public int getNumStates(){ return numStates; }
     public void setNumStates(int val){ numStates = val; }
@@ -109,8 +127,60 @@ public class CartTreeSet {
     public int getMagVsize(){ return magVsize; }
     
     
-    /** Loads all the CART trees */
+    /**
+     * Parses all the CART trees. If htsData names a snapshot file, the trees and the
+     * feature definition are then written into the snapshot, for
+     * {@link #loadSnapshot(String, long)} to read at the next startup.
+     */
     public void loadTreeSet(HMMData htsData, FeatureDefinition featureDef, PhoneTranslator trickyPhones) 
+    throws IOException, MaryConfigurationException {
+        InputStream[] treeStreams = new InputStream[] { htsData.getTreeDurStream(), htsData.getTreeLf0Stream(),
+                htsData.getTreeMgcStream(), htsData.getTreeStrStream(), htsData.getTreeMagStream() };
+        InputStream[] pdfStreams = new InputStream[] { htsData.getPdfDurStream(), htsData.getPdfLf0Stream(),
+                htsData.getPdfMgcStream(), htsData.getPdfStrStream(), htsData.getPdfMagStream() };
+        loadTreeSet(treeStreams, pdfStreams, featureDef, trickyPhones);
+        String snapshotFile = htsData.getSnapshotFile();
+        if (snapshotFile != null) {
+            try {
+                writeSnapshot(snapshotFile, htsData.getSnapshotFingerprint(), featureDef);
+                logger.info("Wrote snapshot "+snapshotFile);
+            } catch (IOException e) {
+                logger.warn("Cannot write snapshot "+snapshotFile, e);
+            }
+        }
+    }
+
+    /**
+     * Loads all the CART trees from a snapshot written by {@link #loadTreeSet(HMMData, FeatureDefinition, PhoneTranslator)}.
+     * Nothing is changed unless the whole snapshot could be read.
+     * @param fileName the snapshot file
+     * @param fingerprint the fingerprint of the voice files, see {@link HMMData#getSnapshotFingerprint()}
+     * @return the feature definition which the trees were made with, or null if there is no usable snapshot:
+     * if the file does not exist, was made from other voice files, or cannot be read.
+     */
+    public FeatureDefinition loadSnapshot(String fileName, long fingerprint)
+    {
+        if (!new File(fileName).exists()) {
+            return null;
+        }
+        try {
+            FeatureDefinition featureDef = readSnapshot(fileName, fingerprint);
+            if (featureDef == null) {
+                logger.info("Snapshot "+fileName+" was made from different files, ignoring it");
+            } else {
+                logger.debug("Loaded trees from snapshot "+fileName);
+            }
+            return featureDef;
+        } catch (Exception e) {
+            logger.warn("Cannot read snapshot "+fileName+", ignoring it", e);
+            return null;
+        }
+    }
+
+    /**
+     * Parse the trees, in the order dur, lf0, mgc, str, mag.
+     */
+    private void loadTreeSet(InputStream[] treeStreams, InputStream[] pdfStreams, FeatureDefinition featureDef, PhoneTranslator trickyPhones) 
     throws IOException, MaryConfigurationException {
         // Check if there are tricky phones, and create a PhoneTranslator object
         PhoneTranslator phTranslator = trickyPhones;
@@ -118,36 +188,251 @@ public class CartTreeSet {
         /* DUR, LF0 and Mgc are required as minimum for generating voice. 
         * The duration tree has only one state.
         * The size of the vector in duration is the number of states. */
-        if(htsData.getTreeDurStream() != null) {
+        if(treeStreams[0] != null) {
         	logger.debug("Loading duration tree...");
-        	durTree = htsReader.load(1, htsData.getTreeDurStream(), htsData.getPdfDurStream(), PdfFileFormat.dur, featureDef, phTranslator);  
+        	durTree = htsReader.load(1, treeStreams[0], pdfStreams[0], PdfFileFormat.dur, featureDef, phTranslator);  
         	numStates = htsReader.getVectorSize();
         }
         
-        if(htsData.getTreeLf0Stream() != null){
+        if(treeStreams[1] != null){
         	logger.debug("Loading log F0 tree...");
-        	lf0Tree = htsReader.load(numStates, htsData.getTreeLf0Stream(), htsData.getPdfLf0Stream(), PdfFileFormat.lf0, featureDef, phTranslator);
+        	lf0Tree = htsReader.load(numStates, treeStreams[1], pdfStreams[1], PdfFileFormat.lf0, featureDef, phTranslator);
         	lf0Stream = htsReader.getVectorSize();
         }
         
-        if( htsData.getTreeMgcStream() != null){
+        if(treeStreams[2] != null){
         	logger.debug("Loading mgc tree...");
-        	mgcTree = htsReader.load(numStates, htsData.getTreeMgcStream(), htsData.getPdfMgcStream(), PdfFileFormat.mgc, featureDef, phTranslator);
+        	mgcTree = htsReader.load(numStates, treeStreams[2], pdfStreams[2], PdfFileFormat.mgc, featureDef, phTranslator);
         	mcepVsize = htsReader.getVectorSize();
         }
         
         /* STR and MAG are optional for generating mixed excitation */ 
-        if( htsData.getTreeStrStream() != null){
+        if(treeStreams[3] != null){
         	logger.debug("Loading str tree...");
-        	strTree = htsReader.load(numStates, htsData.getTreeStrStream(), htsData.getPdfStrStream(), PdfFileFormat.str, featureDef, phTranslator);
+        	strTree = htsReader.load(numStates, treeStreams[3], pdfStreams[3], PdfFileFormat.str, featureDef, phTranslator);
         	strVsize = htsReader.getVectorSize();
         }
-        if( htsData.getTreeMagStream() != null){
+        if(treeStreams[4] != null){
         	logger.debug("Loading mag tree...");
-        	magTree = htsReader.load(numStates, htsData.getTreeMagStream(), htsData.getPdfMagStream(), PdfFileFormat.mag, featureDef, phTranslator);
+        	magTree = htsReader.load(numStates, treeStreams[4], pdfStreams[4], PdfFileFormat.mag, featureDef, phTranslator);
         	magVsize = htsReader.getVectorSize();
         }
     }
+
+    /**
+     * Set all trees and vector sizes at once.
+     * @param trees the trees for dur, lf0, mgc, str and mag, each of which may be null
+     * @param vectorSizes numStates, lf0Stream, mcepVsize, strVsize and magVsize
+     */
+    void setTrees(CART[][] trees, int[] vectorSizes)
+    {
+        durTree = trees[0];
+        lf0Tree = trees[1];
+        mgcTree = trees[2];
+        strTree = trees[3];
+        magTree = trees[4];
+        numStates = vectorSizes[0];
+        lf0Stream = vectorSizes[1];
+        mcepVsize = vectorSizes[2];
+        strVsize = vectorSizes[3];
+        magVsize = vectorSizes[4];
+    }
+
+    /**
+     * Write all trees into a snapshot file. The file is written under a temporary
+     * name first and then renamed, so that other processes never see half a snapshot.
+     * <p>
+     * Format, all numbers big-endian:
+     * <pre>
+     * int    magic number "HTSS"
+     * int    snapshot format version
+     * long   fingerprint of the voice files
+     * the feature definition, as by FeatureDefinition.writeBinaryTo()
+     * int    numStates, lf0Stream, mcepVsize, strVsize, magVsize
+     * 5 times (dur, lf0, mgc, str, mag):
+     *   int  number of trees, or -1 if there are none
+     *   each tree in pre-order; each node is a type byte followed by
+     *     NULL_NODE:      nothing
+     *     DECISION_NODE:  int unique id, int feature index, byte value, then both daughters
+     *     PDF_LEAF_NODE:  int unique id, int vector size, int length n,
+     *                     double[n] mean, double[n] variance, double voiced weight
+     * </pre>
+     */
+    void writeSnapshot(String fileName, long fingerprint, FeatureDefinition featureDef) throws IOException
+    {
+        File file = new File(fileName);
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create directory "+dir);
+        }
+        File tmpFile = File.createTempFile(file.getName(), ".tmp", dir);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+        try {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(fingerprint);
+            featureDef.writeBinaryTo(out);
+            out.writeInt(numStates);
+            out.writeInt(lf0Stream);
+            out.writeInt(mcepVsize);
+            out.writeInt(strVsize);
+            out.writeInt(magVsize);
+            CART[][] treeSets = new CART[][] { durTree, lf0Tree, mgcTree, strTree, magTree };
+            for (CART[] trees : treeSets) {
+                if (trees == null) {
+                    out.writeInt(-1);
+                    continue;
+                }
+                out.writeInt(trees.length);
+                for (CART tree : trees) {
+                    writeNode(tree.getRootNode(), out);
+                }
+            }
+        } finally {
+            out.close();
+        }
+        if (!tmpFile.renameTo(file)) {
+            // e.g. on Windows, where an existing file is not replaced:
+            file.delete();
+            if (!tmpFile.renameTo(file)) {
+                tmpFile.delete();
+                throw new IOException("Cannot rename "+tmpFile+" to "+file);
+            }
+        }
+    }
+
+    private static void writeNode(Node node, DataOutputStream out) throws IOException
+    {
+        if (node instanceof BinaryByteDecisionNode) {
+            BinaryByteDecisionNode dn = (BinaryByteDecisionNode) node;
+            out.writeByte(DECISION_NODE);
+            out.writeInt(dn.getUniqueDecisionNodeId());
+            out.writeInt(dn.getFeatureIndex());
+            out.writeByte(dn.getCriterionValueAsByte());
+            writeNode(dn.getDaughter(0), out);
+            writeNode(dn.getDaughter(1), out);
+        } else if (node instanceof PdfLeafNode) {
+            PdfLeafNode leaf = (PdfLeafNode) node;
+            double[] mean = leaf.getMean();
+            double[] variance = leaf.getVariance();
+            out.writeByte(PDF_LEAF_NODE);
+            out.writeInt(leaf.getUniqueLeafId());
+            out.writeInt(leaf.getVectorSize());
+            out.writeInt(mean.length);
+            for (int i=0; i<mean.length; i++) {
+                out.writeDouble(mean[i]);
+            }
+            for (int i=0; i<mean.length; i++) {
+                out.writeDouble(variance[i]);
+            }
+            out.writeDouble(leaf.getVoicedWeight());
+        } else if (node == null) {
+            out.writeByte(NULL_NODE);
+        } else {
+            throw new IOException("Unexpected node type in HMM tree: "+node.getClass().getName());
+        }
+    }
+
+    /**
+     * Read all trees from a snapshot file written by {@link #writeSnapshot(String, long, FeatureDefinition)}.
+     * The trees are only set when the whole file was read.
+     * @return the feature definition from the snapshot, or null if the snapshot was made from different files.
+     * @throws IOException if the file cannot be read or is not a snapshot in the current format.
+     */
+    FeatureDefinition readSnapshot(String fileName, long fingerprint) throws IOException
+    {
+        FileInputStream fis = new FileInputStream(fileName);
+        ByteBuffer bb;
+        try {
+            FileChannel fc = fis.getChannel();
+            bb = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+        } finally {
+            fis.close();
+        }
+        if (bb.getInt() != SNAPSHOT_MAGIC || bb.getInt() != SNAPSHOT_VERSION) {
+            throw new IOException("Not a snapshot in the current format");
+        }
+        if (bb.getLong() != fingerprint) {
+            return null;
+        }
+        try {
+            FeatureDefinition featureDef = new FeatureDefinition(bb);
+            int[] vectorSizes = new int[5];
+            for (int i=0; i<vectorSizes.length; i++) {
+                vectorSizes[i] = bb.getInt();
+            }
+            CART[][] trees = new CART[5][];
+            for (int i=0; i<trees.length; i++) {
+                trees[i] = readTrees(bb, featureDef);
+            }
+            if (bb.hasRemaining()) {
+                throw new IOException("Unexpected data at the end of the snapshot");
+            }
+            setTrees(trees, vectorSizes);
+            return featureDef;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Snapshot is truncated", e);
+        }
+    }
+
+    private static CART[] readTrees(ByteBuffer bb, FeatureDefinition featureDef) throws IOException
+    {
+        int numTrees = bb.getInt();
+        if (numTrees < 0) {
+            return null;
+        }
+        CART[] trees = new CART[numTrees];
+        for (int i=0; i<numTrees; i++) {
+            trees[i] = new CART();
+            Node root = readNode(bb, featureDef);
+            if (root != null) {
+                root.setIsRoot(true);
+            }
+            trees[i].setRootNode(root);
+            // as in HTSCARTReader:
+            if (root instanceof DecisionNode) {
+                ((DecisionNode) root).countData();
+            }
+            trees[i].compile();
+        }
+        return trees;
+    }
+
+    private static Node readNode(ByteBuffer bb, FeatureDefinition featureDef) throws IOException
+    {
+        byte type = bb.get();
+        switch (type) {
+        case NULL_NODE:
+            return null;
+        case DECISION_NODE:
+            int id = bb.getInt();
+            int featureIndex = bb.getInt();
+            byte value = bb.get();
+            BinaryByteDecisionNode dn = new BinaryByteDecisionNode(featureIndex, value, featureDef);
+            dn.setUniqueDecisionNodeId(id);
+            for (int i=0; i<2; i++) {
+                Node daughter = readNode(bb, featureDef);
+                if (daughter != null) {
+                    dn.replaceDaughter(daughter, i);
+                }
+            }
+            return dn;
+        case PDF_LEAF_NODE:
+            int leafId = bb.getInt();
+            int vectorSize = bb.getInt();
+            int n = bb.getInt();
+            double[] mean = new double[n];
+            double[] variance = new double[n];
+            DoubleBuffer db = bb.asDoubleBuffer();
+            db.get(mean);
+            db.get(variance);
+            bb.position(bb.position() + 16 * n);
+            double voicedWeight = bb.getDouble();
+            return new PdfLeafNode(leafId, vectorSize, mean, variance, voicedWeight);
+        default:
+            throw new IOException("Unexpected node type "+type+" in snapshot");
+        }
+    }
     
 
   
@@ -64,6 +64,9 @@
 package marytts.htsengine;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
@@ -71,18 +74,23 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.StringReader;
+import java.net.JarURLConnection;
+import java.net.URL;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Scanner;
 import java.util.Vector;
+import java.util.jar.JarEntry;
+import java.util.zip.CRC32;
 
 import marytts.config.MaryConfig;
 import marytts.exceptions.MaryConfigurationException;
 import marytts.features.FeatureDefinition;
 import marytts.server.MaryProperties;
 import marytts.util.FeatureUtils;
+import marytts.util.LoadingTimer;
 import marytts.util.MaryUtils;
 import marytts.util.io.PropertiesAccessor;
 
@@ -201,6 +209,11 @@ public class HMMData {
 	     
     /** tricky phones file if generated during training of HMMs. */
     private PhoneTranslator trickyPhones;
+
+    /** binary snapshot of the trees, or null if the tree files are to be parsed every time */
+    private String snapshotFile;
+    /** fingerprint of the files which the trees are made from, see snapshotFingerprint() */
+    private long snapshotFingerprint;
 	
 	public int getRate() { return rate; }
 	public int getFperiod() { return fperiod; } 
@@ -225,6 +238,8 @@ public class HMMData {
 	public InputStream getTreeMagStream() { return treeMagStream; }
 	
     public FeatureDefinition getFeatureDefinition() { return feaDef; }
+    public String getSnapshotFile() { return snapshotFile; }
+    public long getSnapshotFingerprint() { return snapshotFingerprint; }
 	
 	public InputStream getPdfDurStream() { return pdfDurStream; }   
 	public InputStream getPdfLf0Stream() { return pdfLf0Stream; }   
@@ -337,7 +352,12 @@ public class HMMData {
     public void initHMMData(PropertiesAccessor p, String voiceName) 
     throws IOException, MaryConfigurationException {
     	logger.debug("Reached new initHMMData");
+    	LoadingTimer timer = new LoadingTimer("HMM voice "+voiceName);
     	String prefix = "voice."+voiceName;
+    	String snapshotDir = MaryProperties.getFilename("htsengine.snapshot.dir");
+    	if (snapshotDir != null) {
+    		snapshotFile = snapshotDir + File.separator + voiceName + ".trees.snapshot";
+    	}
     	rate = p.getInteger(prefix+".samplingRate", rate);
     	fperiod = p.getInteger(prefix+".framePeriod", fperiod);
     	alpha = p.getDouble(prefix+".alpha", alpha);
@@ -386,13 +406,26 @@ public class HMMData {
         	pdfMagGVStream = p.getStream(prefix+".Fgva");     /* GV Model MAG */
         } 
 
-    	/* targetfeatures file, for testing */
-    	/* Example context feature file in TARGETFEATURES format */
-    	InputStream featureStream = p.getStream(prefix+".FeaFile");
-    	feaDef = FeatureUtils.readFeatureDefinition(featureStream);
-    	
-        /* trickyPhones file if any*/
-        trickyPhones = new PhoneTranslator(p.getStream(prefix+".trickyPhonesFile"));  /* tricky phones file, if any*/
+    	/* An up-to-date snapshot holds the feature definition and the trees */
+    	boolean fromSnapshot = false;
+    	if (snapshotFile != null) {
+    		snapshotFingerprint = snapshotFingerprint(p, prefix);
+    		feaDef = cart.loadSnapshot(snapshotFile, snapshotFingerprint);
+    		fromSnapshot = feaDef != null;
+    	}
+    	if (fromSnapshot) {
+    		closeTreeStreams();
+    		timer.done("trees and feature definition (snapshot "+snapshotFile+")");
+    	} else {
+    		/* targetfeatures file, for testing */
+    		/* Example context feature file in TARGETFEATURES format */
+    		InputStream featureStream = p.getStream(prefix+".FeaFile");
+    		feaDef = FeatureUtils.readFeatureDefinition(featureStream);
+
+    		/* trickyPhones file if any*/
+    		trickyPhones = new PhoneTranslator(p.getStream(prefix+".trickyPhonesFile"));  /* tricky phones file, if any*/
+    		timer.done("feature definition");
+    	}
 
         /* Configuration for mixed excitation */
         InputStream mixFiltersStream = p.getStream(prefix+".Fif");      /* Filter coefficients file for mixed excitation*/
@@ -400,17 +433,23 @@ public class HMMData {
         	numFilters = p.getInteger(prefix+".in");       /* Number of filters */
         	logger.debug("Loading Mixed Excitation Filters File:");
         	readMixedExcitationFilters(mixFiltersStream);
+        	timer.done("mixed excitation filters");
         }
 
        /* Load TreeSet in CARTs. */
-       logger.debug("Loading Tree Set in CARTs:");
-       loadCartTreeSet();
+       if (!fromSnapshot) {
+           logger.debug("Loading Tree Set in CARTs:");
+           loadCartTreeSet();
+           timer.done("trees");
+       }
        
        /* Load GV ModelSet gv*/
        logger.debug("Loading GV Model Set:");
        loadGVModelSet();
+       timer.done("GV models");
 
        logger.debug("InitHMMData complete");
+       logger.info(timer);
     }
     
     
@@ -440,6 +479,73 @@ public class HMMData {
 	}
  
 
+    /** The tree, pdf, feature and tricky phone files which a snapshot of the trees is made from */
+    private static final String[] SNAPSHOT_SOURCES = new String[] {
+        ".Ftd", ".Ftf", ".Ftm", ".Fts", ".Fta", ".Fmd", ".Fmf", ".Fmm", ".Fms", ".Fma", ".FeaFile", ".trickyPhonesFile"
+    };
+
+    /**
+     * A fingerprint of the files which the trees of a voice are made from. Only the names, sizes
+     * and modification times of the files are used, so that checking the snapshot
+     * does not need to read the files themselves.
+     */
+    private static long snapshotFingerprint(PropertiesAccessor p, String prefix) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baos);
+        for (String source : SNAPSHOT_SOURCES) {
+            String value = p.getProperty(prefix+source);
+            if (value == null) {
+                out.writeBoolean(false);
+                continue;
+            }
+            out.writeBoolean(true);
+            out.writeUTF(value);
+            if (value.startsWith("jar:")) {
+                URL url = HMMData.class.getResource(value.substring("jar:".length()));
+                if (url == null) {
+                    out.writeLong(-1);
+                } else if ("jar".equals(url.getProtocol())) {
+                    // the size, time and CRC of the entry are in the jar's directory:
+                    JarURLConnection connection = (JarURLConnection) url.openConnection();
+                    JarEntry entry = connection.getJarEntry();
+                    out.writeLong(entry.getSize());
+                    out.writeLong(entry.getTime());
+                    out.writeLong(entry.getCrc());
+                } else {
+                    File file;
+                    try {
+                        file = new File(url.toURI());
+                    } catch (Exception e) {
+                        file = new File(url.getPath());
+                    }
+                    out.writeLong(file.length());
+                    out.writeLong(file.lastModified());
+                }
+            } else {
+                File file = new File(value);
+                out.writeLong(file.length());
+                out.writeLong(file.lastModified());
+            }
+        }
+        out.close();
+        CRC32 crc = new CRC32();
+        crc.update(baos.toByteArray());
+        return crc.getValue();
+    }
+
+    /** The trees were read from a snapshot, so the tree and pdf files are not needed */
+    private void closeTreeStreams() throws IOException {
+        InputStream[] streams = new InputStream[] { treeDurStream, treeLf0Stream, treeMgcStream, treeStrStream, treeMagStream,
+                pdfDurStream, pdfLf0Stream, pdfMgcStream, pdfStrStream, pdfMagStream };
+        for (InputStream stream : streams) {
+            if (stream != null) {
+                stream.close();
+            }
+        }
+        treeDurStream = treeLf0Stream = treeMgcStream = treeStrStream = treeMagStream = null;
+        pdfDurStream = pdfLf0Stream = pdfMgcStream = pdfStrStream = pdfMagStream = null;
+    }
+
     /** Reads from configuration file tree and pdf data for duration and f0 
      * this method is used by HMMModel */
     public void initHMMDataForHMMModel(String voiceName) 
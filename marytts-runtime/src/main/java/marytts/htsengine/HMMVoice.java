@@ -64,41 +64,72 @@
 
 package marytts.htsengine;
 
+import java.io.IOException;
 import java.util.Locale;
 
 import javax.sound.sampled.AudioFormat;
 
 import marytts.config.MaryConfig;
+import marytts.exceptions.MaryConfigurationException;
 import marytts.modules.synthesis.Voice;
 import marytts.modules.synthesis.WaveformSynthesizer;
 import marytts.server.MaryProperties;
 import marytts.util.MaryUtils;
+import marytts.util.io.PropertiesAccessor;
 
 import org.apache.log4j.Logger;
 
 
 public class HMMVoice extends Voice {
  
-    private HMMData htsData = new HMMData();
     private Logger logger = MaryUtils.getLogger("HMMVoice");
     
    /** 
     * constructor */ 
     public HMMVoice(String voiceName, WaveformSynthesizer synthesizer) throws Exception {
     	super(voiceName, synthesizer);
+   }
+
+   @Override
+   public boolean hasLoadableData() { return true; }
 
-    	htsData.initHMMData(voiceName);
-       
+   /** Read the trees, pdfs and other model files of this voice. */
+   @Override
+   protected HMMData loadData() throws MaryConfigurationException {
+       HMMData data = new HMMData();
+       try {
+           data.initHMMData(getName());
+       } catch (IOException e) {
+           throw new MaryConfigurationException("Cannot load HMM voice '"+getName()+"'", e);
+       }
+       return data;
    }
-   
-   public HMMData getHMMData(){ return this.htsData; }
+
+   /** The sizes of the tree, pdf and GV files, as an estimate of the memory the loaded models take. */
+   @Override
+   protected long estimateDataMemory() {
+       PropertiesAccessor p = MaryConfig.getVoiceConfig(getName()).getPropertiesAccessor(true);
+       String[] fileProperties = new String[] { ".Ftd", ".Ftf", ".Ftm", ".Fts", ".Fta", ".Fmd", ".Fmf", ".Fmm", ".Fms", ".Fma",
+               ".Fgvf", ".Fgvm", ".Fgvs", ".Fgva", ".FeaFile" };
+       long size = 0;
+       for (String property : fileProperties) {
+           size += getFileSize(p.getProperty("voice."+getName()+property));
+       }
+       return size;
+   }
+
+   /**
+    * The models of this voice, loading them if necessary. A request should get them once
+    * and use the same HMMData throughout, as the voice may be unloaded in the meantime.
+    */
+   public HMMData getHMMData(){ return (HMMData) useData(); }
    
    /* set parameters for generation: f0Std, f0Mean and length, default values 1.0, 0.0 and 0.0 */
    /* take the values from audio effects component through a MaryData object */
-   public void setF0Std(double dval) { htsData.setF0Std(dval); }
-   public void setF0Mean(double dval) { htsData.setF0Mean(dval); }
-   public void setLength(double dval) { htsData.setLength(dval); }
-   public void setDurationScale(double dval) { htsData.setDurationScale(dval); }
+   public void setF0Std(double dval) { getHMMData().setF0Std(dval); }
+   public void setF0Mean(double dval) { getHMMData().setF0Mean(dval); }
+   public void setLength(double dval) { getHMMData().setLength(dval); }
+   public void setDurationScale(double dval) { getHMMData().setDurationScale(dval); }
     
 
 } /* class HMMVoice */
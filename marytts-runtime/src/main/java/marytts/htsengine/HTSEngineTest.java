@@ -253,7 +253,7 @@ public class HTSEngineTest {
       float totalDuration;
       int totalDurationFrames;
       float fperiodsec = ((float)htsData.getFperiod() / (float)htsData.getRate());
-      hmm_tts.setPhonemeAlignmentForDurations(true);
+      // phone alignment for durations is used together with setUseAcousticModels(true) below
       Vector<PhonemeDuration> durations = new Vector<PhonemeDuration>(); 
       totalDuration = loadDurationsForAlignment(labFile, durations);
       // set the external durations
@@ -476,7 +476,7 @@ public class HTSEngineTest {
         /* save realised durations in a lab file */
         FileWriter outputStream;
         outputStream = new FileWriter(durFile);
-        outputStream.write(hmm_tts.getRealisedDurations());
+        outputStream.write(um.getRealisedDurations());
         outputStream.close();
         
         /* save realised durations at state label in a slab file */
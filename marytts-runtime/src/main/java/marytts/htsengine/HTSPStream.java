@@ -64,7 +64,12 @@
 package marytts.htsengine;
 
 import marytts.util.MaryUtils;
+
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.log4j.Logger;
 
@@ -76,6 +81,9 @@ import org.apache.log4j.Logger;
  * It also contains auxiliar matrices used in maximum likelihood 
  * parameter generation.
  * 
+ * The sequences are stored per dimension, i.e. all frames of one dimension
+ * are contiguous, because parameter generation works on one static dimension at a time.
+ * 
  * Java port and extension of HTS engine version 2.0 and GV from HTS version 2.1alpha.
  * Extension: mixed excitation
  * @author Marcela Charfuelan
@@ -91,15 +99,12 @@ public class HTSPStream {
   private int nT;          /* length, number of frames in utterance */
   private int width;       /* width of dynamic window */
   
-  private double par[][];  /* output parameter vector, the size of this parameter is par[nT][vSize] */
+  private double par[][];  /* output parameter vector, the size of this parameter is par[order][nT] */
   
   
   /* ____________________Matrices for parameter generation____________________ */
-  private double mseq[][];   /* sequence of mean vector */
-  private double ivseq[][];  /* sequence of inversed variance vector */
-  private double g[];        /* for forward substitution */
-  private double wuw[][];    /* W' U^-1 W  */
-  private double wum[];      /* W' U^-1 mu */
+  private double mseq[][];   /* sequence of mean vector, mseq[vSize][nT] */
+  private double ivseq[][];  /* sequence of inversed variance vector, ivseq[vSize][nT] */
   
   /* ____________________Dynamic window ____________________ */
   private HTSDWin dw;       /* Windows used to calculate dynamic features, delta and delta-delta */
@@ -107,7 +112,6 @@ public class HTSPStream {
   
   /* ____________________ GV related variables ____________________*/
   /* GV: Global mean and covariance (diagonal covariance only) */
-  private double mean, var;  /* mean and variance for current utt eqs: (16), (17)*/
   private int maxGVIter     = 200;      /* max iterations in the speech parameter generation considering GV */
   private double GVepsilon  = 1.0E-4;  //1.0E-4;  /* convergence factor for GV iteration */
   private double minEucNorm = 1.0E-2;  //1.0E-2;  /* minimum Euclid norm of a gradient vector */ 
@@ -117,14 +121,15 @@ public class HTSPStream {
   private double w1         = 1.0;     /* weight for HMM output prob. */
   private double w2         = 1.0;     /* weight for GV output prob. */
   private double lzero      = (-1.0e+10);  /* ~log(0) */
-  private double norm       = 0.0; 
-  private double GVobj      = 0.0;
-  private double HMMobj     = 0.0;
   private double gvmean[];
   private double gvcovInv[];
   private boolean gvSwitch[];          /* GV flag sequence, to consider or not the frame in gv */
   private int gvLength;                /* this will be the number of frames for which gv can be calculated */
 
+  /* solver used by the sequential and the windowed mlpg, which generate one dimension after the other */
+  private DimensionSolver solver;
+  /* solvers not currently used by the parallel mlpg; like the stream itself, they are kept for the next utterance */
+  private final ConcurrentLinkedQueue<DimensionSolver> freeSolvers = new ConcurrentLinkedQueue<DimensionSolver>();
  
   private Logger logger = MaryUtils.getLogger("PStream");
   
@@ -142,14 +147,11 @@ public class HTSPStream {
     maxGVIter = maxIterationsGV;
     width = 3;            /* hard-coded to 3, in the c code is:  pst->width = pst->dw.max_L*2+1;  */
                           /* pst->dw.max_L is hard-code to 1, for all windows                     */
-    par = new double[nT][order];
+    par = new double[order][nT];
     
     /* ___________________________Matrices initialisation___________________ */
-	mseq = new double[nT][vSize];
-	ivseq = new double[nT][vSize];
-	g = new double[nT];
-	wuw = new double[nT][width];
-	wum = new double[nT];   
+	mseq = new double[vSize][nT];
+	ivseq = new double[vSize][nT];
 	
 	/* GV Switch sequence initialisation */
 	gvSwitch = new boolean[nT];
@@ -158,6 +160,34 @@ public class HTSPStream {
 	gvLength = nT;  /* at initialisation, all the frames can be used for gv */
     
   }
+  
+  /** Prepare this stream for a new utterance of utt_length frames, with the same vector size and
+   * type of features. Afterwards, the stream is in the same state as a newly constructed one,
+   * but its arrays are only reallocated if they are too small for the new utterance.
+   * This allows reusing a stream for many utterances without allocating its matrices every time. */
+  public void reset(int utt_length, int maxIterationsGV) {
+    int i;
+    nT = utt_length;
+    maxGVIter = maxIterationsGV;
+    if (gvSwitch.length < nT) {
+      par = new double[order][nT];
+      mseq = new double[vSize][nT];
+      ivseq = new double[vSize][nT];
+      gvSwitch = new boolean[nT];
+      solver = null;
+      freeSolvers.clear();
+    } else {
+      for (i=0; i<order; i++)
+        Arrays.fill(par[i], 0, nT, 0.0);
+    }
+	for(i=0; i<nT; i++)
+	  gvSwitch[i] = true;  
+	gvLength = nT;
+	gvmean = null;
+	gvcovInv = null;
+  }
+  
+  public int getFeatureType(){ return feaType; }
 
   public void setVsize(int val){ vSize=val; }
   public int getVsize(){ return vSize; }
@@ -165,24 +195,15 @@ public class HTSPStream {
   public void setOrder(int val){ order=val; }
   public int getOrder(){ return order; }
   
-  public void setPar(int i, int j, double val){ par[i][j] = val; }
-  public double getPar(int i, int j){ return par[i][j]; }
+  public void setPar(int i, int j, double val){ par[j][i] = val; }
+  public double getPar(int i, int j){ return par[j][i]; }
   public int getT(){ return nT; }
   
-  public void setMseq(int i, int j, double val){ mseq[i][j]=val; }
-  public double getMseq(int i, int j){ return mseq[i][j]; }
+  public void setMseq(int i, int j, double val){ mseq[j][i]=val; }
+  public double getMseq(int i, int j){ return mseq[j][i]; }
   
-  public void setIvseq(int i, int j, double val){ ivseq[i][j]=val; }
-  public double getIvseq(int i, int j){ return ivseq[i][j]; }
-  
-  public void setG(int i, double val){ g[i]=val; }
-  public double getG(int i){ return g[i]; }
-  
-  public void setWUW(int i, int j, double val){ wuw[i][j]=val; }
-  public double getWUW(int i, int j){ return wuw[i][j]; }
-  
-  public void setWUM(int i, double val){ wum[i]=val; }
-  public double getWUM(int i){ return wum[i]; }
+  public void setIvseq(int i, int j, double val){ ivseq[j][i]=val; }
+  public double getIvseq(int i, int j){ return ivseq[j][i]; }
   
   public int getDWwidth(int i, int j){ return dw.getWidth(i,j); }
   
@@ -197,45 +218,135 @@ public class HTSPStream {
     gvSwitch[i] = bv;
   }
   
-  private void printWUW(int t){
-	for(int i=0; i<width; i++)
-	  System.out.print("WUW[" + t + "][" + i + "]=" + wuw[t][i] + "  ");
-	System.out.println(""); 
-  }
-  
   
   /* mlpg: generate sequence of speech parameter vector maximizing its output probability for 
    * given pdf sequence */
   public void mlpg(HMMData htsData, boolean useGV) {
 	 int m;
 	 int M = order;
-	 boolean debug=false;
   
+     logGVMethod(htsData, useGV);
+     
+     if (solver == null)
+       solver = new DimensionSolver();
+	 for (m=0; m<M; m++) {
+	   solver.generate(m, htsData, useGV);
+	 }  
+  }  /* method mlpg */
+  
+  
+  /** Parallel mlpg: the same as {@link #mlpg(HMMData, boolean)}, but the static dimensions,
+   * which are independent of each other, are generated concurrently on the executor of
+   * {@link HTSParameterGeneration#runTasks(List)}. Each dimension works on its own scratch arrays,
+   * so the result is exactly the same as the one of the sequential mlpg.
+   * The solvers holding the scratch arrays are kept with the stream and reused for its later
+   * utterances, so that there are only as many of them as dimensions were ever generated at the same time. */
+  public void mlpgParallel(final HMMData htsData, final boolean useGV) throws Exception {
+     int m;
+     
+     logGVMethod(htsData, useGV);
+     
+     List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(order);
+     for (m=0; m<order; m++) {
+       final int dim = m;
+       tasks.add(new Callable<Void>() {
+         public Void call() {
+           DimensionSolver dimSolver = freeSolvers.poll();
+           if (dimSolver == null)
+             dimSolver = new DimensionSolver();
+           try {
+             dimSolver.generate(dim, htsData, useGV);
+           } finally {
+             freeSolvers.offer(dimSolver);
+           }
+           return null;
+         }
+       });
+     }
+     HTSParameterGeneration.runTasks(tasks);
+  }  /* method mlpgParallel */
+  
+  
+  /** Windowed mlpg: generate the parameter vectors of frames [from, to) only, solving the
+   * linear system over the window [from-overlap, to+overlap) clipped to the utterance.
+   * The frames of the overlap are used as context and then discarded, so that frames outside
+   * [from, to), which may already have been handed to the vocoder, are never changed.
+   * Global variance is not applied, since it needs the statistics of the whole utterance.
+   * Calling this for consecutive chunks gives an approximation of mlpg() which gets closer
+   * to it as the overlap grows. */
+  public void mlpg(int from, int to, int overlap) {
+     int m, t;
+     int start = Math.max(0, from - overlap);
+     int end = Math.min(nT, to + overlap);
+     if (from >= to)
+       return;
+     if (solver == null)
+       solver = new DimensionSolver();
+     double g[] = solver.g;
+     for (m=0; m<order; m++) {
+       solver.solve(m, start, end, g);
+       for (t=from; t<to; t++)
+         par[m][t] = g[t];
+     }
+  }  /* method mlpg */
+  
+  
+  private void logGVMethod(HMMData htsData, boolean useGV) {
      if(htsData.getUseContextDependentGV())
        logger.info("Context-dependent global variance optimization: gvLength = "+ gvLength );
      else
        logger.info("Global variance optimization");
-     
-	 for (m=0; m<M; m++) {
-	   calcWUWandWUM( m , debug);
-	   ldlFactorization(debug);   /* LDL factorization                               */
-	   forwardSubstitution();     /* forward substitution in Cholesky decomposition  */
-	   backwardSubstitution(m);   /* backward substitution in Cholesky decomposition */
-	          
-
-       /* Global variance optimisation for MCP and LF0 */
-       if( useGV && gvLength>0) {           
-        if(htsData.getGvMethodGradient())
-          gvParmGenGradient(m, debug);      // this is the previous method we have in MARY, using the Gradient as in the Paper of Toda et. al. IEICE 2007
-                                           // if using this method the variances have to be inverse (see note in GVModel set: case NEWTON in gv optimization)
-                                           // this method seems to give a better result
-        else
-          gvParmGenDerivative(m, debug);  // this is the method in the hts_engine 1.04 the variances are not inverse   
+  }
+  
+  
+  /**
+   * The scratch arrays and the GV state needed for generating one static dimension.
+   * The arrays are reused from one dimension to the next, so a solver must only be used
+   * by one thread at a time; dimensions generated concurrently each need their own solver.
+   * Like the matrices of the stream, the arrays may be longer than nT after a reset.
+   */
+  private class DimensionSolver {
+  
+  private double g[];        /* for forward substitution */
+  private double wuw[];      /* W' U^-1 W, the band of frame t is wuw[t*width] to wuw[t*width+width-1] */
+  private double wum[];      /* W' U^-1 mu */
+  
+  private double mean, var;  /* mean and variance for current utt eqs: (16), (17)*/
+  private double norm       = 0.0; 
+  private double GVobj      = 0.0;
+  private double HMMobj     = 0.0;
+  
+  DimensionSolver() {
+	int capacity = gvSwitch.length;
+	g = new double[capacity];
+	wuw = new double[capacity*width];
+	wum = new double[capacity];
+  }
+  
+  /* generate the parameters of static dimension m of the whole utterance, with GV if requested */
+  void generate(int m, HMMData htsData, boolean useGV) {
+	 boolean debug=false;
+	 
+	 solve(m, 0, nT, par[m]);
 
-         
-       }
-	 }  
-  }  /* method mlpg */
+     /* Global variance optimisation for MCP and LF0 */
+     if( useGV && gvLength>0) {           
+      if(htsData.getGvMethodGradient())
+        gvParmGenGradient(m, debug);      // this is the previous method we have in MARY, using the Gradient as in the Paper of Toda et. al. IEICE 2007
+                                         // if using this method the variances have to be inverse (see note in GVModel set: case NEWTON in gv optimization)
+                                         // this method seems to give a better result
+      else
+        gvParmGenDerivative(m, debug);  // this is the method in the hts_engine 1.04 the variances are not inverse   
+     }
+  }
+  
+  /* solve the linear system of static dimension m over the frames [start, end), writing the solution for these frames into c */
+  void solve(int m, int start, int end, double c[]) {
+	 calcWUWandWUM(m, start, end);
+	 ldlFactorization(start, end);   /* LDL factorization                               */
+	 forwardSubstitution(start, end);     /* forward substitution in Cholesky decomposition  */
+	 backwardSubstitution(c, start, end);   /* backward substitution in Cholesky decomposition */
+  }
   
   
   /*----------------- HTS parameter generation fuctions  -----------------------------*/
@@ -250,112 +361,82 @@ public class HTSPStream {
   /* L'C = y , solve for C using backward substitution        */
   /* So having A and B we can find the parameters C.          */
   /* U^{-1} = inverse covariance : inseq[][]                  */
-  private void calcWUWandWUM(int m, boolean debug) {
-	int t, i, j, k,iorder;
+  /* Frames outside [start, end) are treated as non-existent  */
+  private void calcWUWandWUM(int m, int start, int end) {
+	int t, i, j, k, row;
 	double WU;
-	double val;
+	double mu[], iv[];
 	
-	for(t=0; t<nT; t++) {
+	for(t=start; t<end; t++) {
+	  row = t*width;
 	  /* initialise */
 	  wum[t] = 0.0;
 	  for(i=0; i<width; i++)
-		wuw[t][i] = 0.0;
+		wuw[row+i] = 0.0;
 	  
 	  /* calc WUW & WUM, U is already inverse  */
 	    for(i=0; i<dw.getNum(); i++) {
-	      iorder = i*order+m;
+	      mu = mseq[i*order+m];
+	      iv = ivseq[i*order+m];
 	      for( j = dw.getWidth(i, WLEFT); j <= dw.getWidth(i, WRIGHT); j++) {
 
-	          if( ( t+j>=0 ) && ( t+j<nT ) && ( dw.getCoef(i,-j)!=0.0 )  ) {
+	          if( ( t+j>=start ) && ( t+j<end ) && ( dw.getCoef(i,-j)!=0.0 )  ) {
 	             
-	             //System.out.format("coef[%d,%d]=%f  ivseq[%d][%d]=%f  ", i, -j, dw.getCoef(i,-j),t+j,iorder, ivseq[t+j][iorder]); 
-	              
-				 WU = dw.getCoef(i,-j) * ivseq[t+j][iorder];
+				 WU = dw.getCoef(i,-j) * iv[t+j];
 				 
-				 wum[t] += WU * mseq[t+j][iorder];
+				 wum[t] += WU * mu[t+j];
 				 
-				 //System.out.format("wu=%f wum[%d]=%f iorder=%d\n", WU, t, wum[t], iorder);
-				 
-				 for(k=0; ( k<width ) && ( t+k<nT ); k++)
+				 for(k=0; ( k<width ) && ( t+k<end ); k++)
 				   if( ( k-j<=dw.getWidth(i, 1) ) && ( dw.getCoef(i,(k-j)) != 0.0 ) ) {
-				     wuw[t][k] += WU * dw.getCoef(i,(k-j));
-				     val = WU * dw.getCoef(i,(k-j));
+				     wuw[row+k] += WU * dw.getCoef(i,(k-j));
 				   }
 			  }
 		  }		  
 	    }  /* for i */	    
 	}  /* for t */
-	if(debug){ 
-	for(t=0; t<nT; t++) {
-	  System.out.format("t=%d wum=%f  wuw:", t, wum[t]); 
-      for(k=0; k<wuw[t].length; k++)
-        System.out.format("%f ", wuw[t][k]);
-      System.out.format("\n");
-	}
-	System.out.format("\n");
-	}
   }
   
   
-  /* ldlFactorization: Factorize W'*U^{-1}*W to L*D*L' (L: lower triangular, D: diagonal) */
-  private void ldlFactorization(boolean debug) {
-	int t,i,j;
-	for(t=0; t<nT; t++) {
-		
-	  if(debug){
-	    System.out.println("WUW calculation:");
-	    printWUW(t);
-	  }
-	  
+  /* ldlFactorization: Factorize W'*U^{-1}*W to L*D*L' (L: lower triangular, D: diagonal), restricted to frames [start, end) */
+  private void ldlFactorization(int start, int end) {
+	int t,i,j,row;
+	for(t=start; t<end; t++) {
+	  row = t*width;
 	  /* I need i=1 for the delay in t, but the indexes i in WUW[t][i] go from 0 to 2 
 	   * so wherever i is used as index i=i-1  (this is just to keep somehow the original 
 	   * c implementation). */
-	  for(i=1; (i<width) && (t-i>=0); i++)  
-		wuw[t][0] -= wuw[t-i][i+1-1] * wuw[t-i][i+1-1] * wuw[t-i][0];
+	  for(i=1; (i<width) && (t-i>=start); i++)  
+		wuw[row] -= wuw[(t-i)*width+i+1-1] * wuw[(t-i)*width+i+1-1] * wuw[(t-i)*width];
 	  
 	  for(i=2; i<=width; i++) {
-	    for(j=1; (i+j<=width) && (t-j>=0); j++)
-		  wuw[t][i-1] -= wuw[t-j][j+1-1] * wuw[t-j][i+j-1] * wuw[t-j][0];
-	    wuw[t][i-1] /= wuw[t][0];
-	 
-	  }
-	  if(debug) {
-	    System.out.println("LDL factorization:");
-	    printWUW(t);	
-	    System.out.println();
+	    for(j=1; (i+j<=width) && (t-j>=start); j++)
+		  wuw[row+i-1] -= wuw[(t-j)*width+j+1-1] * wuw[(t-j)*width+i+j-1] * wuw[(t-j)*width];
+	    wuw[row+i-1] /= wuw[row];
 	  }
 	}
-	
   }
   
-  /* forward_Substitution */ 
-  private void forwardSubstitution() {
+  /* forward_Substitution restricted to frames [start, end) */
+  private void forwardSubstitution(int start, int end) {
 	 int t, i;
 	 
-	 for(t=0; t<nT; t++) {
+	 for(t=start; t<end; t++) {
 	   g[t] = wum[t];
-	   for(i=1; (i<width) && (t-i>=0); i++)
-		 g[t] -= wuw[t-i][i+1-1] * g[t-i];  /* i as index should be i-1 */
-	   //System.out.println("  g[" + t + "]=" + g[t]);
+	   for(i=1; (i<width) && (t-i>=start); i++)
+		 g[t] -= wuw[(t-i)*width+i+1-1] * g[t-i];  /* i as index should be i-1 */
 	 }
-	 /*
-	 for(t=0; t<nT; t++)
-	   System.out.format("%f ", g[t]);
-	 System.out.println(); */
   }
   
-  /* backward_Substitution */
-  private void backwardSubstitution(int m) {
-	 int t, i;
+  /* backward_Substitution restricted to frames [start, end), writing the solution into c, which may be g itself */
+  private void backwardSubstitution(double c[], int start, int end) {
+	 int t, i, row;
 	 
-	 for(t=(nT-1); t>=0; t--) {
-	   par[t][m] = g[t] / wuw[t][0];
-	   for(i=1; (i<width) && (t+i<nT); i++) {
-		   par[t][m] -= wuw[t][i+1-1] * par[t+i][m]; /* i as index should be i-1 */
-	   }
-	   //System.out.println("  par[" + t + "]["+ m + "]=" + par[t][m]); 
+	 for(t=(end-1); t>=start; t--) {
+	   row = t*width;
+	   c[t] = g[t] / wuw[row];
+	   for(i=1; (i<width) && (t+i<end); i++)
+		   c[t] -= wuw[row+i+1-1] * c[t+i]; /* i as index should be i-1 */
 	 }
-	  
   }
 
   
@@ -365,23 +446,18 @@ public class HTSPStream {
     double step = stepInit;
     double prev = -lzero;
     double obj=0.0;
-    double diag[] = new double[nT];
-    double par_ori[] = new double[nT];
+    double c[] = par[m];
     mean=0.0;
     var=0.0;
-    int numDown = 0;
     
-    /* make a copy in case there is problems during optimisation */
-    for(t=0; t<nT; t++){
+    for(t=0; t<nT; t++)
       g[t] = 0.0;
-      par_ori[t] = par[t][m];  
-    }
        
     /* first convert c (c=par) according to GV pdf and use it as the initial value */
     convGV(m);
     
     /* recalculate R=WUW and r=WUM */
-    calcWUWandWUM(m, false);
+    calcWUWandWUM(m, 0, nT);
     
     /* iteratively optimize c */
     for (iter=1; iter<=maxGVIter; iter++) {
@@ -398,9 +474,8 @@ public class HTSPStream {
         
       /* steepest ascent and quasy Newton  c(i+1) = c(i) + alpha * grad(c(i)) */
       for(t=0; t<nT; t++)
-        par[t][m] += step * g[t];
+        c[t] += step * g[t];
       
-      //System.out.format("iter=%d  prev=%f  obj=%f \n", iter, prev, obj);
       prev = obj;
     }
     logger.info("Derivative GV optimization for feature: ("+ m + ")  number of iterations=" + (iter-1) );
@@ -412,25 +487,25 @@ public class HTSPStream {
       int t,iter;
       double step=stepInit;
       double obj=0.0, prev=0.0;
+      double c[] = par[m];
       double diag[] = new double[nT];
       double par_ori[] = new double[nT];
       mean=0.0;
       var=0.0;
       int numDown = 0;
       int totalNumIter = 0;
-      int firstIter = 0;
       
       /* make a copy in case there is problems during optimisation */
       for(t=0; t<nT; t++){
         g[t] = 0.0;
-        par_ori[t] = par[t][m];  
+        par_ori[t] = c[t];  
       }
               
       /* first convert c (c=par) according to GV pdf and use it as the initial value */
       convGV(m);
       
       /* recalculate R=WUW and r=WUM */
-      calcWUWandWUM(m, false);
+      calcWUWandWUM(m, 0, nT);
       
       /* iteratively optimize c */
       for (iter=1; iter<=maxGVIter; iter++) {
@@ -441,19 +516,17 @@ public class HTSPStream {
           /* objective function improved -> increase step size */
           if (obj > prev){
             step *= stepInc;
-            //logger.info("+++ obj > prev iter=" + iter +"  obj=" + obj + "  > prev=" + prev);
             numDown = 0;
           }      
           /* objective function degraded -> go back c and decrese step size */
           if (obj < prev) {
              for (t=0; t<nT; t++)  /* go back c=par to that at the previous iteration */
-                par[t][m] -= step * diag[t];
+                c[t] -= step * diag[t];
              step *= stepDec;
              for (t=0; t<nT; t++)  /* gradient c */
-                par[t][m] += step * diag[t];
+                c[t] += step * diag[t];
              iter--;
              numDown++;
-             //logger.info("--- obj < prev iter=" + iter +"  obj=" + obj + "  < prev=" + prev +"  numDown=" + numDown);
              if(numDown < 100)
               continue;
              else {
@@ -469,9 +542,6 @@ public class HTSPStream {
         if(norm < minEucNorm || (iter > 1 && Math.abs(obj-prev) < GVepsilon )){
           if(debug)  
             logger.info("  Number of iterations: [   " + iter + "   ] GVobj=" + obj + " (HMMobj=" + HMMobj + "  GVobj=" + GVobj + ")");
-          totalNumIter++; //gv.incTotalNumIter(iter);
-          if(m==0)
-            firstIter = iter;//gv.setFirstIter(iter);
           if(debug){
             if(iter > 1 )  
               logger.info("  Converged (norm=" + norm + ", change=" + Math.abs(obj-prev) + ")");
@@ -482,7 +552,7 @@ public class HTSPStream {
         }    
         /* steepest ascent and quasy Newton  c(i+1) = c(i) + alpha * grad(c(i)) */
         for(t=0; t<nT; t++){
-          par[t][m] += step * g[t];
+          c[t] += step * g[t];
           diag[t] = g[t];
         }
         prev = obj;       
@@ -492,7 +562,7 @@ public class HTSPStream {
 
         /* If there it does not converge, the feature parameter is not optimized */
         for(t=0; t<nT; t++){
-          par[t][m] = par_ori[t];  
+          c[t] = par_ori[t];  
         }      
       }
       totalNumIter = iter; 
@@ -502,10 +572,11 @@ public class HTSPStream {
  
   
   private double calcGradient(int m){
-   int t, i,k; 
+   int t, i; 
    double vd;
    double h, aux;
    double w = 1.0 / (dw.getNum() * nT);
+   double c[] = par[m];
    
    /* recalculate GV of the current c = par */
    calcGV(m);   
@@ -517,31 +588,31 @@ public class HTSPStream {
      
    /* calculate g = R*c = WUW*c*/
    for(t=0; t<nT; t++) {
-     g[t] = wuw[t][0] * par[t][m];
+     g[t] = wuw[t*width] * c[t];
      for(i=2; i<=width; i++){   /* width goes from 0 to 2  width=3 */
        if( t+i-1 < nT)
-         g[t] += wuw[t][i-1] * par[t+i-1][m];      /* i as index should be i-1 */
+         g[t] += wuw[t*width+i-1] * c[t+i-1];      /* i as index should be i-1 */
        if( t-i+1 >= 0 )
-         g[t] += wuw[t-i+1][i-1] * par[t-i+1][m];  /* i as index should be i-1 */
+         g[t] += wuw[(t-i+1)*width+i-1] * c[t-i+1];  /* i as index should be i-1 */
      }   
    }
       
    for(t=0, HMMobj=0.0, norm=0.0; t<nT; t++) {
        
-     HMMobj += -0.5 * w1 * w * par[t][m] * (g[t] - 2.0 * wum[t]); 
+     HMMobj += -0.5 * w1 * w * c[t] * (g[t] - 2.0 * wum[t]); 
        
      /* case STEEPEST: do not use hessian */
      //h = 1.0;
      /* case NEWTON */
      /* only diagonal elements of Hessian matrix are used */
-     h = ( ( nT-1) * vd + 2.0 * gvcovInv[m] * (par[t][m] - mean) * (par[t][m] - mean) );
-     h = -w1 * w * wuw[t][1-1] - w2 * 2.0 / (nT*nT) * h;
+     h = ( ( nT-1) * vd + 2.0 * gvcovInv[m] * (c[t] - mean) * (c[t] - mean) );
+     h = -w1 * w * wuw[t*width] - w2 * 2.0 / (nT*nT) * h;
      
      h = -1.0/h;
        
      /* gradient vector */
      if(gvSwitch[t]) {
-       aux = (par[t][m] - mean ) * vd;        
+       aux = (c[t] - mean ) * vd;        
        g[t] = h * ( w1 * w *(-g[t] + wum[t]) + w2 * -2.0/nT * aux );
      } else 
        g[t] = h * ( w1 * w *(-g[t] + wum[t]) );  
@@ -552,17 +623,17 @@ public class HTSPStream {
    }
      
    norm = Math.sqrt(norm);
-   //logger.info("HMMobj=" + HMMobj + "  GVobj=" + GVobj + "  norm=" + norm);
    
    return(HMMobj+GVobj);  
    
   }
 
   private double calcDerivative(int m){
-      int t, i,k; 
+      int t, i; 
       double vd;
-      double h, aux;
+      double h;
       double w = 1.0 / (dw.getNum() * nT);
+      double c[] = par[m];
       
       /* recalculate GV of the current c = par */
       calcGV(m);   
@@ -571,29 +642,27 @@ public class HTSPStream {
       /* -1/2 * v(c)' U^-1 v(c) + v(c)' U^-1 mu + K  --> second part of eq (20) in Toda and Tokuda IEICE-2007 paper.*/
       GVobj =  -0.5 * w2 * var * gvcovInv[m] * (var - 2.0 * gvmean[m]);
       vd = -2.0 * gvcovInv[m] * (var - gvmean[m])/nT;
-      //System.out.format("GVobj=%f  vd=%f \n", GVobj, vd);  
       
       /* calculate g = R*c = WUW*c*/
       for(t=0; t<nT; t++) {
-        g[t] = wuw[t][0] * par[t][m];
+        g[t] = wuw[t*width] * c[t];
         for(i=2; i<=width; i++){   /* width goes from 0 to 2  width=3 */
           if( t+i-1 < nT)
-            g[t] += wuw[t][i-1] * par[t+i-1][m];      /* i as index should be i-1 */
+            g[t] += wuw[t*width+i-1] * c[t+i-1];      /* i as index should be i-1 */
           if( t-i+1 >= 0 )
-            g[t] += wuw[t-i+1][i-1] * par[t-i+1][m];  /* i as index should be i-1 */
+            g[t] += wuw[(t-i+1)*width+i-1] * c[t-i+1];  /* i as index should be i-1 */
         }   
       }
          
       for(t=0, HMMobj=0.0; t<nT; t++) {
           
-        HMMobj += w1 * w * par[t][m] * (wum[t] - 0.5 * g[t]); 
+        HMMobj += w1 * w * c[t] * (wum[t] - 0.5 * g[t]); 
  
-        h = -w1 * w * wuw[t][1-1] - w2 * 2.0 / (nT*nT) * ( (nT-1) * gvcovInv[m] * (var - gvmean[m]) + 2.0 * gvcovInv[m] * (par[t][m] - mean) * (par[t][m] - mean) ); 
+        h = -w1 * w * wuw[t*width] - w2 * 2.0 / (nT*nT) * ( (nT-1) * gvcovInv[m] * (var - gvmean[m]) + 2.0 * gvcovInv[m] * (c[t] - mean) * (c[t] - mean) ); 
   
-        //System.out.format("HMMobj=%f  h=%f \n", HMMobj, h);
         /* gradient vector */
         if(gvSwitch[t]) {
-          g[t] = 1.0 / h * ( w1 * w *(-g[t] + wum[t]) + w2 * vd * (par[t][m] - mean) );  
+          g[t] = 1.0 / h * ( w1 * w *(-g[t] + wum[t]) + w2 * vd * (c[t] - mean) );  
 
         } else 
           g[t] = 1.0 / h * ( w1 * w *(-g[t] + wum[t]) );  
@@ -606,48 +675,43 @@ public class HTSPStream {
   
   
   private void convGV(int m){
-    int t, k;
-    double ratio, mixmean; 
+    int t;
+    double ratio; 
+    double c[] = par[m];
     /* calculate GV of c */
     calcGV(m);
        
     ratio = Math.sqrt(gvmean[m] / var);
-    //System.out.format("    mean=%f vari=%f ratio=%f \n", mean, var, ratio);
    
     /* c'[t][d] = ratio * (c[t][d]-mean[d]) + mean[d]  eq. (34) in Toda and Tokuda IEICE-2007 paper. */  
     for(t=0; t<nT; t++){
      if( gvSwitch[t] )
-       par[t][m] = ratio * ( par[t][m]-mean ) + mean;
+       c[t] = ratio * ( c[t]-mean ) + mean;
     }
       
   }
   
   private void calcGV(int m){
-    int t, i;
+    int t;
+    double c[] = par[m];
     mean=0.0;
     var=0.0;
  
     /* mean */
     for(t=0; t<nT; t++)
-      if(gvSwitch[t]){
-        mean += par[t][m];
-        //System.out.format("(%d)%f ", t, par[t][m]);
-      }    
+      if(gvSwitch[t])
+        mean += c[t];
     mean = mean / gvLength;
-    //System.out.format("  --- gvlength=%d  mean=%f\n", gvLength, mean);
       
     /* variance */  
     for(t=0; t<nT; t++)
-      if(gvSwitch[t]){
-        var += (par[t][m] - mean) * (par[t][m] - mean);
-        //System.out.format("(%d)%f ", t, var);
-      }
-    //System.out.format("\n");
+      if(gvSwitch[t])
+        var += (c[t] - mean) * (c[t] - mean);
     var = var / gvLength;
       
   }
   
- 
+  } /* class DimensionSolver */
   
 
 } /* class PStream */
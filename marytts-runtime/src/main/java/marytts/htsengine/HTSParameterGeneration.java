@@ -70,18 +70,29 @@ import java.io.EOFException;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import marytts.signalproc.analysis.Mfccs;
+import marytts.server.MaryProperties;
 import marytts.signalproc.analysis.PitchReaderWriter;
 import marytts.util.MaryUtils;
+import marytts.util.Metrics;
 import marytts.util.io.LEDataInputStream;
 
 import org.apache.log4j.Logger;
@@ -110,9 +121,17 @@ public class HTSParameterGeneration {
   private boolean voiced[];
   private int totalUttFrame;   // total number of frames in a mcep, str or mag Pst
   private int totalLf0Frame;   // total number of f0 voiced frames in a lf0 Pst
+  private int availableFrames;  // number of frames, from the start, whose parameters are ready for the vocoder
+  private boolean generationAborted;
   
   private Logger logger = MaryUtils.getLogger("ParameterGeneration");
   
+  private static final Metrics.Histogram mlpgTime = Metrics.histogram("mary_hts_mlpg_seconds",
+      "Time taken by parameter generation for one utterance", Metrics.TIME_BUCKETS);
+  
+  private static ExecutorService mlpgExecutor;
+  private static int mlpgThreads;
+  
   public double getMcep(int i, int j){ return mcepPst.getPar(i, j); }
   public int getMcepOrder(){ return mcepPst.getOrder(); }
   public int getMcepT(){ return mcepPst.getT(); }
@@ -167,29 +186,286 @@ public class HTSParameterGeneration {
   */
   public void htsMaximumLikelihoodParameterGeneration(HTSUttModel um, HMMData htsData, String parFileName, boolean debug) throws Exception{
 	  
+    CartTreeSet ms = htsData.getCartTreeSet();
+    long startTime = System.nanoTime();
+    
+    initParameterGeneration(um, htsData);
+    
+    /* In parallel mode, the streams and their dimensions are generated concurrently */
+    boolean parallel = MaryProperties.getBoolean("htsengine.mlpg.parallel", false);
+    List<Callable<Void>> streams = new ArrayList<Callable<Void>>(4);
+    
+	/* parameter generation for mcep */  
+    if( mcepPst != null ) {
+	  logger.info("Parameter generation for MGC: ");
+	  if(htsData.getUseGV())
+	    mcepPst.setGvMeanVar(htsData.getGVModelSet().getGVmeanMgc(), htsData.getGVModelSet().getGVcovInvMgc()); 
+      streams.add(mlpgTask(mcepPst, htsData, htsData.getUseGV(), parallel));
+    }
+   
+    if ( lf0Pst != null && !htsData.getUseAcousticModels() ){
+        logger.info("Parameter generation for LF0: ");
+        if(htsData.getUseGV())
+          lf0Pst.setGvMeanVar(htsData.getGVModelSet().getGVmeanLf0(), htsData.getGVModelSet().getGVcovInvLf0()); 
+        final Callable<Void> lf0Mlpg = mlpgTask(lf0Pst, htsData, htsData.getUseGV(), parallel);
+        final HTSUttModel utt = um;
+        final int numStates = ms.getNumStates();
+        streams.add(new Callable<Void>() {
+          public Void call() throws Exception {
+            lf0Mlpg.call();
+            // here we need set realisedF0
+            //htsData.getCartTreeSet().getNumStates()
+            setRealisedF0(lf0Pst, utt, numStates);
+            return null;
+          }
+        });
+    }  
+ 
+	/* parameter generation for str */
+    boolean useGV=false;
+    if( strPst != null ) {
+      logger.debug("Parameter generation for STR ");
+      if(htsData.getUseGV() && (htsData.getPdfStrGVStream() != null) ){
+        useGV = true;
+        strPst.setGvMeanVar(htsData.getGVModelSet().getGVmeanStr(), htsData.getGVModelSet().getGVcovInvStr());
+      }
+      streams.add(mlpgTask(strPst, htsData, useGV, parallel));
+    }
+
+	/* parameter generation for mag */
+    useGV = false;
+    if( magPst != null ) {
+      logger.info("Parameter generation for MAG ");
+      if(htsData.getUseGV() && (htsData.getPdfMagGVStream() != null) ){
+        useGV = true;
+        magPst.setGvMeanVar(htsData.getGVModelSet().getGVmeanMag(), htsData.getGVModelSet().getGVcovInvMag());
+      }
+      streams.add(mlpgTask(magPst, htsData, useGV, parallel));
+    }
+    
+    if (parallel) {
+      runTasks(streams);
+    } else {
+      for (Callable<Void> stream : streams)
+        stream.call();
+    }
+	   
+    setAvailableFrames(totalUttFrame);
+    mlpgTime.observeNanos(System.nanoTime() - startTime);
+    
+    if(debug) {
+        saveParam(parFileName+"mcep.bin", mcepPst, HMMData.MGC);  // no header
+        saveParam(parFileName+"lf0.bin", lf0Pst, HMMData.LF0);    // no header
+        //saveParamMaryFormat(parFileName, mcepPst, HMMData.MGC);
+        //saveParamMaryFormat(parFileName, lf0Pst, HMMData.LF0);
+     }
+
+	  
+  }  /* method htsMaximumLikelihoodParameterGeneration */
+  
+  
+  private static Callable<Void> mlpgTask(final HTSPStream pst, final HMMData htsData, final boolean useGV, final boolean parallel) {
+    return new Callable<Void>() {
+      public Void call() throws Exception {
+        if (parallel)
+          pst.mlpgParallel(htsData, useGV);
+        else
+          pst.mlpg(htsData, useGV);
+        return null;
+      }
+    };
+  }
+  
+  
+  /**
+   * The thread pool shared by all parameter generations in parallel mode, if
+   * <code>htsengine.mlpg.parallel</code> is true. The number of threads is given by
+   * <code>htsengine.mlpg.threads</code> (default: number of processors).
+   * @return the executor, created on first use.
+   */
+  private static synchronized ExecutorService getMlpgExecutor() {
+    if (mlpgExecutor == null) {
+      mlpgThreads = Math.max(1, MaryProperties.getInteger("htsengine.mlpg.threads", Runtime.getRuntime().availableProcessors()));
+      mlpgExecutor = Executors.newFixedThreadPool(mlpgThreads, new ThreadFactory() {
+        private int threadNumber = 1;
+        public synchronized Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "MLPG " + threadNumber++);
+          t.setDaemon(true);
+          return t;
+        }
+      });
+    }
+    return mlpgExecutor;
+  }
+  
+  
+  /**
+   * Run the given tasks concurrently on the shared parameter generation executor, and wait
+   * until all of them are done. The calling thread takes its share of the tasks, and only
+   * waits for tasks which are already running. Calls can therefore be nested, as for the
+   * dimensions of streams which are themselves generated on the executor, without the risk
+   * of all threads waiting for tasks that are still queued.
+   * @param tasks : the tasks to run
+   * @throws Exception the first exception thrown by any of the tasks
+   */
+  static void runTasks(final List<? extends Callable<?>> tasks) throws Exception {
+    final int numTasks = tasks.size();
+    final AtomicInteger next = new AtomicInteger();
+    final CountDownLatch done = new CountDownLatch(numTasks);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Runnable worker = new Runnable() {
+      public void run() {
+        int i;
+        while ((i = next.getAndIncrement()) < numTasks) {
+          try {
+            tasks.get(i).call();
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          } finally {
+            done.countDown();
+          }
+        }
+      }
+    };
+    ExecutorService executor = getMlpgExecutor();
+    int numHelpers = Math.min(numTasks, mlpgThreads) - 1;
+    for (int k=0; k<numHelpers; k++)
+      executor.execute(worker);
+    worker.run();
+    done.await();
+    Throwable e = failure.get();
+    if (e instanceof Exception)
+      throw (Exception) e;
+    if (e instanceof Error)
+      throw (Error) e;
+  }
+  
+  
+  /** HTS parameter generation in consecutive chunks of frames, for streaming synthesis.
+   * Each chunk is generated with the windowed mlpg of {@link HTSPStream#mlpg(int, int, int)},
+   * and as soon as all streams are done with a chunk, its frames are made available to
+   * a vocoder waiting in {@link #waitForFrames(int)}. The time to the first audio then depends
+   * on the chunk size and overlap rather than on the length of the utterance.
+   * Global variance is not applied in this mode.
+   * {@link #initParameterGeneration(HTSUttModel, HMMData)} must have been called before.
+   * @param um  : utterance model sequence after processing Mary context features
+   * @param htsData : HMM data of the voice
+   * @param chunkSize : number of frames per chunk, must be positive
+   * @param overlap : number of context frames used on each side of a chunk
+   */
+  public void htsChunkedParameterGeneration(HTSUttModel um, HMMData htsData, int chunkSize, int overlap) throws Exception {
+    if (chunkSize <= 0)
+      throw new IllegalArgumentException("Chunk size must be positive, got "+chunkSize);
+    boolean done = false;
+    try {
+      if (htsData.getUseGV())
+        logger.debug("Chunked parameter generation: global variance is not applied");
+      boolean generateLf0 = lf0Pst != null && !htsData.getUseAcousticModels();
+      int from, to, t;
+      int lf0From = 0;
+      int lf0To = 0;
+      for (from=0; from<totalUttFrame; from=to) {
+        to = Math.min(totalUttFrame, from+chunkSize);
+        for (t=from; t<to; t++)
+          if (voiced[t])
+            lf0To++;
+        if (mcepPst != null)
+          mcepPst.mlpg(from, to, overlap);
+        if (generateLf0)
+          lf0Pst.mlpg(lf0From, lf0To, overlap);
+        if (strPst != null)
+          strPst.mlpg(from, to, overlap);
+        if (magPst != null)
+          magPst.mlpg(from, to, overlap);
+        lf0From = lf0To;
+        setAvailableFrames(to);
+      }
+      if (generateLf0)
+        setRealisedF0(lf0Pst, um, htsData.getCartTreeSet().getNumStates());
+      done = true;
+    } finally {
+      if (!done)
+        abortGeneration();
+    }
+  }  /* method htsChunkedParameterGeneration */
+  
+  
+  /**
+   * Wait until the parameters of at least the first numFrames frames have been generated.
+   * @param numFrames : number of frames needed
+   * @return the number of frames available, at least numFrames
+   * @throws Exception if parameter generation stopped before numFrames frames were generated
+   */
+  public synchronized int waitForFrames(int numFrames) throws Exception {
+    while (availableFrames < numFrames) {
+      if (generationAborted)
+        throw new Exception("Parameter generation stopped after "+availableFrames+" of "+totalUttFrame+" frames");
+      wait();
+    }
+    return availableFrames;
+  }
+  
+  private synchronized void setAvailableFrames(int numFrames) {
+    availableFrames = numFrames;
+    notifyAll();
+  }
+  
+  /**
+   * Stop a vocoder waiting in {@link #waitForFrames(int)} for parameters that will not be generated,
+   * e.g. because the chunked parameter generation was not started or failed.
+   * The waiting vocoder gets an exception instead of blocking forever.
+   */
+  public synchronized void abortGeneration() {
+    generationAborted = true;
+    notifyAll();
+  }
+  
+  
+  /** Initialise the parameter streams for the given utterance model and copy the pdfs into them.
+   * After this, the size of the streams and the voiced/unvoiced decision of each frame are known,
+   * but no parameters have been generated yet.
+   * @param um  : utterance model sequence after processing Mary context features
+   * @param htsData : HMM data of the voice
+   */
+  public void initParameterGeneration(HTSUttModel um, HMMData htsData) throws Exception{
+	  
 	int frame, uttFrame, lf0Frame;
 	int state, lw, rw, k, n, i, numVoicedInModel;
 	boolean nobound, gvSwitch;
     HTSModel m;
     CartTreeSet ms = htsData.getCartTreeSet();
     
+    synchronized (this) {
+      availableFrames = 0;
+      generationAborted = false;
+    }
+    
 	/* Initialisation of PStream objects */
   	/* Initialise Parameter generation using UttModel um and Modelset ms */
   	/* initialise PStream objects for all the parameters that are going to be generated: */
   	/* mceppst, strpst, magpst, lf0pst */
 	/* Here i should pass the window files to initialise the dynamic windows dw */
 	/* for the moment the dw are all the same and hard-coded */
+	/* The streams of a previous utterance are reused if possible, those the voice does not have are dropped */
     if( htsData.getPdfMgcStream() != null)
-	  mcepPst = new HTSPStream(ms.getMcepVsize(), um.getTotalFrame(), HMMData.MGC, htsData.getMaxMgcGvIter());
+	  mcepPst = reuseOrCreate(mcepPst, ms.getMcepVsize(), um.getTotalFrame(), HMMData.MGC, htsData.getMaxMgcGvIter());
+    else
+      mcepPst = null;
     /* for lf0 count just the number of lf0frames that are voiced or non-zero */
     if( htsData.getPdfLf0Stream() != null)
-      lf0Pst  = new HTSPStream(ms.getLf0Stream(), um.getLf0Frame(), HMMData.LF0, htsData.getMaxLf0GvIter());
+      lf0Pst  = reuseOrCreate(lf0Pst, ms.getLf0Stream(), um.getLf0Frame(), HMMData.LF0, htsData.getMaxLf0GvIter());
+    else
+      lf0Pst = null;
 
     /* The following are optional in case of generating mixed excitation */
     if( htsData.getPdfStrStream() != null)
-	  strPst  = new HTSPStream(ms.getStrVsize(), um.getTotalFrame(), HMMData.STR, htsData.getMaxStrGvIter());
+	  strPst  = reuseOrCreate(strPst, ms.getStrVsize(), um.getTotalFrame(), HMMData.STR, htsData.getMaxStrGvIter());
+    else
+      strPst = null;
     if (htsData.getPdfMagStream() != null )
-	  magPst  = new HTSPStream(ms.getMagVsize(), um.getTotalFrame(), HMMData.MAG, htsData.getMaxMagGvIter());
+	  magPst  = reuseOrCreate(magPst, ms.getMagVsize(), um.getTotalFrame(), HMMData.MAG, htsData.getMaxMagGvIter());
+    else
+      magPst = null;
 	   
     
 	uttFrame = lf0Frame = 0;
@@ -303,58 +579,23 @@ public class HTSParameterGeneration {
       	} /* for each frame in this state */
       } /* for each state in this model */
 	}  /* for each model in this utterance */ 
-			
-	/* parameter generation for mcep */  
-    if( mcepPst != null ) {
-	  logger.info("Parameter generation for MGC: ");
-	  if(htsData.getUseGV())
-	    mcepPst.setGvMeanVar(htsData.getGVModelSet().getGVmeanMgc(), htsData.getGVModelSet().getGVcovInvMgc()); 
-      mcepPst.mlpg(htsData, htsData.getUseGV());
-    }
-   
+	
+    /* the f0 from maryXML does not depend on the other streams, so it can be set up front */
     if(htsData.getUseAcousticModels())
         loadMaryXmlF0(um, htsData);
-    else if ( lf0Pst != null ){
-        logger.info("Parameter generation for LF0: ");
-        if(htsData.getUseGV())
-          lf0Pst.setGvMeanVar(htsData.getGVModelSet().getGVmeanLf0(), htsData.getGVModelSet().getGVcovInvLf0()); 
-        lf0Pst.mlpg(htsData, htsData.getUseGV());
-        // here we need set realisedF0
-        //htsData.getCartTreeSet().getNumStates()
-        setRealisedF0(lf0Pst, um, ms.getNumStates());
-    }  
- 
-	/* parameter generation for str */
-    boolean useGV=false;
-    if( strPst != null ) {
-      logger.debug("Parameter generation for STR ");
-      if(htsData.getUseGV() && (htsData.getPdfStrGVStream() != null) ){
-        useGV = true;
-        strPst.setGvMeanVar(htsData.getGVModelSet().getGVmeanStr(), htsData.getGVModelSet().getGVcovInvStr());
-      }
-      strPst.mlpg(htsData, useGV);
-    }
-
-	/* parameter generation for mag */
-    useGV = false;
-    if( magPst != null ) {
-      logger.info("Parameter generation for MAG ");
-      if(htsData.getUseGV() && (htsData.getPdfMagGVStream() != null) ){
-        useGV = true;
-        magPst.setGvMeanVar(htsData.getGVModelSet().getGVmeanMag(), htsData.getGVModelSet().getGVcovInvMag());
-      }
-	  magPst.mlpg(htsData, useGV);
+    
+  }  /* method initParameterGeneration */
+  
+  
+  /** Reset the given stream for a new utterance if it has the requested vector size and type,
+   * or create a new one otherwise */
+  private static HTSPStream reuseOrCreate(HTSPStream pst, int vector_size, int utt_length, int fea_type, int maxIterationsGV) throws Exception {
+    if (pst != null && pst.getVsize() == vector_size && pst.getFeatureType() == fea_type) {
+      pst.reset(utt_length, maxIterationsGV);
+      return pst;
     }
-	   
-    if(debug) {
-        saveParam(parFileName+"mcep.bin", mcepPst, HMMData.MGC);  // no header
-        saveParam(parFileName+"lf0.bin", lf0Pst, HMMData.LF0);    // no header
-        //saveParamMaryFormat(parFileName, mcepPst, HMMData.MGC);
-        //saveParamMaryFormat(parFileName, lf0Pst, HMMData.LF0);
-     }
-
-	  
-  }  /* method htsMaximumLikelihoodParameterGeneration */
+    return new HTSPStream(vector_size, utt_length, fea_type, maxIterationsGV);
+  }
   
   
   
@@ -504,8 +745,8 @@ public class HTSParameterGeneration {
       // interpolate values if necessary
       interpolateSegments(f0Vector); 
       
-      // create a new Lf0Pst with the values from maryXML
-      HTSPStream newLf0Pst  = new HTSPStream(3, f0Vector.size(), HMMData.LF0, htsData.getMaxLf0GvIter());
+      // set up the Lf0Pst with the values from maryXML
+      HTSPStream newLf0Pst  = reuseOrCreate(lf0Pst, 3, f0Vector.size(), HMMData.LF0, htsData.getMaxLf0GvIter());
       for(n=0; n<f0Vector.size(); n++)
         newLf0Pst.setPar(n, 0, Math.log(f0Vector.get(n)));
       
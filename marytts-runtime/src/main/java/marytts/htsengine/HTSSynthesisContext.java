@@ -0,0 +1,116 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.htsengine;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import marytts.server.MaryProperties;
+
+/**
+ * The objects needed to synthesise an utterance with an HMM voice: the parameter generation
+ * with its parameter streams, and the vocoder with its filter state and excitation buffers.
+ * Their large arrays are kept when the context is released, and are reused for the next
+ * utterance instead of being allocated and garbage collected for every sentence.
+ * <p>
+ * A context is used by one request at a time. It is taken from a pool with {@link #acquire()}
+ * and given back with {@link #release()}. Since the vocoder goes on producing audio in its own
+ * thread after the request thread is done, the vocoder {@link #retain() retains} the context
+ * and releases it when it has finished; the context returns to the pool when the last user
+ * has released it.
+ * At most <code>htsengine.synthesiscontexts</code> contexts (default: number of processors)
+ * are kept in the pool; contexts released when the pool is full are left to the garbage collector.
+ *
+ * @author agent
+ */
+public class HTSSynthesisContext
+{
+    private static final int MAX_POOLED = MaryProperties.getInteger("htsengine.synthesiscontexts", Runtime.getRuntime().availableProcessors());
+    private static final ConcurrentLinkedQueue<HTSSynthesisContext> pool = new ConcurrentLinkedQueue<HTSSynthesisContext>();
+    private static final AtomicInteger numPooled = new AtomicInteger();
+
+    private final HTSParameterGeneration parameterGeneration = new HTSParameterGeneration();
+    private final HTSVocoder vocoder = new HTSVocoder();
+    private final AtomicInteger numUsers = new AtomicInteger();
+
+    private HTSSynthesisContext()
+    {
+    }
+
+    /**
+     * Get a context from the pool, or a new one if the pool is empty.
+     * The caller must release it when done.
+     */
+    public static HTSSynthesisContext acquire()
+    {
+        HTSSynthesisContext context = pool.poll();
+        if (context == null) {
+            context = new HTSSynthesisContext();
+        } else {
+            numPooled.decrementAndGet();
+        }
+        context.numUsers.set(1);
+        return context;
+    }
+
+    public HTSParameterGeneration getParameterGeneration()
+    {
+        return parameterGeneration;
+    }
+
+    public HTSVocoder getVocoder()
+    {
+        return vocoder;
+    }
+
+    /**
+     * Register one more user of this context, which must call {@link #release()} when done.
+     */
+    public void retain()
+    {
+        numUsers.incrementAndGet();
+    }
+
+    /**
+     * Give up the use of this context. When its last user has released it, the context
+     * goes back to the pool, and must not be used any more by any of its previous users.
+     */
+    public void release()
+    {
+        int users = numUsers.decrementAndGet();
+        if (users > 0) {
+            return;
+        }
+        assert users == 0 : "context released more often than acquired or retained";
+        if (numPooled.incrementAndGet() <= MAX_POOLED) {
+            pool.offer(this);
+        } else {
+            numPooled.decrementAndGet();
+        }
+    }
+
+    /**
+     * Whether this context is in the pool, waiting to be acquired again; for testing.
+     */
+    boolean isPooled()
+    {
+        return pool.contains(this);
+    }
+}
@@ -81,6 +81,7 @@ public class HTSUttModel {
   private int lf0Frame;             /* # of frames that are voiced or non-zero */
   private Vector<HTSModel> modelList;  /* This will be a list of Model objects for current utterance */
   private String realisedAcoustParams;  /* list of phones and actual realised durations for each one */
+  private String realisedDurations;    /* realised durations in .lab format, as set by the HTSEngine */
   
   public HTSUttModel() {
 	numModel = 0;
@@ -113,4 +114,7 @@ public class HTSUttModel {
       realisedAcoustParams = realisedAcoustParams + str;
   } 
   
+  public void setRealisedDurations(String str){ realisedDurations = str; }
+  public String getRealisedDurations(){ return realisedDurations; }
+  
 }
@@ -86,6 +86,7 @@ import javax.sound.sampled.AudioSystem;
 
 import marytts.signalproc.process.AmplitudeNormalizer;
 import marytts.util.MaryUtils;
+import marytts.util.Metrics;
 import marytts.util.data.BufferedDoubleDataSource;
 import marytts.util.data.ProducingDoubleDataSource;
 import marytts.util.data.audio.AudioDoubleDataSource;
@@ -142,6 +143,11 @@ public class HTSVocoder {
     
     private Logger logger = MaryUtils.getLogger("Vocoder");
     
+    private static final Metrics.Histogram vocoderTime = Metrics.histogram("mary_hts_vocoder_seconds",
+            "Time taken by the vocoder for one utterance", Metrics.TIME_BUCKETS);
+    private static final Metrics.Histogram vocoderRealTimeFactor = Metrics.histogram("mary_hts_vocoder_realtime_factor",
+            "Vocoder time divided by the duration of the audio produced", Metrics.RATIO_BUCKETS);
+    
     Random rand;
     private int stage;             /* Gamma=-1/stage : if stage=0 then Gamma=0 */
     private double gamma;          /* Gamma */
@@ -175,6 +181,11 @@ public class HTSVocoder {
     int pt2;                            /* used in mlsadf2 */
     int pt3[];                          /* used in mlsadf2 */
     
+    /* excitation buffers */
+    private double pulse[];            /* pulse excitation of one frame */
+    private double noise[];            /* noise excitation of one frame */
+    private double source[];           /* mixed excitation of one frame */
+    
     /* mixed excitation variables */  
     private int numM;                  /* Number of bandpass filters for mixed excitation */
     private int orderM;                /* Order of filters for mixed excitation */
@@ -207,22 +218,19 @@ public class HTSVocoder {
         iprd  = IPERIOD;
         gauss = GAUSS;
         
-        rand = new Random();
+        /* The random generator and the filter arrays are kept when the vocoder is used
+         * for the next utterance; the work buffers of freqt etc. only ever grow. */
+        if(rand == null)
+          rand = new Random();
 
         if(stage == 0 ){  /* for MGC */
             
           /* mcep_order=74 and pd=PADEORDER=5 (if no HTS_EMBEDDED is used) */
           vector_size = (mcep_vsize * ( 3 + PADEORDER) + 5 * PADEORDER + 6) - (3 * (mcep_order+1));
-          C    = new double[(mcep_order+1)];
-          CC   = new double[(mcep_order+1)];
-          CINC = new double[(mcep_order+1)];
-          D1   = new double[vector_size];
-                    
-          freqt_size       = 0;
-          spectrum2en_size = 0;
-          postfilter_size  = 0;
-          lsp2lpc_size     = 0;
-          gc2gc_size       = 0;
+          C    = reuseOrCreate(C, (mcep_order+1));
+          CC   = reuseOrCreate(CC, (mcep_order+1));
+          CINC = reuseOrCreate(CINC, (mcep_order+1));
+          D1   = reuseOrCreate(D1, vector_size);
             
           vector_size=21;
           pade = new double[vector_size];
@@ -258,18 +266,29 @@ public class HTSVocoder {
           
         } else { /* for LSP */
             vector_size = ((mcep_vsize+1) * (stage+3)) - ( 3 * (mcep_order+1));
-            C  = new double[(mcep_order+1)];
-            CC = new double[(mcep_order+1)];
-            CINC = new double[(mcep_order+1)];
-            D1 = new double[vector_size];   
+            C  = reuseOrCreate(C, (mcep_order+1));
+            CC = reuseOrCreate(CC, (mcep_order+1));
+            CINC = reuseOrCreate(CINC, (mcep_order+1));
+            D1 = reuseOrCreate(D1, vector_size);   
         }
         
         /* excitation initialisation */
         p1 = -1;
         pc = 0.0;  
+        pulse = reuseOrCreate(pulse, fprd);
+        noise = reuseOrCreate(noise, fprd);
+        source = reuseOrCreate(source, fprd);
     
     } /* method initVocoder */
     
+    /** The given array if it has the given length, else a new array of that length.
+     * The content of a reused array is not cleared. */
+    private static double[] reuseOrCreate(double array[], int length) {
+        if(array != null && array.length == length)
+          return array;
+        return new double[length];
+    }
+    
     
 
     /** 
@@ -281,11 +300,32 @@ public class HTSVocoder {
      *   PStream lf0pst : Log F0  
      */
     public AudioInputStream htsMLSAVocoder(HTSParameterGeneration pdf2par, HMMData htsData) 
+    throws Exception {
+        return htsMLSAVocoder(pdf2par, htsData, null);
+    }
+    
+    /**
+     * Like {@link #htsMLSAVocoder(HTSParameterGeneration, HMMData)}, for a vocoder and parameters
+     * belonging to the given synthesis context. The context is retained until the vocoder
+     * has produced all audio, so that it is not reused for another utterance before.
+     * @param context the context of pdf2par and this vocoder, or null
+     */
+    public AudioInputStream htsMLSAVocoder(HTSParameterGeneration pdf2par, HMMData htsData, HTSSynthesisContext context) 
     throws Exception {
         
         int audioSize = computeAudioSize(pdf2par.getMcepPst(), htsData);
-        HTSVocoderDataProducer producer = new HTSVocoderDataProducer(audioSize, pdf2par, htsData);
-        producer.start();
+        HTSVocoderDataProducer producer = new HTSVocoderDataProducer(audioSize, pdf2par, htsData, context);
+        if (context != null)
+            context.retain();
+        boolean started = false;
+        try {
+            producer.start();
+            started = true;
+        } finally {
+            // without a producer thread, nobody else will release the context
+            if (!started && context != null)
+                context.release();
+        }
         return new DDSAudioInputStream(producer, getHTSAudioFormat(htsData));
 
         /*
@@ -370,9 +410,6 @@ public class HTSVocoder {
       m = mcepPst.getOrder();
       mc = new double[m];
       initVocoder(m-1, mcepPst.getVsize()-1, htsData);
-      double pulse[] = new double[fprd];
-      double noise[] = new double[fprd];
-      double source[] = new double[fprd];
       
       d = new double[m];
       if(lpcVocoder){
@@ -387,8 +424,8 @@ public class HTSVocoder {
         numM = htsData.getNumFilters();
         orderM = htsData.getOrderFilters();
         
-        xpulseSignal = new double[orderM];
-        xnoiseSignal = new double[orderM];
+        xpulseSignal = reuseOrCreate(xpulseSignal, orderM);
+        xnoiseSignal = reuseOrCreate(xnoiseSignal, orderM);
         /* initialise xp_sig and xn_sig */
         for(i=0; i<orderM; i++)
           xpulseSignal[i] = xnoiseSignal[i] = 0;    
@@ -433,28 +470,40 @@ public class HTSVocoder {
       f0Shift = htsData.getF0Mean();
       f0MeanOri = 0.0;
 
-      for(mcepframe=0,lf0frame=0; mcepframe<mcepPst.getT(); mcepframe++) {
-        if(voiced[mcepframe]){  
-          f0MeanOri = f0MeanOri + Math.exp(lf0Pst.getPar(lf0frame, 0));
-          //System.out.println("voiced t=" + mcepframe + "  " + lf0Pst.getPar(lf0frame, 0) + "  ");
-          lf0frame++;
+      /* the mean f0 of the utterance is only needed if the f0 range is modified,
+       * and then we must wait for the parameters of all frames */
+      if(f0Std != 1.0) {
+        if(audioProducer != null)
+          audioProducer.waitForFrame(mcepPst.getT()-1);
+        for(mcepframe=0,lf0frame=0; mcepframe<mcepPst.getT(); mcepframe++) {
+          if(voiced[mcepframe]){  
+            f0MeanOri = f0MeanOri + Math.exp(lf0Pst.getPar(lf0frame, 0));
+            //System.out.println("voiced t=" + mcepframe + "  " + lf0Pst.getPar(lf0frame, 0) + "  ");
+            lf0frame++;
+          }
+          //else
+            //System.out.println("unvoiced t=" + mcepframe + "  0.0  ");  
         }
-        //else
-          //System.out.println("unvoiced t=" + mcepframe + "  0.0  ");  
+        f0MeanOri = f0MeanOri/lf0frame;
       }
-      f0MeanOri = f0MeanOri/lf0frame;
    
       /* _______________________Synthesize speech waveforms_____________________ */
       /* generate Nperiod samples per mcepframe */
       s = 0;   /* number of samples */
       s_double = 0;
       audio_size = computeAudioSize(mcepPst, htsData);
-      audio_double = new double[audio_size];  /* initialise buffer for audio */
+      /* when producing for an audio stream, the samples are handed to the producer and not kept here */
+      if(audioProducer == null)
+        audio_double = new double[audio_size];  /* initialise buffer for audio */
       
       magSample = 1;
       magPulseSize = 0;
       for(mcepframe=0,lf0frame=0; mcepframe<mcepPst.getT(); mcepframe++) {
        
+        /* with chunked parameter generation, the parameters of this frame may not be there yet */
+        if(audioProducer != null)
+          audioProducer.waitForFrame(mcepframe);
+        
         /* get current feature vector mgc */ 
         for(i=0; i<m; i++)
           mc[i] = mcepPst.getPar(mcepframe, i); 
@@ -676,9 +725,10 @@ public class HTSVocoder {
         
         
           //System.out.format("%f ", x);  
-          audio_double[s_double] = x;
           if(audioProducer != null) {
               audioProducer.putOneDataPoint(x);
+          } else {
+              audio_double[s_double] = x;
           }
 
           s_double++;
@@ -2191,10 +2241,22 @@ public class HTSVocoder {
         private HTSPStream magPst;
         private boolean [] voiced;
         private HMMData htsData;
+        private HTSParameterGeneration pdf2par;
+        private HTSSynthesisContext context;
+        private int framesAvailable = 0;
         
         
         public HTSVocoderDataProducer(int audioSize, HTSParameterGeneration pdf2par, HMMData htsData) {
+            this(audioSize, pdf2par, htsData, null);
+        }
+        
+        /**
+         * @param context if not null, a context retained for this producer, which is released when the producer is done.
+         */
+        public HTSVocoderDataProducer(int audioSize, HTSParameterGeneration pdf2par, HMMData htsData, HTSSynthesisContext context) {
             super(audioSize, new AmplitudeNormalizer(INITIAL_MAX_AMPLITUDE));
+            this.pdf2par = pdf2par;
+            this.context = context;
             lf0Pst = pdf2par.getlf0Pst();
             mcepPst = pdf2par.getMcepPst();
             strPst = pdf2par.getStrPst();
@@ -2206,10 +2268,32 @@ public class HTSVocoder {
 
         public void run() {
             try {
+                long startTime = System.nanoTime();
                 htsMLSAVocoder(lf0Pst, mcepPst, strPst, magPst, voiced, htsData, this);
+                long time = System.nanoTime() - startTime;
+                vocoderTime.observeNanos(time);
+                int audioSize = computeAudioSize(mcepPst, htsData);
+                if (audioSize > 0) {
+                    vocoderRealTimeFactor.observe(time / 1e9 / ((double) audioSize / htsData.getRate()));
+                }
                 putEndOfStream();
             } catch (Exception e) {
                 logger.error("Cannot vocode", e);
+                // do not leave the reader waiting for data that will never come:
+                putEndOfStream();
+            } finally {
+                if (context != null)
+                    context.release();
+            }
+        }
+        
+        /**
+         * Block until the parameters of the given frame have been generated.
+         * @param frame index of a frame in the mcep stream
+         */
+        void waitForFrame(int frame) throws Exception {
+            if (frame >= framesAvailable) {
+                framesAvailable = pdf2par.waitForFrames(frame+1);
             }
         }
         
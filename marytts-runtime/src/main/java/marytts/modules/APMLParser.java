@@ -20,10 +20,7 @@
 package marytts.modules;
 
 // TraX classes
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.transform.Source;
-import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.URIResolver;
@@ -33,6 +30,8 @@ import javax.xml.transform.stream.StreamSource;
 
 import marytts.datatypes.MaryData;
 import marytts.datatypes.MaryDataType;
+import marytts.util.dom.CompiledStylesheet;
+import marytts.util.dom.DomUtils;
 import marytts.util.dom.LoggingErrorHandler;
 
 import org.w3c.dom.Document;
@@ -46,11 +45,9 @@ import org.w3c.dom.Document;
 
 public class APMLParser extends InternalModule
 {
-    // One stylesheet can be used (read) by multiple threads:
-    private static Templates stylesheet = null;
+    // One stylesheet can be used by multiple threads, each with its own transformer:
+    private static CompiledStylesheet stylesheet = null;
 
-    private DocumentBuilderFactory dbFactory = null;
-    private DocumentBuilder docBuilder = null;
     private boolean doWarnClient = false;
 
     public APMLParser()
@@ -83,13 +80,7 @@ public class APMLParser extends InternalModule
             });
             StreamSource stylesheetStream = new StreamSource
                 (this.getClass().getResourceAsStream("apml-to-mary.xsl"));
-            stylesheet = tFactory.newTemplates( stylesheetStream );
-        }
-        if (dbFactory == null) {
-            dbFactory = DocumentBuilderFactory.newInstance();
-        }
-        if (docBuilder == null) {
-            docBuilder = dbFactory.newDocumentBuilder();
+            stylesheet = new CompiledStylesheet(tFactory, stylesheetStream);
         }
         super.startup();
     }
@@ -98,7 +89,7 @@ public class APMLParser extends InternalModule
     throws Exception
     {
         DOMSource domSource = new DOMSource(d.getDocument());
-        Transformer transformer = stylesheet.newTransformer();
+        Transformer transformer = stylesheet.getTransformer();
 
         // Log transformation errors to client:
         if (doWarnClient) {
@@ -107,7 +98,7 @@ public class APMLParser extends InternalModule
         }
 
         // Transform DOMSource into a DOMResult
-        Document maryxmlDocument = docBuilder.newDocument();
+        Document maryxmlDocument = DomUtils.createDocument();
         DOMResult domResult = new DOMResult(maryxmlDocument);
         transformer.transform(domSource, domResult);
         MaryData result = new MaryData(outputType(), d.getLocale());
@@ -167,13 +167,15 @@ public class CARTF0Modeller extends InternalModule
             TargetFeatureComputer currentFeatureComputer = featureComputer;
             if (maryVoice instanceof UnitSelectionVoice) {
                 CART[] voiceTrees = ((UnitSelectionVoice)maryVoice).getF0Trees();
+                FeatureDefinition voiceFeatDef = null;
                 if (voiceTrees != null) {
                     currentLeftCart  = voiceTrees[0];
                     currentMidCart   = voiceTrees[1];
                     currentRightCart = voiceTrees[2];
+                    // as in UnitSelectionVoice.getF0CartsFeatDef(), from the same trees:
+                    voiceFeatDef = voiceTrees[0].getFeatureDefinition();
                     logger.debug("Using voice carts");
                 }
-                FeatureDefinition voiceFeatDef = ((UnitSelectionVoice)maryVoice).getF0CartsFeatDef();
                 if (voiceFeatDef != null) {
                     currentFeatureComputer =  new TargetFeatureComputer(featureProcessorManager, voiceFeatDef.getFeatureNames());
                     logger.debug("Using voice feature definition");
@@ -20,9 +20,6 @@
 package marytts.modules;
 
 // TraX classes
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMResult;
@@ -34,6 +31,8 @@ import emotionml.Checker;
 import marytts.datatypes.MaryData;
 import marytts.datatypes.MaryDataType;
 import marytts.util.MaryUtils;
+import marytts.util.dom.CompiledStylesheet;
+import marytts.util.dom.DomUtils;
 import marytts.util.dom.LoggingErrorHandler;
 
 import org.w3c.dom.Document;
@@ -47,11 +46,9 @@ import org.w3c.dom.Document;
 
 public class EmotionmlParser extends InternalModule
 {
-    // One stylesheet can be used (read) by multiple threads:
-    private static Templates stylesheet = null;
+    // One stylesheet can be used by multiple threads, each with its own transformer:
+    private static CompiledStylesheet stylesheet = null;
 
-    private DocumentBuilderFactory dbFactory = null;
-    private DocumentBuilder docBuilder = null;
     private boolean doWarnClient = false;
 
     public EmotionmlParser()
@@ -75,13 +72,7 @@ public class EmotionmlParser extends InternalModule
             TransformerFactory tFactory = TransformerFactory.newInstance();
             StreamSource stylesheetStream = new StreamSource
                 (this.getClass().getResourceAsStream("emotionml-to-maryxml.xsl"));
-            stylesheet = tFactory.newTemplates( stylesheetStream );
-        }
-        if (dbFactory == null) {
-            dbFactory = DocumentBuilderFactory.newInstance();
-        }
-        if (docBuilder == null) {
-            docBuilder = dbFactory.newDocumentBuilder();
+            stylesheet = new CompiledStylesheet(tFactory, stylesheetStream);
         }
         super.startup();
     }
@@ -97,7 +88,7 @@ public class EmotionmlParser extends InternalModule
     	
         DOMSource domSource = new DOMSource(emotionml);
 
-        Transformer transformer = stylesheet.newTransformer();
+        Transformer transformer = stylesheet.getTransformer();
         // Log transformation errors to client:
         if (doWarnClient) {
             // Use custom error handler:
@@ -107,7 +98,7 @@ public class EmotionmlParser extends InternalModule
         transformer.setParameter("voice", d.getDefaultVoice().getName());
         
         // Transform DOMSource into a DOMResult
-        Document maryxmlDocument = docBuilder.newDocument();
+        Document maryxmlDocument = DomUtils.createDocument();
         DOMResult domResult = new DOMResult(maryxmlDocument);
         transformer.transform(domSource, domResult);
         // We add the 'xml:lang' attribute manually:
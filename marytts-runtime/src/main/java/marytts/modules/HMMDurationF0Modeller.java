@@ -152,17 +152,21 @@ public class HMMDurationF0Modeller extends InternalModule
       Scanner s = null;
       String realisedDurations;
       String realisedDurF0s;
+      // keep the voice loaded while its models are in use, and use the same models throughout:
+      hmmVoice.pin();
       try {
+        HMMData htsData = hmmVoice.getHMMData();
         s = new Scanner(context);
         // Create the Uttmodel list and get durations 
-        realisedDurations = processUtt(s, um, hmmVoice.getHMMData(), hmmVoice.getHMMData().getCartTreeSet());
+        realisedDurations = processUtt(s, um, htsData, htsData.getCartTreeSet());
         //setActualDurations(tw, realisedDurations);
         
         // Given the UttModel list generate the F0 parameters
-        realisedDurF0s = HmmF0Generation(um, hmmVoice.getHMMData());
+        realisedDurF0s = HmmF0Generation(um, htsData);
         setActualDurationsAndF0s(tw, realisedDurF0s);
         
       } finally {
+        hmmVoice.unpin();
         if (s != null)
           s.close();
       }
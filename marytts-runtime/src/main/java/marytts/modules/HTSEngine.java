@@ -92,10 +92,12 @@ import marytts.htsengine.HMMData;
 import marytts.htsengine.HMMVoice;
 import marytts.htsengine.HTSModel;
 import marytts.htsengine.HTSParameterGeneration;
+import marytts.htsengine.HTSSynthesisContext;
 import marytts.htsengine.HTSUttModel;
 import marytts.htsengine.HTSVocoder;
 import marytts.htsengine.HTSEngineTest.PhonemeDuration;
 import marytts.modules.synthesis.Voice;
+import marytts.server.MaryProperties;
 import marytts.unitselection.select.Target;
 import marytts.util.MaryUtils;
 import marytts.util.data.audio.AppendableSequenceAudioInputStream;
@@ -119,24 +121,22 @@ import org.w3c.dom.traversal.NodeIterator;
 public class HTSEngine extends InternalModule
 {
     private Logger loggerHts = MaryUtils.getLogger("HTSEngine");
-    private String realisedDurations;  // HMM realised duration to be save in a file
-    private boolean phoneAlignmentForDurations;
+    // This module is shared by all requests: the state of a request is kept in its HTSUttModel and HTSSynthesisContext,
+    // the fields below are settings for stand-alone use.
     private boolean stateAlignmentForDurations=false;   
     private Vector<PhonemeDuration> alignDur=null;  // list of external duration per phone for alignment
                                                     // this are durations loaded from a external file
     private double newStateDurationFactor = 0.5;   // this is a factor that extends or shrinks the duration of a state
                                                    // it can be used to try to syncronise the duration specified in a external file
                                                    // and the number of frames in a external lf0 file
+    private int mlpgChunkSize;     // if > 0, generate parameters in chunks of this many frames while the vocoder is running
+    private int mlpgChunkOverlap;  // number of context frames on each side of a chunk
     
-    public String getRealisedDurations(){ return realisedDurations; }
-    public boolean getPhonemeAlignmentForDurations(){ return phoneAlignmentForDurations; }
     public boolean getStateAlignmentForDurations(){ return stateAlignmentForDurations;}    
     public Vector<PhonemeDuration> getAlignDurations(){ return alignDur; }
     public double getNewStateDurationFactor(){ return newStateDurationFactor; }
   
-    public void setRealisedDurations(String str){ realisedDurations=str; }
     public void setStateAlignmentForDurations(boolean bval){ stateAlignmentForDurations=bval; }
-    public void setPhonemeAlignmentForDurations(boolean bval){ phoneAlignmentForDurations=bval; }    
     public void setAlignDurations(Vector<PhonemeDuration> val){ alignDur = val; }
     public void setNewStateDurationFactor(double dval){ newStateDurationFactor=dval; }
     
@@ -147,9 +147,10 @@ public class HTSEngine extends InternalModule
               MaryDataType.TARGETFEATURES,
               MaryDataType.AUDIO,
               null);
-        phoneAlignmentForDurations=false;
         stateAlignmentForDurations=false;
         alignDur = null;       
+        mlpgChunkSize = MaryProperties.getInteger("htsengine.mlpg.chunksize", 0);
+        mlpgChunkOverlap = MaryProperties.getInteger("htsengine.mlpg.chunkoverlap", 40);
     }
 
     /**
@@ -176,47 +177,94 @@ public class HTSEngine extends InternalModule
     public MaryData process(MaryData d, List<Target> targetFeaturesList, List<Element> segmentsAndBoundaries, List<Element> tokensAndBoundaries)
     throws Exception
     {
-        /** The utterance model, um, is a Vector (or linked list) of Model objects. 
-         * It will contain the list of models for current label file. */
-        HTSUttModel um = new HTSUttModel();
-        HTSParameterGeneration pdf2par = new HTSParameterGeneration();
-        HTSVocoder par2speech = new HTSVocoder();
-        AudioInputStream ais;
-              
         Voice v = d.getDefaultVoice(); /* This is the way of getting a Voice through a MaryData type */
         assert v instanceof HMMVoice;
         HMMVoice hmmv = (HMMVoice)v;
+        /* Keep the voice loaded while its models are in use, and use the same models throughout */
+        hmmv.pin();
+        try {
+            return process(d, hmmv.getHMMData(), targetFeaturesList, segmentsAndBoundaries, tokensAndBoundaries);
+        } finally {
+            hmmv.unpin();
+        }
+    }
+
+    private MaryData process(MaryData d, HMMData htsData, List<Target> targetFeaturesList, List<Element> segmentsAndBoundaries, List<Element> tokensAndBoundaries)
+    throws Exception
+    {
+        /** The utterance model, um, is a Vector (or linked list) of Model objects. 
+         * It will contain the list of models for current label file. */
+        HTSUttModel um = new HTSUttModel();
+        AudioInputStream ais = null;
         
         //String context = d.getPlainText();
         //System.out.println("TARGETFEATURES:" + context);
               
         /* Process label file of Mary context features and creates UttModel um */
-        processTargetList(targetFeaturesList, segmentsAndBoundaries, um, hmmv.getHMMData());
+        processTargetList(targetFeaturesList, segmentsAndBoundaries, um, htsData);
+        
+        /* The parameter generation and vocoder, with their buffers, are reused from a previous request;
+         * the vocoder keeps them until it has produced all audio. */
+        HTSSynthesisContext context = HTSSynthesisContext.acquire();
+        HTSParameterGeneration pdf2par = context.getParameterGeneration();
+        HTSVocoder par2speech = context.getVocoder();
+        MaryData output;
+        boolean parametersGenerated = false;
+        boolean done = false;
+        try {
 
-        /* Process UttModel */
-        /* Generate sequence of speech parameter vectors, generate parameters out of sequence of pdf's */  
-        boolean debug = false;  /* so it does not save the generated parameters. */
-        pdf2par.htsMaximumLikelihoodParameterGeneration(um, hmmv.getHMMData(),"", debug);
-    
+            /* Process UttModel */
+            /* Generate sequence of speech parameter vectors, generate parameters out of sequence of pdf's */  
+            boolean debug = false;  /* so it does not save the generated parameters. */
+            if (mlpgChunkSize > 0) {
+                /* Streaming: only set up the parameter streams here, the vocoder is started right away
+                 * and follows the chunked parameter generation below. */
+                pdf2par.initParameterGeneration(um, htsData);
+            } else {
+                pdf2par.htsMaximumLikelihoodParameterGeneration(um, htsData,"", debug);
+                parametersGenerated = true;
+            }
         
-        /* set parameters for generation: f0Std, f0Mean and length, default values 1.0, 0.0 and 0.0 */
-        /* These values are fixed in HMMVoice */
+            /* set parameters for generation: f0Std, f0Mean and length, default values 1.0, 0.0 and 0.0 */
+            /* These values are fixed in HMMVoice */
         
-        /* Process generated parameters */
-        /* Synthesize speech waveform, generate speech out of sequence of parameters */
-        ais = par2speech.htsMLSAVocoder(pdf2par, hmmv.getHMMData());
+            /* Process generated parameters */
+            /* Synthesize speech waveform, generate speech out of sequence of parameters */
+            ais = par2speech.htsMLSAVocoder(pdf2par, htsData, context);
        
-        MaryData output = new MaryData(outputType(), d.getLocale());
-        if (d.getAudioFileFormat() != null) {
-            output.setAudioFileFormat(d.getAudioFileFormat());
-            if (d.getAudio() != null) {
-               // This (empty) AppendableSequenceAudioInputStream object allows a 
-               // thread reading the audio data on the other "end" to get to our data as we are producing it.
-                assert d.getAudio() instanceof AppendableSequenceAudioInputStream;
-                output.setAudio(d.getAudio());
+            output = new MaryData(outputType(), d.getLocale());
+            if (d.getAudioFileFormat() != null) {
+                output.setAudioFileFormat(d.getAudioFileFormat());
+                if (d.getAudio() != null) {
+                   // This (empty) AppendableSequenceAudioInputStream object allows a 
+                   // thread reading the audio data on the other "end" to get to our data as we are producing it.
+                    assert d.getAudio() instanceof AppendableSequenceAudioInputStream;
+                    output.setAudio(d.getAudio());
+                }
+            }     
+           output.appendAudio(ais);
+       
+           if (mlpgChunkSize > 0) {
+               pdf2par.htsChunkedParameterGeneration(um, htsData, mlpgChunkSize, mlpgChunkOverlap);
+               parametersGenerated = true;
+           }
+           done = true;
+        } finally {
+            if (!parametersGenerated) {
+                // A vocoder started above must not wait for parameters that will never come:
+                pdf2par.abortGeneration();
             }
-        }     
-       output.appendAudio(ais);
+            if (!done && ais != null) {
+                // Nor must it wait for a reader of the audio of a failed request, so that it
+                // finishes and the context can go back to the pool:
+                try {
+                    ais.close();
+                } catch (IOException e) {
+                    loggerHts.debug("Cannot close audio of failed request", e);
+                }
+            }
+            context.release();
+        }
                      
        // set the actualDurations in tokensAndBoundaries
        if(tokensAndBoundaries != null)
@@ -414,7 +462,8 @@ public class HTSEngine extends InternalModule
       int i, mstate,frame, k, newStateDuration;
       HTSModel m;
       CartTreeSet cart = htsData.getCartTreeSet();
-      realisedDurations = "#\n";
+      StringBuilder realisedDurations = new StringBuilder("#\n");
+      boolean phoneAlignmentForDurations;
       Integer numLab=0;
       double diffdurOld = 0.0;
       double diffdurNew = 0.0;
@@ -537,7 +586,7 @@ public class HTSEngine extends InternalModule
           m.setTotalDurMillisec((int)(fperiodmillisec * m.getTotalDur()));               
                     
           durSec = um.getTotalFrame() * fperiodsec;
-          realisedDurations += durSec.toString() +  " " + numLab.toString() + " " + m.getPhoneName() + "\n";
+          realisedDurations.append(durSec.toString()).append(" ").append(numLab.toString()).append(" ").append(m.getPhoneName()).append("\n");
           numLab++;
           
           
@@ -585,6 +634,8 @@ public class HTSEngine extends InternalModule
           //System.out.println("Vector m[" + i + "]=" + m.getPhoneName() ); 
       }
 
+      um.setRealisedDurations(realisedDurations.toString());
+
       loggerHts.info("Number of models in sentence numModel=" + um.getNumModel() + "  Total number of states numState=" + um.getNumState());
       loggerHts.info("Total number of frames=" + um.getTotalFrame() + "  Number of voiced frames=" + um.getLf0Frame());  
       
@@ -656,7 +707,7 @@ public class HTSEngine extends InternalModule
         
           /* save realised durations in a lab file */             
           FileWriter outputStream = new FileWriter(durFile);
-          outputStream.write(hmm_tts.realisedDurations);
+          outputStream.write(um.getRealisedDurations());
           outputStream.close();
           
           /* Generate sequence of speech parameter vectors, generate parameters out of sequence of pdf's */
@@ -38,6 +38,7 @@ import marytts.exceptions.MaryConfigurationException;
 import marytts.fst.FSTLookup;
 import marytts.modules.phonemiser.AllophoneSet;
 import marytts.modules.phonemiser.TrainedLTS;
+import marytts.modules.phonemiser.TranscriptionCache;
 import marytts.server.MaryProperties;
 import marytts.util.MaryRuntimeUtils;
 import marytts.util.MaryUtils;
@@ -65,6 +66,9 @@ public class JPhonemiser extends InternalModule
 
     protected AllophoneSet allophoneSet;
 
+    // the results of phonemise(), shared by all requests; null if disabled
+    private final TranscriptionCache transcriptionCache;
+
     public JPhonemiser(String propertyPrefix)
     throws IOException,  MaryConfigurationException
     {
@@ -120,13 +124,30 @@ public class JPhonemiser extends InternalModule
         		logger.info("User dictionary '"+userdictFilename+"' for locale '"+getLocale()+"' does not exist. Ignoring.");
         	}
         }
-        InputStream lexiconStream = MaryProperties.needStream(lexiconProperty);
-        lexicon = new FSTLookup(lexiconStream, lexiconProperty);
+        if (!MaryProperties.needProperty(lexiconProperty).startsWith("jar:")) {
+            // a file, possibly in the memory-mapped format:
+            lexicon = new FSTLookup(MaryProperties.needFilename(lexiconProperty));
+        } else {
+            InputStream lexiconStream = MaryProperties.needStream(lexiconProperty);
+            lexicon = new FSTLookup(lexiconStream, lexiconProperty);
+        }
         InputStream ltsStream = MaryProperties.needStream(ltsProperty);
         if(removetrailingonefromphonesProperty != null){
             this.removeTrailingOneFromPhones = MaryProperties.getBoolean(removetrailingonefromphonesProperty, true);
         }
         lts = new TrainedLTS(allophoneSet, ltsStream, this.removeTrailingOneFromPhones);
+        int cacheSize = MaryProperties.getInteger("phonemiser.cache.size", 16384);
+        transcriptionCache = cacheSize > 0 ? new TranscriptionCache(cacheSize) : null;
+    }
+
+    /**
+     * The fraction of words whose transcription was remembered from an earlier request.
+     * @return a value between 0 and 1, or 0 if the cache is disabled or was not used yet.
+     */
+    public double getCacheHitRate()
+    {
+        TranscriptionCache cache = transcriptionCache;
+        return cache == null ? 0 : cache.getHitRate();
     }
 
 
@@ -203,8 +224,33 @@ public class JPhonemiser extends InternalModule
      * ("lexicon", ... "rules"). 
      * @return a phonemisation of the text if one can be generated, or
      * null if no phonemisation method was successful.
+     * @see #phonemiseUncached(String, String, StringBuilder)
+     */
+    public final String phonemise(String text, String pos, StringBuilder g2pMethod)
+    {
+        TranscriptionCache cache = transcriptionCache;
+        if (cache == null) {
+            return phonemiseUncached(text, pos, g2pMethod);
+        }
+        TranscriptionCache.Entry entry = cache.get(text, pos);
+        if (entry == null) {
+            StringBuilder method = new StringBuilder();
+            String result = phonemiseUncached(text, pos, method);
+            cache.put(text, pos, result, method.toString());
+            g2pMethod.append(method);
+            return result;
+        }
+        g2pMethod.append(entry.g2pMethod);
+        return entry.transcription;
+    }
+
+    /**
+     * Phonemise the word text without looking at the transcriptions remembered so far.
+     * This is called by {@link #phonemise(String, String, StringBuilder)} for words
+     * it does not remember; subclasses for other languages override this method.
+     * Its result must depend on the text and part-of-speech only.
      */
-    public String phonemise(String text, String pos, StringBuilder g2pMethod)
+    protected String phonemiseUncached(String text, String pos, StringBuilder g2pMethod)
     {
         // First, try a simple userdict and lexicon lookup:
 
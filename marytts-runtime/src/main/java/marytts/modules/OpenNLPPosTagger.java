@@ -28,6 +28,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import marytts.datatypes.MaryData;
 import marytts.datatypes.MaryDataType;
@@ -46,6 +48,11 @@ import org.w3c.dom.traversal.TreeWalker;
 
 /**
  * Part-of-speech tagger using OpenNLP.
+ * <p>
+ * Since an OpenNLP tagger must not be used by several threads at the same time,
+ * each request takes a tagger from a pool, uses it for all sentences of its data, and gives it back.
+ * All taggers share one model. At most <code>postagger.pool.size</code> taggers
+ * (default: number of processors) are kept in the pool of each module.
  *
  * @author Marc Schr&ouml;der
  */
@@ -53,7 +60,10 @@ import org.w3c.dom.traversal.TreeWalker;
 public class OpenNLPPosTagger extends InternalModule
 {
     private String propertyPrefix;
-    private POSTaggerME tagger;
+    private POSModel model;
+    private final ConcurrentLinkedQueue<POSTaggerME> taggers = new ConcurrentLinkedQueue<POSTaggerME>();
+    private final AtomicInteger numPooled = new AtomicInteger();
+    private int maxPooled;
     private Map<String,String> posMapper = null;
 
     /**
@@ -81,8 +91,9 @@ public class OpenNLPPosTagger extends InternalModule
         InputStream modelStream = MaryProperties.needStream(propertyPrefix+"model");
         InputStream posMapperStream = MaryProperties.getStream(propertyPrefix+"posMap");
 
-        tagger = new POSTaggerME(new POSModel(modelStream));
+        model = new POSModel(modelStream);
         modelStream.close();
+        maxPooled = MaryProperties.getInteger("postagger.pool.size", Runtime.getRuntime().availableProcessors());
         if (posMapperStream != null) {
             posMapper = new HashMap<String, String>();
             BufferedReader br = new BufferedReader(new InputStreamReader(posMapperStream, "UTF-8"));
@@ -106,38 +117,66 @@ public class OpenNLPPosTagger extends InternalModule
     {
         
         Document doc = d.getDocument(); 
-        NodeIterator sentenceIt = MaryDomUtils.createNodeIterator(doc, doc, MaryXML.SENTENCE);
-        Element sentence;
-        while ((sentence = (Element) sentenceIt.nextNode()) != null) {
-            TreeWalker tokenIt = MaryDomUtils.createTreeWalker(sentence, MaryXML.TOKEN);
-            List<String> tokens = new ArrayList<String>();
-            Element t;
-            while ((t = (Element) tokenIt.nextNode()) != null) {
-                tokens.add(MaryDomUtils.tokenText(t));
-            }
-            List<String> partsOfSpeech = null;
-            synchronized(this) {
-                partsOfSpeech = tagger.tag(tokens);
-            }
-            tokenIt.setCurrentNode(sentence); // reset treewalker so we can walk through once again
-            Iterator<String> posIt = partsOfSpeech.iterator();
-            while ((t = (Element) tokenIt.nextNode()) != null) {
-                assert posIt.hasNext();
-                String pos = posIt.next();
-                if (posMapper != null) {
-                    String gpos = posMapper.get(pos);
-                    if (gpos == null) logger.warn("POS map file incomplete: do not know how to map '"+pos+"'");
-                    else pos = gpos;
+        // One tagger for all sentences of the data:
+        POSTaggerME tagger = acquireTagger();
+        try {
+            NodeIterator sentenceIt = MaryDomUtils.createNodeIterator(doc, doc, MaryXML.SENTENCE);
+            Element sentence;
+            while ((sentence = (Element) sentenceIt.nextNode()) != null) {
+                TreeWalker tokenIt = MaryDomUtils.createTreeWalker(sentence, MaryXML.TOKEN);
+                List<String> tokens = new ArrayList<String>();
+                Element t;
+                while ((t = (Element) tokenIt.nextNode()) != null) {
+                    tokens.add(MaryDomUtils.tokenText(t));
+                }
+                List<String> partsOfSpeech = tagger.tag(tokens);
+                tokenIt.setCurrentNode(sentence); // reset treewalker so we can walk through once again
+                Iterator<String> posIt = partsOfSpeech.iterator();
+                while ((t = (Element) tokenIt.nextNode()) != null) {
+                    assert posIt.hasNext();
+                    String pos = posIt.next();
+                    if (posMapper != null) {
+                        String gpos = posMapper.get(pos);
+                        if (gpos == null) logger.warn("POS map file incomplete: do not know how to map '"+pos+"'");
+                        else pos = gpos;
+                    }
+                    t.setAttribute("pos", pos);
                 }
-                t.setAttribute("pos", pos);
             }
+        } finally {
+            releaseTagger(tagger);
         }
         
         MaryData output = new MaryData(outputType(), d.getLocale());
         output.setDocument(doc);
         return output;
     }
-    
+
+    /**
+     * Get a tagger from the pool, or a new one if the pool is empty.
+     * The caller must release it when done.
+     */
+    private POSTaggerME acquireTagger()
+    {
+        POSTaggerME tagger = taggers.poll();
+        if (tagger == null) {
+            return new POSTaggerME(model);
+        }
+        numPooled.decrementAndGet();
+        return tagger;
+    }
+
+    /**
+     * Give a tagger back to the pool, unless the pool is full.
+     */
+    private void releaseTagger(POSTaggerME tagger)
+    {
+        if (numPooled.incrementAndGet() <= maxPooled) {
+            taggers.offer(tagger);
+        } else {
+            numPooled.decrementAndGet();
+        }
+    }
 
 }
 
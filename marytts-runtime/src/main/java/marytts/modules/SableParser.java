@@ -20,9 +20,6 @@
 package marytts.modules;
 
 // TraX classes
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMResult;
@@ -31,6 +28,8 @@ import javax.xml.transform.stream.StreamSource;
 
 import marytts.datatypes.MaryData;
 import marytts.datatypes.MaryDataType;
+import marytts.util.dom.CompiledStylesheet;
+import marytts.util.dom.DomUtils;
 import marytts.util.dom.LoggingErrorHandler;
 
 import org.w3c.dom.Document;
@@ -44,11 +43,9 @@ import org.w3c.dom.Document;
 
 public class SableParser extends InternalModule
 {
-    // One stylesheet can be used (read) by multiple threads:
-    private static Templates stylesheet = null;
+    // One stylesheet can be used by multiple threads, each with its own transformer:
+    private static CompiledStylesheet stylesheet = null;
 
-    private DocumentBuilderFactory dbFactory = null;
-    private DocumentBuilder docBuilder = null;
     private boolean doWarnClient = false;
 
     public SableParser()
@@ -72,13 +69,7 @@ public class SableParser extends InternalModule
             TransformerFactory tFactory = TransformerFactory.newInstance();
             StreamSource stylesheetStream = new StreamSource
                 (this.getClass().getResourceAsStream("sable-to-mary.xsl"));
-            stylesheet = tFactory.newTemplates( stylesheetStream );
-        }
-        if (dbFactory == null) {
-            dbFactory = DocumentBuilderFactory.newInstance();
-        }
-        if (docBuilder == null) {
-            docBuilder = dbFactory.newDocumentBuilder();
+            stylesheet = new CompiledStylesheet(tFactory, stylesheetStream);
         }
         super.startup();
     }
@@ -87,7 +78,7 @@ public class SableParser extends InternalModule
     throws Exception
     {
         DOMSource domSource = new DOMSource(d.getDocument());
-        Transformer transformer = stylesheet.newTransformer();
+        Transformer transformer = stylesheet.getTransformer();
 
         // Log transformation errors to client:
         if (doWarnClient) {
@@ -96,7 +87,7 @@ public class SableParser extends InternalModule
         }
 
         // Transform DOMSource into a DOMResult
-        Document maryxmlDocument = docBuilder.newDocument();
+        Document maryxmlDocument = DomUtils.createDocument();
         DOMResult domResult = new DOMResult(maryxmlDocument);
         transformer.transform(domSource, domResult);
         MaryData result = new MaryData(outputType(), d.getLocale());
@@ -29,6 +29,7 @@ import marytts.datatypes.MaryXML;
 import marytts.features.FeatureRegistry;
 import marytts.features.FeatureVector;
 import marytts.features.TargetFeatureComputer;
+import marytts.features.UtteranceIndex;
 import marytts.modules.synthesis.Voice;
 import marytts.unitselection.select.Target;
 import marytts.unitselection.select.UnitSelector;
@@ -104,12 +105,12 @@ public class TargetFeatureLister extends InternalModule
     {
         String pauseSymbol = featureComputer.getPauseSymbol();
         List<Target> targets = overridableCreateTargetsWithPauses(segmentsAndBoundaries, pauseSymbol);
+        UtteranceIndex.attachTo(targets);
         // Third, compute the feature vectors and convert them to text
         String header = featureComputer.getAllFeatureProcessorNamesAndValues();
         StringBuilder text = new StringBuilder();
         StringBuilder bin = new StringBuilder();
-        for (Target target : targets) {
-            FeatureVector features = featureComputer.computeFeatureVector(target);
+        for (FeatureVector features : featureComputer.computeFeatureVectors(targets)) {
             text.append(featureComputer.toStringValues(features)).append("\n");
             bin.append(features.toString()).append("\n");
         }
@@ -129,9 +130,10 @@ public class TargetFeatureLister extends InternalModule
     {
         String pauseSymbol = featureComputer.getPauseSymbol();
         List<Target> targets = overridableCreateTargetsWithPauses(segmentsAndBoundaries, pauseSymbol);
-        for (Target target : targets) {
-            FeatureVector features = featureComputer.computeFeatureVector(target);
-            target.setFeatureVector(features);             
+        UtteranceIndex.attachTo(targets);
+        FeatureVector[] features = featureComputer.computeFeatureVectors(targets);
+        for (int i=0; i<features.length; i++) {
+            targets.get(i).setFeatureVector(features[i]);
         }
         return targets;
     }
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.modules;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import marytts.datatypes.MaryData;
+
+import com.sun.speech.freetts.Utterance;
+
+/**
+ * Takes the place of an {@link Utt2XMLBase} module which is directly followed by an {@link XML2UttBase} module:
+ * instead of converting the FreeTTS utterances into MaryXML and immediately back, it hands the utterances
+ * of one FreeTTS module on to the next FreeTTS module. Consecutive FreeTTS modules then all work on the same
+ * utterances, as they would in FreeTTS itself, and MaryXML is only created at the end of the chain.
+ * <p>
+ * The utterances passed on are those the MaryXML would be created from, so they can carry some information
+ * that does not survive the conversion into MaryXML and back.
+ *
+ * @author agent
+ */
+public class UtterancePassThrough extends InternalModule
+{
+    // one instance per pair of modules, so that each pair is timed as one module:
+    private static final Map<String, UtterancePassThrough> instances = new ConcurrentHashMap<String, UtterancePassThrough>();
+
+    /**
+     * Replace each {@link Utt2XMLBase} module in the given processing path which is directly followed
+     * by an {@link XML2UttBase} module for its output type by an {@link UtterancePassThrough}.
+     * @param modules the modules in the order in which they process the data
+     * @return a new list of modules; the given list is not modified.
+     */
+    public static List<MaryModule> fuse(List<MaryModule> modules)
+    {
+        List<MaryModule> fused = new ArrayList<MaryModule>(modules.size());
+        for (int i=0; i<modules.size(); i++) {
+            MaryModule m = modules.get(i);
+            MaryModule next = i+1 < modules.size() ? modules.get(i+1) : null;
+            if (m instanceof Utt2XMLBase && next instanceof XML2UttBase
+                    && m.outputType().equals(next.inputType())) {
+                fused.add(getInstance(m, next));
+                i++;
+            } else {
+                fused.add(m);
+            }
+        }
+        return fused;
+    }
+
+    private static UtterancePassThrough getInstance(MaryModule utt2xml, MaryModule xml2utt)
+    {
+        String name = utt2xml.name() + " + " + xml2utt.name();
+        UtterancePassThrough instance = instances.get(name);
+        if (instance == null) {
+            instance = new UtterancePassThrough(name, utt2xml, xml2utt);
+            instances.put(name, instance);
+        }
+        return instance;
+    }
+
+    private UtterancePassThrough(String name, MaryModule utt2xml, MaryModule xml2utt)
+    {
+        super(name, utt2xml.inputType(), xml2utt.outputType(), xml2utt.getLocale());
+        // There is nothing to start up:
+        state = MODULE_RUNNING;
+    }
+
+    /**
+     * Pass the utterances on, with the data that {@link XML2UttBase#process(MaryData)} would set on its output,
+     * and with the request settings of the input, which the two replaced modules would not have changed.
+     */
+    public MaryData process(MaryData d)
+    throws Exception
+    {
+        MaryData output = new MaryData(outputType(), d.getLocale());
+        List<Utterance> utterances = d.getUtterances();
+        if (utterances.size() > 0) {
+            utterances.get(0).setFirst(true);
+            utterances.get(utterances.size()-1).setLast(true);
+        }
+        output.setUtterances(utterances);
+        output.setDefaultVoice(d.getDefaultVoice());
+        output.setDefaultStyle(d.getDefaultStyle());
+        output.setDefaultEffects(d.getDefaultEffects());
+        output.setAudioFileFormat(d.getAudioFileFormat());
+        output.setOutputParams(d.getOutputParams());
+        return output;
+    }
+}
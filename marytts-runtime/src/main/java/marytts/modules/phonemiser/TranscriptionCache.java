@@ -0,0 +1,132 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.modules.phonemiser;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed-size, lock-free cache of the transcriptions of words, given their part-of-speech,
+ * together with the method by which each transcription was obtained.
+ * Each (text, pos) pair maps to exactly one slot; a new entry simply replaces whatever
+ * was in its slot. This keeps memory bounded and needs no locking, at the price of
+ * occasionally losing a frequent word to a colliding one.
+ *
+ * @author agent
+ */
+public class TranscriptionCache
+{
+    /**
+     * A cached transcription.
+     */
+    public static final class Entry
+    {
+        final String text;
+        final String pos;
+        /** the transcription, or null if no transcription could be found */
+        public final String transcription;
+        /** the method by which the transcription was found, e.g. "lexicon" or "rules" */
+        public final String g2pMethod;
+        Entry(String text, String pos, String transcription, String g2pMethod)
+        {
+            this.text = text;
+            this.pos = pos;
+            this.transcription = transcription;
+            this.g2pMethod = g2pMethod;
+        }
+    }
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param size the requested number of slots; rounded up to the next power of two.
+     */
+    public TranscriptionCache(int size)
+    {
+        int n = 1;
+        while (n < size && n < (1 << 30)) {
+            n <<= 1;
+        }
+        slots = new AtomicReferenceArray<Entry>(n);
+        mask = n - 1;
+    }
+
+    private int slot(String text, String pos)
+    {
+        int h = text.hashCode() * 0x9E3779B9 + (pos == null ? 0 : pos.hashCode());
+        h ^= (h >>> 16);
+        h *= 0x85EBCA6B;
+        h ^= (h >>> 13);
+        return h & mask;
+    }
+
+    /**
+     * Look up the transcription of the given text with the given part-of-speech.
+     * @param text the text of the word
+     * @param pos the part-of-speech, or null
+     * @return the cached entry, or null if it is not in the cache.
+     */
+    public Entry get(String text, String pos)
+    {
+        Entry e = slots.get(slot(text, pos));
+        if (e != null && e.text.equals(text)
+                && (pos == null ? e.pos == null : pos.equals(e.pos))) {
+            hits.incrementAndGet();
+            return e;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Remember the transcription of the given text with the given part-of-speech.
+     * @param transcription the transcription, or null if none could be found
+     * @param g2pMethod the method by which the transcription was found
+     */
+    public void put(String text, String pos, String transcription, String g2pMethod)
+    {
+        slots.lazySet(slot(text, pos), new Entry(text, pos, transcription, g2pMethod));
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * The fraction of lookups which found their transcription in the cache.
+     * @return a value between 0 and 1, or 0 if the cache was not used yet.
+     */
+    public double getHitRate()
+    {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+}
@@ -153,7 +153,7 @@ public class HMMSynthesizer implements WaveformSynthesizer {
              * TreeSet ts, a ModelSet ms and load the context feature list used in this voice. */
              
              HMMVoice v = new HMMVoice(voiceName, this);
-             Voice.registerVoice(v);
+             VoiceLifecycleManager.register(v);
         }
         logger.info("started.");
                
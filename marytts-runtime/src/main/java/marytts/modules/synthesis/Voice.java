@@ -26,6 +26,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.reflect.Constructor;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -161,6 +164,11 @@ public class Voice
     protected DirectedGraph f0Graph;
     protected FeatureFileReader f0ContourFeatures;
     protected Map<String, Model> acousticModels;
+    private final Object dataLock = new Object();
+    private volatile Object data = null; // as returned by loadData(), or null if not loaded
+    private int pins = 0; // guarded by dataLock
+    private volatile long lastUsed = 0;
+    private volatile long dataMemory = 0;
     
     @Deprecated
     public Voice(String name, Locale locale, 
@@ -592,6 +600,192 @@ public class Voice
         return otherModels;
     }
 
+    ////////// voice data loaded on demand //////////
+
+    /**
+     * Whether this voice has data that is loaded by {@link #loadData()}.
+     * The default is false; subclasses which override loadData() must return true.
+     */
+    public boolean hasLoadableData()
+    {
+        return false;
+    }
+
+    /**
+     * Load the data needed for synthesis with this voice, e.g. a unit database or HMM models.
+     * Called by {@link #ensureLoaded()} if the data is not currently loaded.
+     * Subclasses with such data override this method and keep no other references to the data,
+     * so that {@link #unload()} can release it.
+     * @return an object holding all the data, which is returned by {@link #ensureLoaded()} until the voice is unloaded.
+     * @throws MaryConfigurationException if the data cannot be loaded.
+     */
+    protected Object loadData() throws MaryConfigurationException
+    {
+        return null;
+    }
+
+    /**
+     * An estimate of the heap memory that the data of this voice takes when it is loaded, in bytes.
+     * Used unless the memory is configured as <code>voice.(name).memory.mb</code>.
+     * The default is 0; subclasses with loadable data usually add up the sizes of their data files.
+     */
+    protected long estimateDataMemory()
+    {
+        return 0;
+    }
+
+    /**
+     * The size of the file named by the given property value, which may be a file name or,
+     * if it starts with "jar:", a classpath resource.
+     * @return the size in bytes, or 0 if the value is null or the size is not known.
+     */
+    protected static long getFileSize(String fileNameOrResource)
+    {
+        if (fileNameOrResource == null) {
+            return 0;
+        }
+        if (!fileNameOrResource.startsWith("jar:")) {
+            return new File(fileNameOrResource).length();
+        }
+        URL url = Voice.class.getResource(fileNameOrResource.substring("jar:".length()));
+        if (url == null) {
+            return 0;
+        }
+        try {
+            if ("file".equals(url.getProtocol())) {
+                return new File(url.toURI()).length();
+            }
+            URLConnection connection = url.openConnection();
+            if (connection instanceof JarURLConnection) {
+                return Math.max(0, ((JarURLConnection) connection).getJarEntry().getSize());
+            }
+        } catch (Exception e) {
+            // size not known
+        }
+        return 0;
+    }
+
+    /**
+     * Make sure that the data of this voice is loaded, loading it if necessary,
+     * and note that the voice is being used.
+     * @return the data as returned by {@link #loadData()}. It is never null for voices which have loadable data,
+     * and stays usable even if the voice is unloaded while the caller is using it.
+     * @throws MaryConfigurationException if the data cannot be loaded.
+     */
+    public Object ensureLoaded() throws MaryConfigurationException
+    {
+        lastUsed = System.currentTimeMillis();
+        if (!hasLoadableData()) {
+            return null;
+        }
+        Object loaded = data;
+        if (loaded != null) {
+            return loaded;
+        }
+        long loadTime;
+        synchronized (dataLock) {
+            if (data != null) {
+                return data;
+            }
+            long startTime = System.currentTimeMillis();
+            loaded = loadData();
+            if (loaded == null) {
+                throw new MaryConfigurationException("No data loaded for voice '"+voiceName+"'");
+            }
+            loadTime = System.currentTimeMillis() - startTime;
+            long configured = MaryProperties.getInteger("voice."+voiceName+".memory.mb", -1);
+            dataMemory = configured >= 0 ? configured * 1024L * 1024L : estimateDataMemory();
+            data = loaded;
+        }
+        // outside the lock, as this may release other voices:
+        VoiceLifecycleManager.voiceLoaded(this, loadTime);
+        return loaded;
+    }
+
+    /**
+     * Like {@link #ensureLoaded()}, for use in getters which cannot throw a checked exception.
+     * @throws IllegalStateException if the data cannot be loaded.
+     */
+    protected Object useData()
+    {
+        try {
+            return ensureLoaded();
+        } catch (MaryConfigurationException e) {
+            throw new IllegalStateException("Cannot load data for voice '"+voiceName+"'", e);
+        }
+    }
+
+    /**
+     * Keep the data of this voice from being unloaded until {@link #unpin()} is called,
+     * e.g. while a request is using the voice. Pinning does not load the data.
+     * Every call must be matched by a call to unpin().
+     */
+    public void pin()
+    {
+        synchronized (dataLock) {
+            pins++;
+        }
+        lastUsed = System.currentTimeMillis();
+    }
+
+    public void unpin()
+    {
+        synchronized (dataLock) {
+            if (pins <= 0) {
+                throw new IllegalStateException("Voice '"+voiceName+"' is not pinned");
+            }
+            pins--;
+        }
+        lastUsed = System.currentTimeMillis();
+    }
+
+    public boolean isPinned()
+    {
+        synchronized (dataLock) {
+            return pins > 0;
+        }
+    }
+
+    /**
+     * Release the data of this voice if it is loaded and not pinned. It will be loaded again when it is next used.
+     * Callers which already got the data from {@link #ensureLoaded()} can go on using it.
+     * @return true if the data was loaded and has been released, false otherwise.
+     */
+    public boolean unload()
+    {
+        synchronized (dataLock) {
+            if (data == null || pins > 0) {
+                return false;
+            }
+            data = null;
+            dataMemory = 0;
+            return true;
+        }
+    }
+
+    public boolean isLoaded()
+    {
+        return data != null;
+    }
+
+    /**
+     * The time when this voice was last used, as returned by System.currentTimeMillis(),
+     * or 0 if the voice was not used yet.
+     */
+    public long getLastUsed()
+    {
+        return lastUsed;
+    }
+
+    /**
+     * The heap memory taken by the data of this voice, in bytes, as configured or estimated
+     * by {@link #estimateDataMemory()}; 0 if the data is not loaded.
+     */
+    public long getDataMemory()
+    {
+        return dataMemory;
+    }
+
     ////////// static stuff //////////
 
     /**
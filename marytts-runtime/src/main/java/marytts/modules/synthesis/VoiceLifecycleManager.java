@@ -0,0 +1,232 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.modules.synthesis;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import marytts.exceptions.MaryConfigurationException;
+import marytts.server.MaryProperties;
+import marytts.util.MaryUtils;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Decides when the data of voices (unit databases, timelines, HMM models) is loaded and released.
+ * Voices are registered through {@link #register(Voice)}; their data is then
+ * loaded right away, or, if <code>voices.lazyload</code> is true, when the voice is first used.
+ * Voices which have not been used for <code>voices.idleunload.seconds</code> are released,
+ * as are the least recently used voices while the loaded voices together take more heap than
+ * <code>voices.heapbudget.mb</code>. A released voice is loaded again when it is next used.
+ *
+ * @author agent
+ */
+public class VoiceLifecycleManager
+{
+    private static final int MAX_EVENTS = 100;
+    private static final Logger logger = MaryUtils.getLogger("VoiceLifecycleManager");
+    private static final LinkedList<String> events = new LinkedList<String>();
+    private static Timer timer;
+
+    /**
+     * Register the voice with {@link Voice#registerVoice(Voice)}, loading its data
+     * unless voices are to be loaded on demand.
+     * @throws MaryConfigurationException if the data of the voice cannot be loaded.
+     */
+    public static void register(Voice voice) throws MaryConfigurationException
+    {
+        if (!isLazyLoading()) {
+            voice.ensureLoaded();
+        }
+        Voice.registerVoice(voice);
+    }
+
+    public static boolean isLazyLoading()
+    {
+        return MaryProperties.getBoolean("voices.lazyload", false);
+    }
+
+    /**
+     * Start checking periodically for voices that have been idle for too long, if so configured.
+     */
+    public static synchronized void startup()
+    {
+        long idleMillis = 1000L * MaryProperties.getInteger("voices.idleunload.seconds", 0);
+        if (idleMillis <= 0 || timer != null) {
+            return;
+        }
+        long period = Math.max(1000, idleMillis / 4);
+        timer = new Timer("VoiceLifecycleManager", true);
+        timer.schedule(new TimerTask() {
+            public void run() {
+                unloadIdleVoices();
+            }
+        }, period, period);
+    }
+
+    public static synchronized void shutdown()
+    {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+    }
+
+    /**
+     * Called by {@link Voice#ensureLoaded()} when the data of a voice has been loaded.
+     */
+    static void voiceLoaded(Voice voice, long loadTime)
+    {
+        addEvent("loaded "+voice.getName()+" in "+loadTime+" ms, about "+toMB(voice.getDataMemory())+" MB");
+        enforceHeapBudget(voice);
+    }
+
+    /**
+     * Release the data of voices that have not been used for the configured idle time.
+     */
+    static void unloadIdleVoices()
+    {
+        long idleMillis = 1000L * MaryProperties.getInteger("voices.idleunload.seconds", 0);
+        if (idleMillis <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Voice v : getLoadedVoices()) {
+            long idle = now - v.getLastUsed();
+            if (idle > idleMillis && v.unload()) {
+                addEvent("unloaded "+v.getName()+" after "+(idle / 1000)+" s idle");
+            }
+        }
+    }
+
+    /**
+     * Release the least recently used voices other than the given one while the loaded
+     * voices together take more than the heap budget.
+     */
+    private static void enforceHeapBudget(Voice keep)
+    {
+        long budget = 1024L * 1024 * MaryProperties.getInteger("voices.heapbudget.mb", 0);
+        if (budget <= 0) {
+            return;
+        }
+        enforceHeapBudget(keep, getLoadedVoices(), budget);
+    }
+
+    /**
+     * Release the least recently used of the given loaded voices other than keep, and other than
+     * pinned voices, while they together take more than budget bytes.
+     */
+    static void enforceHeapBudget(Voice keep, List<Voice> loaded, long budget)
+    {
+        loaded = new ArrayList<Voice>(loaded);
+        long total = 0;
+        for (Voice v : loaded) {
+            total += v.getDataMemory();
+        }
+        Collections.sort(loaded, new Comparator<Voice>() {
+            public int compare(Voice v1, Voice v2) {
+                return v1.getLastUsed() < v2.getLastUsed() ? -1 : v1.getLastUsed() > v2.getLastUsed() ? 1 : 0;
+            }
+        });
+        for (Voice v : loaded) {
+            if (total <= budget) {
+                break;
+            }
+            if (v == keep) {
+                continue;
+            }
+            long memory = v.getDataMemory();
+            if (v.unload()) {
+                total -= memory;
+                addEvent("unloaded "+v.getName()+" to stay within the heap budget of "+toMB(budget)+" MB");
+            }
+        }
+    }
+
+    private static List<Voice> getLoadedVoices()
+    {
+        List<Voice> loaded = new ArrayList<Voice>();
+        for (Voice v : new ArrayList<Voice>(Voice.getAvailableVoices())) {
+            if (v.hasLoadableData() && v.isLoaded()) {
+                loaded.add(v);
+            }
+        }
+        return loaded;
+    }
+
+    private static void addEvent(String event)
+    {
+        logger.info(event);
+        String line = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()) + " " + event;
+        synchronized (events) {
+            events.addLast(line);
+            if (events.size() > MAX_EVENTS) {
+                events.removeFirst();
+            }
+        }
+    }
+
+    private static long toMB(long bytes)
+    {
+        return bytes / (1024 * 1024);
+    }
+
+    /**
+     * A plain-text report with one line per voice, giving whether its data is loaded,
+     * its approximate heap memory and when it was last used, followed by the most recent
+     * load and unload events.
+     */
+    public static String getStatus()
+    {
+        StringBuilder buf = new StringBuilder();
+        long now = System.currentTimeMillis();
+        long total = 0;
+        for (Voice v : new ArrayList<Voice>(Voice.getAvailableVoices())) {
+            if (!v.hasLoadableData()) {
+                continue;
+            }
+            buf.append(v.getName()).append(" ");
+            if (v.isLoaded()) {
+                buf.append("loaded ").append(toMB(v.getDataMemory())).append(" MB");
+                total += v.getDataMemory();
+            } else {
+                buf.append("not loaded");
+            }
+            if (v.getLastUsed() > 0) {
+                buf.append(", last used ").append((now - v.getLastUsed()) / 1000).append(" s ago");
+            }
+            buf.append("\n");
+        }
+        buf.append("Total: ").append(toMB(total)).append(" MB\n");
+        synchronized (events) {
+            for (String e : events) {
+                buf.append(e).append("\n");
+            }
+        }
+        return buf.toString();
+    }
+}
@@ -31,7 +31,6 @@ import java.lang.reflect.Method;
 import java.net.ServerSocket;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -57,6 +56,7 @@ import marytts.modules.MaryModule;
 import marytts.modules.ModuleRegistry;
 import marytts.modules.Synthesis;
 import marytts.modules.synthesis.Voice;
+import marytts.modules.synthesis.VoiceLifecycleManager;
 import marytts.util.MaryCache;
 import marytts.util.MaryRuntimeUtils;
 import marytts.util.MaryUtils;
@@ -296,6 +296,7 @@ public class Mary {
         
         // Instantiate module classes and startup modules:
         startModules();
+        VoiceLifecycleManager.startup();
 
         logger.info("Startup complete.");
         currentState = STATE_RUNNING;
@@ -383,6 +384,10 @@ public class Mary {
     {
         if (currentState != STATE_RUNNING) throw new IllegalStateException("MARY system is not running");
         currentState = STATE_SHUTTING_DOWN;
+        VoiceLifecycleManager.shutdown();
+        if (SynthesisExecutor.haveExecutor()) {
+            SynthesisExecutor.getExecutor().shutdown();
+        }
         logger.info("Shutting down modules...");
         // Shut down modules:
         for (MaryModule m : ModuleRegistry.getAllModules()) {
@@ -394,7 +399,7 @@ public class Mary {
             MaryCache cache = MaryCache.getCache();
             try {
                 cache.shutdown();
-            } catch (SQLException e) {
+            } catch (IOException e) {
                 logger.warn("Cannot shutdown cache: ", e);
             }
         }
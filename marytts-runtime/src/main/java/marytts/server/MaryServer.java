@@ -37,6 +37,7 @@ import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.sound.sampled.AudioFileFormat;
 import javax.sound.sampled.AudioFormat;
@@ -63,7 +64,8 @@ import org.apache.log4j.Logger;
 /**
  * Listen for clients on socket port
  *          <code>MaryProperties.socketPort()</code>.
- *          For each new client, create a new RequestHandler thread.
+ *          For each new client, create a new RequestHandler and schedule it
+ *          on the shared {@link SynthesisExecutor}.
  * <p>
  * Clients are expected to follow the following <b>protocol</b>:
  * <p>
@@ -526,9 +528,14 @@ public class MaryServer implements Runnable {
             } catch (UnsupportedOperationException e) {
                 logger.info("Cannot remove clientMap entry", e);
             }
-            //   -- send off to new request
+            //   -- send off to the synthesis executor
             RequestHandler rh = new RequestHandler(request, infoSocket, client, reader);
-            rh.start();
+            try {
+                SynthesisExecutor.getExecutor().submit(rh, request.getDefaultVoice());
+            } catch (RejectedExecutionException e) {
+                logger.warn("Rejecting request " + id + ": " + e.getMessage());
+                rh.reject(e.getMessage());
+            }
             return true;
         }
 
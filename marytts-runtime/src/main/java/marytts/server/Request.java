@@ -25,7 +25,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Reader;
-import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -34,6 +34,13 @@ import java.util.Map;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import javax.sound.sampled.AudioFileFormat;
 import javax.sound.sampled.AudioInputStream;
@@ -47,10 +54,12 @@ import marytts.datatypes.MaryDataType;
 import marytts.datatypes.MaryXML;
 import marytts.modules.MaryModule;
 import marytts.modules.ModuleRegistry;
+import marytts.modules.UtterancePassThrough;
 import marytts.modules.synthesis.Voice;
 import marytts.util.MaryCache;
 import marytts.util.MaryRuntimeUtils;
 import marytts.util.MaryUtils;
+import marytts.util.Metrics;
 import marytts.util.data.audio.AppendableSequenceAudioInputStream;
 import marytts.util.dom.DomUtils;
 import marytts.util.dom.MaryDomUtils;
@@ -97,13 +106,55 @@ public class Request {
     protected MaryData inputData;
     protected MaryData outputData;
     protected boolean streamAudio = false;;
-    protected boolean abortRequested = false;
+    protected volatile boolean abortRequested = false;
 
     // Keep track of timing info for each module
     // (map MaryModule onto Long)
     protected Set<MaryModule> usedModules;
     protected Map<MaryModule,Long> timingInfo;
 
+    private static final Metrics.Histogram requestTime = Metrics.histogram("mary_request_duration_seconds",
+            "Time taken to process a request", Metrics.TIME_BUCKETS);
+    private static final Metrics.Histogram parseTime = Metrics.histogram("mary_input_parse_duration_seconds",
+            "Time taken to parse the XML input of a request", Metrics.TIME_BUCKETS, "validating", "false");
+    private static final Metrics.Histogram validatingParseTime = Metrics.histogram("mary_input_parse_duration_seconds",
+            "Time taken to parse the XML input of a request", Metrics.TIME_BUCKETS, "validating", "true");
+    // the time histogram of each module, so that the registry is not searched for every chunk:
+    private static final Map<MaryModule, Metrics.Histogram> moduleTimes = new ConcurrentHashMap<MaryModule, Metrics.Histogram>();
+
+    private static ExecutorService paragraphExecutor;
+
+    /**
+     * The thread pool shared by all requests for processing paragraphs in parallel,
+     * if <code>request.parallelparagraphs</code> is true. The number of threads is given by
+     * <code>request.parallelparagraphs.threads</code> (default: number of processors).
+     * @return the paragraph executor, created on first use.
+     */
+    private static synchronized ExecutorService getParagraphExecutor() {
+        if (paragraphExecutor == null) {
+            int numThreads = MaryProperties.getInteger("request.parallelparagraphs.threads", Runtime.getRuntime().availableProcessors());
+            paragraphExecutor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+                private int threadNumber = 1;
+                public synchronized Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "Paragraph " + threadNumber++);
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return paragraphExecutor;
+    }
+
+    private static Metrics.Histogram getModuleTime(MaryModule m) {
+        Metrics.Histogram h = moduleTimes.get(m);
+        if (h == null) {
+            h = Metrics.histogram("mary_module_duration_seconds", "Time taken by a module to process one chunk of a request",
+                    Metrics.TIME_BUCKETS, "module", m.name());
+            moduleTimes.put(m, h);
+        }
+        return h;
+    }
+
     public Request(MaryDataType inputType, MaryDataType outputType, Locale defaultLocale,
                    Voice defaultVoice, String defaultEffects, String defaultStyle,
                    int id, AudioFileFormat audioFileFormat)
@@ -252,7 +303,14 @@ public class Request {
         } else if (inputType.isMaryXML()) {
             inputData.setValidating(MaryProperties.getBoolean("maryxml.validate.input"));
         }
+        long parseStart = System.nanoTime();
         inputData.setData(inputText);
+        if (inputType.isXMLType()) {
+            long parseNanos = System.nanoTime() - parseStart;
+            boolean validated = inputData.getValidating();
+            (validated ? validatingParseTime : parseTime).observeNanos(parseNanos);
+            logger.info("Input parsed " + (validated ? "and validated " : "") + "in " + (parseNanos / 1000000) + " ms.");
+        }
         if (defaultVoice == null) {
             defaultVoice = Voice.getSuitableVoice(inputData);
         }
@@ -264,10 +322,25 @@ public class Request {
     
     /**
      * Process the input data to produce the output data.
+     * The default voice of the request is pinned meanwhile, so that it is not unloaded while the request uses it.
      * @see #getOutputData for direct access to the resulting output data
      * @see #writeOutputData for writing the output data to a stream
      */
     public void process() throws Exception {
+        Voice voice = defaultVoice;
+        if (voice != null) {
+            voice.pin();
+        }
+        try {
+            processData();
+        } finally {
+            if (voice != null) {
+                voice.unpin();
+            }
+        }
+    }
+
+    private void processData() throws Exception {
         assert Mary.currentState() == Mary.STATE_RUNNING;
         long startTime = System.currentTimeMillis();
         if (inputData == null)
@@ -282,6 +355,7 @@ public class Request {
         // Is inputdata of a type that must be converted to RAWMARYXML?
         if (outputType.name().equals("PRAAT_TEXTGRID")) { // never chunk for PRAAT_TEXTGRID
             outputData = processOrLookupOneChunk(inputData, outputType, outputTypeParams);
+            requestTime.observe((System.currentTimeMillis() - startTime) / 1000.);
             return;
         } else if (inputType.isTextType() && inputType.name().startsWith("TEXT")
             || inputType.isXMLType() && !inputType.isMaryXML()) {
@@ -302,6 +376,7 @@ public class Request {
                 appendableAudioStream.append(outputData.getAudio());
                 appendableAudioStream.doneAppending();
             }
+            requestTime.observe((System.currentTimeMillis() - startTime) / 1000.);
             return;
         }
         assert rawmaryxml != null && rawmaryxml.getType().equals(MaryDataType.get("RAWMARYXML"))
@@ -323,42 +398,127 @@ public class Request {
             outputData.setAudioFileFormat(audioFileFormat);
         }
         int len = inputDataList.getLength();
-        for (int i=0; i<len && !abortRequested; i++) {
-            Element currentInputParagraph = (Element) inputDataList.item(i);
-            assert currentInputParagraph.getTagName().equals(MaryXML.PARAGRAPH);
-            NodeList outputNodeList = null;
-            // Only process paragraph if there is any text below it:
-            if (MaryDomUtils.getPlainTextBelow(currentInputParagraph).trim().equals("")) {
-                outputNodeList = currentInputParagraph.getChildNodes();
-            } else { // process "real" data:
-                MaryData oneInputData = extractParagraphAsMaryData(rawmaryxml, currentInputParagraph);
-                //assert oneInputData.getDefaultVoice() != null;
-                MaryData oneOutputData = processOrLookupOneChunk(oneInputData, outputType, outputTypeParams);
-                //assert oneOutputData.getDefaultVoice() != null;
-                if (outputType.isMaryXML()) {
-                    NodeList outParagraphList = oneOutputData.getDocument().getDocumentElement().getElementsByTagName(MaryXML.PARAGRAPH);
-                    // This does not hold for Tibetan:
-                    //assert outParagraphList.getLength() == 1;
-                    outputNodeList = outParagraphList;
-                } else { // output is not MaryXML, e.g. text or audio
-                    assert outputData != null;
-                    outputData.append(oneOutputData);
+        if (len > 1 && MaryProperties.getBoolean("request.parallelparagraphs", false)) {
+            processParagraphsInParallel(rawmaryxml, inputDataList);
+        } else {
+            for (int i=0; i<len && !abortRequested; i++) {
+                Element currentInputParagraph = (Element) inputDataList.item(i);
+                assert currentInputParagraph.getTagName().equals(MaryXML.PARAGRAPH);
+                MaryData oneOutputData = null;
+                // Only process paragraph if there is any text below it:
+                if (!MaryDomUtils.getPlainTextBelow(currentInputParagraph).trim().equals("")) {
+                    // process "real" data:
+                    MaryData oneInputData = extractParagraphAsMaryData(rawmaryxml, currentInputParagraph);
+                    //assert oneInputData.getDefaultVoice() != null;
+                    oneOutputData = processOrLookupOneChunk(oneInputData, outputType, outputTypeParams);
+                    //assert oneOutputData.getDefaultVoice() != null;
                 }
-            }
-            if (outputType.isMaryXML()) {
-                assert outputNodeList != null;
-                // And now replace the paragraph in-place:
-                MaryDomUtils.replaceElement(currentInputParagraph, outputNodeList);
+                mergeParagraphOutput(currentInputParagraph, oneOutputData);
             }
         }
         long stopTime = System.currentTimeMillis();
         logger.info("Request processed in " + (stopTime - startTime) + " ms.");
+        requestTime.observe((stopTime - startTime) / 1000.);
         for (MaryModule m : usedModules) {
             logger.info("   " + m.name() + " took " + timingInfo.get(m) + " ms");
         }
         if (appendableAudioStream != null) appendableAudioStream.doneAppending();
     }
 
+    /**
+     * Process the paragraphs of the request concurrently on the shared paragraph executor.
+     * The output of each paragraph is merged into the output data strictly in document order,
+     * as soon as it and all paragraphs before it are done, so that streaming audio for the
+     * first paragraph starts as early as in sequential processing.
+     * At most <code>request.parallelparagraphs.window</code> paragraphs are processed ahead
+     * of the one currently being merged.
+     * @param rawmaryxml the document containing the paragraphs; it is only accessed from the calling thread.
+     * @param inputDataList the paragraphs to process.
+     * @throws Exception if processing any of the paragraphs fails.
+     */
+    private void processParagraphsInParallel(MaryData rawmaryxml, NodeList inputDataList) throws Exception {
+        // The DOM is not thread-safe, so paragraph extraction and merging happen on this thread only:
+        int len = inputDataList.getLength();
+        List<Element> paragraphs = new ArrayList<Element>(len);
+        List<MaryData> paragraphInputs = new ArrayList<MaryData>(len);
+        for (int i=0; i<len; i++) {
+            Element currentInputParagraph = (Element) inputDataList.item(i);
+            assert currentInputParagraph.getTagName().equals(MaryXML.PARAGRAPH);
+            paragraphs.add(currentInputParagraph);
+            // Only process paragraph if there is any text below it:
+            if (MaryDomUtils.getPlainTextBelow(currentInputParagraph).trim().equals("")) {
+                paragraphInputs.add(null);
+            } else {
+                paragraphInputs.add(extractParagraphAsMaryData(rawmaryxml, currentInputParagraph));
+            }
+        }
+        ExecutorService executor = getParagraphExecutor();
+        int window = Math.max(1, MaryProperties.getInteger("request.parallelparagraphs.window", 2 * Runtime.getRuntime().availableProcessors()));
+        List<Future<MaryData>> paragraphOutputs = new ArrayList<Future<MaryData>>(len);
+        try {
+            for (int i=0; i<len && !abortRequested; i++) {
+                // Keep up to window paragraphs in flight ahead of the current one:
+                while (paragraphOutputs.size() < len && paragraphOutputs.size() <= i + window) {
+                    final MaryData oneInputData = paragraphInputs.get(paragraphOutputs.size());
+                    if (oneInputData == null) {
+                        paragraphOutputs.add(null);
+                    } else {
+                        paragraphOutputs.add(executor.submit(new Callable<MaryData>() {
+                            public MaryData call() throws Exception {
+                                return processOrLookupOneChunk(oneInputData, outputType, outputTypeParams);
+                            }
+                        }));
+                    }
+                }
+                Future<MaryData> oneOutput = paragraphOutputs.get(i);
+                MaryData oneOutputData = null;
+                if (oneOutput != null) {
+                    try {
+                        oneOutputData = oneOutput.get();
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        if (cause instanceof Exception) {
+                            throw (Exception) cause;
+                        }
+                        throw new Exception("Problem processing paragraph "+(i+1), cause);
+                    }
+                }
+                mergeParagraphOutput(paragraphs.get(i), oneOutputData);
+            }
+        } finally {
+            // After an error or abort, do not waste resources on the remaining paragraphs:
+            for (Future<MaryData> f : paragraphOutputs) {
+                if (f != null) f.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Merge the processing result for one paragraph into the output data: for MaryXML output,
+     * the input paragraph is replaced in-place; for other output types, the result is appended.
+     * @param currentInputParagraph the paragraph element in the input document
+     * @param oneOutputData the result of processing the paragraph, or null if the paragraph contains no text.
+     */
+    private void mergeParagraphOutput(Element currentInputParagraph, MaryData oneOutputData) {
+        NodeList outputNodeList = null;
+        if (oneOutputData == null) {
+            outputNodeList = currentInputParagraph.getChildNodes();
+        } else if (outputType.isMaryXML()) {
+            NodeList outParagraphList = oneOutputData.getDocument().getDocumentElement().getElementsByTagName(MaryXML.PARAGRAPH);
+            // This does not hold for Tibetan:
+            //assert outParagraphList.getLength() == 1;
+            outputNodeList = outParagraphList;
+        } else { // output is not MaryXML, e.g. text or audio
+            assert outputData != null;
+            outputData.append(oneOutputData);
+        }
+        if (outputType.isMaryXML()) {
+            assert outputNodeList != null;
+            // And now replace the paragraph in-place:
+            MaryDomUtils.replaceElement(currentInputParagraph, outputNodeList);
+        }
+    }
+
     /**
      * Convert the given data into the requested output type, either by looking it up in the cache
      * or by actually processing it.
@@ -467,7 +627,7 @@ public class Request {
     private void insertAudioIntoCache(MaryCache cache, String inputtype,
             String localeString, String voice, String outputParams,
             String inputtext, MaryData currentData) throws IOException,
-            SQLException, UnsupportedAudioFileException {
+            UnsupportedAudioFileException {
         AppendableSequenceAudioInputStream as = (AppendableSequenceAudioInputStream) currentData.getAudio();
         assert as != appendableAudioStream;
         as.doneAppending();
@@ -507,7 +667,13 @@ public class Request {
             String message = "No known way of generating output from input -- " + "no processing path through modules.";
             throw new UnsupportedOperationException(message);
         }
-        usedModules.addAll(neededModules);
+        if (MaryProperties.getBoolean("freetts.fusemodules", false)) {
+            // consecutive FreeTTS modules share their utterances rather than converting them to MaryXML and back:
+            neededModules = UtterancePassThrough.fuse(neededModules);
+        }
+        synchronized (timingInfo) {
+            usedModules.addAll(neededModules);
+        }
         logger.info("Handling request using the following modules:");
         for (MaryModule m : neededModules) {
             logger.info("- " + m.name() + " (" + m.getClass().getName() + ")");
@@ -561,11 +727,14 @@ public class Request {
             currentData = outData;
             long moduleStopTime = System.currentTimeMillis();
             long delta = moduleStopTime - moduleStartTime;
-            Long soFar = timingInfo.get(m);
-            if (soFar != null)
-                timingInfo.put(m, new Long(soFar.longValue()+delta));
-            else
-                timingInfo.put(m, new Long(delta));
+            getModuleTime(m).observe(delta / 1000.);
+            synchronized (timingInfo) {
+                Long soFar = timingInfo.get(m);
+                if (soFar != null)
+                    timingInfo.put(m, new Long(soFar.longValue()+delta));
+                else
+                    timingInfo.put(m, new Long(delta));
+            }
             if (MaryRuntimeUtils.veryLowMemoryCondition()) {
                 logger.info("Very low memory condition detected (only " + MaryUtils.availableMemory() + " bytes left). Triggering garbage collection.");
                 Runtime.getRuntime().gc();
@@ -49,12 +49,13 @@ import org.xml.sax.SAXParseException;
 
 
 /**
- * A lightweight process handling one Request in a thread of its own.
- * This is to be used when running as a socket server.
+ * A lightweight process handling one Request.
+ * This is to be used when running as a socket server; the request handler
+ * is normally run on a thread of the {@link SynthesisExecutor}.
  * @author Marc Schr&ouml;der
  */
 
-public class RequestHandler extends Thread {
+public class RequestHandler implements Runnable {
     private Request request;
     private Socket infoSocket;
     private Socket dataSocket;
@@ -83,10 +84,10 @@ public class RequestHandler extends Thread {
         if (dataSocket == null)
             throw new NullPointerException("Received null dataSocket");
         this.dataSocket = dataSocket;
-        this.setName("RH " + request.getId());
-        logger = MaryUtils.getLogger(this.getName());
+        String name = "RH " + request.getId();
+        logger = MaryUtils.getLogger(name);
         this.inputReader = new LoggingReader(inputReader, logger);
-        clientLogger = MaryUtils.getLogger(this.getName() + " client");
+        clientLogger = MaryUtils.getLogger(name + " client");
         try {
             clientLogger.addAppender(
                 new WriterAppender(
@@ -120,11 +121,34 @@ public class RequestHandler extends Thread {
         // No stack trace on clientLogger
     }
 
+    /**
+     * Refuse to process the request, e.g. because the server is overloaded.
+     * The reason is reported to the client on the info socket, and both sockets are closed.
+     * @param reason the message to send to the client.
+     */
+    public void reject(String reason) {
+        if (clientLogger != null) {
+            clientLogger.error("Request rejected: " + reason);
+            clientLogger.removeAllAppenders();
+            clientLogger = null;
+        }
+        try {
+            infoSocket.close();
+        } catch (IOException e) {
+            logger.warn("Couldn't close info socket properly.", e);
+        }
+        try {
+            dataSocket.close();
+        } catch (IOException e) {
+            logger.warn("Couldn't close data socket properly.", e);
+        }
+    }
+
     /**
      * Perform the actual processing by calling the appropriate methods
      * of the associated <code>Request</code> object.
      * <p>
-     * Note that while different request handlers run as different threads,
+     * Note that while different request handlers run on different threads,
      * they all use the same module objects. How a given module deals with
      * several requests simultaneously is its own problem, the simplest
      * solution being a synchronized <code>process()</code> method.
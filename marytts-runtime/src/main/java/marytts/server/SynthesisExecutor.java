@@ -0,0 +1,314 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import marytts.modules.synthesis.Voice;
+import marytts.util.MaryUtils;
+import marytts.util.Metrics;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A bounded thread pool shared by the socket and HTTP servers for processing synthesis requests.
+ * The number of worker threads and the number of requests waiting for a worker are limited;
+ * in addition, the number of requests queued or running for any one voice can be capped.
+ * Requests beyond these limits are rejected with a {@link RejectedExecutionException},
+ * which the servers report to the client (as HTTP status 503 or as an error line on the info socket).
+ * <p>
+ * The following properties are used:
+ * <ul>
+ *   <li><code>server.synthesis.threads</code> -- the number of worker threads (default if the property is not set:
+ *       the number of processors; <code>marybase.config</code> sets it to 8);</li>
+ *   <li><code>server.synthesis.queuesize</code> -- the number of requests that may wait for a worker (default: 100);</li>
+ *   <li><code>server.synthesis.maxpervoice</code> -- the maximum number of queued or running requests per voice,
+ *       0 meaning no limit (default: 0);</li>
+ *   <li><code>voice.<i>voicename</i>.maxrequests</code> -- overrides <code>server.synthesis.maxpervoice</code>
+ *       for the given voice.</li>
+ * </ul>
+ * The worker threads are daemon threads; {@link Mary#shutdown()} shuts the executor down.
+ *
+ * @author agent
+ */
+public class SynthesisExecutor
+{
+    private static volatile SynthesisExecutor synthesisExecutor;
+
+    // Registered once for the singleton, so that further instances (e.g., in tests) do not replace them:
+    static {
+        Metrics.gauge("mary_synthesis_active", "Requests being processed by a synthesis thread", new Metrics.Gauge() {
+            public double getValue() {
+                SynthesisExecutor executor = synthesisExecutor;
+                return executor != null ? executor.pool.getActiveCount() : 0;
+            }
+        });
+        Metrics.gauge("mary_synthesis_queued", "Requests waiting for a synthesis thread", new Metrics.Gauge() {
+            public double getValue() {
+                SynthesisExecutor executor = synthesisExecutor;
+                return executor != null ? executor.pool.getQueue().size() : 0;
+            }
+        });
+    }
+
+    /**
+     * Get the SynthesisExecutor object, creating it from the server properties
+     * if it does not exist yet.
+     * @return the SynthesisExecutor singleton object.
+     */
+    public static synchronized SynthesisExecutor getExecutor()
+    {
+        if (synthesisExecutor == null) {
+            synthesisExecutor = new SynthesisExecutor(
+                    MaryProperties.getInteger("server.synthesis.threads", Runtime.getRuntime().availableProcessors()),
+                    MaryProperties.getInteger("server.synthesis.queuesize", 100),
+                    MaryProperties.getInteger("server.synthesis.maxpervoice", 0));
+        }
+        return synthesisExecutor;
+    }
+
+    /**
+     * Determine whether the SynthesisExecutor singleton has been created.
+     * @return true if {@link #getExecutor()} has been called before.
+     */
+    public static boolean haveExecutor()
+    {
+        return synthesisExecutor != null;
+    }
+
+    ////////////////////////////// non-static code /////////////////////////////
+
+    private Logger logger;
+    private ThreadPoolExecutor pool;
+    private int queueCapacity;
+    private int maxRequestsPerVoice;
+    private Map<String, AtomicInteger> requestsPerVoice = new ConcurrentHashMap<String, AtomicInteger>();
+    private AtomicLong numRejected = new AtomicLong();
+    private Timing queueWait = new Timing();
+    private Timing serviceTime = new Timing();
+
+    private static final Metrics.Histogram queueWaitMetric = Metrics.histogram("mary_synthesis_queue_wait_seconds",
+            "Time requests wait for a synthesis thread", Metrics.TIME_BUCKETS);
+    private static final Metrics.Histogram serviceTimeMetric = Metrics.histogram("mary_synthesis_service_seconds",
+            "Time a synthesis thread spends on a request", Metrics.TIME_BUCKETS);
+    private static final Metrics.Counter rejectedMetric = Metrics.counter("mary_synthesis_rejected_total",
+            "Requests rejected because the queue or the per-voice limit was full");
+
+    /**
+     * Create a SynthesisExecutor.
+     * Servers should share the executor returned by {@link #getExecutor()} instead of creating their own.
+     * @param numThreads the number of worker threads
+     * @param queueCapacity the number of requests that can wait for a worker thread
+     * @param maxRequestsPerVoice the default maximum number of requests queued or running for one voice, or 0 for no limit.
+     */
+    public SynthesisExecutor(int numThreads, int queueCapacity, int maxRequestsPerVoice)
+    {
+        if (numThreads <= 0) {
+            throw new IllegalArgumentException("Need at least one synthesis thread, got "+numThreads);
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be positive, got "+queueCapacity);
+        }
+        this.logger = MaryUtils.getLogger("server");
+        this.queueCapacity = queueCapacity;
+        this.maxRequestsPerVoice = maxRequestsPerVoice;
+        this.pool = new ThreadPoolExecutor(numThreads, numThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new SynthesisThreadFactory());
+        logger.info("Synthesis executor: "+numThreads+" threads, queue size "+queueCapacity
+                +(maxRequestsPerVoice > 0 ? ", at most "+maxRequestsPerVoice+" requests per voice" : ""));
+    }
+
+    /**
+     * Schedule the given task for execution on one of the synthesis threads.
+     * @param task the task to run, typically processing one request.
+     * @param voice the voice used by the task, for enforcing per-voice limits; may be null.
+     * @return a Future representing the pending completion of the task.
+     * @throws RejectedExecutionException if the queue is full or the voice has too many pending requests.
+     */
+    public Future<?> submit(Runnable task, Voice voice) throws RejectedExecutionException
+    {
+        return submit(Executors.callable(task), voice);
+    }
+
+    /**
+     * Schedule the given task for execution on one of the synthesis threads.
+     * @param task the task to run, typically processing one request.
+     * @param voice the voice used by the task, for enforcing per-voice limits; may be null.
+     * @return a Future representing the pending result of the task.
+     * @throws RejectedExecutionException if the queue is full or the voice has too many pending requests.
+     */
+    public <T> Future<T> submit(Callable<T> task, Voice voice) throws RejectedExecutionException
+    {
+        return submit(task, voice != null ? voice.getName() : null);
+    }
+
+    <T> Future<T> submit(final Callable<T> task, String voiceName) throws RejectedExecutionException
+    {
+        final AtomicInteger voiceCount;
+        if (voiceName != null) {
+            voiceCount = getRequestCounter(voiceName);
+            int max = getMaxRequests(voiceName);
+            if (voiceCount.incrementAndGet() > max && max > 0) {
+                voiceCount.decrementAndGet();
+                numRejected.incrementAndGet();
+                rejectedMetric.inc();
+                throw new RejectedExecutionException("Too many pending requests for voice "+voiceName+" (maximum "+max+")");
+            }
+        } else {
+            voiceCount = null;
+        }
+        final long submitTime = System.currentTimeMillis();
+        Callable<T> timedTask = new Callable<T>() {
+            public T call() throws Exception {
+                long startTime = System.currentTimeMillis();
+                queueWait.add(startTime - submitTime);
+                queueWaitMetric.observe((startTime - submitTime) / 1000.);
+                try {
+                    return task.call();
+                } finally {
+                    long time = System.currentTimeMillis() - startTime;
+                    serviceTime.add(time);
+                    serviceTimeMetric.observe(time / 1000.);
+                    if (voiceCount != null) {
+                        voiceCount.decrementAndGet();
+                    }
+                }
+            }
+        };
+        try {
+            return pool.submit(timedTask);
+        } catch (RejectedExecutionException e) {
+            if (voiceCount != null) {
+                voiceCount.decrementAndGet();
+            }
+            numRejected.incrementAndGet();
+            rejectedMetric.inc();
+            throw new RejectedExecutionException("Server busy -- "+pool.getQueue().size()+" requests waiting", e);
+        }
+    }
+
+    private AtomicInteger getRequestCounter(String voiceName)
+    {
+        AtomicInteger counter = requestsPerVoice.get(voiceName);
+        if (counter == null) {
+            synchronized (requestsPerVoice) {
+                counter = requestsPerVoice.get(voiceName);
+                if (counter == null) {
+                    counter = new AtomicInteger();
+                    requestsPerVoice.put(voiceName, counter);
+                }
+            }
+        }
+        return counter;
+    }
+
+    private int getMaxRequests(String voiceName)
+    {
+        return MaryProperties.getInteger("voice."+voiceName+".maxrequests", maxRequestsPerVoice);
+    }
+
+    /**
+     * Stop accepting new requests; requests already submitted are still processed.
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * Report the current state of the executor and the queue wait and service times
+     * of all requests processed so far, one <code>key=value</code> pair per line.
+     * @return a multi-line string.
+     */
+    public String getStatistics()
+    {
+        StringBuilder buf = new StringBuilder();
+        buf.append("threads=").append(pool.getMaximumPoolSize()).append("\n");
+        buf.append("active=").append(pool.getActiveCount()).append("\n");
+        buf.append("queued=").append(pool.getQueue().size()).append("\n");
+        buf.append("queuecapacity=").append(queueCapacity).append("\n");
+        buf.append("completed=").append(pool.getCompletedTaskCount()).append("\n");
+        buf.append("rejected=").append(numRejected.get()).append("\n");
+        queueWait.appendTo(buf, "queuewait");
+        serviceTime.appendTo(buf, "servicetime");
+        SortedMap<String, AtomicInteger> sortedCounts = new TreeMap<String, AtomicInteger>(requestsPerVoice);
+        for (String voiceName : sortedCounts.keySet()) {
+            buf.append("voice.").append(voiceName).append(".pending=").append(sortedCounts.get(voiceName).get()).append("\n");
+        }
+        return buf.toString();
+    }
+
+
+    /**
+     * Lock-free accumulator of durations in milliseconds.
+     */
+    private static class Timing
+    {
+        private AtomicLong count = new AtomicLong();
+        private AtomicLong total = new AtomicLong();
+        private AtomicLong max = new AtomicLong();
+
+        void add(long millis)
+        {
+            count.incrementAndGet();
+            total.addAndGet(millis);
+            long currentMax;
+            while (millis > (currentMax = max.get())) {
+                if (max.compareAndSet(currentMax, millis)) {
+                    break;
+                }
+            }
+        }
+
+        void appendTo(StringBuilder buf, String prefix)
+        {
+            long n = count.get();
+            buf.append(prefix).append(".count=").append(n).append("\n");
+            buf.append(prefix).append(".meanms=").append(n > 0 ? total.get() / n : 0).append("\n");
+            buf.append(prefix).append(".maxms=").append(max.get()).append("\n");
+        }
+    }
+
+    private static class SynthesisThreadFactory implements ThreadFactory
+    {
+        private AtomicInteger threadNumber = new AtomicInteger(1);
+
+        public Thread newThread(Runnable r)
+        {
+            Thread t = new Thread(r, "Synthesis "+threadNumber.getAndIncrement());
+            // do not keep the JVM alive for pending requests:
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
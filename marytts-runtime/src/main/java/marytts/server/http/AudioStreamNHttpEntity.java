@@ -22,7 +22,9 @@ package marytts.server.http;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import javax.sound.sampled.AudioFileFormat;
 import javax.sound.sampled.AudioInputStream;
@@ -34,56 +36,110 @@ import marytts.util.MaryUtils;
 import org.apache.http.entity.AbstractHttpEntity;
 import org.apache.http.nio.ContentEncoder;
 import org.apache.http.nio.IOControl;
-import org.apache.http.nio.entity.ContentOutputStream;
 import org.apache.http.nio.entity.ProducingNHttpEntity;
-import org.apache.http.nio.util.HeapByteBufferAllocator;
-import org.apache.http.nio.util.SharedOutputBuffer;
 import org.apache.log4j.Logger;
 
 /**
+ * An entity streaming the audio of a request to the client while it is being synthesised.
+ * <p>
+ * The audio is encoded by {@link #run()}, on one of a fixed number of writer threads, into a bounded buffer.
+ * The I/O reactor thread calling {@link #produceContent(ContentEncoder, IOControl)} only writes
+ * what is in the buffer and never waits: when the buffer is empty, output is suspended on the connection,
+ * and it is requested again as soon as the encoding thread has added data. A reactor thread is
+ * therefore busy with a stream only while there is something to send, and a few reactor threads
+ * can serve many concurrent streams. When the client reads slowly, the buffer fills up and the
+ * encoding thread waits, which in turn holds back the reading of the synthesised audio.
+ * <p>
+ * If the audio cannot be encoded completely, the connection is shut down instead of ending the response,
+ * so that the client sees an error rather than truncated audio that looks complete.
+ * 
  * @author marc
  *
  */
 public class AudioStreamNHttpEntity
 extends AbstractHttpEntity implements ProducingNHttpEntity, Runnable
 {
+    private static final int BUFFER_SIZE = 65536;
+
     private Request maryRequest;
     private AudioInputStream audio;
     private AudioFileFormat.Type audioType;
     private Logger logger;
-    private Object mutex;
-    private SharedOutputBuffer out;
+
+    // All of the following are guarded by lock:
+    private final Object lock = new Object();
+    // in write mode: data from position 0 to position() is waiting to be sent
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private IOControl ioctrl;
+    private boolean outputSuspended = false;
+    private boolean writeCompleted = false;
+    private boolean writeFailed = false;
+    private boolean finished = false;
 
     public AudioStreamNHttpEntity(Request maryRequest)
+    {
+        this(maryRequest.getAudio(), maryRequest.getAudioFileFormat().getType(), maryRequest);
+    }
+
+    /**
+     * @param audio the audio to send
+     * @param audioType the type of audio file to send it as
+     * @param maryRequest the request producing the audio, to be aborted if the client disconnects; may be null.
+     */
+    AudioStreamNHttpEntity(AudioInputStream audio, AudioFileFormat.Type audioType, Request maryRequest)
     {
         this.maryRequest = maryRequest;
-        this.audio = maryRequest.getAudio();
-        this.audioType = maryRequest.getAudioFileFormat().getType();
+        this.audio = audio;
+        this.audioType = audioType;
         setContentType(MaryHttpServerUtils.getMimeType(audioType));
-        this.mutex = new Object();
+        this.logger = MaryUtils.getLogger("HTTPWriter");
     }
 
+    /**
+     * Called by the I/O reactor when the response is complete or the connection has been closed.
+     */
     public void finish()
     {
-        assert logger != null : "we should never be able to write if run() is not called";
-        logger.info("Completed sending streaming audio");
-        maryRequest = null;
-        audio = null;
-        audioType = null;
-        logger = null;
+        synchronized (lock) {
+            if (writeCompleted && buffer.position() == 0) {
+                logger.info("Completed sending streaming audio");
+            }
+            finished = true;
+            ioctrl = null;
+            lock.notifyAll();
+        }
     }
 
+    /**
+     * Write the audio data available so far to the encoder, without blocking.
+     * If no data is available, suspend output until the encoding thread provides more.
+     */
     public void produceContent(ContentEncoder encoder, IOControl ioctrl)
     throws IOException
     {
-        if (out == null) {
-            synchronized (mutex) {
-                out = new SharedOutputBuffer(8192, ioctrl, new HeapByteBufferAllocator());
-                mutex.notify();
+        synchronized (lock) {
+            this.ioctrl = ioctrl;
+            if (writeFailed) {
+                ioctrl.shutdown();
+                return;
+            }
+            buffer.flip();
+            try {
+                encoder.write(buffer);
+            } finally {
+                buffer.compact();
+            }
+            // there may be room again:
+            lock.notifyAll();
+            if (buffer.position() == 0) {
+                if (writeCompleted) {
+                    encoder.complete();
+                } else {
+                    outputSuspended = true;
+                    ioctrl.suspendOutput();
+                }
             }
         }
-        while (!encoder.isCompleted())
-            out.produceContent(encoder);
     }
 
     public long getContentLength() {
@@ -108,29 +164,90 @@ extends AbstractHttpEntity implements ProducingNHttpEntity, Runnable
 
     
     /**
-     * Wait for the SharedOutputBuffer to become available, write audio data to it.
+     * Encode the audio data into the buffer from which it is sent.
      */
     public void run()
     {
-        this.logger = MaryUtils.getLogger(Thread.currentThread().getName());
-        // We must wait until produceContent() is called:
-        while (out == null) {
-            synchronized(mutex) {
-                try {
-                    mutex.wait();
-                } catch (InterruptedException e) {}
-            }
-        }
-        assert out != null;
-        ContentOutputStream outStream = new ContentOutputStream(out);
+        boolean complete = false;
         try {
-            AudioSystem.write(audio, audioType, outStream);
-            outStream.flush();
-            outStream.close();                
+            AudioSystem.write(audio, audioType, new BufferOutputStream());
+            complete = true;
             logger.info("Finished writing output");
         } catch (IOException ioe) {
             logger.info("Cannot write output, client seems to have disconnected. ", ioe);
-            maryRequest.abort();
+            if (maryRequest != null) {
+                maryRequest.abort();
+            }
+        } finally {
+            IOControl toShutDown = null;
+            synchronized (lock) {
+                if (complete) {
+                    writeCompleted = true;
+                    wakeUpOutput();
+                } else {
+                    // don't let the audio written so far look like a complete response;
+                    // if produceContent() has not been called yet, it will shut down the connection:
+                    writeFailed = true;
+                    toShutDown = ioctrl;
+                }
+            }
+            if (toShutDown != null) {
+                try {
+                    toShutDown.shutdown();
+                } catch (IOException ioe) {
+                    logger.debug("Cannot shut down connection", ioe);
+                }
+            }
+            maryRequest = null;
+            audio = null;
+        }
+    }
+
+    /**
+     * Request output on the connection if it was suspended because there was no data.
+     * Must be called while holding the lock.
+     */
+    private void wakeUpOutput()
+    {
+        if (outputSuspended && ioctrl != null) {
+            outputSuspended = false;
+            ioctrl.requestOutput();
+        }
+    }
+
+    /**
+     * The stream into which the audio is encoded. Writing blocks while the buffer is full.
+     */
+    private class BufferOutputStream extends OutputStream
+    {
+        @Override
+        public void write(int b) throws IOException
+        {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            synchronized (lock) {
+                while (len > 0) {
+                    while (!buffer.hasRemaining() && !finished) {
+                        try {
+                            lock.wait();
+                        } catch (InterruptedException e) {
+                            throw new InterruptedIOException();
+                        }
+                    }
+                    if (finished) {
+                        throw new IOException("Connection closed");
+                    }
+                    int n = Math.min(len, buffer.remaining());
+                    buffer.put(b, off, n);
+                    off += n;
+                    len -= n;
+                    wakeUpOutput();
+                }
+            }
         }
     }
 
@@ -19,10 +19,7 @@
  */
 package marytts.server.http;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.channels.FileChannel;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -57,16 +54,12 @@ import org.apache.http.HttpException;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.MethodNotSupportedException;
-import org.apache.http.nio.ContentDecoder;
-import org.apache.http.nio.ContentDecoderChannel;
-import org.apache.http.nio.FileContentDecoder;
-import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.BufferingNHttpEntity;
 import org.apache.http.nio.entity.ConsumingNHttpEntity;
-import org.apache.http.nio.entity.ConsumingNHttpEntityTemplate;
-import org.apache.http.nio.entity.ContentListener;
-import org.apache.http.nio.protocol.SimpleNHttpRequestHandler;
+import org.apache.http.nio.protocol.NHttpRequestHandler;
+import org.apache.http.nio.protocol.NHttpResponseTrigger;
+import org.apache.http.nio.util.HeapByteBufferAllocator;
 import org.apache.http.protocol.HttpContext;
-import org.apache.http.protocol.HttpRequestHandler;
 import org.apache.http.util.EntityUtils;
 import org.apache.log4j.Logger;
 
@@ -75,10 +68,8 @@ import org.apache.log4j.Logger;
  * 
  * @author Oytun T&uuml;rk, Marc Schröder
  */
-public abstract class BaseHttpRequestHandler extends SimpleNHttpRequestHandler implements HttpRequestHandler  
+public abstract class BaseHttpRequestHandler implements NHttpRequestHandler
 {
-    private final boolean useFileChannels = true;
-    
     protected static Logger logger;
     private int runningNumber = 1;
     private Map<String,Object[]> requestMap;
@@ -94,9 +85,11 @@ public abstract class BaseHttpRequestHandler extends SimpleNHttpRequestHandler i
 
     /**
      * The entry point of all HttpRequestHandlers.
-     * When this method returns, the response is sent to the client.
+     * The response is sent to the client when it is submitted to the trigger,
+     * which {@link #handleClientRequest(String, Map, HttpResponse, Address, NHttpResponseTrigger)}
+     * may do after this method has returned.
      */
-    public void handle(final HttpRequest request, final HttpResponse response, final HttpContext context)
+    public void handle(final HttpRequest request, final HttpResponse response, final NHttpResponseTrigger trigger, final HttpContext context)
     throws HttpException, IOException
     {
         try {
@@ -141,13 +134,27 @@ public abstract class BaseHttpRequestHandler extends SimpleNHttpRequestHandler i
             }
 
             //Parse request and create appropriate response
-            handleClientRequest(absPath, queryItems, response, serverAddressAtClient);
+            handleClientRequest(absPath, queryItems, response, serverAddressAtClient, trigger);
 
         } catch (RuntimeException re) {
             logger.warn("runtime exception in handle():", re);
+            trigger.submitResponse(response);
         }
     }
 
+    /**
+     * Create the response to the client request and submit it to the trigger.
+     * This implementation creates the response in the calling thread and submits it immediately;
+     * subclasses can override it to create the response asynchronously.
+     * @throws IOException
+     */
+    protected void handleClientRequest(String absPath, Map<String,String> queryItems, HttpResponse response, Address serverAddressAtClient, NHttpResponseTrigger trigger)
+    throws IOException
+    {
+        handleClientRequest(absPath, queryItems, response, serverAddressAtClient);
+        trigger.submitResponse(response);
+    }
+
     protected abstract void handleClientRequest(String absPath, Map<String,String> queryItems, HttpResponse response, Address serverAddressAtClient)
     throws IOException;
     
@@ -165,88 +172,14 @@ public abstract class BaseHttpRequestHandler extends SimpleNHttpRequestHandler i
     
 
     
+    /**
+     * Buffer the request body in memory, so that {@link #handle(HttpRequest, HttpResponse, NHttpResponseTrigger, HttpContext)}
+     * can read it.
+     */
     public ConsumingNHttpEntity entityRequest(
             final HttpEntityEnclosingRequest request,
             final HttpContext context) throws HttpException, IOException {
-        return new ConsumingNHttpEntityTemplate(
-                request.getEntity(),
-                new FileWriteListener(useFileChannels));
+        return new BufferingNHttpEntity(request.getEntity(), new HeapByteBufferAllocator());
     }
-    
-    
-    
-    
-  
-    
-    
-    
-    
-
-
-  
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    
-    static class FileWriteListener implements ContentListener {
-        private final File file;
-        private final FileInputStream inputFile;
-        private final FileChannel fileChannel;
-        private final boolean useFileChannels;
-        private long idx = 0;
-
-        public FileWriteListener(boolean useFileChannels) throws IOException {
-            this.file = File.createTempFile("tmp", ".tmp", null);
-            this.inputFile = new FileInputStream(file);
-            this.fileChannel = inputFile.getChannel();
-            this.useFileChannels = useFileChannels;
-        }
-
-        public void contentAvailable(ContentDecoder decoder, IOControl ioctrl)
-                throws IOException {
-            long transferred;
-            if(useFileChannels && decoder instanceof FileContentDecoder) {
-                transferred = ((FileContentDecoder) decoder).transfer(
-                        fileChannel, idx, Long.MAX_VALUE);
-            } else {
-                transferred = fileChannel.transferFrom(
-                        new ContentDecoderChannel(decoder), idx, Long.MAX_VALUE);
-            }
-
-            if(transferred > 0)
-                idx += transferred;
-        }
-
-        public void finished() {
-            try {
-                inputFile.close();
-            } catch(IOException ignored) {}
-            try {
-                fileChannel.close();
-            } catch(IOException ignored) {}
-        }
-    }
-
-
-
-    
 }
 
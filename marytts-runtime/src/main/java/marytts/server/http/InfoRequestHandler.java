@@ -27,6 +27,10 @@ import java.util.Map;
 import marytts.features.FeatureProcessorManager;
 import marytts.features.FeatureRegistry;
 import marytts.modules.synthesis.Voice;
+import marytts.modules.synthesis.VoiceLifecycleManager;
+import marytts.server.SynthesisExecutor;
+import marytts.unitselection.data.TimelineReader;
+import marytts.util.MaryCache;
 import marytts.util.MaryRuntimeUtils;
 import marytts.util.MaryUtils;
 import marytts.util.http.Address;
@@ -84,6 +88,15 @@ public class InfoRequestHandler extends BaseHttpRequestHandler
         else if (request.equals("locales")) return MaryRuntimeUtils.getLocales();
         else if (request.equals("voices")) return MaryRuntimeUtils.getVoices();
         else if (request.equals("audioformats")) return MaryRuntimeUtils.getAudioFileFormatTypes();
+        else if (request.equals("statistics")) {
+            String statistics = SynthesisExecutor.getExecutor().getStatistics();
+            if (MaryCache.haveCache()) {
+                statistics += MaryCache.getCache().getStatistics();
+            }
+            statistics += TimelineReader.getBlockCacheStatistics();
+            return statistics;
+        }
+        else if (request.equals("voicestatus")) return VoiceLifecycleManager.getStatus();
         else if (request.equals("exampletext")) {
             if (queryItems != null) {
                 // Voice example text
@@ -32,8 +32,9 @@ import org.apache.http.impl.DefaultHttpResponseFactory;
 import org.apache.http.impl.nio.DefaultServerIOEventDispatch;
 import org.apache.http.impl.nio.reactor.DefaultListeningIOReactor;
 import org.apache.http.nio.NHttpConnection;
-import org.apache.http.nio.protocol.BufferingHttpServiceHandler;
+import org.apache.http.nio.protocol.AsyncNHttpServiceHandler;
 import org.apache.http.nio.protocol.EventListener;
+import org.apache.http.nio.protocol.NHttpRequestHandlerRegistry;
 import org.apache.http.nio.reactor.IOEventDispatch;
 import org.apache.http.nio.reactor.ListeningIOReactor;
 import org.apache.http.params.BasicHttpParams;
@@ -42,7 +43,6 @@ import org.apache.http.params.CoreProtocolPNames;
 import org.apache.http.params.HttpParams;
 import org.apache.http.protocol.BasicHttpProcessor;
 import org.apache.http.protocol.ExecutionContext;
-import org.apache.http.protocol.HttpRequestHandlerRegistry;
 import org.apache.http.protocol.ResponseConnControl;
 import org.apache.http.protocol.ResponseContent;
 import org.apache.http.protocol.ResponseDate;
@@ -95,6 +95,9 @@ import org.apache.log4j.Logger;
  *   <li><code>features?voice=hmm-slt</code> requests the list of available features that can be computed for the given voice;</li>
  *   <li><code>vocalizations?voice=dfki-poppy</code> requests the list of vocalization names that are available with the given voice;
  *   <li><code>styles?voice=dfki-pavoque-styles</code> requests the list of style names that are available with the given voice;
+ *   <li><code>statistics</code> requests the current load of the synthesis executor, with queue wait and service times;</li>
+ *   <li><code>voicestatus</code> requests which voices have their data loaded, their approximate memory use and recent load and unload events;</li>
+ *   <li><code>metrics</code> requests counters and histograms of request, module, unit selection and HMM synthesis times and of cache hits, in the Prometheus text format;</li>
  *   <li><code>process</code> requests the synthesis of some text (see below).</li>
  * </ul>
  * <p>
@@ -179,14 +182,16 @@ public class MaryHttpServer extends Thread
         httpproc.addInterceptor(new ResponseContent());
         httpproc.addInterceptor(new ResponseConnControl());
 
-        BufferingHttpServiceHandler handler = new BufferingHttpServiceHandler(
+        // The handlers submit their responses through a trigger, so that synthesis requests
+        // can be answered from a synthesis thread without blocking the I/O reactor:
+        AsyncNHttpServiceHandler handler = new AsyncNHttpServiceHandler(
                 httpproc,
                 new DefaultHttpResponseFactory(),
                 new DefaultConnectionReuseStrategy(),
                 params);
 
         // Set up request handlers
-        HttpRequestHandlerRegistry registry = new HttpRequestHandlerRegistry();
+        NHttpRequestHandlerRegistry registry = new NHttpRequestHandlerRegistry();
         registry.register("/process", new SynthesisRequestHandler());
         InfoRequestHandler infoRH = new InfoRequestHandler();
         registry.register("/version", infoRH);
@@ -204,6 +209,9 @@ public class MaryHttpServer extends Thread
         registry.register("/features-discrete", infoRH);
         registry.register("/vocalizations", infoRH);
         registry.register("/styles", infoRH);
+        registry.register("/statistics", infoRH);
+        registry.register("/voicestatus", infoRH);
+        registry.register("/metrics", new MetricsRequestHandler());
         registry.register("*", new FileRequestHandler());
 
 
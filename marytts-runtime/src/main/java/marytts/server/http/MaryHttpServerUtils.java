@@ -207,6 +207,20 @@ public class MaryHttpServerUtils
         } catch (UnsupportedEncodingException e){}
     }
     
+    public static void errorServiceUnavailable(HttpResponse response, String message)
+    {
+        int status = HttpStatus.SC_SERVICE_UNAVAILABLE;
+        response.setStatusCode(status);
+        logger.debug("Returning HTTP status "+status+": "+message);
+        try {
+            NStringEntity entity = new NStringEntity(
+                    "<html><body><h1>Service unavailable</h1><p>"+message+
+                    "</p></body></html>", "UTF-8");
+            entity.setContentType("text/html; charset=UTF-8");
+            response.setEntity(entity);
+        } catch (UnsupportedEncodingException e){}
+    }
+    
     public static void errorMissingQueryParameter(HttpResponse response, String param)
     {
         int status = HttpStatus.SC_BAD_REQUEST;
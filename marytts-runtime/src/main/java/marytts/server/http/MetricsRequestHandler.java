@@ -0,0 +1,58 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.Map;
+
+import marytts.util.Metrics;
+import marytts.util.http.Address;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.nio.entity.NStringEntity;
+
+/**
+ * Processor class for the /metrics request, which reports the {@link Metrics}
+ * of the server in the Prometheus text exposition format.
+ * 
+ * @author agent
+ */
+public class MetricsRequestHandler extends BaseHttpRequestHandler
+{
+
+    public MetricsRequestHandler()
+    {
+        super();
+    }
+    
+    @Override
+    protected void handleClientRequest(String absPath, Map<String,String> queryItems, HttpResponse response, Address serverAddressAtClient)
+    throws IOException 
+    {
+        response.setStatusCode(HttpStatus.SC_OK);
+        try {
+            NStringEntity entity = new NStringEntity(Metrics.getExposition(), "UTF-8");
+            entity.setContentType("text/plain; version=0.0.4; charset=utf-8");
+            response.setEntity(entity);
+        } catch (UnsupportedEncodingException e){}
+    }
+}
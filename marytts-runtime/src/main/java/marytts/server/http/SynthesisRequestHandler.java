@@ -28,6 +28,11 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sound.sampled.AudioFileFormat;
 import javax.sound.sampled.AudioFormat;
@@ -36,9 +41,11 @@ import javax.sound.sampled.AudioSystem;
 
 import marytts.datatypes.MaryDataType;
 import marytts.modules.synthesis.Voice;
+import marytts.server.MaryProperties;
 import marytts.server.Request;
 import marytts.server.RequestHandler.StreamingOutputPiper;
 import marytts.server.RequestHandler.StreamingOutputWriter;
+import marytts.server.SynthesisExecutor;
 import marytts.util.MaryRuntimeUtils;
 import marytts.util.MaryUtils;
 import marytts.util.data.audio.MaryAudioUtils;
@@ -46,6 +53,7 @@ import marytts.util.http.Address;
 
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
+import org.apache.http.nio.protocol.NHttpResponseTrigger;
 import org.apache.log4j.Logger;
 
 /**
@@ -63,6 +71,34 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler
         return id++;
     }
     
+    private static ExecutorService audioWriters;
+    
+    /**
+     * The threads encoding the audio of streaming requests for sending, created on first use.
+     * Their number is fixed by the property <code>server.http.audiowriters</code> (default: 32), so that it does not grow
+     * with the number of concurrent streams. A writer waits while its client reads slowly; when all writers are busy,
+     * further streams wait for a free writer.
+     * The writer threads are daemon threads.
+     * @return the executor for {@link AudioStreamNHttpEntity#run()}.
+     */
+    static synchronized ExecutorService getAudioWriters()
+    {
+        if (audioWriters == null) {
+            int numThreads = MaryProperties.getInteger("server.http.audiowriters", 32);
+            audioWriters = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+                private AtomicInteger threadNumber = new AtomicInteger(1);
+
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r, "HTTPWriter "+threadNumber.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return audioWriters;
+    }
+    
     
     private StreamingOutputWriter outputToStream;
     private StreamingOutputPiper streamToPipe;
@@ -82,6 +118,18 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler
     @Override
     protected void handleClientRequest(String absPath, Map<String,String> queryItems, HttpResponse response, Address serverAddressAtClient)
     throws IOException
+    {
+        // not used because we override the variant with a response trigger.
+    }
+
+    /**
+     * Synthesis requests are processed on a thread of the {@link SynthesisExecutor};
+     * the response is submitted from that thread when it is complete,
+     * so that the I/O thread calling this method is not blocked in the meantime.
+     */
+    @Override
+    protected void handleClientRequest(String absPath, Map<String,String> queryItems, HttpResponse response, Address serverAddressAtClient, NHttpResponseTrigger trigger)
+    throws IOException
     {
 /*        response.setStatusCode(HttpStatus.SC_OK);
         TestProducingNHttpEntity entity = new TestProducingNHttpEntity();
@@ -95,15 +143,22 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler
                 logger.debug("    "+key+"="+queryItems.get(key));
             }
         }
-        process(serverAddressAtClient, queryItems, response);
-
+        if (!process(serverAddressAtClient, queryItems, response, trigger)) {
+            trigger.submitResponse(response);
+        }
     }
 
     
     
     
     
-    public void process(Address serverAddressAtClient, Map<String, String> queryItems, HttpResponse response)
+    /**
+     * Process the synthesis request.
+     * @return true if the request is being processed asynchronously and the response will be submitted to the trigger
+     * when it is complete; false if the response is ready to be submitted now (e.g., because the request
+     * could not be parsed, or because audio is streamed).
+     */
+    public boolean process(Address serverAddressAtClient, Map<String, String> queryItems, final HttpResponse response, final NHttpResponseTrigger trigger)
     {
         if (queryItems == null || !(
                 queryItems.containsKey("INPUT_TYPE") 
@@ -112,7 +167,7 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler
                 && queryItems.containsKey("INPUT_TEXT")
                 )) {
             MaryHttpServerUtils.errorMissingQueryParameter(response, "'INPUT_TEXT' and 'INPUT_TYPE' and 'OUTPUT_TYPE' and 'LOCALE'");
-            return;
+            return false;
         }
         
         String inputText = queryItems.get("INPUT_TEXT");
@@ -120,13 +175,13 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler
         MaryDataType inputType = MaryDataType.get(queryItems.get("INPUT_TYPE"));
         if (inputType == null) {
             MaryHttpServerUtils.errorWrongQueryParameterValue(response, "INPUT_TYPE", queryItems.get("INPUT_TYPE"), null);
-            return;
+            return false;
         }
 
         MaryDataType outputType = MaryDataType.get(queryItems.get("OUTPUT_TYPE"));
         if (outputType == null) {
             MaryHttpServerUtils.errorWrongQueryParameterValue(response, "OUTPUT_TYPE", queryItems.get("OUTPUT_TYPE"), null);
-            return;
+            return false;
         }
         boolean isOutputText = true;
         boolean streamingAudio = false;
@@ -136,7 +191,7 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler
             String audioTypeName = queryItems.get("AUDIO");
             if (audioTypeName == null) {
                 MaryHttpServerUtils.errorMissingQueryParameter(response, "'AUDIO' when OUTPUT_TYPE=AUDIO");
-                return;
+                return false;
             }
             if (audioTypeName.endsWith("_STREAM")) {
                 streamingAudio = true;
@@ -150,14 +205,14 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler
             } catch (Exception ex) {}
             if (audioFileFormatType == null) {
                 MaryHttpServerUtils.errorWrongQueryParameterValue(response, "AUDIO", queryItems.get("AUDIO"), null);
-                return;
+                return false;
             } else if (audioFileFormatType.toString().equals("MP3") && !MaryRuntimeUtils.canCreateMP3()) { 
                 MaryHttpServerUtils.errorWrongQueryParameterValue(response, "AUDIO", queryItems.get("AUDIO"), "Conversion to MP3 not supported.");
-                return;
+                return false;
             } 
             else if (audioFileFormatType.toString().equals("Vorbis") && !MaryRuntimeUtils.canCreateOgg()) {
                 MaryHttpServerUtils.errorWrongQueryParameterValue(response, "AUDIO", queryItems.get("AUDIO"), "Conversion to OGG Vorbis format not supported.");
-                return;
+                return false;
             }
         }
         // optionally, there may be output type parameters
@@ -167,7 +222,7 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler
         Locale locale = MaryUtils.string2locale(queryItems.get("LOCALE"));
         if (locale == null) {
             MaryHttpServerUtils.errorWrongQueryParameterValue(response, "LOCALE", queryItems.get("LOCALE"), null);
-            return;
+            return false;
         }
         
         Voice voice = null;
@@ -181,7 +236,7 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler
             if (voice == null) {
                 // a voice name was given but there is no such voice
                 MaryHttpServerUtils.errorWrongQueryParameterValue(response, "VOICE", queryItems.get("VOICE"), null);
-                return;
+                return false;
             }
         }
         if (voice == null) { // no voice tag -- use locale default if it exists.
@@ -237,22 +292,28 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler
         }
         if (ok) {
             if (streamingAudio) {
-                // Start two separate threads:
-                // 1. one thread to process the request;
-                new Thread("RH "+maryRequest.getId()) {
-                    public void run() 
-                    {
-                        Logger myLogger = MaryUtils.getLogger(this.getName());
-                        try {
-                            maryRequest.process();
-                            myLogger.info("Streaming request processed successfully.");
-                        } catch (Throwable t) {
-                            myLogger.error("Processing failed.", t);
+                // Use two separate threads:
+                // 1. one synthesis executor thread to process the request;
+                try {
+                    SynthesisExecutor.getExecutor().submit(new Runnable() {
+                        public void run() 
+                        {
+                            Logger myLogger = MaryUtils.getLogger("RH "+maryRequest.getId());
+                            try {
+                                maryRequest.process();
+                                myLogger.info("Streaming request processed successfully.");
+                            } catch (Throwable t) {
+                                myLogger.error("Processing failed.", t);
+                            }
                         }
-                    }
-                }.start();
+                    }, voice);
+                } catch (RejectedExecutionException e) {
+                    logger.warn("Rejecting request "+maryRequest.getId()+": "+e.getMessage());
+                    MaryHttpServerUtils.errorServiceUnavailable(response, e.getMessage());
+                    return false;
+                }
                 
-                // 2. one thread to take the audio data as it becomes available
+                // 2. one audio writer thread to take the audio data as it becomes available
                 //    and write it into the ProducingNHttpEntity.
                 // The second one does not depend on the first one practically,
                 // because the AppendableSequenceAudioInputStream returned by
@@ -261,43 +322,73 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler
                 assert audio != null : "Streaming audio but no audio stream -- very strange indeed! :-(";
                 AudioFileFormat.Type audioType = maryRequest.getAudioFileFormat().getType();
                 AudioStreamNHttpEntity entity = new AudioStreamNHttpEntity(maryRequest);
-                new Thread(entity, "HTTPWriter "+maryRequest.getId()).start();
+                getAudioWriters().execute(entity);
                 // entity knows its contentType, no need to set explicitly here.
                 response.setEntity(entity);
                 response.setStatusCode(HttpStatus.SC_OK);
-                return;
+                return false;
             } else { // not streaming audio
-                // Process input data to output data
+                // Process input data to output data on a synthesis thread,
+                // which submits the response when it is complete:
                 try {
-                    maryRequest.process(); // this may take some time
-                } catch (Throwable e) {
-                    String message = "Processing failed.";
-                    logger.error(message, e);
-                    MaryHttpServerUtils.errorInternalServerError(response, message, e);
+                    SynthesisExecutor.getExecutor().submit(new Runnable() {
+                        public void run()
+                        {
+                            try {
+                                finishRequest(processAndWriteOutput(maryRequest, response));
+                            } finally {
+                                trigger.submitResponse(response);
+                            }
+                        }
+                    }, voice);
+                    return true;
+                } catch (RejectedExecutionException e) {
+                    logger.warn("Rejecting request "+maryRequest.getId()+": "+e.getMessage());
+                    MaryHttpServerUtils.errorServiceUnavailable(response, e.getMessage());
                     ok = false;
                 }
-                if (ok) {
-                    // Write output data to client
-                    try {
-                        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                        maryRequest.writeOutputData(outputStream);
-                        String contentType;
-                        if (maryRequest.getOutputType().isXMLType() || maryRequest.getOutputType().isTextType()) //text output
-                            contentType = "text/plain; charset=UTF-8";
-                        else //audio output
-                            contentType = MaryHttpServerUtils.getMimeType(maryRequest.getAudioFileFormat().getType());
-                        MaryHttpServerUtils.toHttpResponse(outputStream.toByteArray(), response, contentType);
-                    } catch (Exception e) {
-                        String message = "Cannot write output";
-                        logger.warn(message, e);
-                        MaryHttpServerUtils.errorInternalServerError(response, message, e);
-                        ok = false;
-                    } 
-                }
             }
         }
 
-       
+        finishRequest(ok);
+        return false;
+    }
+
+    /**
+     * Process the request and write the output data into the response.
+     * @return true if successful, false if an error response was created.
+     */
+    private boolean processAndWriteOutput(Request maryRequest, HttpResponse response)
+    {
+        try {
+            maryRequest.process(); // this may take some time
+        } catch (Throwable e) {
+            String message = "Processing failed.";
+            logger.error(message, e);
+            MaryHttpServerUtils.errorInternalServerError(response, message, e);
+            return false;
+        }
+        // Write output data to client
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            maryRequest.writeOutputData(outputStream);
+            String contentType;
+            if (maryRequest.getOutputType().isXMLType() || maryRequest.getOutputType().isTextType()) //text output
+                contentType = "text/plain; charset=UTF-8";
+            else //audio output
+                contentType = MaryHttpServerUtils.getMimeType(maryRequest.getAudioFileFormat().getType());
+            MaryHttpServerUtils.toHttpResponse(outputStream.toByteArray(), response, contentType);
+        } catch (Exception e) {
+            String message = "Cannot write output";
+            logger.warn(message, e);
+            MaryHttpServerUtils.errorInternalServerError(response, message, e);
+            return false;
+        }
+        return true;
+    }
+
+    private void finishRequest(boolean ok)
+    {
         if (ok)
             logger.info("Request handled successfully.");
         else
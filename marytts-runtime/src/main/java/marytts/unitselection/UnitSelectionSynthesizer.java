@@ -39,6 +39,7 @@ import marytts.datatypes.MaryDataType;
 import marytts.datatypes.MaryXML;
 import marytts.exceptions.SynthesisException;
 import marytts.modules.synthesis.Voice;
+import marytts.modules.synthesis.VoiceLifecycleManager;
 import marytts.modules.synthesis.WaveformSynthesizer;
 import marytts.modules.synthesis.Voice.Gender;
 import marytts.server.MaryProperties;
@@ -95,7 +96,7 @@ public class UnitSelectionSynthesizer implements WaveformSynthesizer
             long time = System.currentTimeMillis();
             Voice unitSelVoice = new UnitSelectionVoice(voiceName, this);
             logger.debug("Voice '" + unitSelVoice + "'");
-            Voice.registerVoice(unitSelVoice);    
+            VoiceLifecycleManager.register(unitSelVoice);
             long newtime = System.currentTimeMillis()-time;
             logger.info("Loading of voice "+voiceName+" took "+newtime+" milliseconds");
         }
@@ -154,17 +155,28 @@ public class UnitSelectionSynthesizer implements WaveformSynthesizer
     {
         assert voice instanceof UnitSelectionVoice;
         UnitSelectionVoice v = (UnitSelectionVoice) voice;
-        UnitDatabase udb = v.getDatabase();
+        // keep the voice loaded while its data is in use:
+        v.pin();
+        try {
+            return synthesize(tokensAndBoundaries, v, v.getData(), outputParams);
+        } finally {
+            v.unpin();
+        }
+    }
+
+    private AudioInputStream synthesize(List<Element> tokensAndBoundaries, UnitSelectionVoice voice, UnitSelectionVoice.Data data, String outputParams)
+        throws SynthesisException
+    {
+        UnitDatabase udb = data.database;
         // Select:
-        UnitSelector unitSel = v.getUnitSelector();
+        UnitSelector unitSel = data.unitSelector;
         UnitConcatenator unitConcatenator;
         if (outputParams != null && outputParams.contains("MODIFICATION")) {
-            unitConcatenator = v.getModificationConcatenator();
+            unitConcatenator = voice.getModificationConcatenator(data);
         } else {
-            unitConcatenator = v.getConcatenator();
+            unitConcatenator = data.concatenator;
         }
-        // TODO: check if we actually need to access v.getDatabase() here
-        UnitDatabase database = v.getDatabase();
+        UnitDatabase database = data.database;
         logger.debug("Selecting units with a "+unitSel.getClass().getName()+" from a "+database.getClass().getName());
         List<SelectedUnit> selectedUnits = unitSel.selectUnits(tokensAndBoundaries, voice);
         //if (logger.getEffectiveLevel().equals(Level.DEBUG)) {
@@ -61,6 +61,7 @@ import marytts.unitselection.select.JoinModelCost;
 import marytts.unitselection.select.StatisticalCostFunction;
 import marytts.unitselection.select.TargetCostFunction;
 import marytts.unitselection.select.UnitSelector;
+import marytts.util.LoadingTimer;
 
 /**
  * A Unit Selection Voice
@@ -68,13 +69,22 @@ import marytts.unitselection.select.UnitSelector;
  */
 public class UnitSelectionVoice extends Voice { 
 
-    protected UnitDatabase database;
-    protected UnitSelector unitSelector;
-    protected UnitConcatenator concatenator;
-    protected UnitConcatenator modificationConcatenator;
+    /**
+     * The data of a unit selection voice which is loaded on demand.
+     * A request gets all of it from one call of {@link UnitSelectionVoice#getData()},
+     * so that it keeps working on the same data if the voice is unloaded in the meantime.
+     */
+    protected static class Data
+    {
+        protected UnitDatabase database;
+        protected UnitSelector unitSelector;
+        protected UnitConcatenator concatenator;
+        protected UnitConcatenator modificationConcatenator;
+        protected CART[] f0Carts;
+    }
+
     protected String domain;
     protected String name;
-    protected CART[] f0Carts;
     protected String exampleText;
 
     
@@ -97,6 +107,31 @@ public class UnitSelectionVoice extends Voice {
             if (exampleTextStream != null) {
                 readExampleText(exampleTextStream);
             }
+        } catch (MaryConfigurationException mce) {
+            throw mce;
+        } catch (Exception ex) {
+            throw new MaryConfigurationException("Cannot build unit selection voice '"+name+"'", ex);
+        }
+        
+    }
+
+    @Override
+    public boolean hasLoadableData()
+    {
+        return true;
+    }
+
+    /**
+     * Load the unit database, the cost functions, the unit selector and concatenator
+     * and any f0 trees of this voice.
+     */
+    @Override
+    protected Data loadData() throws MaryConfigurationException
+    {
+        try {
+            Data data = new Data();
+            String header = "voice."+name;
+            LoadingTimer timer = new LoadingTimer("Unit selection voice "+name);
             
             FeatureProcessorManager featProcManager = FeatureRegistry.getFeatureProcessorManager(this);
             if (featProcManager == null) featProcManager = FeatureRegistry.getFeatureProcessorManager(getLocale());
@@ -109,6 +144,7 @@ public class UnitSelectionVoice extends Voice {
             String targetCostClass = MaryProperties.needProperty(header+".targetCostClass");
             TargetCostFunction targetFunction = (TargetCostFunction) Class.forName(targetCostClass).newInstance();
             targetFunction.load(featureFileName, targetWeightStream, featProcManager);
+            timer.done("target cost function");
             
             // build joinCostFunction
             logger.debug("...loading join cost function...");
@@ -118,6 +154,7 @@ public class UnitSelectionVoice extends Voice {
                 ((JoinModelCost)joinFunction).setFeatureDefinition(targetFunction.getFeatureDefinition());
             }
             joinFunction.init(header);
+            timer.done("join cost function");
             
             // build sCost function
             StatisticalCostFunction sCostFunction = null;
@@ -127,6 +164,7 @@ public class UnitSelectionVoice extends Voice {
                 String sCostClass = MaryProperties.needProperty(header+".sCostClass");
                 sCostFunction = (StatisticalCostFunction) Class.forName(sCostClass).newInstance();
                 sCostFunction.init(header);
+                timer.done("scost function");
             }
             
             
@@ -136,6 +174,7 @@ public class UnitSelectionVoice extends Voice {
             String unitsFile = MaryProperties.needFilename(header+".unitsFile");
             UnitFileReader unitReader = (UnitFileReader) Class.forName(unitReaderClass).newInstance();
             unitReader.load(unitsFile);
+            timer.done("units");
             
             logger.debug("...loading cart file...");
             //String cartReaderClass = MaryProperties.needProperty(header+".cartReaderClass");
@@ -144,6 +183,7 @@ public class UnitSelectionVoice extends Voice {
             cartStream.close();
             //get the backtrace information
             int backtrace = MaryProperties.getInteger(header+".cart.backtrace", 100);
+            timer.done("cart");
             
             logger.debug("...loading audio time line...");
             String timelineReaderClass = MaryProperties.needProperty(header+".audioTimelineReaderClass");
@@ -162,21 +202,23 @@ public class UnitSelectionVoice extends Voice {
                 logger.debug("...loading basename time line...");
                 basenameTimelineReader = new TimelineReader(basenameTimelineFile);
             }
+            timer.done("timelines");
             
             //build and load database
             logger.debug("...instantiating database...");
             String databaseClass = MaryProperties.needProperty(header+".databaseClass");
-            database = (UnitDatabase) Class.forName(databaseClass).newInstance();
+            UnitDatabase database = (UnitDatabase) Class.forName(databaseClass).newInstance();
             if(useSCost) {
                 database.load(targetFunction, joinFunction, sCostFunction , unitReader, cart, timelineReader, basenameTimelineReader, backtrace);
             } else {
                 database.load(targetFunction, joinFunction, unitReader, cart, timelineReader, basenameTimelineReader, backtrace);
             }
+            timer.done("database");
             
             //build Selector
             logger.debug("...instantiating unit selector...");
             String selectorClass = MaryProperties.needProperty(header+".selectorClass");
-            unitSelector = (UnitSelector) Class.forName(selectorClass).newInstance();
+            UnitSelector unitSelector = (UnitSelector) Class.forName(selectorClass).newInstance();
             float targetCostWeights = Float.parseFloat(MaryProperties.getProperty(header+".viterbi.wTargetCosts", "0.33"));
             int beamSize = MaryProperties.getInteger(header+".viterbi.beamsize", 100);
             if (!useSCost) {
@@ -185,21 +227,29 @@ public class UnitSelectionVoice extends Voice {
                 float sCostWeights = Float.parseFloat(MaryProperties.getProperty(header+".viterbi.wSCosts", "0.33"));
                 unitSelector.load(database, targetCostWeights, sCostWeights, beamSize);
             }
+            // optional pruning of the search by cost, in addition to or instead of the beam (beamsize 0):
+            double pathThreshold = Double.parseDouble(MaryProperties.getProperty(header+".viterbi.pathThreshold", "Infinity"));
+            double candidateThreshold = Double.parseDouble(MaryProperties.getProperty(header+".viterbi.candidateThreshold", "Infinity"));
+            unitSelector.setPruning(pathThreshold, candidateThreshold);
+            timer.done("unit selector");
             
             //samplingRate -> bin, audioformat -> concatenator
             //build Concatenator
             logger.debug("...instantiating unit concatenator...");
             String concatenatorClass = MaryProperties.needProperty(header+".concatenatorClass");
-            concatenator = (UnitConcatenator) Class.forName(concatenatorClass).newInstance();
+            UnitConcatenator concatenator = (UnitConcatenator) Class.forName(concatenatorClass).newInstance();
             concatenator.load(database);
+            timer.done("concatenator");
+            data.database = database;
+            data.unitSelector = unitSelector;
+            data.concatenator = concatenator;
             
             // TODO: this can be deleted at the same time as CARTF0Modeller
             // see if there are any voice-specific duration and f0 models to load
-            f0Carts = null;
             InputStream leftF0CartStream = MaryProperties.getStream(header+".f0.cart.left");
             if (leftF0CartStream != null) {
                 logger.debug("...loading f0 trees...");
-                f0Carts = new CART[3];
+                CART[] f0Carts = new CART[3];
                 f0Carts[0] = new MaryCARTReader().loadFromStream(leftF0CartStream);
                 leftF0CartStream.close();
                 // mid cart:
@@ -210,15 +260,43 @@ public class UnitSelectionVoice extends Voice {
                 InputStream rightF0CartStream = MaryProperties.needStream(header+".f0.cart.right");
                 f0Carts[2] = new MaryCARTReader().loadFromStream(rightF0CartStream);
                 rightF0CartStream.close();
+                data.f0Carts = f0Carts;
+                timer.done("f0 trees");
             }
+            logger.info(timer);
+            return data;
         } catch (MaryConfigurationException mce) {
             throw mce;
         } catch (Exception ex) {
-            throw new MaryConfigurationException("Cannot build unit selection voice '"+name+"'", ex);
+            throw new MaryConfigurationException("Cannot load unit selection voice '"+name+"'", ex);
         }
-        
     }
-    
+
+    /**
+     * The sizes of the data files, as an estimate of the memory the loaded data takes.
+     */
+    @Override
+    protected long estimateDataMemory()
+    {
+        String header = "voice."+name;
+        String[] fileProperties = new String[] { ".featureFile", ".unitsFile", ".joinCostFile", ".cartFile",
+                ".audioTimelineFile", ".basenameTimeline", ".f0.cart.left", ".f0.cart.mid", ".f0.cart.right" };
+        long size = 0;
+        for (String property : fileProperties) {
+            size += getFileSize(MaryProperties.getFilename(header+property));
+        }
+        return size;
+    }
+
+    /**
+     * Gets the data of this voice, loading it if necessary. Callers which need several parts of the data,
+     * e.g. the database and the unit selector, should get them all from one Data object.
+     * @throws IllegalStateException if the data cannot be loaded.
+     */
+    protected Data getData()
+    {
+        return (Data) useData();
+    }
     
     /**
      * Gets the database of this voice
@@ -226,7 +304,7 @@ public class UnitSelectionVoice extends Voice {
      */
     public UnitDatabase getDatabase()
     {
-        return database;
+        return getData().database;
     }
     
     
@@ -236,7 +314,7 @@ public class UnitSelectionVoice extends Voice {
      */
     public UnitSelector getUnitSelector()
     {
-        return unitSelector;
+        return getData().unitSelector;
     }
     
     /**
@@ -245,7 +323,7 @@ public class UnitSelectionVoice extends Voice {
      */
     public UnitConcatenator getConcatenator()
     {
-        return concatenator;
+        return getData().concatenator;
     }
 
     /**
@@ -254,27 +332,42 @@ public class UnitSelectionVoice extends Voice {
      * @return the modifying UnitConcatenator
      */
     public UnitConcatenator getModificationConcatenator() {
-        if (modificationConcatenator == null) {
-            // get sensible minimum and maximum values:
-            try {
-                // initialize with values from properties:
-                double minTimeScaleFactor = Double.parseDouble(MaryProperties.getProperty("voice." + name + ".prosody.modification.duration.factor.minimum"));
-                double maxTimeScaleFactor = Double.parseDouble(MaryProperties.getProperty("voice." + name + ".prosody.modification.duration.factor.maximum"));
-                double minPitchScaleFactor = Double.parseDouble(MaryProperties.getProperty("voice." + name + ".prosody.modification.f0.factor.minimum"));
-                double maxPitchScaleFactor = Double.parseDouble(MaryProperties.getProperty("voice." + name + ".prosody.modification.f0.factor.maximum"));
-                logger.debug("Initializing FD-PSOLA unit concatenator with the following parameter thresholds:");
-                logger.debug("minimum duration modification factor: " + minTimeScaleFactor);
-                logger.debug("maximum duration modification factor: " + maxTimeScaleFactor);
-                logger.debug("minimum F0 modification factor: " + minPitchScaleFactor);
-                logger.debug("maximum F0 modification factor: " + maxPitchScaleFactor);
-                modificationConcatenator = new FdpsolaUnitConcatenator(minTimeScaleFactor, maxTimeScaleFactor, minPitchScaleFactor, maxPitchScaleFactor);
-            } catch (Exception e) {
-                // ignore -- defaults will be used
-                logger.debug("Initializing FD-PSOLA unit concatenator with default parameter thresholds.");
-                modificationConcatenator = new FdpsolaUnitConcatenator();
+        return getModificationConcatenator(getData());
+    }
+
+    /**
+     * Get the modification UnitConcatenator for the given data of this voice, creating it on first use.
+     */
+    protected UnitConcatenator getModificationConcatenator(Data data) {
+        synchronized (data) {
+            if (data.modificationConcatenator == null) {
+                data.modificationConcatenator = createModificationConcatenator(data.database);
             }
-            modificationConcatenator.load(database);
+            return data.modificationConcatenator;
+        }
+    }
+
+    private UnitConcatenator createModificationConcatenator(UnitDatabase database) {
+        UnitConcatenator modificationConcatenator;
+        // get sensible minimum and maximum values:
+        try {
+            // initialize with values from properties:
+            double minTimeScaleFactor = Double.parseDouble(MaryProperties.getProperty("voice." + name + ".prosody.modification.duration.factor.minimum"));
+            double maxTimeScaleFactor = Double.parseDouble(MaryProperties.getProperty("voice." + name + ".prosody.modification.duration.factor.maximum"));
+            double minPitchScaleFactor = Double.parseDouble(MaryProperties.getProperty("voice." + name + ".prosody.modification.f0.factor.minimum"));
+            double maxPitchScaleFactor = Double.parseDouble(MaryProperties.getProperty("voice." + name + ".prosody.modification.f0.factor.maximum"));
+            logger.debug("Initializing FD-PSOLA unit concatenator with the following parameter thresholds:");
+            logger.debug("minimum duration modification factor: " + minTimeScaleFactor);
+            logger.debug("maximum duration modification factor: " + maxTimeScaleFactor);
+            logger.debug("minimum F0 modification factor: " + minPitchScaleFactor);
+            logger.debug("maximum F0 modification factor: " + maxPitchScaleFactor);
+            modificationConcatenator = new FdpsolaUnitConcatenator(minTimeScaleFactor, maxTimeScaleFactor, minPitchScaleFactor, maxPitchScaleFactor);
+        } catch (Exception e) {
+            // ignore -- defaults will be used
+            logger.debug("Initializing FD-PSOLA unit concatenator with default parameter thresholds.");
+            modificationConcatenator = new FdpsolaUnitConcatenator();
         }
+        modificationConcatenator.load(database);
         return modificationConcatenator;
     }
 
@@ -315,12 +408,13 @@ public class UnitSelectionVoice extends Voice {
     
     public CART[] getF0Trees()
     {
-        return f0Carts;
+        return getData().f0Carts;
     }
     
     
     public FeatureDefinition getF0CartsFeatDef()
     {
+        CART[] f0Carts = getData().f0Carts;
         if (f0Carts == null || f0Carts.length < 1) return null;
         return f0Carts[0].getFeatureDefinition();
     }
@@ -39,11 +39,13 @@ import java.util.List;
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 
+import marytts.server.MaryProperties;
 import marytts.unitselection.analysis.ProsodyAnalyzer;
 import marytts.unitselection.data.TimelineReader;
 import marytts.unitselection.data.UnitDatabase;
 import marytts.unitselection.select.SelectedUnit;
 import marytts.util.MaryUtils;
+import marytts.util.Metrics;
 import marytts.util.data.BufferedDoubleDataSource;
 import marytts.util.data.Datagram;
 import marytts.util.data.DatagramDoubleDataSource;
@@ -69,6 +71,18 @@ public class BaseUnitConcatenator implements UnitConcatenator
     
     protected ProsodyAnalyzer prosodyAnalyzer;
 
+    /**
+     * Whether the audio is generated incrementally while it is read, rather than for the whole sentence
+     * before getAudio() returns; set from the property <code>unitselection.concatenation.streaming</code>.
+     * Only the signal processing is incremental: the datagrams of all units are still read from the timeline,
+     * and the prosody of the whole sentence is analysed, before getAudio() returns, because the realised durations
+     * must be known by then and the {@link ProsodyAnalyzer} works on the whole sentence.
+     */
+    protected boolean streaming;
+
+    private static final Metrics.Histogram concatenationTime = Metrics.histogram("mary_concatenation_seconds",
+            "Time taken to read the selected units from the timeline and prepare their audio", Metrics.TIME_BUCKETS);
+
     /**
      * Empty Constructor; need to call load(UnitDatabase) separately
      * @see #load(UnitDatabase)
@@ -91,6 +105,7 @@ public class BaseUnitConcatenator implements UnitConcatenator
                 sampleRate, // nr. of frames per second
                 true); // big-endian;
         this.unitToTimelineSampleRateFactor =  sampleRate / (double) database.getUnitFileReader().getSampleRate();
+        this.streaming = MaryProperties.getBoolean("unitselection.concatenation.streaming", false);
     }
     
     /**
@@ -106,7 +121,10 @@ public class BaseUnitConcatenator implements UnitConcatenator
 
     
     /**
-     * Build the audio stream from the units
+     * Build the audio stream from the units.
+     * The units' realised durations are set when this method returns;
+     * in streaming mode, the audio samples may still be generated while the stream is read,
+     * but reading the units from the timeline and analysing their prosody is done here for all units.
      * 
      * @param units the units
      * @return the resulting audio stream
@@ -114,6 +132,7 @@ public class BaseUnitConcatenator implements UnitConcatenator
     public AudioInputStream getAudio(List<SelectedUnit> units) throws IOException
     {
         logger.debug("Getting audio for "+units.size()+" units");
+        long startTime = System.nanoTime();
 
         // 1. Get the raw audio material for each unit from the timeline
         getDatagramsFromTimeline(units);
@@ -129,7 +148,9 @@ public class BaseUnitConcatenator implements UnitConcatenator
         }
         
         // 3. Generate audio to match the target pitchmarks as closely as possible
-        return generateAudioStream(units);
+        AudioInputStream audio = generateAudioStream(units);
+        concatenationTime.observeNanos(System.nanoTime() - startTime);
+        return audio;
     }
 
     /**
@@ -557,6 +557,12 @@ public class FdpsolaUnitConcatenator extends OverlapUnitConcatenator {
         double[][] tscales = getRealizedTimeScales(realizedPhones);
         double[][] pscales = getRealizedPitchScales(realizedPhones);
         
+        if (streaming) {
+            // the exact durations are known only once the frames have been processed, so use those aimed at:
+            setScaledRealizedUnitDataDurations(realizedPhones, datagrams, tscales);
+            return new FDPSOLAProcessor().processDecruftedIncrementally(datagrams, rightContexts, audioformat, voicings, pscales, tscales);
+        }
+
         // process into audio stream:
         DDSAudioInputStream stream = (new FDPSOLAProcessor()).processDecrufted(datagrams, rightContexts, audioformat, voicings, pscales, tscales);
         
@@ -591,6 +597,40 @@ public class FdpsolaUnitConcatenator extends OverlapUnitConcatenator {
         }
     }
     
+    /**
+     * Set the duration of each realized unit to the duration that its time scale factors aim at, i.e. the sum of its
+     * Datagram durations, each multiplied with its time scale factor. This is used in streaming mode, where the Datagrams
+     * are still being processed when the durations are needed.
+     * 
+     * @param phones
+     *            realized phones
+     * @param datagrams
+     *            array of arrays of Datagrams, matching the realized units of <b>phones</b>
+     * @param tscales
+     *            time scale factors, matching <b>datagrams</b>
+     */
+    private void setScaledRealizedUnitDataDurations(List<Phone> phones, Datagram[][] datagrams, double[][] tscales) {
+        int phIndex = 0;
+        for (Phone phone : phones) {
+            if (phone.getLeftTargetDuration() > 0) {
+                phone.getLeftUnitData().setUnitDuration(getScaledDuration(datagrams[phIndex], tscales[phIndex]));
+                phIndex++;
+            }
+            if (phone.getRightTargetDuration() > 0) {
+                phone.getRightUnitData().setUnitDuration(getScaledDuration(datagrams[phIndex], tscales[phIndex]));
+                phIndex++;
+            }
+        }
+    }
+
+    private int getScaledDuration(Datagram[] datagrams, double[] tscales) {
+        double duration = 0;
+        for (int dg = 0; dg < datagrams.length; dg++) {
+            duration += datagrams[dg].getDuration() * tscales[dg];
+        }
+        return (int) Math.round(duration);
+    }
+
     private void updateRealizedUnitDataDurations(List<Phone> phones, Datagram[][] datagrams) {
         int phIndex = 0;
         for (Phone phone : phones) {
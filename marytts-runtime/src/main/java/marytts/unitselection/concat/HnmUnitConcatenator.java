@@ -30,6 +30,8 @@
 package marytts.unitselection.concat;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.sound.sampled.AudioInputStream;
@@ -46,6 +48,7 @@ import marytts.unitselection.data.Unit;
 import marytts.unitselection.select.SelectedUnit;
 import marytts.util.data.BufferedDoubleDataSource;
 import marytts.util.data.Datagram;
+import marytts.util.data.ProducingDoubleDataSource;
 import marytts.util.data.audio.DDSAudioInputStream;
 import marytts.util.math.MathUtils;
 
@@ -117,6 +120,7 @@ public class HnmUnitConcatenator extends OverlapUnitConcatenator {
         Datagram[][] datagrams = new Datagram[len][];
         Datagram[] leftContexts = new Datagram[len];
         Datagram[] rightContexts = new Datagram[len];
+        List<Integer> chunkEnds = new ArrayList<Integer>();
         for (int i=0; i<len; i++) 
         {
             SelectedUnit unit = units.get(i);
@@ -150,6 +154,17 @@ public class HnmUnitConcatenator extends OverlapUnitConcatenator {
                 // same as the next selected unit.
                 rightContexts[i] = unitData.getRightContextFrame(); // may be null
             }
+            if (unit.getTarget().isSilence() || nextInDB == null || !nextInDB.equals(nextSelected)) {
+                // in streaming mode, a chunk ends at a pause, where the next selected unit is not the next one in the DB,
+                // and at the last unit
+                chunkEnds.add(i+1);
+            }
+        }
+
+        if (streaming) {
+            HnmDataProducer producer = new HnmDataProducer(datagrams, leftContexts, rightContexts, chunkEnds);
+            producer.start();
+            return new DDSAudioInputStream(producer, audioformat);
         }
 
         BufferedDoubleDataSource audioSource = synthesize(datagrams, leftContexts, rightContexts);
@@ -252,6 +267,100 @@ public class HnmUnitConcatenator extends OverlapUnitConcatenator {
             return null;
     }
     
+    /**
+     * Get the analysis duration of the HNM frames among the given datagrams.
+     * @param datagrams
+     * @return the sum of the analysis durations of all HnmDatagrams, in seconds
+     */
+    protected double getAnalysisDuration(Datagram[][] datagrams)
+    {
+        double duration = 0;
+        for (int i=0; i<datagrams.length; i++)
+        {
+            for (int j=0; j<datagrams[i].length; j++)
+            {
+                if (datagrams[i][j]!=null && (datagrams[i][j] instanceof HnmDatagram))
+                    duration += ((HntmSpeechFrame)((HnmDatagram)datagrams[i][j]).getFrame()).deltaAnalysisTimeInSeconds;
+            }
+        }
+        return duration;
+    }
+
+    /**
+     * Synthesizes the units chunk by chunk, in streaming mode. Each chunk is synthesized on its own
+     * and placed at the analysis time of its first frame; the part of a chunk's output that extends
+     * beyond that time of the next chunk is overlap-added with the next chunk. The audio up to the
+     * start of the next chunk can therefore be read as soon as a chunk is synthesized.
+     * The datagrams of all chunks have been read from the timeline by {@link #getAudio(List)} before.
+     * If synthesis fails, the reader gets the audio of the chunks done so far and then an error.
+     */
+    protected class HnmDataProducer extends ProducingDoubleDataSource
+    {
+        private Datagram[][] datagrams;
+        private Datagram[] leftContexts;
+        private Datagram[] rightContexts;
+        private List<Integer> chunkEnds;
+
+        /**
+         * @param chunkEnds the index after the last unit of each chunk, in increasing order; the last one must be the number of units.
+         */
+        public HnmDataProducer(Datagram[][] datagrams, Datagram[] leftContexts, Datagram[] rightContexts, List<Integer> chunkEnds)
+        {
+            this.datagrams = datagrams;
+            this.leftContexts = leftContexts;
+            this.rightContexts = rightContexts;
+            this.chunkEnds = chunkEnds;
+        }
+
+        public void run()
+        {
+            Exception failure = null;
+            try {
+                double sampleRate = audioformat.getSampleRate();
+                double[] pending = new double[0]; // samples from position pendingStart on that have not been put yet
+                long pendingStart = 0;
+                double chunkStartInSeconds = 0;
+                int start = 0;
+                for (int end : chunkEnds) {
+                    Datagram[][] chunk = Arrays.copyOfRange(datagrams, start, end);
+                    BufferedDoubleDataSource chunkAudio = synthesize(chunk, Arrays.copyOfRange(leftContexts, start, end),
+                            Arrays.copyOfRange(rightContexts, start, end));
+                    double[] samples = chunkAudio != null ? chunkAudio.getAllData() : new double[0];
+                    // add the chunk to the pending samples:
+                    int offset = (int) (Math.round(chunkStartInSeconds * sampleRate) - pendingStart);
+                    if (pending.length < offset + samples.length) {
+                        pending = Arrays.copyOf(pending, offset + samples.length);
+                    }
+                    for (int k=0; k<samples.length; k++) {
+                        pending[offset+k] += samples[k];
+                    }
+                    // put the samples that later chunks cannot overlap:
+                    chunkStartInSeconds += getAnalysisDuration(chunk);
+                    int ready = end < datagrams.length ?
+                            (int) (Math.round(chunkStartInSeconds * sampleRate) - pendingStart) : pending.length;
+                    if (pending.length < ready) {
+                        pending = Arrays.copyOf(pending, ready);
+                    }
+                    putData(pending, 0, ready);
+                    pending = Arrays.copyOfRange(pending, ready, pending.length);
+                    pendingStart += ready;
+                    start = end;
+                }
+            } catch (Exception e) {
+                logger.error("Cannot synthesize", e);
+                failure = e;
+            } finally {
+                // do not leave the reader waiting for data that will never come,
+                // and do not let it take incomplete audio for complete:
+                if (failure != null) {
+                    putEndOfStream(failure);
+                } else {
+                    putEndOfStream();
+                }
+            }
+        }
+    }
+
     public static class HnmUnitData extends OverlapUnitConcatenator.OverlapUnitData
     {
         protected Datagram leftContextFrame;
@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import marytts.features.FeatureVector;
+import marytts.unitselection.select.DiphoneFFRTargetCostFunction;
 import marytts.unitselection.select.DiphoneTarget;
 import marytts.unitselection.select.HalfPhoneTarget;
 import marytts.unitselection.select.Target;
@@ -134,21 +135,34 @@ public class DiphoneUnitDatabase extends UnitDatabase {
             }
         }
         
-        // now create ArrayList of ViterbiCandidates from the candidateUnitSet, blacklisting along the way:
-        ArrayList<ViterbiCandidate> candidates = new ArrayList<ViterbiCandidate>(candidateUnitSet.size());
+        // now create the diphone units from the candidateUnitSet, blacklisting along the way:
+        List<Unit> diphoneUnits = new ArrayList<Unit>(candidateUnitSet.size());
         for (int leftIndex : candidateUnitSet.toArray()) {
             DiphoneUnit diphoneUnit = new DiphoneUnit(unitReader.units[leftIndex], unitReader.units[leftIndex+1]);
-            ViterbiCandidate candidate = new ViterbiCandidate(diphoneTarget, diphoneUnit, targetCostFunction);
             // Blacklisting:
             if (blacklist.equals("")) { // no blacklist
-                candidates.add(candidate);
+                diphoneUnits.add(diphoneUnit);
             } else { // maybe exclude candidate
                 unitBasename = getFilename(diphoneUnit);
                 if (!blacklist.contains(unitBasename)) {
-                    candidates.add(candidate);
+                    diphoneUnits.add(diphoneUnit);
                 }
             }
         }
+        ArrayList<ViterbiCandidate> candidates = new ArrayList<ViterbiCandidate>(diphoneUnits.size());
+        if (targetCostFunction instanceof DiphoneFFRTargetCostFunction) {
+            // score all candidates for this target in one go
+            Unit[] units = diphoneUnits.toArray(new Unit[diphoneUnits.size()]);
+            double[] costs = new double[units.length];
+            ((DiphoneFFRTargetCostFunction) targetCostFunction).cost(diphoneTarget, units, costs);
+            for (int i = 0; i < units.length; i++) {
+                candidates.add(new ViterbiCandidate(diphoneTarget, units[i], costs[i]));
+            }
+        } else {
+            for (Unit diphoneUnit : diphoneUnits) {
+                candidates.add(new ViterbiCandidate(diphoneTarget, diphoneUnit, targetCostFunction));
+            }
+        }
         
         logger.debug("Preselected "+candidateUnitSet.size()+" diphone candidates for target "+target);
         return candidates;
@@ -117,8 +117,8 @@ public class HnmTimelineReader extends TimelineReader {
 
         Datagram d = null;
 
-        /* If the end of the datagram zone is reached, refuse to read */
-        if (bb.position() == bb.limit()) {
+        /* If the end of the byte buffer is reached, refuse to read */
+        if (!canReadNextDatagram(bb)) {
             // throw new IndexOutOfBoundsException( "Time out of bounds: you are trying to read a datagram at" +
             // " a time which is bigger than the total timeline duration." );
             return null;
@@ -83,8 +83,8 @@ public class LPCTimelineReader extends TimelineReader
         
         Datagram d = null;
         
-        /* If the end of the datagram zone is reached, gracefully refuse to read */
-        if (bb.position() == timeIdxBytePos ) return( null );
+        /* If the end of the byte buffer is reached, gracefully refuse to read */
+        if (!canReadNextDatagram(bb)) return( null );
         /* Else, pop the datagram out of the file */
         try {
             d = new LPCDatagram(bb, lpcOrder );
@@ -73,8 +73,8 @@ public class MCepTimelineReader extends TimelineReader
         
         Datagram d = null;
         
-        /* If the end of the datagram zone is reached, gracefully refuse to read */
-        if (bb.position() == timeIdxBytePos ) return( null );
+        /* If the end of the byte buffer is reached, gracefully refuse to read */
+        if (!canReadNextDatagram(bb)) return( null );
         /* Else, pop the datagram out of the file */
         try {
             d = new MCepDatagram(bb, order );
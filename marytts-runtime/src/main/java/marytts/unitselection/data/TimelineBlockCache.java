@@ -0,0 +1,249 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.unitselection.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import marytts.util.Metrics;
+
+/**
+ * A small LRU cache of fixed-size, page-aligned blocks read from a timeline file.
+ * It is used by {@link TimelineReader} when the datagram area cannot be memory mapped,
+ * so that repeated lookups of neighbouring units hit memory instead of the file channel.
+ * <p>
+ * Pages are byte buffers covering the byte range
+ * [pageStart, min(pageStart+pageSize, endPos)) of the file. The buffers of evicted pages
+ * are kept on a free list and reused for the next miss, so that a steady stream of misses
+ * does not allocate a new page each time.
+ * <p>
+ * A page returned by {@link #getPage(long)} is pinned by the calling thread: it is not reused,
+ * even if it is evicted meanwhile, until that thread calls {@link #releasePages()}. Callers can
+ * therefore read from views of a page without locking until they release it.
+ *
+ * @author agent
+ */
+class TimelineBlockCache
+{
+    private final FileChannel fileChannel;
+    private final int pageSize;
+    private final int maxPages;
+    private final long endPos;
+
+    private final LinkedHashMap<Long, Page> pages;
+    /** Buffers of evicted pages that no thread has pinned, ready to be filled again; guarded by pages */
+    private final List<ByteBuffer> freeBuffers;
+    private final ThreadLocal<List<Page>> pinnedPages = new ThreadLocal<List<Page>>() {
+        @Override
+        protected List<Page> initialValue() {
+            return new ArrayList<Page>();
+        }
+    };
+
+    // Totals over all block caches, for the server statistics:
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong allocations = new AtomicLong();
+
+    private static final String PAGES = "mary_timeline_blockcache_pages_total";
+    private static final String PAGES_HELP = "Timeline block cache page requests by whether the page was in memory";
+    private static final Metrics.Counter hitsMetric = Metrics.counter(PAGES, PAGES_HELP, "result", "hit");
+    private static final Metrics.Counter missesMetric = Metrics.counter(PAGES, PAGES_HELP, "result", "miss");
+
+    /**
+     * @param fileChannel the channel to read from; only positional reads are used, so the channel
+     * can be shared between threads.
+     * @param pageSize the size of one page, in bytes
+     * @param maxPages the maximum number of pages to keep in memory
+     * @param endPos the first byte position in the file that must never be read as part of a page
+     */
+    TimelineBlockCache(FileChannel fileChannel, int pageSize, int maxPages, long endPos)
+    {
+        if (pageSize <= 0 || maxPages <= 0) {
+            throw new IllegalArgumentException("Page size and number of pages must be positive");
+        }
+        this.fileChannel = fileChannel;
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        this.endPos = endPos;
+        this.pages = new LinkedHashMap<Long, Page>(maxPages * 4 / 3 + 1, 0.75f, true);
+        this.freeBuffers = new ArrayList<ByteBuffer>();
+    }
+
+    int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Get the page containing the given file position, and pin it for the calling thread
+     * until it calls {@link #releasePages()}.
+     * @param bytePos a position in the file, less than endPos
+     * @return a read-only view of the page, with position 0 corresponding to the start of the page
+     * and the limit set to the number of valid bytes in the page.
+     * @throws IOException if the page cannot be read from the file
+     */
+    ByteBuffer getPage(long bytePos) throws IOException
+    {
+        long pageStart = bytePos - bytePos % pageSize;
+        Long key = Long.valueOf(pageStart);
+        ByteBuffer buffer;
+        synchronized (pages) {
+            Page page = pages.get(key);
+            if (page != null) {
+                hits.incrementAndGet();
+                hitsMetric.inc();
+                return pin(page);
+            }
+            buffer = freeBuffers.isEmpty() ? null : freeBuffers.remove(freeBuffers.size() - 1);
+        }
+        misses.incrementAndGet();
+        missesMetric.inc();
+        if (buffer == null) {
+            allocations.incrementAndGet();
+            buffer = ByteBuffer.allocate(pageSize);
+        }
+        // Read outside the lock, so that concurrent misses on different pages do not serialise;
+        // the buffer is not reachable by any other thread until it is put into the cache.
+        int toRead = (int) Math.min(pageSize, endPos - pageStart);
+        buffer.clear();
+        buffer.limit(toRead);
+        try {
+            while (buffer.hasRemaining()) {
+                if (fileChannel.read(buffer, pageStart + buffer.position()) < 0) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            synchronized (pages) {
+                freeBuffers.add(buffer);
+            }
+            throw e;
+        }
+        buffer.flip();
+        synchronized (pages) {
+            Page other = pages.get(key);
+            if (other != null) {
+                // another thread has loaded the same page in the meantime
+                freeBuffers.add(buffer);
+                return pin(other);
+            }
+            Page page = new Page(buffer);
+            pages.put(key, page);
+            if (pages.size() > maxPages) {
+                Iterator<Page> it = pages.values().iterator();
+                Page eldest = it.next();
+                it.remove();
+                eldest.cached = false;
+                if (eldest.pins == 0) {
+                    freeBuffers.add(eldest.data);
+                }
+            }
+            return pin(page);
+        }
+    }
+
+    /**
+     * Unpin all pages the calling thread has obtained from {@link #getPage(long)}. Views of these pages
+     * must not be read after this call, because an evicted page is filled with other data on a later miss.
+     */
+    void releasePages()
+    {
+        List<Page> pinned = pinnedPages.get();
+        if (pinned.isEmpty()) {
+            return;
+        }
+        synchronized (pages) {
+            for (Page page : pinned) {
+                page.pins--;
+                if (page.pins == 0 && !page.cached) {
+                    freeBuffers.add(page.data);
+                }
+            }
+        }
+        pinned.clear();
+    }
+
+    /**
+     * Pin the page for the calling thread, once per thread.
+     * Must be called with the lock on pages held.
+     */
+    private ByteBuffer pin(Page page)
+    {
+        List<Page> pinned = pinnedPages.get();
+        if (!pinned.contains(page)) {
+            pinned.add(page);
+            page.pins++;
+        }
+        return page.data.asReadOnlyBuffer();
+    }
+
+    /**
+     * The number of pages that are currently free for reuse.
+     */
+    int getNumFreePages() {
+        synchronized (pages) {
+            return freeBuffers.size();
+        }
+    }
+
+    static long getHits() {
+        return hits.get();
+    }
+
+    static long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * The number of page buffers allocated so far; misses beyond this number reused the buffer of an evicted page.
+     */
+    static long getAllocations() {
+        return allocations.get();
+    }
+
+    /**
+     * The fraction of page requests that could be served from memory.
+     * @return a value between 0 and 1, or 0 if no request has been made yet.
+     */
+    static double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    private static class Page
+    {
+        final ByteBuffer data;
+        /** The number of threads that have pinned this page; guarded by the cache's pages lock */
+        int pins;
+        /** Whether this page is still in the cache; guarded by the cache's pages lock */
+        boolean cached = true;
+
+        Page(ByteBuffer data) {
+            this.data = data;
+        }
+    }
+}
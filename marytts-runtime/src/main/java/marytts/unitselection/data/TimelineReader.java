@@ -43,10 +43,13 @@ import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Vector;
 
 import marytts.exceptions.MaryConfigurationException;
+import marytts.server.MaryProperties;
 import marytts.util.MaryUtils;
+import marytts.util.Metrics;
 import marytts.util.Pair;
 import marytts.util.data.Datagram;
 import marytts.util.data.MaryHeader;
@@ -77,13 +80,33 @@ public class TimelineReader
      */
     protected long totalDuration = -1;
     
-    protected int datagramsBytePos = 0;
-    protected int timeIdxBytePos = 0;
+    protected long datagramsBytePos = 0;
+    protected long timeIdxBytePos = 0;
     
     // exactly one of the two following variables will be non-null after load():
-    private MappedByteBuffer mappedBB = null;
+    private MappedByteBuffer[] mappedSegments = null;
     private FileChannel fileChannel = null;
     
+    /* Only used for memory mapping, i.e. if mappedSegments != null: */
+    /** segmentStarts[i] is the file position at which mappedSegments[i] starts; it is always an index field's byte position. */
+    private long[] segmentStarts = null;
+    /** By default, segments start no more than this many bytes apart */
+    private static final long DEFAULT_SEGMENT_STEP = 0x40000000L; // 1 GB
+    /** By default, the maximum size of one mapped segment */
+    private static final long DEFAULT_MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+    /** Segments start no more than this many bytes apart */
+    private long segmentStep = DEFAULT_SEGMENT_STEP;
+    /** The maximum size of one mapped segment; consecutive segments overlap by at least this minus segmentStep */
+    private long maxSegmentSize = DEFAULT_MAX_SEGMENT_SIZE;
+    
+    /* Only used for piecewise reading, i.e. if fileChannel != null: */
+    private TimelineBlockCache blockCache = null;
+    private static final Metrics.Counter datagramsRead = Metrics.counter("mary_timeline_datagrams_total",
+            "Datagrams read from timeline files");
+    private ThreadLocal<ByteBuffer> scratchBuffers = null;
+    /** Size of the blocks read from the file when memory mapping is not used */
+    private static final int BLOCK_SIZE = 0x10000; // 64 kB
+    
     
     
     /****************/
@@ -118,10 +141,35 @@ public class TimelineReader
      * @throws MaryConfigurationException if no timeline reader can be instantiated from fileName
      */
     public TimelineReader( String fileName, boolean tryMemoryMapping ) throws MaryConfigurationException
+    {
+        this(fileName, tryMemoryMapping, DEFAULT_SEGMENT_STEP, DEFAULT_MAX_SEGMENT_SIZE);
+    }
+
+    /**
+     * Construct a timeline from the given file name, choosing how a memory mapped timeline is cut into segments.
+     * This allows tests to use several segments on small files.
+     * 
+     * @param fileName The file to read the timeline from. 
+     * Must be non-null and point to a valid timeline file.
+     * @param tryMemoryMapping if true, will attempt to read audio data via a memory map, and fall back to piecewise reading.
+     * If false, will immediately go for piecewise reading using a RandomAccessFile.
+     * @param segmentStep the maximum distance in bytes between the starts of two consecutive mapped segments
+     * @param maxSegmentSize the maximum size in bytes of one mapped segment; must be larger than segmentStep
+     * and at most Integer.MAX_VALUE.
+     * @throws NullPointerException if null argument is given
+     * @throws IllegalArgumentException if the segment sizes are not valid
+     * @throws MaryConfigurationException if no timeline reader can be instantiated from fileName
+     */
+    TimelineReader( String fileName, boolean tryMemoryMapping, long segmentStep, long maxSegmentSize ) throws MaryConfigurationException
     {
         if (fileName == null) {
             throw new NullPointerException("Filename is null");
         }
+        if (segmentStep <= 0 || maxSegmentSize <= segmentStep || maxSegmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid segment step "+segmentStep+" or maximum segment size "+maxSegmentSize);
+        }
+        this.segmentStep = segmentStep;
+        this.maxSegmentSize = maxSegmentSize;
         try {
             load(fileName, tryMemoryMapping);
         } catch (Exception e) {
@@ -186,8 +234,8 @@ public class TimelineReader
         }
         
         /* Load the positions of the various subsequent components */
-        datagramsBytePos = (int) headerBB.getLong();
-        timeIdxBytePos = (int) headerBB.getLong();
+        datagramsBytePos = headerBB.getLong();
+        timeIdxBytePos = headerBB.getLong();
         if (timeIdxBytePos < datagramsBytePos) {
             throw new MaryConfigurationException("File seems corrupt: index is expected after data, not before");
         }
@@ -204,22 +252,76 @@ public class TimelineReader
         if (tryMemoryMapping) {
             // Try if we can use a mapped byte buffer:
             try {
-                mappedBB = fc.map(FileChannel.MapMode.READ_ONLY, datagramsBytePos, timeIdxBytePos-datagramsBytePos);
+                mapSegments(fc);
                 file.close(); // if map() succeeded, we don't need the file anymore.
             } catch (IOException ome) {
                 MaryUtils.getLogger("Timeline").warn("Cannot use memory mapping for timeline file '"+fileName+"' -- falling back to piecewise reading");
             }
         }
-        if (!tryMemoryMapping || mappedBB == null) { // use piecewise reading
+        if (!tryMemoryMapping || mappedSegments == null) { // use piecewise reading
             fileChannel = fc;
             assert fileChannel != null;
             // and leave file open
+            int numBlocks = MaryProperties.getInteger("timeline.blockcache.blocks", 64);
+            blockCache = new TimelineBlockCache(fileChannel, BLOCK_SIZE, Math.max(1, numBlocks), timeIdxBytePos);
+            scratchBuffers = new ThreadLocal<ByteBuffer>() {
+                @Override
+                protected ByteBuffer initialValue() {
+                    return ByteBuffer.allocateDirect(BLOCK_SIZE);
+                }
+            };
         }
         
         // postconditions:
         assert idx != null;
         assert procHdr != null;
-        assert fileChannel == null && mappedBB != null || fileChannel != null && mappedBB == null;
+        assert fileChannel == null && mappedSegments != null || fileChannel != null && mappedSegments == null;
+    }
+    
+    /**
+     * Map the datagram zone of the file into memory. A single MappedByteBuffer cannot be larger than 2 GB,
+     * so large timelines are mapped as a sequence of overlapping segments, each starting at the byte position
+     * of an index field. A lookup starting from index field i uses the last segment starting at or before
+     * the byte position of i; since segments are at most segmentStep apart but up to maxSegmentSize long,
+     * any datagram starting before the next segment is fully contained in that segment
+     * unless it is longer than maxSegmentSize minus segmentStep (by default, 1 GB).
+     * On success, mappedSegments and segmentStarts are set; on failure, both are left null.
+     * @param fc the file channel to map
+     * @throws IOException if a segment cannot be mapped
+     */
+    private void mapSegments(FileChannel fc) throws IOException {
+        ArrayList<Long> starts = new ArrayList<Long>();
+        starts.add(datagramsBytePos);
+        long currentStart = datagramsBytePos;
+        long candidate = datagramsBytePos;
+        for (int i=0, n=idx.getNumIdx(); i<n; i++) {
+            long bytePtr = idx.getIdxField(i).bytePtr;
+            if (bytePtr - currentStart > segmentStep && candidate > currentStart) {
+                currentStart = candidate;
+                starts.add(currentStart);
+            }
+            candidate = bytePtr;
+        }
+        MappedByteBuffer[] segments = new MappedByteBuffer[starts.size()];
+        long[] segStarts = new long[starts.size()];
+        for (int i=0; i<segments.length; i++) {
+            segStarts[i] = starts.get(i);
+            long size = Math.min(maxSegmentSize, timeIdxBytePos - segStarts[i]);
+            segments[i] = fc.map(FileChannel.MapMode.READ_ONLY, segStarts[i], size);
+        }
+        if (segments.length > 1) {
+            MaryUtils.getLogger("Timeline").debug("Mapped timeline in "+segments.length+" segments");
+        }
+        segmentStarts = segStarts;
+        mappedSegments = segments;
+    }
+
+    /**
+     * The number of segments the timeline is mapped in.
+     * @return the number of mapped segments, or 0 if the timeline is read piecewise.
+     */
+    int getNumMappedSegments() {
+        return mappedSegments == null ? 0 : mappedSegments.length;
     }
 
     /**
@@ -305,6 +407,8 @@ public class TimelineReader
             }
         } catch (Exception e) {
             throw new MaryConfigurationException("Could not compute total duration", e);
+        } finally {
+            releaseByteBuffers();
         }
         if (!haveReadAll) {
             throw new MaryConfigurationException("Could not read all datagrams to compute total duration");
@@ -379,12 +483,12 @@ public class TimelineReader
      * 
      * @param bb the timeline byte buffer to read from
      * 
-     * @return the current datagram, or null if EOF was encountered
+     * @return the current datagram, or null if EOF was encountered or the datagram is not fully contained in the byte buffer
      */
     protected Datagram getNextDatagram(ByteBuffer bb)  {
         assert bb != null;
-        // If the end of the datagram zone is reached, refuse to read
-        if (bb.position() == bb.limit() ) {
+        // If the end of the byte buffer is reached, refuse to read
+        if (!canReadNextDatagram(bb)) {
             return null;
         }
         // Else, read the datagram from the file
@@ -443,6 +547,8 @@ public class TimelineReader
      * only a part of the available data; however, at least one datagram can be read from the byte buffer.
      * If no further data can be read from it, a new byte buffer must
      * be obtained by calling this method again with a new target time.
+     * When reading piecewise, the byte buffer may be a view of a cached block; it can be read
+     * until the calling thread calls {@link #releaseByteBuffers()}.
      * @param targetTimeInSamples the time position in the file which should be accessed as a byte buffer, in samples.
      * Must be non-negative and less than the total duration of the timeline.
      * @return a pair representing the byte buffer from which to read, and the exact time corresponding to the
@@ -451,22 +557,37 @@ public class TimelineReader
      * @throws IOException, BufferUnderflowException if no byte buffer can be obtained for the requested time.
      */
     protected Pair<ByteBuffer, Long> getByteBufferAtTime(long targetTimeInSamples) throws IOException, BufferUnderflowException {
-        if (mappedBB != null) {
+        if (mappedSegments != null) {
             return getMappedByteBufferAtTime(targetTimeInSamples);
         } else { 
             return loadByteBufferAtTime(targetTimeInSamples);
         }
     }
 
+    /**
+     * Declare that the calling thread has finished reading from the byte buffers it obtained from
+     * {@link #getByteBufferAtTime(long)}, so that the cached blocks they view can be reused.
+     * Does nothing if the timeline is memory mapped.
+     */
+    protected void releaseByteBuffers() {
+        if (blockCache != null) {
+            blockCache.releasePages();
+        }
+    }
+
 
     protected Pair<ByteBuffer, Long> getMappedByteBufferAtTime(long targetTimeInSamples) throws IllegalArgumentException, IOException {
-        assert mappedBB != null;
+        assert mappedSegments != null;
         /* Seek for the time index which comes just before the requested time */
         IdxField idxFieldBefore = idx.getIdxFieldBefore( targetTimeInSamples );
         long time = idxFieldBefore.timePtr;
-        int bytePos = (int) (idxFieldBefore.bytePtr - datagramsBytePos);
-        ByteBuffer bb = mappedBB.duplicate();
-        bb.position(bytePos);
+        /* Find the last segment starting at or before that index field */
+        int seg = Arrays.binarySearch(segmentStarts, idxFieldBefore.bytePtr);
+        if (seg < 0) {
+            seg = Math.max(0, -seg - 2);
+        }
+        ByteBuffer bb = mappedSegments[seg].duplicate();
+        bb.position((int) (idxFieldBefore.bytePtr - segmentStarts[seg]));
         time = hopToTime(bb, time, targetTimeInSamples);
         return new Pair<ByteBuffer, Long>(bb, time);
     }
@@ -475,41 +596,40 @@ public class TimelineReader
     protected Pair<ByteBuffer, Long> loadByteBufferAtTime(long targetTimeInSamples) throws IOException {
         assert fileChannel != null;
         // we must load a chunk of data from the FileChannel
-        int bufSize = 0x10000; // 64 kB
         /* Seek for the time index which comes just before the requested time */
         IdxField idxFieldBefore = idx.getIdxFieldBefore( targetTimeInSamples );
         long time = idxFieldBefore.timePtr;
-        long bytePos = idxFieldBefore.bytePtr;
-        if (bytePos + bufSize > timeIdxBytePos) { // must not read index data as datagrams
-            bufSize = (int) (timeIdxBytePos - bytePos);
-        }
-        ByteBuffer bb = loadByteBuffer(bytePos, bufSize);
+        long bytePos = idxFieldBefore.bytePtr; // the file position corresponding to position 0 in bb
+        ByteBuffer bb = loadByteBuffer(bytePos, Datagram.NUM_HEADER_BYTES);
 
         while (true) {
             if (!canReadDatagramHeader(bb)) {
-                bb = loadByteBuffer(bytePos, bufSize);
-                assert canReadDatagramHeader(bb);
+                bytePos += bb.position();
+                bb = loadByteBuffer(bytePos, Datagram.NUM_HEADER_BYTES);
             }
             int posBefore = bb.position();
-            Datagram d = new Datagram(bb, false);
-            if (time + d.getDuration() > targetTimeInSamples) { // d is our datagram
-                bb.position(posBefore);
-                int datagramNumBytes = Datagram.NUM_HEADER_BYTES+d.getLength();
-                // need to make sure we return a byte buffer from which d can be read
-                if (!canReadAmount(bb, datagramNumBytes)) {
-                    bb = loadByteBuffer(bytePos, Math.max(datagramNumBytes, bufSize));
+            // read the datagram header only, without allocating the data:
+            long duration = bb.getLong();
+            int length = bb.getInt();
+            if (time + duration > targetTimeInSamples) { // this is our datagram
+                // need to make sure we return a byte buffer from which it can be read
+                if (canReadAmount(bb, length)) {
+                    bb.position(posBefore);
+                } else {
+                    bytePos += posBefore;
+                    bb = loadByteBuffer(bytePos, Datagram.NUM_HEADER_BYTES+length);
                 }
-                assert canReadAmount(bb, datagramNumBytes);
+                assert canReadAmount(bb, Datagram.NUM_HEADER_BYTES+length);
                 break;
             } else {
                 // keep on skipping
-                time += d.getDuration();
-                if (canReadAmount(bb, d.getLength())) {
-                    bb.position(bb.position()+d.getLength());
+                time += duration;
+                if (canReadAmount(bb, length)) {
+                    bb.position(bb.position()+length);
                 } else {
                     bytePos += bb.position();
-                    bytePos += d.getLength();
-                    bb = loadByteBuffer(bytePos, bufSize);
+                    bytePos += length;
+                    bb = loadByteBuffer(bytePos, Datagram.NUM_HEADER_BYTES);
                 }
             }
         }
@@ -517,19 +637,90 @@ public class TimelineReader
     }
 
     /**
+     * Get a byte buffer holding the file data starting at the given position. If the requested data lies within
+     * one block of the block cache, this returns a view of the cached block, which extends to the end of the block;
+     * if it spans several blocks, the data is copied into a per-thread scratch buffer which is reused by the next call
+     * from the same thread. Data larger than one block is read directly from the file.
+     * In no case is data from the index part of the file returned.
      * @param bytePos position in fileChannel from which to load the byte buffer
-     * @param bufSize size of the byte buffer
-     * @return the byte buffer, loaded and set such that limit is bufSize and position is 0
+     * @param minBytes the minimum number of bytes the byte buffer should hold, if available before the index
+     * @return the byte buffer, set such that position 0 corresponds to bytePos
      * @throws IOException if the data cannot be read from fileChannel
      */
-    private ByteBuffer loadByteBuffer(long bytePos, int bufSize) throws IOException {
-        ByteBuffer bb = ByteBuffer.allocate(bufSize);
-        fileChannel.read(bb, bytePos); // this will block if another thread is currently reading from fileChannel
-        bb.limit(bb.position());
-        bb.position(0);
-        return bb;
+    private ByteBuffer loadByteBuffer(long bytePos, int minBytes) throws IOException {
+        if (bytePos >= timeIdxBytePos) {
+            return ByteBuffer.allocate(0);
+        }
+        long blockStart = bytePos - bytePos % BLOCK_SIZE;
+        long blockEnd = Math.min(blockStart + BLOCK_SIZE, timeIdxBytePos);
+        if (blockEnd - bytePos >= minBytes || blockEnd == timeIdxBytePos) {
+            ByteBuffer block = blockCache.getPage(bytePos);
+            block.position((int) (bytePos - blockStart));
+            return block.slice();
+        }
+        int bufSize = (int) Math.min(Math.max(minBytes, BLOCK_SIZE), timeIdxBytePos - bytePos);
+        if (bufSize > BLOCK_SIZE) {
+            // e.g. a very long datagram: read it directly rather than flooding the cache with its blocks
+            ByteBuffer bb = ByteBuffer.allocate(bufSize);
+            while (bb.hasRemaining()) {
+                if (fileChannel.read(bb, bytePos + bb.position()) < 0) {
+                    break;
+                }
+            }
+            bb.flip();
+            return bb;
+        }
+        ByteBuffer scratch = scratchBuffers.get();
+        scratch.clear();
+        scratch.limit(bufSize);
+        long pos = bytePos;
+        while (scratch.hasRemaining()) {
+            ByteBuffer block = blockCache.getPage(pos);
+            block.position((int) (pos % BLOCK_SIZE));
+            if (!block.hasRemaining()) {
+                break; // file is shorter than the header claims
+            }
+            if (block.remaining() > scratch.remaining()) {
+                block.limit(block.position() + scratch.remaining());
+            }
+            pos += block.remaining();
+            scratch.put(block);
+        }
+        scratch.flip();
+        return scratch;
+    }
+    
+    /**
+     * Statistics about the block caches of all timelines read piecewise, as reported under /statistics by the http server.
+     * @return a string of "name=value" lines; all counts are zero if every timeline is memory mapped.
+     */
+    public static String getBlockCacheStatistics() {
+        StringBuilder buf = new StringBuilder();
+        buf.append("timeline.blockcache.hits=").append(TimelineBlockCache.getHits()).append("\n");
+        buf.append("timeline.blockcache.misses=").append(TimelineBlockCache.getMisses()).append("\n");
+        buf.append("timeline.blockcache.hitrate=").append(TimelineBlockCache.getHitRate()).append("\n");
+        buf.append("timeline.blockcache.allocations=").append(TimelineBlockCache.getAllocations()).append("\n");
+        return buf.toString();
     }
     
+    /**
+     * Check whether the upcoming datagram can be read completely from the given byte buffer, without changing its position.
+     * When reading piecewise, a byte buffer ends at a block boundary, and the datagram there may be cut anywhere
+     * in its header or its data; in that case, {@link #getNextDatagram(ByteBuffer)} returns null
+     * so that the caller gets a new byte buffer starting at that datagram.
+     * All datagram classes start with the same header, a long duration followed by the int length of the data.
+     * @param bb the timeline byte buffer to read from
+     * @return true if the byte buffer holds the complete datagram at its current position, false otherwise.
+     */
+    protected boolean canReadNextDatagram(ByteBuffer bb) {
+        if (!canReadDatagramHeader(bb)) {
+            return false;
+        }
+        int length = bb.getInt(bb.position() + Long.SIZE/Byte.SIZE); // the length follows the duration
+        // a negative length is reported by the datagram constructor:
+        return length < 0 || canReadAmount(bb, Datagram.NUM_HEADER_BYTES + length);
+    }
+
     private boolean canReadDatagramHeader(ByteBuffer bb) {
         return canReadAmount(bb, Datagram.NUM_HEADER_BYTES);
     }
@@ -550,9 +741,14 @@ public class TimelineReader
      * @throws IOException, BufferUnderflowException if no datagram could be created from the data at the given time.
      */
     public Datagram getDatagram( long targetTimeInSamples) throws IOException {
-        Pair<ByteBuffer, Long> p = getByteBufferAtTime(targetTimeInSamples);
-        ByteBuffer bb = p.getFirst();
-        return getNextDatagram(bb);
+        try {
+            Pair<ByteBuffer, Long> p = getByteBufferAtTime(targetTimeInSamples);
+            ByteBuffer bb = p.getFirst();
+            datagramsRead.inc();
+            return getNextDatagram(bb);
+        } finally {
+            releaseByteBuffers();
+        }
     }
     
     /**
@@ -599,6 +795,19 @@ public class TimelineReader
      * @throws IOException if no data can be read at the given target time
      */
     private Datagram[] getDatagrams(long targetTimeInSamples, int nDatagrams, long timeSpanInSamples, int reqSampleRate, long[] returnOffset) 
+    throws IllegalArgumentException, IOException {
+        try {
+            return readDatagrams(targetTimeInSamples, nDatagrams, timeSpanInSamples, reqSampleRate, returnOffset);
+        } finally {
+            releaseByteBuffers();
+        }
+    }
+
+    /**
+     * The implementation of {@link #getDatagrams(long, int, long, int, long[])}, which leaves the byte buffers
+     * it has read from to be released by the caller.
+     */
+    private Datagram[] readDatagrams(long targetTimeInSamples, int nDatagrams, long timeSpanInSamples, int reqSampleRate, long[] returnOffset) 
     throws IllegalArgumentException, IOException {
         /* Check the input arguments */
         if ( targetTimeInSamples < 0 ) {
@@ -664,6 +873,7 @@ public class TimelineReader
                 haveReadAll = true;
             }
         }
+        datagramsRead.add(nRead);
         return (Datagram[])datagrams.toArray(new Datagram[0]);
     }
     
@@ -25,6 +25,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import marytts.cart.CART;
+import marytts.unitselection.select.DiphoneFFRTargetCostFunction;
+import marytts.unitselection.select.FFRTargetCostFunction;
 import marytts.unitselection.select.JoinCostFunction;
 import marytts.unitselection.select.StatisticalCostFunction;
 import marytts.unitselection.select.Target;
@@ -149,12 +151,30 @@ public class UnitDatabase
         logger.debug("For target "+target+", selected " + clist.length + " units");
 
         // Now, clist is an array of unit indexes.
-        List<ViterbiCandidate> candidates = new ArrayList<ViterbiCandidate>();
-        for (int i = 0; i < clist.length; i++) {
-            // The target is the same for all these candidates in the queue
-            // remember the actual unit:
-            Unit unit = unitReader.getUnit(clist[i]);
-            candidates.add(new ViterbiCandidate(target, unit, targetCostFunction));
+        List<ViterbiCandidate> candidates = new ArrayList<ViterbiCandidate>(clist.length);
+        if (targetCostFunction instanceof FFRTargetCostFunction
+                || targetCostFunction instanceof DiphoneFFRTargetCostFunction) {
+            // score all candidates for this target in one go
+            Unit[] units = new Unit[clist.length];
+            for (int i = 0; i < clist.length; i++) {
+                units[i] = unitReader.getUnit(clist[i]);
+            }
+            double[] costs = new double[units.length];
+            if (targetCostFunction instanceof FFRTargetCostFunction) {
+                ((FFRTargetCostFunction) targetCostFunction).cost(target, units, costs);
+            } else {
+                ((DiphoneFFRTargetCostFunction) targetCostFunction).cost(target, units, costs);
+            }
+            for (int i = 0; i < units.length; i++) {
+                candidates.add(new ViterbiCandidate(target, units[i], costs[i]));
+            }
+        } else {
+            for (int i = 0; i < clist.length; i++) {
+                // The target is the same for all these candidates in the queue
+                // remember the actual unit:
+                Unit unit = unitReader.getUnit(clist[i]);
+                candidates.add(new ViterbiCandidate(target, unit, targetCostFunction));
+            }
         }
 
         // Blacklisting without crazy performance drop:
@@ -120,17 +120,28 @@ public class InterpolatingSynthesizer implements WaveformSynthesizer
         }
         UnitSelectionVoice usv1 = (UnitSelectionVoice) voice1;
         UnitSelectionVoice usv2 = (UnitSelectionVoice) voice2;
+        // The voices are pinned so that the selector and concatenator of each come from the same loaded data:
+        UnitSelector unitSel1, unitSel2;
+        UnitConcatenator unitConcatenator1, unitConcatenator2;
+        usv1.pin();
+        usv2.pin();
+        try {
+            unitSel1 = usv1.getUnitSelector();
+            unitConcatenator1 = usv1.getConcatenator();
+            unitSel2 = usv2.getUnitSelector();
+            unitConcatenator2 = usv2.getConcatenator();
+        } finally {
+            usv1.unpin();
+            usv2.unpin();
+        }
         
-        UnitSelector unitSel1 = usv1.getUnitSelector();
         List<SelectedUnit> selectedUnits1 = unitSel1.selectUnits(tokensAndBoundaries, voice);
-        UnitSelector unitSel2 = usv2.getUnitSelector();
         List<SelectedUnit> selectedUnits2 = unitSel2.selectUnits(tokensAndBoundaries, voice);
         assert selectedUnits1.size() == selectedUnits2.size() : 
             "Unexpected difference in number of units: "+selectedUnits1.size()+" vs. "+selectedUnits2.size();
         int numUnits = selectedUnits1.size();
         
         // 3. do unit concatenation with each, retrieve actual unit durations from list of units;
-        UnitConcatenator unitConcatenator1 = usv1.getConcatenator();
         AudioInputStream audio1;
         try {
             audio1 = unitConcatenator1.getAudio(selectedUnits1);
@@ -142,7 +153,6 @@ public class InterpolatingSynthesizer implements WaveformSynthesizer
             throw new SynthesisException("For voice "+voice1.getName()+", problems generating audio for unit chain: "+sw.toString(), ioe);
         }
         DoubleDataSource audioSource1 = new AudioDoubleDataSource(audio1);
-        UnitConcatenator unitConcatenator2 = usv2.getConcatenator();
         AudioInputStream audio2;
         try {
             audio2 = unitConcatenator2.getAudio(selectedUnits2);
@@ -21,6 +21,8 @@ package marytts.unitselection.select;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import marytts.exceptions.MaryConfigurationException;
 import marytts.features.FeatureDefinition;
@@ -117,6 +119,42 @@ public class DiphoneFFRTargetCostFunction implements TargetCostFunction
         return tcfForHalfphones.cost(dt.left, du.left) + tcfForHalfphones.cost(dt.right, du.right);
     }
 
+    /**
+     * Compute the goodness-of-fit of a number of units for the same target, in one go.
+     * For a diphone target, the costs of the left and of the right halves are each computed in one go
+     * by {@link FFRTargetCostFunction#cost(Target, Unit[], double[])}; this gives the same results as calling
+     * {@link #cost(Target, Unit)} for each unit.
+     * @param target the target
+     * @param units the candidate units; diphone units if target is a diphone target
+     * @param costs an array of at least units.length entries, into which the cost of units[k] is written at index k.
+     */
+    public void cost(Target target, Unit[] units, double[] costs)
+    {
+        if (target instanceof HalfPhoneTarget) {
+            tcfForHalfphones.cost(target, units, costs);
+            return;
+        }
+        if (!(target instanceof DiphoneTarget))
+            throw new IllegalArgumentException("This target cost function can only be called for diphone and half-phone targets!");
+        DiphoneTarget dt = (DiphoneTarget) target;
+        int nUnits = units.length;
+        Unit[] lefts = new Unit[nUnits];
+        Unit[] rights = new Unit[nUnits];
+        for (int k=0; k<nUnits; k++) {
+            if (!(units[k] instanceof DiphoneUnit))
+                throw new IllegalArgumentException("Diphone targets need diphone units!");
+            DiphoneUnit du = (DiphoneUnit) units[k];
+            lefts[k] = du.left;
+            rights[k] = du.right;
+        }
+        double[] rightCosts = new double[nUnits];
+        tcfForHalfphones.cost(dt.left, lefts, costs);
+        tcfForHalfphones.cost(dt.right, rights, rightCosts);
+        for (int k=0; k<nUnits; k++) {
+            costs[k] += rightCosts[k];
+        }
+    }
+
 
     /**
      * Compute the features for a given target, and store them in the target.
@@ -135,6 +173,27 @@ public class DiphoneFFRTargetCostFunction implements TargetCostFunction
         }
     }
 
+    /**
+     * Compute the features for all the given targets at once, and store them in the targets.
+     * @param targets the targets for which to compute the features
+     * @see FFRTargetCostFunction#computeTargetFeatures(List)
+     */
+    public void computeTargetFeatures(List<? extends Target> targets)
+    {
+        // the features are computed for the halfphones that make up the diphones:
+        List<Target> halfphones = new ArrayList<Target>(2 * targets.size());
+        for (Target target : targets) {
+            if (!(target instanceof DiphoneTarget)) {
+                halfphones.add(target);
+            } else {
+                DiphoneTarget dt = (DiphoneTarget) target;
+                halfphones.add(dt.left);
+                halfphones.add(dt.right);
+            }
+        }
+        tcfForHalfphones.computeTargetFeatures(halfphones);
+    }
+
 
     public FeatureVector[] getFeatureVectors() {
         if (tcfForHalfphones != null) {
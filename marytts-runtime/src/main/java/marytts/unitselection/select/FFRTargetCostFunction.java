@@ -23,6 +23,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.List;
 
 import marytts.exceptions.MaryConfigurationException;
 import marytts.features.FeatureDefinition;
@@ -45,6 +46,7 @@ public class FFRTargetCostFunction implements TargetCostFunction
     protected FeatureVector[] featureVectors;
     protected FeatureDefinition featureDefinition;
     protected boolean[] weightsNonZero;
+    protected FeatureColumns featureColumns;
 
     protected boolean debugShowCostGraph = false;
     protected double[] cumulWeightedCosts = null;
@@ -141,6 +143,93 @@ public class FFRTargetCostFunction implements TargetCostFunction
         return cost;
     }
     
+    /**
+     * Compute the goodness-of-fit of a number of units for the same target, in one go.
+     * This gives the same results as calling {@link #cost(Target, Unit)} for each unit,
+     * but is faster when scoring the candidate lists of unit preselection.
+     * @param target the target
+     * @param units the candidate units
+     * @param costs an array of at least units.length entries, into which the cost of units[k] is written at index k.
+     */
+    public void cost(Target target, Unit[] units, double[] costs)
+    {
+        cost(target, units, costs, featureDefinition, weightFunction);
+    }
+    
+    protected void cost(Target target, Unit[] units, double[] costs, FeatureDefinition weights, WeightFunc[] weightFunctions)
+    {
+        int nUnits = units.length;
+        if (featureColumns == null || debugShowCostGraph) {
+            // no column store, or we need the per-feature bookkeeping of the per-unit computation
+            for (int k=0; k<nUnits; k++) {
+                costs[k] = cost(target, units[k], weights, weightFunctions);
+            }
+            return;
+        }
+        nCostComputations += nUnits; // for debug
+        FeatureVector targetFeatures = target.getFeatureVector(); 
+        assert targetFeatures != null: "Target "+target+" does not have pre-computed feature vector";
+        int nBytes = targetFeatures.byteValuedDiscreteFeatures.length;
+        int nShorts = targetFeatures.shortValuedDiscreteFeatures.length;
+        int nFloats = targetFeatures.continuousFeatures.length;
+        int[] unitIndex = new int[nUnits];
+        for (int k=0; k<nUnits; k++) {
+            unitIndex[k] = units[k].index;
+            costs[k] = 0;
+        }
+
+        float[] weightVector = weights.getFeatureWeights();
+        // Accumulate feature by feature, in the same order as the per-unit computation,
+        // so that the results are identical.
+        // byte-valued features:
+        for (int i=0; i<nBytes; i++) {
+            if (!weightsNonZero[i]) continue;
+            float weight = weightVector[i];
+            byte[] column = featureColumns.byteColumns[i];
+            byte targetValue = targetFeatures.byteValuedDiscreteFeatures[i];
+            if ( featureDefinition.hasSimilarityMatrix(i) ) {
+                for (int k=0; k<nUnits; k++) {
+                    float similarity = featureDefinition.getSimilarity(i, column[unitIndex[k]], targetValue);
+                    costs[k] += similarity * weight;
+                }
+            } else {
+                for (int k=0; k<nUnits; k++) {
+                    if (column[unitIndex[k]] != targetValue) {
+                        costs[k] += weight;
+                    }
+                }
+            }
+        }
+        // short-valued features:
+        for (int i=0; i<nShorts; i++) {
+            if (!weightsNonZero[nBytes+i]) continue;
+            float weight = weightVector[nBytes+i];
+            short[] column = featureColumns.shortColumns[i];
+            short targetValue = targetFeatures.shortValuedDiscreteFeatures[i];
+            for (int k=0; k<nUnits; k++) {
+                if (column[unitIndex[k]] != targetValue) {
+                    costs[k] += weight;
+                }
+            }
+        }
+        // continuous features:
+        int nDiscrete = nBytes+nShorts;
+        for (int i=0; i<nFloats; i++) {
+            if (!weightsNonZero[nDiscrete+i]) continue;
+            float weight = weightVector[nDiscrete+i];
+            float[] column = featureColumns.floatColumns[i];
+            float a = targetFeatures.continuousFeatures[i];
+            if (a != a) continue; // NaN: compute no cost
+            WeightFunc weightFunction = weightFunctions[i];
+            for (int k=0; k<nUnits; k++) {
+                float b = column[unitIndex[k]];
+                if (!(b != b)) {
+                    costs[k] += weight * weightFunction.cost(a, b);
+                }
+            }
+        }
+    }
+    
     /**
      * Compute the goodness-of-fit between given unit and given target for a given feature
      * @param target target unit
@@ -269,6 +358,7 @@ public class FFRTargetCostFunction implements TargetCostFunction
         this.targetFeatureComputer = new TargetFeatureComputer(featProc, featureDefinition.getFeatureNames());
 
         rememberWhichWeightsAreNonZero();
+        buildFeatureColumns();
 
         if (MaryProperties.getBoolean("debug.show.cost.graph")) {
             debugShowCostGraph = true;
@@ -288,6 +378,18 @@ public class FFRTargetCostFunction implements TargetCostFunction
         }
     }
 
+    /**
+     * Copy the features with non-zero weights into a column-wise store for the batch cost computation.
+     * Must be called after {@link #rememberWhichWeightsAreNonZero()}.
+     */
+    protected void buildFeatureColumns() {
+        if (featureVectors == null || featureVectors.length == 0) {
+            featureColumns = null;
+            return;
+        }
+        featureColumns = new FeatureColumns(featureVectors, weightsNonZero);
+    }
+
     /**
      * Compute the features for a given target, and store them in the target.
      * @param target the target for which to compute the features
@@ -299,6 +401,19 @@ public class FFRTargetCostFunction implements TargetCostFunction
         target.setFeatureVector(fv);
     }
     
+    /**
+     * Compute the features for all the given targets at once, and store them in the targets.
+     * @param targets the targets for which to compute the features
+     * @see TargetFeatureComputer#computeFeatureVectors(List)
+     */
+    public void computeTargetFeatures(List<? extends Target> targets)
+    {
+        FeatureVector[] fvs = targetFeatureComputer.computeFeatureVectors(targets);
+        for (int i=0; i<fvs.length; i++) {
+            targets.get(i).setFeatureVector(fvs[i]);
+        }
+    }
+    
     
     /**
      * Look up the features for a given unit.
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.unitselection.select;
+
+import marytts.features.FeatureVector;
+
+/**
+ * A column-wise copy of the unit feature vectors: for each feature, one contiguous array
+ * holding the values of that feature for all units, indexed by unit index.
+ * Scoring many units against one target feature by feature then walks through
+ * primitive arrays rather than through one FeatureVector object per unit.
+ * <p>
+ * Columns are only created for the features listed as used; the others are null.
+ *
+ * @author agent
+ */
+public class FeatureColumns
+{
+    /** byteColumns[i][u] is the value of byte feature i for unit u */
+    final byte[][] byteColumns;
+    /** shortColumns[i][u] is the value of short feature nBytes+i for unit u */
+    final short[][] shortColumns;
+    /** floatColumns[i][u] is the value of continuous feature nBytes+nShorts+i for unit u */
+    final float[][] floatColumns;
+    private final int numUnits;
+
+    /**
+     * Build the columns from the given feature vectors.
+     * @param featureVectors the unit feature vectors, indexed by unit index. Must not be empty.
+     * @param used for each feature index, whether a column should be created for this feature.
+     */
+    public FeatureColumns(FeatureVector[] featureVectors, boolean[] used)
+    {
+        numUnits = featureVectors.length;
+        FeatureVector first = featureVectors[0];
+        int nBytes = first.byteValuedDiscreteFeatures.length;
+        int nShorts = first.shortValuedDiscreteFeatures.length;
+        int nFloats = first.continuousFeatures.length;
+        byteColumns = new byte[nBytes][];
+        shortColumns = new short[nShorts][];
+        floatColumns = new float[nFloats][];
+        for (int i=0; i<nBytes; i++) {
+            if (!used[i]) continue;
+            byte[] column = new byte[numUnits];
+            for (int u=0; u<numUnits; u++) {
+                column[u] = featureVectors[u].byteValuedDiscreteFeatures[i];
+            }
+            byteColumns[i] = column;
+        }
+        for (int i=0; i<nShorts; i++) {
+            if (!used[nBytes+i]) continue;
+            short[] column = new short[numUnits];
+            for (int u=0; u<numUnits; u++) {
+                column[u] = featureVectors[u].shortValuedDiscreteFeatures[i];
+            }
+            shortColumns[i] = column;
+        }
+        for (int i=0; i<nFloats; i++) {
+            if (!used[nBytes+nShorts+i]) continue;
+            float[] column = new float[numUnits];
+            for (int u=0; u<numUnits; u++) {
+                column[u] = featureVectors[u].continuousFeatures[i];
+            }
+            floatColumns[i] = column;
+        }
+    }
+
+    public int getNumberOfUnits()
+    {
+        return numUnits;
+    }
+}
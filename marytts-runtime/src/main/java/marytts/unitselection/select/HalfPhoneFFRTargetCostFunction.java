@@ -68,6 +68,23 @@ public class HalfPhoneFFRTargetCostFunction extends FFRTargetCostFunction
         return cost(target, unit, weights, weightFunctions);
     }
 
+    /**
+     * Compute the goodness-of-fit of a number of units for the same target, in one go.
+     * @param target 
+     * @param units
+     * @param costs receives the cost of units[k] at index k
+     */
+    public void cost(Target target, Unit[] units, double[] costs)
+    {
+        if (!(target instanceof HalfPhoneTarget))
+            throw new IllegalArgumentException("This target cost function can only be called for half-phone targets!");
+        HalfPhoneTarget hpTarget = (HalfPhoneTarget) target;
+        boolean isLeftHalf = hpTarget.isLeftHalf();
+        FeatureDefinition weights = isLeftHalf ? leftWeights : rightWeights;
+        WeightFunc[] weightFunctions = isLeftHalf ? leftWeightFunction : rightWeightFunction;
+        cost(target, units, costs, weights, weightFunctions);
+    }
+
     /**
      * Initialise the data needed to do a target cost computation.
      * @param featureFileName name of a file containing the unit features
@@ -147,6 +164,7 @@ public class HalfPhoneFFRTargetCostFunction extends FFRTargetCostFunction
         this.targetFeatureComputer = new TargetFeatureComputer(featProc, leftWeights.getFeatureNames());
         
         rememberWhichWeightsAreNonZero();
+        buildFeatureColumns();
 
         if (MaryProperties.getBoolean("debug.show.cost.graph")) {
             debugShowCostGraph = true;
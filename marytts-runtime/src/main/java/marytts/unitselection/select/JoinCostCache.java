@@ -0,0 +1,104 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.unitselection.select;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import marytts.util.StripedCounter;
+
+/**
+ * A fixed-size, lock-free cache of join costs between pairs of units.
+ * Each unit pair maps to exactly one slot; a new entry simply replaces whatever was in its slot.
+ * This keeps memory bounded and needs no locking, at the price of occasionally
+ * losing a frequent pair to a colliding one.
+ *
+ * @author agent
+ */
+class JoinCostCache
+{
+    private static final class Entry
+    {
+        final int u1;
+        final int u2;
+        final double cost;
+        Entry(int u1, int u2, double cost)
+        {
+            this.u1 = u1;
+            this.u2 = u2;
+            this.cost = cost;
+        }
+    }
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+
+    // every lookup updates one of these, so they must not be a shared hot spot:
+    private final StripedCounter hits = new StripedCounter();
+    private final StripedCounter misses = new StripedCounter();
+
+    /**
+     * @param size the requested number of slots; rounded up to the next power of two.
+     */
+    JoinCostCache(int size)
+    {
+        int n = 1;
+        while (n < size && n < (1 << 30)) {
+            n <<= 1;
+        }
+        slots = new AtomicReferenceArray<Entry>(n);
+        mask = n - 1;
+    }
+
+    private int slot(int u1, int u2)
+    {
+        int h = u1 * 0x9E3779B9 + u2;
+        h ^= (h >>> 16);
+        h *= 0x85EBCA6B;
+        h ^= (h >>> 13);
+        return h & mask;
+    }
+
+    /**
+     * Look up the join cost of the given unit pair.
+     * @return the cached cost, or Double.NaN if it is not in the cache.
+     */
+    double get(int u1, int u2)
+    {
+        Entry e = slots.get(slot(u1, u2));
+        if (e != null && e.u1 == u1 && e.u2 == u2) {
+            hits.inc();
+            return e.cost;
+        }
+        misses.inc();
+        return Double.NaN;
+    }
+
+    void put(int u1, int u2, double cost)
+    {
+        slots.lazySet(slot(u1, u2), new Entry(u1, u2, cost));
+    }
+
+    double getHitRate()
+    {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+}
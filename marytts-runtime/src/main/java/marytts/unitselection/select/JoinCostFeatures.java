@@ -75,8 +75,22 @@ public class JoinCostFeatures implements JoinCostFunction
     private WeightFunc[] weightFunction = null;
     private boolean[] isLinear = null; // wether the i'th weight function is a linear function
     
-    private float[][] leftJCF = null;
-    private float[][] rightJCF = null;
+    private int numberOfUnits = 0;
+    private int numberOfFeatures = 0;
+    // Join cost features of all units in one contiguous array each:
+    // the features of unit u are at [u*numberOfFeatures, (u+1)*numberOfFeatures)
+    private float[] leftJCF = null;
+    private float[] rightJCF = null;
+    
+    /* A cache of computed join costs, shared by all requests; null if disabled */
+    private JoinCostCache costCache = null;
+    /* For each thread, the number of join costs requested and the number of cache hits */
+    private final ThreadLocal<long[]> threadCounts = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[2];
+        }
+    };
     
     /****************/
     /* CONSTRUCTORS */
@@ -191,14 +205,11 @@ public class JoinCostFeatures implements JoinCostFunction
             /* Read the left and right Join Cost Features */
             int numberOfUnits = bb.getInt();
             FloatBuffer fb = bb.asFloatBuffer();
-            leftJCF = new float[numberOfUnits][];
-            rightJCF = new float[numberOfUnits][];
+            initFeatureArrays(numberOfUnits, numberOfFeatures);
             for ( int i = 0; i < numberOfUnits; i++ ) {
                 //System.out.println("Reading join features for unit "+i+" out of "+numberOfUnits);
-                leftJCF[i] = new float[numberOfFeatures];
-                fb.get(leftJCF[i]);
-                rightJCF[i] = new float[numberOfFeatures];
-                fb.get(rightJCF[i]);
+                fb.get(leftJCF, i*numberOfFeatures, numberOfFeatures);
+                fb.get(rightJCF, i*numberOfFeatures, numberOfFeatures);
             }
         }
         catch ( EOFException e ) {
@@ -275,17 +286,15 @@ public class JoinCostFeatures implements JoinCostFunction
             
             /* Read the left and right Join Cost Features */
             int numberOfUnits = raf.readInt();
-            leftJCF = new float[numberOfUnits][];
-            rightJCF = new float[numberOfUnits][];
+            initFeatureArrays(numberOfUnits, numberOfFeatures);
             for ( int i = 0; i < numberOfUnits; i++ ) {
                 //System.out.println("Reading join features for unit "+i+" out of "+numberOfUnits);
-                leftJCF[i] = new float[numberOfFeatures];
+                int offset = i*numberOfFeatures;
                 for ( int j = 0; j < numberOfFeatures; j++ ) {
-                    leftJCF[i][j] = raf.readFloat();
+                    leftJCF[offset+j] = raf.readFloat();
                 }
-                rightJCF[i] = new float[numberOfFeatures];
                 for ( int j = 0; j < numberOfFeatures; j++ ) {
-                    rightJCF[i][j] = raf.readFloat();
+                    rightJCF[offset+j] = raf.readFloat();
                 }
             }
         }
@@ -305,6 +314,19 @@ public class JoinCostFeatures implements JoinCostFunction
 
     }
 
+    /**
+     * Allocate the flat feature arrays and the join cost cache for the given numbers of units and features.
+     */
+    private void initFeatureArrays(int nUnits, int nFeatures)
+    {
+        numberOfUnits = nUnits;
+        numberOfFeatures = nFeatures;
+        leftJCF = new float[nUnits * nFeatures];
+        rightJCF = new float[nUnits * nFeatures];
+        int cacheSize = MaryProperties.getInteger("joincost.cache.size", 262144);
+        costCache = cacheSize > 0 ? new JoinCostCache(cacheSize) : null;
+    }
+
     /**
      * Read the join cost weight specifications from the given file.
      * The weights will be normalized such that they sum to one.
@@ -372,7 +394,7 @@ public class JoinCostFeatures implements JoinCostFunction
      * Get the number of units.
      */
     public int getNumberOfUnits() {
-        return( leftJCF.length );
+        return( numberOfUnits );
     }
     
         
@@ -381,18 +403,22 @@ public class JoinCostFeatures implements JoinCostFunction
      * 
      * @param u The index of the considered unit.
      * 
-     * @return The array of left join cost features for the given unit.
+     * @return A new copy of the left join cost features for the given unit. Each call allocates,
+     * so this is not meant for the join cost computation; use {@link #getJCFDifference(int, int, double[])}
+     * or {@link #getLeftJCF(int, int)} there.
      */
     public float[] getLeftJCF( int u ) {
         if ( u < 0 ) {
             throw new RuntimeException( "The unit index [" + u +
                     "] is out of range: a unit index can't be negative." );
         }
-        if ( u > getNumberOfUnits() ) {
+        if ( u >= getNumberOfUnits() ) {
             throw new RuntimeException( "The unit index [" + u +
                     "] is out of range: this file contains [" + getNumberOfUnits() + "] units." );
         }
-        return( leftJCF[u] );
+        float[] features = new float[numberOfFeatures];
+        System.arraycopy(leftJCF, u*numberOfFeatures, features, 0, numberOfFeatures);
+        return( features );
     }
     
     /**
@@ -400,18 +426,86 @@ public class JoinCostFeatures implements JoinCostFunction
      * 
      * @param u The index of the considered unit.
      * 
-     * @return The array of right join cost features for the given unit.
+     * @return A new copy of the right join cost features for the given unit. Each call allocates,
+     * so this is not meant for the join cost computation; use {@link #getJCFDifference(int, int, double[])}
+     * or {@link #getRightJCF(int, int)} there.
      */
     public float[] getRightJCF( int u ) {
         if ( u < 0 ) {
             throw new RuntimeException( "The unit index [" + u +
                     "] is out of range: a unit index can't be negative." );
         }
-        if ( u > getNumberOfUnits() ) {
+        if ( u >= getNumberOfUnits() ) {
             throw new RuntimeException( "The unit index [" + u +
                     "] is out of range: this file contains [" + getNumberOfUnits() + "] units." );
         }
-        return( rightJCF[u] );
+        float[] features = new float[numberOfFeatures];
+        System.arraycopy(rightJCF, u*numberOfFeatures, features, 0, numberOfFeatures);
+        return( features );
+    }
+    
+    /**
+     * Gets one left join cost feature of a particular unit, without copying.
+     * 
+     * @param u The index of the considered unit.
+     * @param i The index of the feature, between 0 and {@link #getNumberOfFeatures()}-1.
+     * 
+     * @return The left join cost feature i of unit u.
+     */
+    public float getLeftJCF( int u, int i ) {
+        return leftJCF[featureOffset(u, i)];
+    }
+    
+    /**
+     * Gets one right join cost feature of a particular unit, without copying.
+     * 
+     * @param u The index of the considered unit.
+     * @param i The index of the feature, between 0 and {@link #getNumberOfFeatures()}-1.
+     * 
+     * @return The right join cost feature i of unit u.
+     */
+    public float getRightJCF( int u, int i ) {
+        return rightJCF[featureOffset(u, i)];
+    }
+    
+    /**
+     * The position of feature i of unit u in the flat feature arrays.
+     */
+    private int featureOffset( int u, int i ) {
+        if ( u < 0 || u >= numberOfUnits ) {
+            throw new RuntimeException( "The unit index [" + u +
+                    "] is out of range: this file contains [" + getNumberOfUnits() + "] units." );
+        }
+        if ( i < 0 || i >= numberOfFeatures ) {
+            throw new RuntimeException( "The feature index [" + i +
+                    "] is out of range: this file contains [" + numberOfFeatures + "] features." );
+        }
+        return u * numberOfFeatures + i;
+    }
+    
+    /**
+     * Computes the differences between the right join cost features of one unit
+     * and the left join cost features of another unit, without copying the features of either unit.
+     * 
+     * @param u1 The index of the left unit.
+     * @param u2 The index of the right unit.
+     * @param diff An array of length {@link #getNumberOfFeatures()}, which is filled with
+     * the right join cost features of u1 minus the left join cost features of u2.
+     */
+    public void getJCFDifference( int u1, int u2, double[] diff ) {
+        if ( u1 < 0 || u1 >= numberOfUnits ) {
+            throw new RuntimeException( "The left unit index [" + u1 +
+                    "] is out of range: this file contains [" + getNumberOfUnits() + "] units." );
+        }
+        if ( u2 < 0 || u2 >= numberOfUnits ) {
+            throw new RuntimeException( "The right unit index [" + u2 +
+                    "] is out of range: this file contains [" + getNumberOfUnits() + "] units." );
+        }
+        int o1 = u1 * numberOfFeatures;
+        int o2 = u2 * numberOfFeatures;
+        for ( int i = 0; i < numberOfFeatures; i++ ) {
+            diff[i] = (double)rightJCF[o1+i] - leftJCF[o2+i];
+        }
     }
     
     /*****************/
@@ -430,34 +524,46 @@ public class JoinCostFeatures implements JoinCostFunction
      */
     public double cost( int u1, int u2 ) {
         /* Check the given indexes */
-        if ( u1 < 0 ) {
-            throw new RuntimeException( "The left unit index [" + u1 +
-                    "] is out of range: a unit index can't be negative." );
-        }
-//        if ( u1 > getNumberOfUnits() ) {
-        if (u1 > leftJCF.length) {
+        if ( u1 < 0 || u1 >= numberOfUnits ) {
             throw new RuntimeException( "The left unit index [" + u1 +
                     "] is out of range: this file contains [" + getNumberOfUnits() + "] units." );
         }
-        if ( u2 < 0 ) {
-            throw new RuntimeException( "The right unit index [" + u2 +
-                    "] is out of range: a unit index can't be negative." );
-        }
-//        if ( u2 > getNumberOfUnits() ) {
-        if ( u2 > leftJCF.length ) {
+        if ( u2 < 0 || u2 >= numberOfUnits ) {
             throw new RuntimeException( "The right unit index [" + u2 +
                     "] is out of range: this file contains [" + getNumberOfUnits() + "] units." );
         }
+        long[] counts = threadCounts.get();
+        counts[0]++;
         if (debugShowCostGraph) {
             jcr.tick();
+            return computeCost(u1, u2);
+        }
+        if (costCache == null) {
+            return computeCost(u1, u2);
+        }
+        double res = costCache.get(u1, u2);
+        if (res == res) { // not NaN, i.e. found
+            counts[1]++;
+            return res;
         }
-        /* Cumulate the join costs for each feature */
+        res = computeCost(u1, u2);
+        costCache.put(u1, u2, res);
+        return res;
+    }
+    
+    /**
+     * Cumulate the join costs for each feature.
+     * Indexes must have been checked by the caller.
+     */
+    private double computeCost( int u1, int u2 ) {
         double res = 0.0;
-        float[] v1 = rightJCF[u1];
-        float[] v2 = leftJCF[u2];
-        for ( int i = 0; i < v1.length; i++ ) {
-            float a = v1[i];
-            float b = v2[i];
+        float[] v1 = rightJCF;
+        float[] v2 = leftJCF;
+        int o1 = u1 * numberOfFeatures;
+        int o2 = u2 * numberOfFeatures;
+        for ( int i = 0; i < numberOfFeatures; i++ ) {
+            float a = v1[o1+i];
+            float b = v2[o2+i];
             //if (!Float.isNaN(v1[i]) && !Float.isNaN(v2[i])) {
             if (! (a!=a) && !(b!=b)) {
                 double c;
@@ -475,6 +581,29 @@ public class JoinCostFeatures implements JoinCostFunction
         return( res );
     }
     
+    /**
+     * The number of join costs requested via {@link #cost(int, int)} from the current thread so far.
+     * Callers can take the difference between two calls to count the join costs for one request.
+     */
+    public long getThreadCostRequests() {
+        return threadCounts.get()[0];
+    }
+    
+    /**
+     * The number of join costs that were found in the join cost cache for the current thread so far.
+     */
+    public long getThreadCacheHits() {
+        return threadCounts.get()[1];
+    }
+    
+    /**
+     * The fraction of join costs found in the join cost cache, across all requests.
+     * @return a value between 0 and 1, or 0 if the cache is disabled or was not used yet.
+     */
+    public double getCacheHitRate() {
+        return costCache == null ? 0 : costCache.getHitRate();
+    }
+    
     /**
      * A combined cost computation, as a weighted sum
      * of the signal-based cost (computed from the units)
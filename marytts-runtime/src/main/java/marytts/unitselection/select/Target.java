@@ -22,6 +22,7 @@ package marytts.unitselection.select;
 import marytts.datatypes.MaryXML;
 import marytts.features.FeatureVector;
 import marytts.features.MaryGenericFeatureProcessors;
+import marytts.features.UtteranceIndex;
 import marytts.modules.phonemiser.Allophone;
 import marytts.modules.phonemiser.AllophoneSet;
 import marytts.modules.synthesis.Voice;
@@ -43,6 +44,7 @@ public class Target
     protected Element maryxmlElement;
     
     protected FeatureVector featureVector = null;
+    protected UtteranceIndex utteranceIndex = null;
     
     protected float duration = -1;
     protected float f0 = -1;
@@ -73,6 +75,18 @@ public class Target
         this.featureVector = featureVector;
     }
     
+    /**
+     * The index of the sentence containing this target's MaryXML element, if one has been attached.
+     * @return the index, or null.
+     * @see UtteranceIndex#attachTo(java.util.List)
+     */
+    public UtteranceIndex getUtteranceIndex() { return utteranceIndex; }
+    
+    public void setUtteranceIndex(UtteranceIndex utteranceIndex)
+    {
+        this.utteranceIndex = utteranceIndex;
+    }
+    
     public float getTargetDurationInSeconds()
     {
         if (duration != -1){
@@ -24,6 +24,7 @@ import java.util.List;
 
 import marytts.datatypes.MaryXML;
 import marytts.exceptions.SynthesisException;
+import marytts.features.UtteranceIndex;
 import marytts.unitselection.data.UnitDatabase;
 import marytts.unitselection.select.viterbi.Viterbi;
 import marytts.util.MaryUtils;
@@ -46,6 +47,8 @@ public class UnitSelector
     protected float targetCostWeight;
     protected float sCostWeight = -1;
     protected int beamSize;
+    protected double pathCostThreshold = Double.POSITIVE_INFINITY;
+    protected double candidateCostThreshold = Double.POSITIVE_INFINITY;
     
     /**
      * Initialise the unit selector. Need to call load() separately.
@@ -71,6 +74,20 @@ public class UnitSelector
         this.beamSize = beamSize;
     }
     
+    /**
+     * Set cost thresholds for pruning the Viterbi search.
+     * @param pathCostThreshold paths scoring worse than the best path by more than this are not extended;
+     * Double.POSITIVE_INFINITY to disable.
+     * @param candidateCostThreshold candidates whose target cost is worse than that of the best candidate
+     * by more than this are dropped; Double.POSITIVE_INFINITY to disable.
+     * @see Viterbi#setPruning(double, double)
+     */
+    public void setPruning(double pathCostThreshold, double candidateCostThreshold)
+    {
+        this.pathCostThreshold = pathCostThreshold;
+        this.candidateCostThreshold = candidateCostThreshold;
+    }
+    
     /**
      * Select the units for the targets in the given 
      * list of tokens and boundaries. Collect them in a list and return it.
@@ -104,11 +121,10 @@ public class UnitSelector
         }
 
         List<Target> targets = createTargets(segmentsAndBoundaries);
+        UtteranceIndex.attachTo(targets);
         // compute target features for each target in the chain
         TargetCostFunction tcf = database.getTargetCostFunction();
-        for (Target target : targets) {
-            tcf.computeTargetFeatures(target);
-        }
+        computeTargetFeatures(tcf, targets);
         
         Viterbi viterbi;
         //Select the best candidates using Viterbi and the join cost function.
@@ -118,6 +134,7 @@ public class UnitSelector
             viterbi = new Viterbi(targets, database, targetCostWeight, sCostWeight, beamSize);
         }
         
+        viterbi.setPruning(pathCostThreshold, candidateCostThreshold);
         viterbi.apply();
         List<SelectedUnit> selectedUnits = viterbi.getSelectedUnits();
         // If you can not associate the candidate units in the best path 
@@ -126,10 +143,29 @@ public class UnitSelector
             throw new IllegalStateException("Viterbi: can't find path");
         }
         long newtime = System.currentTimeMillis() - time;
-        logger.debug("Selection took "+newtime+" milliseconds");
+        logger.debug("Selection took "+newtime+" milliseconds for "+targets.size()+" targets -- "+viterbi.getSearchStatistics());
         return selectedUnits;
     }
     
+    /**
+     * Compute the target features of all targets, for the whole list at once
+     * if the target cost function can do so.
+     * @param tcf the target cost function that computes the features
+     * @param targets the targets in which to store the features
+     */
+    protected void computeTargetFeatures(TargetCostFunction tcf, List<Target> targets)
+    {
+        if (tcf instanceof FFRTargetCostFunction) {
+            ((FFRTargetCostFunction) tcf).computeTargetFeatures(targets);
+        } else if (tcf instanceof DiphoneFFRTargetCostFunction) {
+            ((DiphoneFFRTargetCostFunction) tcf).computeTargetFeatures(targets);
+        } else {
+            for (Target target : targets) {
+                tcf.computeTargetFeatures(target);
+            }
+        }
+    }
+
     /**
      * Create the list of targets from the XML elements to synthesize.
      * @param segmentsAndBoundaries a list of MaryXML phone and boundary elements
@@ -34,6 +34,7 @@ package marytts.unitselection.select.viterbi;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -45,12 +46,14 @@ import marytts.unitselection.data.DiphoneUnit;
 import marytts.unitselection.data.Unit;
 import marytts.unitselection.data.UnitDatabase;
 import marytts.unitselection.select.DiphoneTarget;
+import marytts.unitselection.select.JoinCostFeatures;
 import marytts.unitselection.select.JoinCostFunction;
 import marytts.unitselection.select.SelectedUnit;
 import marytts.unitselection.select.StatisticalCostFunction;
 import marytts.unitselection.select.Target;
 import marytts.unitselection.select.TargetCostFunction;
 import marytts.util.MaryUtils;
+import marytts.util.Metrics;
 
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
@@ -88,6 +91,7 @@ public  class Viterbi
     //a general flag indicating which type of viterbi search
 	//to use:
     //-1: unlimited search
+    // 0: no fixed beam, prune only by cost thresholds (see setPruning())
     // n>0: beam search, retain only the n best paths at each step.
     protected int beamSize;
     protected final float wTargetCosts;
@@ -106,9 +110,34 @@ public  class Viterbi
     protected int nJoinCosts;
     protected double cumulTargetCosts;
     protected int nTargetCosts;
+    // join cost computations and join cost cache hits for this request, if the join cost function counts them:
+    protected long nJoinComputations;
+    protected long nJoinCacheHits;
+    
+    // Pruning: paths scoring worse than the best path by more than pathCostThreshold are not extended,
+    // and candidates whose target cost is worse than the best candidate's by more than candidateCostThreshold are dropped.
+    protected double pathCostThreshold = Double.POSITIVE_INFINITY;
+    protected double candidateCostThreshold = Double.POSITIVE_INFINITY;
+    // size of the search space actually explored:
+    protected int nCandidates;
+    protected int nCandidatesPruned;
+    protected int nPathsExtended;
+    protected int nPathsPruned;
+    protected long nPathExtensions;
     
     // Keep track of average costs for each voice: map UnitDatabase->DebugStats
     private static Map<UnitDatabase,DebugStats> debugStats = new HashMap<UnitDatabase,DebugStats>();
+
+    private static final Metrics.Histogram searchTime = Metrics.histogram("mary_viterbi_search_seconds",
+            "Time taken by one Viterbi search", Metrics.TIME_BUCKETS);
+    private static final Metrics.Histogram searchCandidates = Metrics.histogram("mary_viterbi_candidates",
+            "Candidate units considered by one Viterbi search", Metrics.SIZE_BUCKETS);
+    private static final Metrics.Histogram searchExtensions = Metrics.histogram("mary_viterbi_path_extensions",
+            "Paths extended to a candidate by one Viterbi search", Metrics.SIZE_BUCKETS);
+    private static final Metrics.Counter joinCostRequests = Metrics.counter("mary_viterbi_join_costs_total",
+            "Join costs requested by Viterbi searches");
+    private static final Metrics.Counter joinCostCacheHits = Metrics.counter("mary_viterbi_join_cost_cache_hits_total",
+            "Join costs found in the join cost cache");
     
     
     /**
@@ -149,9 +178,6 @@ public  class Viterbi
         // And add one point where the paths from the last candidate can end:
         lastPoint = new ViterbiPoint(null);
         last.setNext(lastPoint);
-        if (beamSize == 0) {
-            throw new IllegalStateException("General beam search not implemented");
-    	}
     }
    
 	/**
@@ -192,9 +218,34 @@ public  class Viterbi
         // And add one point where the paths from the last candidate can end:
         lastPoint = new ViterbiPoint(null);
         last.setNext(lastPoint);
-        if (beamSize == 0) {
-            throw new IllegalStateException("General beam search not implemented");
+    }
+    
+    /**
+     * Set cost thresholds for pruning the search, in addition to the fixed beam size.
+     * A value of Double.POSITIVE_INFINITY disables the respective pruning.
+     * @param pathCostThreshold when extending the paths leading to a target, skip those whose score
+     * is worse than that of the best path by more than this value.
+     * @param candidateCostThreshold drop candidates whose (unweighted) target cost is worse than that of
+     * the best candidate for the same target by more than this value, before any join costs are computed.
+     */
+    public void setPruning(double pathCostThreshold, double candidateCostThreshold)
+    {
+        if (pathCostThreshold < 0 || candidateCostThreshold < 0) {
+            throw new IllegalArgumentException("Pruning thresholds must not be negative");
         }
+        this.pathCostThreshold = pathCostThreshold;
+        this.candidateCostThreshold = candidateCostThreshold;
+    }
+    
+    /**
+     * Report the size of the search space explored by the last call to apply().
+     * @return a one-line summary
+     */
+    public String getSearchStatistics()
+    {
+        return "candidates: "+nCandidates+" ("+nCandidatesPruned+" pruned by target cost)"
+            +", paths extended: "+nPathsExtended+" ("+nPathsPruned+" pruned by cost)"
+            +", path extensions: "+nPathExtensions;
     }
 	
 
@@ -217,6 +268,10 @@ public  class Viterbi
     public void apply() throws SynthesisException 
     {
         logger.debug("Viterbi running with beam size " + beamSize);
+        long startTime = System.nanoTime();
+        JoinCostFeatures jcf = joinCostFunction instanceof JoinCostFeatures ? (JoinCostFeatures) joinCostFunction : null;
+        long joinRequestsBefore = jcf != null ? jcf.getThreadCostRequests() : 0;
+        long joinHitsBefore = jcf != null ? jcf.getThreadCacheHits() : 0;
         //go through all but the last point
         //(since last point has no item)
         for (ViterbiPoint point = firstPoint; point.next != null; point = point.next) {
@@ -247,8 +302,20 @@ public  class Viterbi
             // absolutely critical since candidates is no longer a SortedSet:
             Collections.sort(candidates);
             
+            nCandidates += candidates.size();
+            if (candidateCostThreshold < Double.POSITIVE_INFINITY) {
+                // candidates are sorted by increasing target cost, so keep a prefix of them:
+                double maxTargetCost = candidates.get(0).targetCost + candidateCostThreshold;
+                int keep = 1;
+                while (keep < candidates.size() && candidates.get(keep).targetCost <= maxTargetCost) {
+                    keep++;
+                }
+                if (keep < candidates.size()) {
+                    nCandidatesPruned += candidates.size() - keep;
+                    candidates = new ArrayList<ViterbiCandidate>(candidates.subList(0, keep));
+                }
+            }
             point.candidates = candidates;
-            assert beamSize != 0; // general beam search not implemented
     
             // Now go through all existing paths and all candidates 
             // for the current item;
@@ -256,15 +323,29 @@ public  class Viterbi
             // the candidates, but only retain the best one
             List<ViterbiPath> paths = point.paths;
             int nPaths = paths.size();
-            if (beamSize != -1 && beamSize < nPaths) {
+            if (beamSize > 0 && beamSize < nPaths) {
                 // beam search, look only at the best n paths:
                 nPaths = beamSize;
             }
-            // for searchStrategy == -1, no beam -- look at all candidates.
+            // for searchStrategy == -1 or 0, no fixed beam -- look at all candidates.
+            // Independently of the beam, do not extend paths that are too bad compared to the best one:
+            double maxPathScore = Double.POSITIVE_INFINITY;
+            if (pathCostThreshold < Double.POSITIVE_INFINITY) {
+                double bestScore = Double.POSITIVE_INFINITY;
+                for (ViterbiPath pp : paths) {
+                    if (pp.score < bestScore) bestScore = pp.score;
+                }
+                maxPathScore = bestScore + pathCostThreshold;
+            }
             int i = 0;
             int iMax = nPaths;
             for (ViterbiPath pp : paths) {
                 assert pp != null;
+                if (pp.score > maxPathScore) {
+                    nPathsPruned++;
+                    continue;
+                }
+                nPathsExtended++;
                 // We are at the very beginning of the search, 
                 // or have a usable path to extend
                 candidates = point.candidates;
@@ -278,6 +359,7 @@ public  class Viterbi
                     // previous path pp to that candidate, taking into
                     // account the target and join costs:
                     ViterbiPath np = getPath(pp, c);
+                    nPathExtensions++;
                     // Compare this path to the existing best path 
                     // (if any) leading to candidate c; only retain 
                     // the one with the better score.
@@ -287,6 +369,15 @@ public  class Viterbi
                 if (++i == iMax) break;
             }
         }
+        if (jcf != null) {
+            nJoinComputations = jcf.getThreadCostRequests() - joinRequestsBefore;
+            nJoinCacheHits = jcf.getThreadCacheHits() - joinHitsBefore;
+            joinCostRequests.add(nJoinComputations);
+            joinCostCacheHits.add(nJoinCacheHits);
+        }
+        searchTime.observeNanos(System.nanoTime() - startTime);
+        searchCandidates.observe(nCandidates);
+        searchExtensions.observe(nPathExtensions);
     }
     
     /**
@@ -427,6 +518,8 @@ public  class Viterbi
                     +", avg. target "+df.format(avgTargetCost)
                     +", join "+df.format(avgJoinCost)
                     +" (n="+nTargetCosts+")");
+            logger.debug("Join costs: "+nJoinCosts+" requested, "+(nJoinComputations-nJoinCacheHits)+" computed, "
+                    +nJoinCacheHits+" from cache");
             DebugStats stats = debugStats.get(database);
             if (stats == null) {
                 stats = new DebugStats();
@@ -439,11 +532,17 @@ public  class Viterbi
             stats.avgCostBestPath += (avgCostBestPath - stats.avgCostBestPath) / stats.n;
             stats.avgTargetCost += (avgTargetCost - stats.avgTargetCost) / stats.n;
             stats.avgJoinCost += (avgJoinCost - stats.avgJoinCost) / stats.n;
+            stats.avgJoinComputations += ((nJoinComputations-nJoinCacheHits) - stats.avgJoinComputations) / stats.n;
             logger.debug("Total average of "+stats.n+" utterances for this voice:");
             logger.debug("Avg. length: "+df.format(stats.avgLength)
                     +", avg. cost best path: "+df.format(stats.avgCostBestPath)
                     +", avg. target cost: "+df.format(stats.avgTargetCost)
-                    +", avg. join cost: "+df.format(stats.avgJoinCost));
+                    +", avg. join cost: "+df.format(stats.avgJoinCost)
+                    +", avg. join computations: "+df.format(stats.avgJoinComputations));
+            if (joinCostFunction instanceof JoinCostFeatures) {
+                logger.debug("Join cost cache hit rate for this voice: "
+                        +df.format(((JoinCostFeatures)joinCostFunction).getCacheHitRate()));
+            }
             
         }
 
@@ -516,7 +615,6 @@ public  class Viterbi
      */
     private ViterbiPath findBestPath()
     {
-        assert beamSize != 0;
         // All paths end in lastPoint, and take into account
         // previous path segment's scores. Therefore, it is
         // sufficient to find the best path from among the
@@ -552,6 +650,7 @@ public  class Viterbi
         double avgCostBestPath;
         double avgTargetCost;
         double avgJoinCost;
+        double avgJoinComputations;
     }
    
     
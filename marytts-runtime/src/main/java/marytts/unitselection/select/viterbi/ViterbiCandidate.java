@@ -54,6 +54,20 @@ public class ViterbiCandidate implements Comparable<ViterbiCandidate>
 	    this.targetCost = tcf.cost(target, unit);
 	}
 	
+	/**
+	 * Create a candidate whose target cost has already been computed,
+	 * e.g. for a whole list of candidates at once.
+	 * @param target the target
+	 * @param unit the candidate unit
+	 * @param targetCost the target cost of unit for target
+	 */
+	public ViterbiCandidate(Target target, Unit unit, double targetCost)
+	{
+	    this.target = target;
+	    this.unit = unit;
+	    this.targetCost = targetCost;
+	}
+	
 	/**
 	 * Calculates and returns the target cost for this candidate
 	 * @param tcf the target cost function 
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures how long the components of something take to load, e.g. the files of a voice.
+ * Call {@link #done(String)} after each component has been loaded;
+ * {@link #toString()} gives a one-line report suitable for the log.
+ *
+ * @author agent
+ */
+public class LoadingTimer
+{
+    private final String name;
+    private final long startTime;
+    private long lastTime;
+    private final List<Pair<String, Long>> times = new ArrayList<Pair<String,Long>>();
+
+    /**
+     * Start timing.
+     * @param name the name of what is loaded, e.g. "voice cmu-slt-hsmm"
+     */
+    public LoadingTimer(String name)
+    {
+        this.name = name;
+        startTime = System.currentTimeMillis();
+        lastTime = startTime;
+    }
+
+    /**
+     * Record that the given component has been loaded,
+     * taking the time since the previous component or since timing started.
+     */
+    public void done(String component)
+    {
+        long now = System.currentTimeMillis();
+        times.add(new Pair<String, Long>(component, now - lastTime));
+        lastTime = now;
+    }
+
+    /**
+     * The components loaded so far, in order, with their loading times in milliseconds.
+     */
+    public List<Pair<String, Long>> getTimes()
+    {
+        return times;
+    }
+
+    /**
+     * The time in milliseconds from the start up to the last component loaded.
+     */
+    public long getTotalTime()
+    {
+        return lastTime - startTime;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder buf = new StringBuilder();
+        buf.append(name).append(" loaded in ").append(getTotalTime()).append(" ms");
+        for (int i=0, n=times.size(); i<n; i++) {
+            Pair<String, Long> t = times.get(i);
+            buf.append(i == 0 ? " (" : ", ").append(t.getFirst()).append(" ").append(t.getSecond()).append(" ms");
+            if (i == n-1) buf.append(")");
+        }
+        return buf.toString();
+    }
+}
@@ -21,18 +21,42 @@
 package marytts.util;
 
 import java.io.File;
-import java.net.MalformedURLException;
-import java.sql.Connection;
-import java.sql.DatabaseMetaData;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Statement;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import marytts.server.MaryProperties;
 
+import org.apache.log4j.Logger;
+
 /**
+ * A cache for the results of MARY requests, text or audio.
+ * Records are keyed by a SHA-1 hash of all request parameters and the input text.
+ * Lookups first consult a size-bounded in-memory tier, which is split into independently locked
+ * shards with least-recently-used eviction, so that concurrent lookups rarely contend;
+ * on a miss, an optional append-only disk tier is consulted, which is read through a memory-mapped
+ * view of the cache file and persists across server restarts.
+ * <p>
+ * The following properties are used by {@link #getCache()}:
+ * <ul>
+ *   <li><code>cache.file</code> -- the file name prefix of the disk tier;</li>
+ *   <li><code>cache.clearOnStart</code> -- whether to discard the disk tier on startup;</li>
+ *   <li><code>cache.memory.maxmb</code> -- the size of the in-memory tier, in megabytes;</li>
+ *   <li><code>cache.disk</code> -- whether to use the disk tier at all;</li>
+ *   <li><code>cache.disk.maxmb</code> -- the maximum size of the disk tier, in megabytes;
+ *   when it is reached, no further records are written to disk.</li>
+ * </ul>
  * @author marc
  *
  */
@@ -49,16 +73,17 @@ public class MaryCache
      * cannot be created, null will be returned and any exception will be logged.
      * @return the MaryCache singleton object, or null if none could be created.
      */
-    public static MaryCache getCache()
+    public static synchronized MaryCache getCache()
     {
         if (maryCache == null) {
             try {
-                File targetFile = new File(MaryProperties.getFilename("cache.file", "maryCache"));
-                File directory = targetFile.getParentFile();
-                if (!directory.isDirectory()) {
-                    directory.mkdirs();
+                File targetFile = null;
+                if (MaryProperties.getBoolean("cache.disk", true)) {
+                    targetFile = new File(MaryProperties.getFilename("cache.file", "maryCache"));
                 }
-                maryCache = new MaryCache(targetFile, MaryProperties.getBoolean("cache.clearOnStart", false));
+                maryCache = new MaryCache(targetFile, MaryProperties.getBoolean("cache.clearOnStart", false),
+                        MaryProperties.getInteger("cache.memory.maxmb", 64) * MEGABYTE,
+                        MaryProperties.getInteger("cache.disk.maxmb", 4096) * MEGABYTE);
             } catch (Exception e) {
                 MaryUtils.getLogger(MaryCache.class).warn("Cannot set up cache", e);
             }
@@ -76,70 +101,80 @@ public class MaryCache
     
     ////////////////////////////// non-static code /////////////////////////////
     
+    private static final long MEGABYTE = 1024 * 1024;
+    private static final long DEFAULT_MEMORY_SIZE = 64 * MEGABYTE;
+    private static final long DEFAULT_DISK_SIZE = 4096 * MEGABYTE;
+    private static final int NUM_SHARDS = 16;
+    private static final byte TEXT = 0;
+    private static final byte AUDIO = 1;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    
+    private static final ThreadLocal<MessageDigest> digests = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new AssertionError("SHA-1 is always a supported algorithm.");
+            }
+        }
+    };
     
-    private Connection connection;
+    private Logger logger;
+    private Shard[] shards;
+    private DiskStore diskStore;
+    private AtomicLong memoryHits = new AtomicLong();
+    private AtomicLong diskHits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+    private AtomicLong insertions = new AtomicLong();
+    private AtomicLong evictions = new AtomicLong();
+
+    private static final String LOOKUPS = "mary_cache_lookups_total";
+    private static final String LOOKUPS_HELP = "Cache lookups by where the result was found";
+    private static final Metrics.Counter memoryHitsMetric = Metrics.counter(LOOKUPS, LOOKUPS_HELP, "result", "memory");
+    private static final Metrics.Counter diskHitsMetric = Metrics.counter(LOOKUPS, LOOKUPS_HELP, "result", "disk");
+    private static final Metrics.Counter missesMetric = Metrics.counter(LOOKUPS, LOOKUPS_HELP, "result", "miss");
 
     /**
      * Create a MaryCache with the given file prefix.
      * This constructor is public only for tests; it should not normally be called.
      * User code should call {@link #getCache()} instead.
      * TODO: Find a more elegant way to create a custom MaryCache from test code.
-     * @param cacheFile the file name prefix with which to create the cache database.
+     * @param cacheFile the file name prefix with which to create the disk tier.
      * @param clearCache if true, clear the cache; if false, keep it.
-     * @throws ClassNotFoundException if the HSQL JDBC driver is not in the classpath.
-     * @throws SQLException if the database connection cannot be set up
+     * @throws IOException if the disk tier cannot be set up
      */
-    public MaryCache(File cacheFile, boolean clearCache) throws ClassNotFoundException, SQLException
+    public MaryCache(File cacheFile, boolean clearCache) throws IOException
     {
-        // Load the HSQL Database Engine JDBC driver
-        Class.forName("org.hsqldb.jdbcDriver");
-        connection = DriverManager.getConnection("jdbc:hsqldb:"+cacheFile.toURI().toString(), "sa", "");
-        boolean mustCreateTable = false;
-        if (clearCache) {
-            Statement st = connection.createStatement();
-            st.executeUpdate("DROP TABLE MARYCACHE IF EXISTS");
-            st.close();
-            mustCreateTable = true;
-        } else { // don't clear -- check if table exists
-            DatabaseMetaData dbInfo = connection.getMetaData();
-            ResultSet rs = dbInfo.getTables(null, null, "MARYCACHE", new String[]{"TABLE"});
-            if (rs.next()) {
-                // table exists
-            } else {
-                mustCreateTable = true;
-            }
-        }
-        if (mustCreateTable) {
-            String query = "CREATE CACHED TABLE MARYCACHE (id INTEGER IDENTITY, "
-                +"inputtype VARCHAR(50), "
-                +"outputtype VARCHAR(50), "
-                +"locale VARCHAR(10), "
-                +"voice VARCHAR(100), "
-                +"outputparams VARCHAR(1000), "
-                +"style VARCHAR(50), "
-                +"effects VARCHAR(1000), "
-                +"inputtext LONGVARCHAR, "
-                +"outputtext LONGVARCHAR, "
-                +"outputaudio LONGVARBINARY, "
-                +"UNIQUE(inputtype, outputtype, locale, voice, outputparams, style, effects, inputtext)"
-                +")";
-            update(query);
-        }
+        this(cacheFile, clearCache, DEFAULT_MEMORY_SIZE, DEFAULT_DISK_SIZE);
     }
     
     /**
-     * Carry out an UPDATE SQL command on the database.
-     * @param query the UPDATE SQL command to carry out
-     * @throws SQLException if there is a problem executing the update.
+     * Create a MaryCache with the given file prefix and sizes.
+     * This constructor is public only for tests; it should not normally be called.
+     * User code should call {@link #getCache()} instead.
+     * @param cacheFile the file name prefix with which to create the disk tier, or null for a memory-only cache.
+     * @param clearCache if true, clear the disk tier; if false, keep it.
+     * @param maxMemoryBytes the approximate maximum number of bytes held in the memory tier.
+     * @param maxDiskBytes the maximum size of the disk tier file.
+     * @throws IOException if the disk tier cannot be set up
      */
-    private synchronized void update(String query) throws SQLException
+    public MaryCache(File cacheFile, boolean clearCache, long maxMemoryBytes, long maxDiskBytes) throws IOException
     {
-        Statement st = connection.createStatement();
-        int ok = st.executeUpdate(query);
-        if (ok == -1) {
-            throw new SQLException("DB problem with query: "+query);
+        logger = MaryUtils.getLogger(MaryCache.class);
+        shards = new Shard[NUM_SHARDS];
+        for (int i=0; i<NUM_SHARDS; i++) {
+            shards[i] = new Shard(maxMemoryBytes / NUM_SHARDS);
+        }
+        if (cacheFile != null) {
+            File diskFile = new File(cacheFile.getPath() + ".mcache");
+            File directory = diskFile.getAbsoluteFile().getParentFile();
+            if (!directory.isDirectory()) {
+                directory.mkdirs();
+            }
+            diskStore = new DiskStore(diskFile, clearCache, maxDiskBytes);
+            logger.info("Cache file " + diskFile + " contains " + diskStore.size() + " records");
         }
-        st.close();
     }
     
     /**
@@ -152,10 +187,10 @@ public class MaryCache
      * @param inputtext the request's input text. Must not be null.
      * @param outputtext the request's output text. Must not be null.
      * @throws NullPointerException if one of the fields is null which must be non-null.
-     * @throws SQLException if the record could not be entered into the cache.
+     * @throws IOException if the record could not be written to the disk tier.
      */
     public void insertText(String inputtype, String outputtype, String locale, String voice, String inputtext, String outputtext)
-    throws SQLException
+    throws IOException
     {
         insertText(inputtype, outputtype, locale, voice, null, null, null, inputtext, outputtext);
     }
@@ -173,29 +208,16 @@ public class MaryCache
      * @param inputtext the request's input text. Must not be null.
      * @param outputtext the request's output text. Must not be null.
      * @throws NullPointerException if one of the fields is null which must be non-null.
-     * @throws SQLException if the record could not be entered into the cache.
+     * @throws IOException if the record could not be written to the disk tier.
      */
-    public synchronized void insertText(String inputtype, String outputtype, String locale, String voice, String outputparams, String style, String effects, String inputtext, String outputtext)
-    throws SQLException
+    public void insertText(String inputtype, String outputtype, String locale, String voice, String outputparams, String style, String effects, String inputtext, String outputtext)
+    throws IOException
     {
         if (inputtype == null || outputtype == null || locale == null || voice == null || inputtext == null || outputtext == null) {
             throw new NullPointerException("Null argument");
         }
-        // Need to verify, here in the synchronized code, once again that really we don't have this entry already.
-        // If we do, we ignore this call.
-        if (lookupText(inputtype, outputtype, locale, voice, outputparams, style, effects, inputtext) != null) {
-            return;
-        }
-
-        String query = "INSERT INTO MARYCACHE (inputtype, outputtype, locale, voice, outputparams, style, effects, inputtext, outputtext) VALUES ('"
-            +inputtype+"','"+outputtype+"','"+locale+"','"+voice+"','"+outputparams+"','"+style+"','"+effects+"',?,?)";
-
-        PreparedStatement st = connection.prepareStatement(query);
-        // We set the input and output text separately because they could contain single quote characters
-        st.setString(1, inputtext);
-        st.setString(2, outputtext);
-        st.executeUpdate();
-        st.close();
+        CacheKey key = computeKey(inputtype, outputtype, locale, voice, outputparams, style, effects, inputtext);
+        insert(key, TEXT, outputtext, outputtext.getBytes(UTF8));
     }
     
     /**
@@ -207,10 +229,10 @@ public class MaryCache
      * @param inputtext the request's input text. Must not be null.
      * @param audio the request's output data. Must not be null.
      * @throws NullPointerException if one of the fields is null which must be non-null.
-     * @throws SQLException if the record could not be entered into the cache.
+     * @throws IOException if the record could not be written to the disk tier.
      */
     public void insertAudio(String inputtype, String locale, String voice, String inputtext, byte[] audio)
-    throws SQLException
+    throws IOException
     {
         insertAudio(inputtype, locale, voice, null, null, null, inputtext, audio);
     }
@@ -227,28 +249,29 @@ public class MaryCache
      * @param inputtext the request's input text. Must not be null.
      * @param audio the request's output data. Must not be null.
      * @throws NullPointerException if one of the fields is null which must be non-null.
-     * @throws SQLException if the record could not be entered into the cache.
+     * @throws IOException if the record could not be written to the disk tier.
      */
-    public synchronized void insertAudio(String inputtype, String locale, String voice, String outputparams, String style, String effects, String inputtext, byte[] audio)
-    throws SQLException
+    public void insertAudio(String inputtype, String locale, String voice, String outputparams, String style, String effects, String inputtext, byte[] audio)
+    throws IOException
     {
-        if (inputtype == null || locale == null || voice == null || inputtext == null) {
+        if (inputtype == null || locale == null || voice == null || inputtext == null || audio == null) {
             throw new NullPointerException("Null argument");
         }
-        // Need to verify, here in the synchronized code, once again that really we don't have this entry already.
-        // If we do, we ignore this call.
-        if (lookupAudio(inputtype, locale, voice, outputparams, style, effects, inputtext) != null) {
+        CacheKey key = computeKey(inputtype, "AUDIO", locale, voice, outputparams, style, effects, inputtext);
+        insert(key, AUDIO, audio, audio);
+    }
+
+    private void insert(CacheKey key, byte type, Object value, byte[] data) throws IOException
+    {
+        Shard shard = getShard(key);
+        if (shard.get(key) != null || diskStore != null && diskStore.contains(key)) {
             return;
         }
-        
-        String query = "INSERT INTO MARYCACHE (inputtype, outputtype, locale, voice, outputparams, style, effects, inputtext, outputaudio) VALUES('"
-            +inputtype+"','AUDIO','"+locale+"','"+voice+"','"+outputparams+"','"+style+"','"+effects+"',?,?)";
-
-        PreparedStatement st = connection.prepareStatement(query);
-        st.setString(1, inputtext);
-        st.setBytes(2, audio);
-        st.executeUpdate();
-        st.close();
+        insertions.incrementAndGet();
+        evictions.addAndGet(shard.put(key, value, data.length));
+        if (diskStore != null) {
+            diskStore.append(key, type, data);
+        }
     }
 
     /**
@@ -260,10 +283,10 @@ public class MaryCache
      * @param inputtext the request's input text. Must not be null.
      * @return the output text associated with the with the given record, or null if the cache does not contain a record with these keys.
      * @throws NullPointerException if one of the fields is null which must be non-null.
-     * @throws SQLException if there is a problem querying the cache.
+     * @throws IOException if there is a problem reading from the disk tier.
      */
     public String lookupText(String inputtype, String outputtype, String locale, String voice, String inputtext)
-    throws SQLException
+    throws IOException
     {
         return lookupText(inputtype, outputtype, locale, voice, null, null, null, inputtext);
     }
@@ -280,32 +303,17 @@ public class MaryCache
      * @param inputtext the request's input text. Must not be null.
      * @return the output text associated with the with the given record, or null if the cache does not contain a record with these keys.
      * @throws NullPointerException if one of the fields is null which must be non-null.
-     * @throws SQLException if there is a problem querying the cache.
+     * @throws IOException if there is a problem reading from the disk tier.
      */
-    public synchronized String lookupText(String inputtype, String outputtype, String locale, String voice, String outputparams, String style, String effects, String inputtext)
-    throws SQLException
+    public String lookupText(String inputtype, String outputtype, String locale, String voice, String outputparams, String style, String effects, String inputtext)
+    throws IOException
     {
         if (inputtype == null || outputtype == null || locale == null || voice == null || inputtext == null) {
             throw new NullPointerException("Null argument");
         }
-        String outputtext = null;
-        String query = "SELECT outputtext FROM marycache WHERE inputtype = '"+inputtype
-            + "' AND outputtype = '"+outputtype
-            + "' AND locale = '"+locale
-            + "' AND voice = '"+voice
-            + "' AND outputparams = '"+outputparams
-            + "' AND style = '"+style
-            + "' AND effects = '"+effects
-            + "' AND inputtext = ?";
-
-        PreparedStatement st = connection.prepareStatement(query);
-        st.setString(1, inputtext);
-        ResultSet results = st.executeQuery();
-        if (results.next()) { // we expect only a single result, if any, so no while loop
-            outputtext = results.getString(1);
-        }
-        st.close();
-        return outputtext;
+        CacheKey key = computeKey(inputtype, outputtype, locale, voice, outputparams, style, effects, inputtext);
+        Object value = lookup(key, TEXT);
+        return value != null ? (String) value : null;
     }
     
     /**
@@ -316,16 +324,17 @@ public class MaryCache
      * @param inputtext the request's input text. Must not be null.
      * @return the output text associated with the with the given record, or null if the cache does not contain a record with these keys.
      * @throws NullPointerException if one of the fields is null which must be non-null.
-     * @throws SQLException if there is a problem querying the cache.
+     * @throws IOException if there is a problem reading from the disk tier.
      */
     public byte[] lookupAudio(String inputtype, String locale, String voice, String inputtext)
-    throws SQLException
+    throws IOException
     {
         return lookupAudio(inputtype, locale, voice, null, null, null, inputtext);
     }
     
     /**
      * Carry out a lookup in the cache with the given parameters, for a request with output type AUDIO.
+     * The returned array is shared with the cache and must not be modified.
      * @param inputtype the request's input type. Must not be null. 
      * @param locale the locale of the request. Must not be null.
      * @param voice the voice of the request. Can be null.
@@ -335,48 +344,407 @@ public class MaryCache
      * @param inputtext the request's input text. Must not be null.
      * @return the output text associated with the with the given record, or null if the cache does not contain a record with these keys.
      * @throws NullPointerException if one of the fields is null which must be non-null.
-     * @throws SQLException if there is a problem querying the cache.
+     * @throws IOException if there is a problem reading from the disk tier.
      */
-    public synchronized byte[] lookupAudio(String inputtype, String locale, String voice, String outputparams, String style, String effects, String inputtext)
-    throws SQLException
+    public byte[] lookupAudio(String inputtype, String locale, String voice, String outputparams, String style, String effects, String inputtext)
+    throws IOException
     {
         if (inputtype == null || locale == null || voice == null || inputtext == null) {
             throw new NullPointerException("Null argument");
         }
-        byte[] audio = null;
-        String query = "Select outputaudio FROM marycache WHERE inputtype = '"+inputtype
-            + "' AND outputtype = 'AUDIO' AND locale = '"+locale
-            + "' AND voice = '"+voice
-            + "' AND outputparams = '"+outputparams
-            + "' AND style = '"+style
-            + "' AND effects = '"+effects
-            + "' AND inputtext = ?";
-        PreparedStatement st = connection.prepareStatement(query);
-        st.setString(1, inputtext);
-        ResultSet results = st.executeQuery();
-        if (results.next()) {
-            audio = results.getBytes(1);
-        }
-        return audio;
+        CacheKey key = computeKey(inputtype, "AUDIO", locale, voice, outputparams, style, effects, inputtext);
+        Object value = lookup(key, AUDIO);
+        return value != null ? (byte[]) value : null;
+    }
+    
+    private Object lookup(CacheKey key, byte type) throws IOException
+    {
+        Shard shard = getShard(key);
+        Object value = shard.get(key);
+        if (value != null) {
+            memoryHits.incrementAndGet();
+            memoryHitsMetric.inc();
+            return value;
+        }
+        if (diskStore != null) {
+            byte[] data = diskStore.read(key, type);
+            if (data != null) {
+                diskHits.incrementAndGet();
+                diskHitsMetric.inc();
+                value = type == TEXT ? new String(data, UTF8) : data;
+                // promote to the memory tier:
+                evictions.addAndGet(shard.put(key, value, data.length));
+                return value;
+            }
+        }
+        misses.incrementAndGet();
+        missesMetric.inc();
+        return null;
+    }
+    
+    private Shard getShard(CacheKey key)
+    {
+        return shards[(key.hashCode() & Integer.MAX_VALUE) % NUM_SHARDS];
+    }
+    
+    private static CacheKey computeKey(String inputtype, String outputtype, String locale, String voice, String outputparams, String style, String effects, String inputtext)
+    {
+        MessageDigest digest = digests.get();
+        digest.reset();
+        for (String field : new String[] {inputtype, outputtype, locale, voice, outputparams, style, effects, inputtext}) {
+            if (field == null) {
+                // distinguish null from the empty string:
+                updateWithInt(digest, -1);
+            } else {
+                byte[] bytes = field.getBytes(UTF8);
+                updateWithInt(digest, bytes.length);
+                digest.update(bytes);
+            }
+        }
+        return new CacheKey(digest.digest());
+    }
+    
+    private static void updateWithInt(MessageDigest digest, int value)
+    {
+        digest.update((byte) (value >>> 24));
+        digest.update((byte) (value >>> 16));
+        digest.update((byte) (value >>> 8));
+        digest.update((byte) value);
+    }
+    
+    /**
+     * Report hit, miss and eviction counts since the cache was created, one <code>key=value</code> pair per line.
+     * @return a multi-line string.
+     */
+    public String getStatistics()
+    {
+        StringBuilder buf = new StringBuilder();
+        long entries = 0;
+        long bytes = 0;
+        for (Shard shard : shards) {
+            entries += shard.size();
+            bytes += shard.getBytes();
+        }
+        buf.append("cache.memory.entries=").append(entries).append("\n");
+        buf.append("cache.memory.bytes=").append(bytes).append("\n");
+        if (diskStore != null) {
+            buf.append("cache.disk.entries=").append(diskStore.size()).append("\n");
+        }
+        buf.append("cache.hits.memory=").append(memoryHits.get()).append("\n");
+        buf.append("cache.hits.disk=").append(diskHits.get()).append("\n");
+        buf.append("cache.misses=").append(misses.get()).append("\n");
+        buf.append("cache.insertions=").append(insertions.get()).append("\n");
+        buf.append("cache.evictions=").append(evictions.get()).append("\n");
+        return buf.toString();
+    }
+    
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+    
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+    
+    public long getMisses() {
+        return misses.get();
+    }
+    
+    public long getEvictions() {
+        return evictions.get();
     }
     
     /**
      * Shut down the cache. After this has been called, any further calls to the object will throw exceptions.
-     * @throws SQLException if there is a problem executing the database SHUTDOWN command.
+     * @throws IOException if there is a problem closing the disk tier.
      */
-    public void shutdown() throws SQLException
+    public void shutdown() throws IOException
     {
+        for (Shard shard : shards) {
+            shard.clear();
+        }
+        if (diskStore != null) {
+            diskStore.close();
+        }
+    }
 
-        Statement st = connection.createStatement();
-        st.execute("SHUTDOWN");
-        connection.close();    // if there are no other open connection
+    
+    /**
+     * A 160-bit hash identifying one cache record.
+     */
+    private static final class CacheKey
+    {
+        private final byte[] digest;
+        private final int hash;
+        
+        CacheKey(byte[] digest)
+        {
+            this.digest = digest;
+            this.hash = Arrays.hashCode(digest);
+        }
+        
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+        
+        @Override
+        public boolean equals(Object o)
+        {
+            return o instanceof CacheKey && Arrays.equals(digest, ((CacheKey) o).digest);
+        }
+    }
+    
+    /**
+     * One independently locked part of the memory tier, evicting the least recently used records
+     * when its size budget is exceeded.
+     */
+    private static final class Shard
+    {
+        private final LinkedHashMap<CacheKey, MemoryRecord> records = new LinkedHashMap<CacheKey, MemoryRecord>(16, 0.75f, true); // access order
+        private final long maxBytes;
+        private long currentBytes = 0;
+        
+        Shard(long maxBytes)
+        {
+            this.maxBytes = maxBytes;
+        }
+        
+        synchronized Object get(CacheKey key)
+        {
+            MemoryRecord record = records.get(key);
+            return record != null ? record.value : null;
+        }
+        
+        /**
+         * @return the number of records evicted to make room
+         */
+        synchronized int put(CacheKey key, Object value, int numBytes)
+        {
+            if (numBytes > maxBytes || records.containsKey(key)) {
+                return 0;
+            }
+            records.put(key, new MemoryRecord(value, numBytes));
+            currentBytes += numBytes;
+            int evicted = 0;
+            Iterator<MemoryRecord> it = records.values().iterator();
+            while (currentBytes > maxBytes && it.hasNext()) {
+                MemoryRecord eldest = it.next();
+                it.remove();
+                currentBytes -= eldest.numBytes;
+                evicted++;
+            }
+            return evicted;
+        }
+        
+        synchronized int size()
+        {
+            return records.size();
+        }
+        
+        synchronized long getBytes()
+        {
+            return currentBytes;
+        }
+        
+        synchronized void clear()
+        {
+            records.clear();
+            currentBytes = 0;
+        }
+    }
+    
+    private static final class MemoryRecord
+    {
+        final Object value;
+        final int numBytes;
+        
+        MemoryRecord(Object value, int numBytes)
+        {
+            this.value = value;
+            this.numBytes = numBytes;
+        }
+    }
+    
+    /**
+     * The disk tier: an append-only file of records, each consisting of the key,
+     * the record type, the data length and the data. The index of all records is held in memory.
+     */
+    private static final class DiskStore
+    {
+        private static final int MAGIC = 0x4D435931; // "MCY1"
+        private static final int FILE_HEADER_LENGTH = 4;
+        private static final int DIGEST_LENGTH = 20;
+        private static final int RECORD_HEADER_LENGTH = DIGEST_LENGTH + 1 + 4;
+        
+        private final File file;
+        private final RandomAccessFile raf;
+        private final FileChannel channel;
+        private final long maxBytes;
+        private final Map<CacheKey, DiskRecord> index = new ConcurrentHashMap<CacheKey, DiskRecord>();
+        private long end;
+        private volatile MappedByteBuffer mapped;
+        private boolean warnedFull = false;
+        
+        DiskStore(File file, boolean clear, long maxBytes) throws IOException
+        {
+            this.file = file;
+            this.maxBytes = maxBytes;
+            raf = new RandomAccessFile(file, "rw");
+            channel = raf.getChannel();
+            if (!clear && raf.length() >= FILE_HEADER_LENGTH) {
+                raf.seek(0);
+                if (raf.readInt() == MAGIC) {
+                    scan();
+                    return;
+                }
+                MaryUtils.getLogger(MaryCache.class).warn("Cache file " + file + " has unknown format -- clearing it");
+            }
+            raf.setLength(0);
+            raf.writeInt(MAGIC);
+            end = FILE_HEADER_LENGTH;
+        }
+        
+        /**
+         * Build the index from the records in the file. An incomplete record at the end,
+         * e.g. after a crash while writing, is discarded.
+         */
+        private void scan() throws IOException
+        {
+            long length = raf.length();
+            long pos = FILE_HEADER_LENGTH;
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+            while (pos + RECORD_HEADER_LENGTH <= length) {
+                header.clear();
+                channel.read(header, pos);
+                header.flip();
+                byte[] digest = new byte[DIGEST_LENGTH];
+                header.get(digest);
+                byte type = header.get();
+                int dataLength = header.getInt();
+                if (dataLength < 0 || pos + RECORD_HEADER_LENGTH + dataLength > length) {
+                    break;
+                }
+                index.put(new CacheKey(digest), new DiskRecord(pos + RECORD_HEADER_LENGTH, dataLength, type));
+                pos += RECORD_HEADER_LENGTH + dataLength;
+            }
+            if (pos < length) {
+                MaryUtils.getLogger(MaryCache.class).warn("Discarding incomplete record at end of cache file " + file);
+                raf.setLength(pos);
+            }
+            end = pos;
+        }
+        
+        int size()
+        {
+            return index.size();
+        }
+        
+        boolean contains(CacheKey key)
+        {
+            return index.containsKey(key);
+        }
+        
+        synchronized void append(CacheKey key, byte type, byte[] data) throws IOException
+        {
+            if (index.containsKey(key)) {
+                return;
+            }
+            if (end + RECORD_HEADER_LENGTH + data.length > maxBytes) {
+                if (!warnedFull) {
+                    MaryUtils.getLogger(MaryCache.class).warn("Cache file " + file + " has reached its maximum size -- not writing any more records");
+                    warnedFull = true;
+                }
+                return;
+            }
+            ByteBuffer buf = ByteBuffer.allocate(RECORD_HEADER_LENGTH + data.length);
+            buf.put(key.digest).put(type).putInt(data.length).put(data);
+            buf.flip();
+            long pos = end;
+            while (buf.hasRemaining()) {
+                pos += channel.write(buf, pos);
+            }
+            // only make the record visible once it is completely written:
+            index.put(key, new DiskRecord(end + RECORD_HEADER_LENGTH, data.length, type));
+            end = pos;
+        }
+        
+        byte[] read(CacheKey key, byte type) throws IOException
+        {
+            DiskRecord record = index.get(key);
+            if (record == null || record.type != type) {
+                return null;
+            }
+            byte[] data = new byte[record.length];
+            MappedByteBuffer view = getMappedView(record.offset + record.length);
+            if (view != null) {
+                ByteBuffer dup = view.duplicate();
+                dup.position((int) record.offset);
+                dup.get(data);
+            } else { // file too large to be mapped in one piece
+                ByteBuffer buf = ByteBuffer.wrap(data);
+                long pos = record.offset;
+                while (buf.hasRemaining()) {
+                    int read = channel.read(buf, pos);
+                    if (read < 0) {
+                        throw new IOException("Unexpected end of cache file " + file);
+                    }
+                    pos += read;
+                }
+            }
+            return data;
+        }
+        
+        /**
+         * Get a read-only mapping of the file that covers at least the given position,
+         * remapping the file if records have been appended since it was last mapped.
+         * @return the mapping, or null if the file is too large to be mapped.
+         */
+        private MappedByteBuffer getMappedView(long requiredEnd) throws IOException
+        {
+            MappedByteBuffer view = mapped;
+            if (view != null && view.capacity() >= requiredEnd) {
+                return view;
+            }
+            synchronized (this) {
+                if (end > Integer.MAX_VALUE) {
+                    return null;
+                }
+                if (mapped == null || mapped.capacity() < requiredEnd) {
+                    mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+                }
+                return mapped;
+            }
+        }
+        
+        void close() throws IOException
+        {
+            mapped = null;
+            channel.force(true);
+            raf.close();
+        }
+    }
+    
+    private static final class DiskRecord
+    {
+        final long offset;
+        final int length;
+        final byte type;
+        
+        DiskRecord(long offset, int length, byte type)
+        {
+            this.offset = offset;
+            this.length = length;
+            this.type = type;
+        }
     }
 
 
     /**
      * @param args
      */
-    public static void main(String[] args) throws SQLException, MalformedURLException, ClassNotFoundException
+    public static void main(String[] args) throws IOException
     {
         MaryCache c = new MaryCache(new File("/Users/marc/Desktop/testdb/testDB"), false);
 //        c.insertText("TEXT", "RAWMARYXML", "de", "de1", "Welcome to the world of speech synthesis", "<rawmaryxml/>");
@@ -388,6 +756,7 @@ public class MaryCache
         //c.insertAudio("TEXT", "de", "de1", "some dummy text", zeros);
         byte[] newones = c.lookupAudio("TEXT", "de", "de1", "some dummy text");
         System.out.println("Retrieved binary data of length "+newones.length);
+        System.out.println(c.getStatistics());
         
         c.shutdown();
     }
@@ -0,0 +1,366 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A registry of counters, histograms and gauges describing what the server does,
+ * e.g. how long the modules take or how often the cache is hit.
+ * The metrics are created once, typically as static fields of the classes they describe,
+ * and updated from the processing code. Updating a metric, and looking up one that exists already,
+ * takes no locks and allocates nothing; only creating a metric synchronizes.
+ * Counters and histograms are striped like {@link StripedCounter}, so that threads updating the same metric
+ * rarely write to the same cache line.
+ * <p>
+ * {@link #getExposition()} reports all metrics in the Prometheus text exposition format (version 0.0.4),
+ * as served by the <code>/metrics</code> request of the HTTP server.
+ * A metric may have one label, e.g. the name of a module; each label value is then a separate time series
+ * of the same metric family.
+ *
+ * @author agent
+ */
+public class Metrics
+{
+    /**
+     * Bucket bounds for durations, in seconds.
+     */
+    public static final double[] TIME_BUCKETS = new double[] {
+        0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30
+    };
+
+    /**
+     * Bucket bounds for ratios such as the real-time factor.
+     */
+    public static final double[] RATIO_BUCKETS = new double[] {
+        0.01, 0.02, 0.05, 0.1, 0.2, 0.5, 1, 2, 5
+    };
+
+    /**
+     * Bucket bounds for sizes, e.g. numbers of candidates.
+     */
+    public static final double[] SIZE_BUCKETS = new double[] {
+        10, 100, 1000, 10000, 100000, 1000000, 10000000
+    };
+
+    private static final Map<String, Family> families = new ConcurrentHashMap<String, Family>();
+    // the families in the order they were created, for the exposition:
+    private static final CopyOnWriteArrayList<Family> familyList = new CopyOnWriteArrayList<Family>();
+
+    /**
+     * Get the counter of the given name, creating it if necessary.
+     */
+    public static Counter counter(String name, String help)
+    {
+        return (Counter) getFamily(name, help, "counter", null, null).get(null);
+    }
+
+    /**
+     * Get the counter of the given name for the given label value, creating it if necessary.
+     */
+    public static Counter counter(String name, String help, String label, String labelValue)
+    {
+        return (Counter) getFamily(name, help, "counter", label, null).get(labelValue);
+    }
+
+    /**
+     * Get the histogram of the given name, creating it with the given bucket bounds if necessary.
+     * @param buckets the upper bounds of the buckets, in increasing order; a bucket for larger values is added.
+     */
+    public static Histogram histogram(String name, String help, double[] buckets)
+    {
+        return (Histogram) getFamily(name, help, "histogram", null, buckets).get(null);
+    }
+
+    /**
+     * Get the histogram of the given name for the given label value,
+     * creating it with the given bucket bounds if necessary.
+     * @param buckets the upper bounds of the buckets, in increasing order; a bucket for larger values is added.
+     */
+    public static Histogram histogram(String name, String help, double[] buckets, String label, String labelValue)
+    {
+        return (Histogram) getFamily(name, help, "histogram", label, buckets).get(labelValue);
+    }
+
+    /**
+     * Register a gauge, whose value is computed when the metrics are reported.
+     * A gauge registered earlier under the same name is replaced.
+     */
+    public static void gauge(String name, String help, Gauge gauge)
+    {
+        Family family = getFamily(name, help, "gauge", null, null);
+        family.members.put("", gauge);
+    }
+
+    private static Family getFamily(String name, String help, String type, String label, double[] buckets)
+    {
+        Family family = families.get(name);
+        if (family == null) {
+            synchronized (Metrics.class) {
+                family = families.get(name);
+                if (family == null) {
+                    family = new Family(name, help, type, label, buckets);
+                    families.put(name, family);
+                    familyList.add(family);
+                }
+            }
+        }
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric "+name+" is a "+family.type+", not a "+type);
+        }
+        return family;
+    }
+
+    /**
+     * Report all metrics in the Prometheus text exposition format.
+     */
+    public static String getExposition()
+    {
+        StringBuilder buf = new StringBuilder();
+        for (Family family : familyList) {
+            family.appendTo(buf);
+        }
+        return buf.toString();
+    }
+
+
+    /**
+     * All time series of one metric, one per label value.
+     */
+    private static class Family
+    {
+        final String name;
+        final String help;
+        final String type;
+        final String label;
+        final double[] buckets;
+        final Map<String, Object> members = new ConcurrentHashMap<String, Object>();
+
+        Family(String name, String help, String type, String label, double[] buckets)
+        {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.label = label;
+            this.buckets = buckets;
+        }
+
+        /**
+         * The metric for the given label value, created if necessary. Looking up an existing metric does not allocate.
+         * @param labelValue the label value, or null for a metric without label.
+         */
+        Object get(String labelValue)
+        {
+            String key = labelValue != null ? labelValue : "";
+            Object member = members.get(key);
+            if (member == null) {
+                synchronized (this) {
+                    member = members.get(key);
+                    if (member == null) {
+                        member = type.equals("histogram") ? new Histogram(buckets) : new Counter();
+                        members.put(key, member);
+                    }
+                }
+            }
+            return member;
+        }
+
+        void appendTo(StringBuilder buf)
+        {
+            buf.append("# HELP ").append(name).append(" ").append(help).append("\n");
+            buf.append("# TYPE ").append(name).append(" ").append(type).append("\n");
+            for (Map.Entry<String, Object> e : members.entrySet()) {
+                String labels = label != null ? label+"=\""+escape(e.getKey())+"\"" : "";
+                Object member = e.getValue();
+                if (member instanceof Counter) {
+                    appendSample(buf, name, labels, ((Counter) member).get());
+                } else if (member instanceof Gauge) {
+                    appendSample(buf, name, labels, member);
+                } else {
+                    ((Histogram) member).appendTo(buf, name, labels);
+                }
+            }
+        }
+    }
+
+    private static void appendSample(StringBuilder buf, String name, String labels, Object value)
+    {
+        buf.append(name);
+        if (labels.length() > 0) {
+            buf.append("{").append(labels).append("}");
+        }
+        buf.append(" ").append(value).append("\n");
+    }
+
+    private static String format(double d)
+    {
+        if (d == Double.POSITIVE_INFINITY) return "+Inf";
+        if (d == Double.NEGATIVE_INFINITY) return "-Inf";
+        if (d == Math.rint(d) && Math.abs(d) < 1e15) return Long.toString((long) d);
+        return Double.toString(d);
+    }
+
+    private static String escape(String labelValue)
+    {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+
+    /**
+     * A count that only goes up, e.g. the number of requests processed.
+     */
+    public static class Counter
+    {
+        private final StripedCounter value = new StripedCounter();
+
+        public void inc()
+        {
+            value.inc();
+        }
+
+        public void add(long n)
+        {
+            value.add(n);
+        }
+
+        public long get()
+        {
+            return value.get();
+        }
+    }
+
+    /**
+     * A value computed when the metrics are reported, e.g. the current length of a queue.
+     */
+    public static abstract class Gauge
+    {
+        public abstract double getValue();
+
+        @Override
+        public String toString()
+        {
+            return format(getValue());
+        }
+    }
+
+    /**
+     * The distribution of observed values, e.g. durations, as counts per bucket
+     * together with the number and the sum of all values.
+     * Each stripe has its own row of bucket counts and its own sum, so the compare-and-set
+     * on the sum only retries when two threads of the same stripe observe a value at the same time.
+     */
+    public static class Histogram
+    {
+        private final double[] bounds;
+        // Row r of a stripe starts at r * rowLength. In a row, the count at i is the number of values
+        // in (bounds[i-1], bounds[i]], the one at bounds.length counts values above all bounds,
+        // and the one at bounds.length+1 holds the bits of the sum of the values as a double.
+        private final AtomicLongArray cells;
+        private final int rowLength;
+        private final int mask;
+
+        Histogram(double[] bounds)
+        {
+            for (int i=1; i<bounds.length; i++) {
+                if (bounds[i] <= bounds[i-1]) {
+                    throw new IllegalArgumentException("Bucket bounds must be increasing");
+                }
+            }
+            this.bounds = bounds.clone();
+            int stripes = StripedCounter.numberOfStripes(StripedCounter.defaultStripes());
+            int padding = StripedCounter.PADDING;
+            this.rowLength = (bounds.length + 2 + padding - 1) / padding * padding;
+            this.mask = stripes - 1;
+            // all zero, and Double.doubleToLongBits(0) == 0:
+            this.cells = new AtomicLongArray(stripes * rowLength);
+        }
+
+        public void observe(double value)
+        {
+            int i = 0;
+            while (i < bounds.length && value > bounds[i]) {
+                i++;
+            }
+            int row = StripedCounter.stripe(mask) * rowLength;
+            cells.incrementAndGet(row + i);
+            int sum = row + bounds.length + 1;
+            long oldBits;
+            long newBits;
+            do {
+                oldBits = cells.get(sum);
+                newBits = Double.doubleToLongBits(Double.longBitsToDouble(oldBits) + value);
+            } while (!cells.compareAndSet(sum, oldBits, newBits));
+        }
+
+        /**
+         * The number of values in bucket i, summed over all stripes.
+         */
+        private long getBucketCount(int i)
+        {
+            long n = 0;
+            for (int row=0; row<cells.length(); row += rowLength) {
+                n += cells.get(row + i);
+            }
+            return n;
+        }
+
+        /**
+         * Observe a duration, measured with {@link System#nanoTime()}, in seconds.
+         */
+        public void observeNanos(long nanos)
+        {
+            observe(nanos / 1e9);
+        }
+
+        public long getCount()
+        {
+            long n = 0;
+            for (int i=0; i<=bounds.length; i++) {
+                n += getBucketCount(i);
+            }
+            return n;
+        }
+
+        public double getSum()
+        {
+            double sum = 0;
+            for (int row=0; row<cells.length(); row += rowLength) {
+                sum += Double.longBitsToDouble(cells.get(row + bounds.length + 1));
+            }
+            return sum;
+        }
+
+        void appendTo(StringBuilder buf, String name, String labels)
+        {
+            String prefix = labels.length() > 0 ? labels+"," : "";
+            long cumulative = 0;
+            for (int i=0; i<=bounds.length; i++) {
+                cumulative += getBucketCount(i);
+                String le = i < bounds.length ? format(bounds[i]) : "+Inf";
+                appendSample(buf, name+"_bucket", prefix+"le=\""+le+"\"", cumulative);
+            }
+            appendSample(buf, name+"_sum", labels, format(getSum()));
+            appendSample(buf, name+"_count", labels, cumulative);
+        }
+    }
+}
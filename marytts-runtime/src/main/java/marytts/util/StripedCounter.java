@@ -0,0 +1,121 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter for values that many threads update often, e.g. for every join cost or every datagram.
+ * Instead of one shared value, each thread adds to one of several stripes chosen by its thread id,
+ * so that threads rarely write to the same cache line; reading the counter sums up all stripes.
+ * Reading is therefore more expensive than updating, and a value read while other threads update
+ * the counter is not an atomic snapshot.
+ *
+ * @author agent
+ */
+public class StripedCounter
+{
+    // Distance between two stripes, in longs, so that each stripe has its own cache line:
+    static final int PADDING = 16;
+    private static final int MAX_STRIPES = 64;
+
+    private final AtomicLongArray cells;
+    private final int mask;
+
+    /**
+     * Create a counter with about two stripes per processor.
+     */
+    public StripedCounter()
+    {
+        this(defaultStripes());
+    }
+
+    /**
+     * @param stripes the requested number of stripes; rounded up to the next power of two, and at most 64.
+     */
+    public StripedCounter(int stripes)
+    {
+        int n = numberOfStripes(stripes);
+        cells = new AtomicLongArray(n * PADDING);
+        mask = n - 1;
+    }
+
+    /**
+     * About two stripes per processor.
+     */
+    static int defaultStripes()
+    {
+        return 2 * Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * The requested number of stripes rounded up to the next power of two, and at most 64.
+     */
+    static int numberOfStripes(int stripes)
+    {
+        int n = 1;
+        while (n < stripes && n < MAX_STRIPES) {
+            n <<= 1;
+        }
+        return n;
+    }
+
+    /**
+     * The stripe the current thread adds to.
+     * @param mask the number of stripes minus one, as returned by {@link #numberOfStripes(int)}.
+     */
+    static int stripe(int mask)
+    {
+        long id = Thread.currentThread().getId();
+        // thread ids are mostly consecutive; spread them so that neighbours use different stripes:
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return (h >>> 16) & mask;
+    }
+
+    /**
+     * The index of the cell the current thread adds to.
+     */
+    private int cell()
+    {
+        return stripe(mask) * PADDING;
+    }
+
+    public void inc()
+    {
+        cells.incrementAndGet(cell());
+    }
+
+    public void add(long n)
+    {
+        cells.addAndGet(cell(), n);
+    }
+
+    /**
+     * The sum of all values added so far.
+     */
+    public long get()
+    {
+        long sum = 0;
+        for (int i = 0; i < cells.length(); i += PADDING) {
+            sum += cells.get(i);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.cart;
+
+import java.util.Random;
+
+import marytts.cart.io.MaryCARTReader;
+import marytts.features.FeatureDefinition;
+import marytts.features.FeatureVector;
+
+/**
+ * Compares the interpretation of a CART through its compiled flat representation
+ * with the walk through the node objects, on random feature vectors, and checks that
+ * both find the very same nodes.
+ * Not a unit test; run it manually with
+ * <code>java marytts.cart.CARTBenchmark path/to/tree.mry [numFeatureVectors]</code>,
+ * e.g. with the duration, F0 or preselection CART of a voice.
+ *
+ * @author agent
+ *
+ */
+public class CARTBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: CARTBenchmark path/to/tree.mry [numFeatureVectors]");
+            System.exit(1);
+        }
+        CART compiled = new MaryCARTReader().load(args[0]);
+        CART objects = new CART(compiled.getRootNode(), compiled.getFeatureDefinition());
+        int numVectors = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        FeatureVector[] vectors = createFeatureVectors(compiled.getFeatureDefinition(), numVectors, new Random(0));
+
+        int numRuns = 10;
+        for (int run = 0; run < numRuns; run++) {
+            long startTime = System.nanoTime();
+            int objectsSum = 0;
+            for (FeatureVector fv : vectors) {
+                objectsSum += objects.interpretToNode(fv, 0).getNumberOfData();
+            }
+            long objectsNanos = System.nanoTime() - startTime;
+            startTime = System.nanoTime();
+            int compiledSum = 0;
+            for (FeatureVector fv : vectors) {
+                compiledSum += compiled.interpretToNode(fv, 0).getNumberOfData();
+            }
+            long compiledNanos = System.nanoTime() - startTime;
+            System.out.printf("Run %d: node objects %.1f ns, compiled %.1f ns per feature vector (checksums %d, %d)%n",
+                    run, (double) objectsNanos / numVectors, (double) compiledNanos / numVectors, objectsSum, compiledSum);
+        }
+
+        int mismatches = 0;
+        for (FeatureVector fv : vectors) {
+            for (int minNumberOfData = 0; minNumberOfData <= 2; minNumberOfData++) {
+                if (objects.interpretToNode(fv, minNumberOfData) != compiled.interpretToNode(fv, minNumberOfData)) {
+                    mismatches++;
+                }
+            }
+            if (objects.interpret(fv) != compiled.interpret(fv)) {
+                mismatches++;
+            }
+        }
+        System.out.println("Mismatches: " + mismatches);
+    }
+
+    private static FeatureVector[] createFeatureVectors(FeatureDefinition featDef, int numVectors, Random random) {
+        int numBytes = featDef.getNumberOfByteFeatures();
+        int numShorts = featDef.getNumberOfShortFeatures();
+        int numFloats = featDef.getNumberOfContinuousFeatures();
+        FeatureVector[] vectors = new FeatureVector[numVectors];
+        for (int i = 0; i < numVectors; i++) {
+            byte[] bytes = new byte[numBytes];
+            for (int f = 0; f < numBytes; f++) {
+                bytes[f] = (byte) random.nextInt(featDef.getNumberOfValues(f));
+            }
+            short[] shorts = new short[numShorts];
+            for (int f = 0; f < numShorts; f++) {
+                shorts[f] = (short) random.nextInt(featDef.getNumberOfValues(numBytes + f));
+            }
+            float[] floats = new float[numFloats];
+            for (int f = 0; f < numFloats; f++) {
+                floats[f] = (float) random.nextGaussian();
+            }
+            vectors[i] = featDef.toFeatureVector(i, bytes, shorts, floats);
+        }
+        return vectors;
+    }
+}
@@ -0,0 +1,248 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.cart;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import marytts.cart.LeafNode.IntAndFloatArrayLeafNode;
+import marytts.cart.io.MaryCARTReader;
+import marytts.cart.io.MaryCARTWriter;
+import marytts.features.FeatureDefinition;
+import marytts.features.FeatureVector;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that interpreting a CART or directed graph through its compiled form finds the very
+ * same nodes and data as walking through the node objects, also after the graph has been changed.
+ * {@link CARTBenchmark} compares the speed of the two on the CART of a real voice.
+ *
+ * @author agent
+ *
+ */
+public class CompiledGraphTest {
+
+    private static final String FEATURES = "ByteValuedFeatureProcessors\n"
+        + "1 | phone 0 a b c\n"
+        + "1 | stressed 0 1\n"
+        + "ShortValuedFeatureProcessors\n"
+        + "1 | word_numsyls 0 1 2 3 4\n"
+        + "ContinuousFeatureProcessors\n"
+        + "1 linear | unit_duration\n";
+
+    private Random random;
+    private FeatureDefinition featDef;
+    private FeatureVector[] vectors;
+    private int nextData;
+
+    @Before
+    public void setUp() throws Exception {
+        random = new Random(4321);
+        featDef = new FeatureDefinition(new BufferedReader(new StringReader(FEATURES)), true);
+        vectors = new FeatureVector[2000];
+        for (int i = 0; i < vectors.length; i++) {
+            byte[] bytes = new byte[] {(byte) random.nextInt(4), (byte) random.nextInt(2)};
+            short[] shorts = new short[] {(short) random.nextInt(5)};
+            float[] floats = new float[] {(float) random.nextGaussian()};
+            vectors[i] = featDef.toFeatureVector(i, bytes, shorts, floats);
+        }
+    }
+
+    private LeafNode randomLeaf() {
+        return leaf(random.nextInt(4));
+    }
+
+    private LeafNode leaf(int numberOfData) {
+        int[] data = new int[numberOfData];
+        float[] floats = new float[data.length];
+        for (int k = 0; k < data.length; k++) {
+            data[k] = nextData++;
+            floats[k] = random.nextFloat();
+        }
+        return new IntAndFloatArrayLeafNode(data, floats);
+    }
+
+    private DecisionNode randomDecisionNode() {
+        switch (random.nextInt(5)) {
+        case 0:
+            return new DecisionNode.BinaryByteDecisionNode(0, (byte) random.nextInt(4), featDef);
+        case 1:
+            return new DecisionNode.BinaryShortDecisionNode(2, (short) random.nextInt(5), featDef);
+        case 2:
+            return new DecisionNode.BinaryFloatDecisionNode(3, (float) random.nextGaussian(), featDef);
+        case 3:
+            return new DecisionNode.ByteDecisionNode(1, featDef.getNumberOfValues(1), featDef);
+        default:
+            return new DecisionNode.ShortDecisionNode(2, featDef.getNumberOfValues(2), featDef);
+        }
+    }
+
+    private Node randomTree(int depth) {
+        if (depth == 0 || random.nextInt(6) == 0) {
+            return randomLeaf();
+        }
+        DecisionNode node = randomDecisionNode();
+        for (int k = 0; k < node.getNumberOfDaugthers(); k++) {
+            node.addDaughter(randomTree(depth - 1));
+        }
+        return node;
+    }
+
+    /**
+     * A CART as the voices load it, through the MaryCART writer and reader.
+     */
+    private CART loadRandomCART(int depth) throws Exception {
+        DecisionNode root = (DecisionNode) randomTree(depth);
+        root.countData();
+        root.setIsRoot(true);
+        File file = File.createTempFile("cart", ".mry");
+        try {
+            new MaryCARTWriter().dumpMaryCART(new CART(root, featDef), file.getPath());
+            return new MaryCARTReader().load(file.getPath());
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * The leaf which the given feature vector leads to from the given node.
+     */
+    private static LeafNode leafOf(Node node, FeatureVector fv) {
+        while (node instanceof DecisionNode) {
+            node = ((DecisionNode) node).getNextNode(fv);
+        }
+        return (LeafNode) node;
+    }
+
+    private void assertSameNodes(CART objects, CART compiled) {
+        for (FeatureVector fv : vectors) {
+            for (int minNumberOfData = 0; minNumberOfData <= 3; minNumberOfData++) {
+                assertSame(objects.interpretToNode(fv, minNumberOfData), compiled.interpretToNode(fv, minNumberOfData));
+            }
+            assertSame(objects.interpret(fv), compiled.interpret(fv));
+        }
+    }
+
+    @Test
+    public void compiledCARTFindsSameNodes() throws Exception {
+        CART compiled = loadRandomCART(8);
+        assertNotNull(compiled.getCompiledGraph());
+        CART objects = new CART(compiled.getRootNode(), compiled.getFeatureDefinition());
+        assertSameNodes(objects, compiled);
+    }
+
+    @Test
+    public void replacingLeafUpdatesCompiledCART() throws Exception {
+        CART compiled = loadRandomCART(6);
+        CART objects = new CART(compiled.getRootNode(), compiled.getFeatureDefinition());
+        CompiledGraph before = compiled.getCompiledGraph();
+        FeatureVector fv = null;
+        LeafNode leaf = null;
+        for (int i = 0; leaf == null; i++) {
+            fv = vectors[i];
+            leaf = leafOf(compiled.getRootNode(), fv);
+        }
+        DecisionNode subtreeRoot = new DecisionNode.BinaryByteDecisionNode(0, (byte) 1, featDef);
+        subtreeRoot.addDaughter(leaf(3));
+        subtreeRoot.addDaughter(leaf(3));
+        CART subtree = new CART(subtreeRoot, featDef);
+        Node newNode = CART.replaceLeafByCart(subtree, leaf);
+        ((DecisionNode) compiled.getRootNode()).countData();
+        assertSameNodes(objects, compiled);
+        assertTrue(before != compiled.getCompiledGraph());
+        Node found = compiled.interpretToNode(fv, 0);
+        while (found != null && found != newNode) {
+            found = found.getMother();
+        }
+        assertSame(newNode, found);
+    }
+
+    @Test
+    public void changedLeafDataIsSeenByCompiledCART() throws Exception {
+        CART compiled = loadRandomCART(6);
+        CART objects = new CART(compiled.getRootNode(), compiled.getFeatureDefinition());
+        IntAndFloatArrayLeafNode leaf = null;
+        for (int i = 0; leaf == null || leaf.getNumberOfData() < 2; i++) {
+            leaf = (IntAndFloatArrayLeafNode) leafOf(compiled.getRootNode(), vectors[i]);
+        }
+        leaf.eraseData(leaf.getIntData()[0]);
+        ((DecisionNode) compiled.getRootNode()).countData();
+        assertSameNodes(objects, compiled);
+    }
+
+    private Node randomGraph(int depth, List<DirectedGraphNode> graphNodes) {
+        int choice = random.nextInt(8);
+        if (depth == 0 || choice == 0) {
+            return random.nextBoolean() ? randomLeaf() : null;
+        } else if (choice == 1 && !graphNodes.isEmpty()) {
+            // a node with several mothers:
+            return graphNodes.get(random.nextInt(graphNodes.size()));
+        }
+        DecisionNode node = randomDecisionNode();
+        for (int k = 0; k < node.getNumberOfDaugthers(); k++) {
+            node.addDaughter(randomGraph(depth - 1, graphNodes));
+        }
+        if (choice > 4) {
+            return node;
+        }
+        DirectedGraphNode graphNode = new DirectedGraphNode(node, random.nextBoolean() ? randomLeaf() : null);
+        graphNodes.add(graphNode);
+        return graphNode;
+    }
+
+    private void assertSameData(DirectedGraph objects, DirectedGraph compiled) {
+        for (FeatureVector fv : vectors) {
+            assertSame(objects.interpret(fv), compiled.interpret(fv));
+        }
+    }
+
+    @Test
+    public void compiledDirectedGraphFindsSameData() throws Exception {
+        List<DirectedGraphNode> graphNodes = new ArrayList<DirectedGraphNode>();
+        DecisionNode top = randomDecisionNode();
+        DirectedGraphNode root = new DirectedGraphNode(top, randomLeaf());
+        for (int k = 0; k < top.getNumberOfDaugthers(); k++) {
+            top.addDaughter(randomGraph(7, graphNodes));
+        }
+        DirectedGraph compiled = new DirectedGraph(root, featDef);
+        compiled.compile();
+        DirectedGraph objects = new DirectedGraph(root, featDef);
+        assertTrue(compiled.getCompiledGraph().hasGraphNodes);
+        assertSameData(objects, compiled);
+
+        // change the leaf of a node which may be below several mothers:
+        CompiledGraph before = compiled.getCompiledGraph();
+        for (DirectedGraphNode g : graphNodes) {
+            g.setLeafNode(randomLeaf());
+        }
+        assertSameData(objects, compiled);
+        assertTrue(before != compiled.getCompiledGraph());
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.features;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import marytts.datatypes.MaryXML;
+import marytts.unitselection.select.HalfPhoneTarget;
+import marytts.unitselection.select.Target;
+import marytts.util.dom.MaryDomUtils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.traversal.TreeWalker;
+
+/**
+ * Checks that the features computed for a whole list of targets at once
+ * are those computed for each target on its own.
+ * @author agent
+ *
+ */
+public class TargetFeatureComputerTest {
+
+	private static final String FEATURES = "edge halfphone_lr stressed prev_stressed word_numsyls pos_in_syl "
+		+ "position_type breakindex prev_is_pause next_is_pause sentence_numwords words_from_phrase_start "
+		+ "syls_from_phrase_end segs_from_word_start syls_to_next_stressed unit_duration";
+
+	private TargetFeatureComputer featureComputer;
+	private List<Target> targets;
+	private int phoneCount;
+
+	@Before
+	public void setUp() {
+		featureComputer = new TargetFeatureComputer(new FeatureProcessorManager(), FEATURES);
+		Document doc = MaryXML.newDocument();
+		Element para = MaryXML.appendChildElement(doc.getDocumentElement(), MaryXML.PARAGRAPH);
+		Element sentence = MaryXML.appendChildElement(para, MaryXML.SENTENCE);
+		Element phrase1 = MaryXML.appendChildElement(sentence, MaryXML.PHRASE);
+		appendWord(phrase1, 2, 3);
+		appendWord(phrase1, 1, 2);
+		appendBoundary(phrase1, 3, 200);
+		Element phrase2 = MaryXML.appendChildElement(sentence, MaryXML.PHRASE);
+		appendWord(phrase2, 3, 1);
+		appendWord(phrase2, 1, 4);
+		appendBoundary(phrase2, 5, 400);
+
+		targets = new ArrayList<Target>();
+		TreeWalker tw = MaryDomUtils.createTreeWalker(sentence, MaryXML.PHONE, MaryXML.BOUNDARY);
+		Element segment;
+		while ((segment = (Element) tw.nextNode()) != null) {
+			String name = segment.getTagName().equals(MaryXML.PHONE) ? segment.getAttribute("p") : "_";
+			targets.add(new HalfPhoneTarget(name+"_L", segment, true));
+			targets.add(new HalfPhoneTarget(name+"_R", segment, false));
+		}
+	}
+
+	private void appendWord(Element phrase, int numSyllables, int numPhones) {
+		Element t = MaryXML.appendChildElement(phrase, MaryXML.TOKEN);
+		t.setAttribute("ph", "x");
+		for (int i=0; i<numSyllables; i++) {
+			Element syl = MaryXML.appendChildElement(t, MaryXML.SYLLABLE);
+			if (i == 0) {
+				syl.setAttribute("stress", "1");
+			}
+			for (int j=0; j<numPhones; j++) {
+				Element ph = MaryXML.appendChildElement(syl, MaryXML.PHONE);
+				ph.setAttribute("p", j % 2 == 0 ? "t" : "a");
+				ph.setAttribute("d", String.valueOf(50 + 10 * (phoneCount++ % 7)));
+			}
+		}
+	}
+
+	private void appendBoundary(Element phrase, int breakindex, int duration) {
+		Element boundary = MaryXML.appendChildElement(phrase, MaryXML.BOUNDARY);
+		boundary.setAttribute("breakindex", String.valueOf(breakindex));
+		boundary.setAttribute("duration", String.valueOf(duration));
+	}
+
+	private void assertSameAsPerTarget(FeatureVector[] vectors) {
+		assertEquals(targets.size(), vectors.length);
+		for (int k=0; k<vectors.length; k++) {
+			FeatureVector expected = featureComputer.computeFeatureVector(targets.get(k));
+			assertArrayEquals(expected.byteValuedDiscreteFeatures, vectors[k].byteValuedDiscreteFeatures);
+			assertArrayEquals(expected.shortValuedDiscreteFeatures, vectors[k].shortValuedDiscreteFeatures);
+			assertArrayEquals(expected.continuousFeatures, vectors[k].continuousFeatures, 0);
+			assertEquals(expected.getUnitIndex(), vectors[k].getUnitIndex());
+		}
+	}
+
+	@Test
+	public void allTargetsAsEachTarget() {
+		assertSameAsPerTarget(featureComputer.computeFeatureVectors(targets));
+	}
+
+	@Test
+	public void allTargetsAsEachTargetWithIndex() {
+		UtteranceIndex.attachTo(targets);
+		assertSameAsPerTarget(featureComputer.computeFeatureVectors(targets));
+	}
+
+	@Test
+	public void featuresDifferBetweenTargets() {
+		FeatureVector[] vectors = featureComputer.computeFeatureVectors(targets);
+		// the features must actually depend on the targets for the comparison to mean anything:
+		int pos = featureComputer.getFeatureDefinition().getFeatureIndex("words_from_phrase_start");
+		int first = vectors[0].getFeatureAsInt(pos);
+		boolean differ = false;
+		for (FeatureVector fv : vectors) {
+			differ |= fv.getFeatureAsInt(pos) != first;
+		}
+		assertTrue(differ);
+	}
+}
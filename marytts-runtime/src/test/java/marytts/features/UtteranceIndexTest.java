@@ -0,0 +1,125 @@
+/**
+ *
+ */
+package marytts.features;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import marytts.datatypes.MaryXML;
+import marytts.util.dom.MaryDomUtils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.traversal.TreeWalker;
+
+/**
+ * Compare the answers of the UtteranceIndex with those of TreeWalkers over the same sentence.
+ * @author agent
+ *
+ */
+public class UtteranceIndexTest {
+
+	private Element sentence;
+	private List<Element> elements;
+	private UtteranceIndex index;
+
+	@Before
+	public void setUp() {
+		Document doc = MaryXML.newDocument();
+		Element para = MaryXML.appendChildElement(doc.getDocumentElement(), MaryXML.PARAGRAPH);
+		sentence = MaryXML.appendChildElement(para, MaryXML.SENTENCE);
+		Element phrase1 = MaryXML.appendChildElement(sentence, MaryXML.PHRASE);
+		appendWord(phrase1, true, 2, 3);
+		appendWord(phrase1, false, 0, 0); // punctuation
+		appendWord(phrase1, true, 1, 2);
+		MaryXML.appendChildElement(phrase1, MaryXML.BOUNDARY);
+		Element phrase2 = MaryXML.appendChildElement(sentence, MaryXML.PHRASE);
+		appendWord(phrase2, true, 3, 1);
+		MaryXML.appendChildElement(phrase2, MaryXML.BOUNDARY);
+		elements = new ArrayList<Element>();
+		TreeWalker tw = MaryDomUtils.createTreeWalker(sentence, MaryXML.PHRASE, MaryXML.TOKEN, MaryXML.SYLLABLE, MaryXML.PHONE, MaryXML.BOUNDARY);
+		Element e;
+		while ((e = (Element) tw.nextNode()) != null) {
+			elements.add(e);
+		}
+		index = new UtteranceIndex(sentence);
+	}
+
+	private void appendWord(Element phrase, boolean hasPh, int numSyllables, int numPhones) {
+		Element t = MaryXML.appendChildElement(phrase, MaryXML.TOKEN);
+		if (hasPh) {
+			t.setAttribute("ph", "x");
+		}
+		for (int i=0; i<numSyllables; i++) {
+			Element syl = MaryXML.appendChildElement(t, MaryXML.SYLLABLE);
+			for (int j=0; j<numPhones; j++) {
+				MaryXML.appendChildElement(syl, MaryXML.PHONE);
+			}
+		}
+	}
+
+	@Test
+	public void previousAndNextAsTreeWalker() {
+		for (Element current : elements) {
+			TreeWalker tw = MaryDomUtils.createTreeWalker(sentence, MaryXML.SYLLABLE);
+			tw.setCurrentNode(current);
+			assertSame(tw.previousNode(), index.getPrevious(UtteranceIndex.SYLLABLES, current, 1));
+			tw.setCurrentNode(current);
+			assertSame(tw.nextNode(), index.getNext(UtteranceIndex.SYLLABLES, current, 1));
+			tw = MaryDomUtils.createTreeWalker(sentence, MaryXML.PHONE, MaryXML.BOUNDARY);
+			tw.setCurrentNode(current);
+			tw.nextNode();
+			assertSame(tw.nextNode(), index.getNext(UtteranceIndex.SEGMENTS, current, 2));
+		}
+	}
+
+	@Test
+	public void firstLastAndCountAsTreeWalker() {
+		for (Element root : elements) {
+			TreeWalker tw = MaryDomUtils.createTreeWalker(root, MaryXML.PHONE);
+			assertSame(tw.firstChild(), index.getFirst(UtteranceIndex.PHONES, root));
+			tw = MaryDomUtils.createTreeWalker(root, MaryXML.PHONE);
+			assertSame(tw.lastChild(), index.getLast(UtteranceIndex.PHONES, root));
+			tw = MaryDomUtils.createTreeWalker(root, MaryXML.SYLLABLE);
+			int count = 0;
+			while (tw.nextNode() != null) {
+				count++;
+			}
+			assertEquals(count, index.count(UtteranceIndex.SYLLABLES, root));
+		}
+	}
+
+	@Test
+	public void countBeforeAndAfterAsTreeWalker() {
+		for (Element current : elements) {
+			TreeWalker tw = MaryDomUtils.createTreeWalker(sentence, MaryXML.TOKEN);
+			tw.setCurrentNode(current);
+			int before = 0;
+			while (tw.previousNode() != null) {
+				before++;
+			}
+			assertEquals(before, index.countBefore(UtteranceIndex.TOKENS, sentence, current));
+			tw.setCurrentNode(current);
+			int after = 0;
+			while (tw.nextNode() != null) {
+				after++;
+			}
+			assertEquals(after, index.countAfter(UtteranceIndex.TOKENS, sentence, current));
+		}
+	}
+
+	@Test
+	public void wordsAreTokensWithPh() {
+		assertEquals(4, index.count(UtteranceIndex.TOKENS, sentence));
+		assertEquals(3, index.count(UtteranceIndex.WORDS, sentence));
+		Element last = index.getLast(UtteranceIndex.WORDS, sentence);
+		assertNull(index.getNext(UtteranceIndex.WORDS, last, 1));
+	}
+}
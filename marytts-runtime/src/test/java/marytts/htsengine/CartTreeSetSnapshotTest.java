@@ -0,0 +1,215 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.htsengine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+import marytts.cart.CART;
+import marytts.cart.DecisionNode;
+import marytts.cart.DecisionNode.BinaryByteDecisionNode;
+import marytts.cart.LeafNode.PdfLeafNode;
+import marytts.cart.Node;
+import marytts.features.FeatureDefinition;
+import marytts.features.FeatureVector;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Writes the trees of a CartTreeSet into a snapshot and reads them back.
+ *
+ * @author agent
+ *
+ */
+public class CartTreeSetSnapshotTest {
+
+    private static final String FEATURES = "ByteValuedFeatureProcessors\n"
+        + "phone 0 a b c d\n"
+        + "prev_phone 0 a b c d\n"
+        + "stressed 0 1\n"
+        + "ShortValuedFeatureProcessors\n"
+        + "ContinuousFeatureProcessors\n";
+
+    private static final long FINGERPRINT = 0x123456789L;
+
+    private Random random;
+    private FeatureDefinition featDef;
+    private int nextId;
+    private File snapshot;
+
+    @Before
+    public void setUp() throws Exception {
+        random = new Random(2468);
+        featDef = new FeatureDefinition(new BufferedReader(new StringReader(FEATURES)), false);
+        snapshot = File.createTempFile("trees", ".snapshot");
+    }
+
+    @After
+    public void tearDown() {
+        snapshot.delete();
+    }
+
+    private Node randomNode(int depth, int vectorSize) throws Exception {
+        if (depth == 0 || random.nextInt(4) == 0) {
+            double[] mean = new double[vectorSize];
+            double[] variance = new double[vectorSize];
+            for (int i = 0; i < vectorSize; i++) {
+                mean[i] = random.nextGaussian();
+                variance[i] = random.nextDouble();
+            }
+            return new PdfLeafNode(nextId++, vectorSize, mean, variance, random.nextDouble());
+        }
+        int featureIndex = random.nextInt(featDef.getNumberOfByteFeatures());
+        byte value = (byte) random.nextInt(featDef.getNumberOfValues(featureIndex));
+        BinaryByteDecisionNode node = new BinaryByteDecisionNode(featureIndex, value, featDef);
+        node.setUniqueDecisionNodeId(nextId++);
+        node.replaceDaughter(randomNode(depth - 1, vectorSize), 0);
+        node.replaceDaughter(randomNode(depth - 1, vectorSize), 1);
+        return node;
+    }
+
+    private CART[] randomTrees(int numTrees, int vectorSize) throws Exception {
+        CART[] trees = new CART[numTrees];
+        for (int i = 0; i < numTrees; i++) {
+            Node root = randomNode(5, vectorSize);
+            root.setIsRoot(true);
+            if (root instanceof DecisionNode) {
+                // as in HTSCARTReader:
+                ((DecisionNode) root).countData();
+            }
+            trees[i] = new CART(root, featDef);
+        }
+        return trees;
+    }
+
+    private CartTreeSet randomTreeSet() throws Exception {
+        CartTreeSet treeSet = new CartTreeSet();
+        // no str and mag trees, as for a voice without mixed excitation:
+        CART[][] trees = new CART[][] { randomTrees(1, 5), randomTrees(5, 1), randomTrees(5, 25), null, null };
+        treeSet.setTrees(trees, new int[] {5, 1, 25, 0, 0});
+        return treeSet;
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int pos = 0;
+            while (pos < data.length) {
+                pos += in.read(data, pos, data.length - pos);
+            }
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+
+    private FeatureVector randomFeatureVector() {
+        byte[] bytes = new byte[featDef.getNumberOfByteFeatures()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) random.nextInt(featDef.getNumberOfValues(i));
+        }
+        return featDef.toFeatureVector(0, bytes, new short[0], new float[0]);
+    }
+
+    @Test
+    public void snapshotReadsBackTheSameTrees() throws Exception {
+        CartTreeSet original = randomTreeSet();
+        original.writeSnapshot(snapshot.getPath(), FINGERPRINT, featDef);
+        CartTreeSet copy = new CartTreeSet();
+        FeatureDefinition copyDef = copy.loadSnapshot(snapshot.getPath(), FINGERPRINT);
+        assertNotNull(copyDef);
+        assertTrue(featDef.featureEquals(copyDef));
+        assertEquals(5, copy.getNumStates());
+        assertEquals(1, copy.getLf0Stream());
+        assertEquals(25, copy.getMcepVsize());
+        // writing the copy again gives the same bytes, so every node was read back as it was written:
+        File again = File.createTempFile("trees", ".snapshot");
+        try {
+            copy.writeSnapshot(again.getPath(), FINGERPRINT, copyDef);
+            assertArrayEquals(readFile(snapshot), readFile(again));
+        } finally {
+            again.delete();
+        }
+        // and the trees find the same pdfs:
+        for (int i = 0; i < 100; i++) {
+            FeatureVector fv = randomFeatureVector();
+            HTSModel expected = new HTSModel(5);
+            HTSModel actual = new HTSModel(5);
+            original.searchMgcInCartTree(expected, fv, featDef);
+            copy.searchMgcInCartTree(actual, fv, copyDef);
+            for (int s = 0; s < 5; s++) {
+                for (int j = 0; j < 25; j++) {
+                    assertEquals(expected.getMcepMean(s, j), actual.getMcepMean(s, j), 0);
+                    assertEquals(expected.getMcepVariance(s, j), actual.getMcepVariance(s, j), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void snapshotOfOtherFilesIsIgnored() throws Exception {
+        randomTreeSet().writeSnapshot(snapshot.getPath(), FINGERPRINT, featDef);
+        CartTreeSet treeSet = new CartTreeSet();
+        assertNull(treeSet.loadSnapshot(snapshot.getPath(), FINGERPRINT + 1));
+        assertEquals(0, treeSet.getNumStates());
+    }
+
+    @Test
+    public void missingSnapshotIsIgnored() throws Exception {
+        snapshot.delete();
+        assertNull(new CartTreeSet().loadSnapshot(snapshot.getPath(), FINGERPRINT));
+    }
+
+    @Test
+    public void truncatedSnapshotChangesNothing() throws Exception {
+        randomTreeSet().writeSnapshot(snapshot.getPath(), FINGERPRINT, featDef);
+        byte[] data = readFile(snapshot);
+        FileOutputStream out = new FileOutputStream(snapshot);
+        out.write(data, 0, data.length - 100);
+        out.close();
+        CartTreeSet treeSet = new CartTreeSet();
+        treeSet.setNumStates(3);
+        try {
+            treeSet.readSnapshot(snapshot.getPath(), FINGERPRINT);
+            fail("truncated snapshot should not be read");
+        } catch (IOException e) {
+            // expected
+        }
+        // the vector sizes and the trees before the truncated one are not set:
+        assertEquals(3, treeSet.getNumStates());
+        assertEquals(0, treeSet.getMcepVsize());
+        assertNull(treeSet.loadSnapshot(snapshot.getPath(), FINGERPRINT));
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.htsengine;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the parallel parameter generation against the sequential one, with global variance,
+ * on random pdfs with the stream sizes of cmu-slt-hsmm (mgc order 25, lf0, 5 strengths, 10 magnitudes).
+ * {@link MlpgBenchmark} compares the speed of the two.
+ *
+ * @author agent
+ *
+ */
+public class HTSPStreamTest {
+
+    private static final int[] VECTOR_SIZES = new int[] {75, 3, 15, 30};
+
+    private static HTSPStream createStream(int vectorSize, int numFrames) throws Exception {
+        return new HTSPStream(vectorSize, numFrames, 0, 100);
+    }
+
+    private static void fill(HTSPStream pst, Random random) {
+        int order = pst.getOrder();
+        double[] gvMean = new double[order];
+        double[] gvCovInv = new double[order];
+        for (int m = 0; m < order; m++) {
+            gvMean[m] = 0.5 + random.nextDouble();
+            gvCovInv[m] = 1 + 5 * random.nextDouble();
+        }
+        pst.setGvMeanVar(gvMean, gvCovInv);
+        for (int t = 0; t < pst.getT(); t++) {
+            for (int k = 0; k < pst.getVsize(); k++) {
+                pst.setMseq(t, k, random.nextGaussian());
+                pst.setIvseq(t, k, 0.5 + random.nextDouble());
+            }
+        }
+    }
+
+    private static void assertSameParameters(HTSPStream expected, HTSPStream actual) {
+        assertEquals(expected.getT(), actual.getT());
+        for (int t = 0; t < expected.getT(); t++) {
+            for (int m = 0; m < expected.getOrder(); m++) {
+                // the dimensions are computed in the same way, only by different threads:
+                assertEquals(expected.getPar(t, m), actual.getPar(t, m), 0);
+            }
+        }
+    }
+
+    @Test
+    public void parallelEqualsSequential() throws Exception {
+        HMMData htsData = new HMMData();
+        for (int s = 0; s < VECTOR_SIZES.length; s++) {
+            HTSPStream sequential = createStream(VECTOR_SIZES[s], 300);
+            HTSPStream parallel = createStream(VECTOR_SIZES[s], 300);
+            fill(sequential, new Random(s));
+            fill(parallel, new Random(s));
+            sequential.mlpg(htsData, true);
+            parallel.mlpgParallel(htsData, true);
+            assertSameParameters(sequential, parallel);
+        }
+    }
+
+    @Test
+    public void parallelReusesStreamForLaterUtterances() throws Exception {
+        HMMData htsData = new HMMData();
+        HTSPStream reused = createStream(VECTOR_SIZES[0], 200);
+        // shorter and longer utterances than the first one, with the solvers of the earlier ones:
+        int[] numFrames = new int[] {200, 120, 400, 50};
+        for (int u = 0; u < numFrames.length; u++) {
+            if (u > 0) {
+                reused.reset(numFrames[u], 100);
+            }
+            fill(reused, new Random(u));
+            reused.mlpgParallel(htsData, true);
+            HTSPStream fresh = createStream(VECTOR_SIZES[0], numFrames[u]);
+            fill(fresh, new Random(u));
+            fresh.mlpg(htsData, true);
+            assertSameParameters(fresh, reused);
+        }
+    }
+}
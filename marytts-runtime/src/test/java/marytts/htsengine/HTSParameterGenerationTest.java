@@ -0,0 +1,68 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.htsengine;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class HTSParameterGenerationTest {
+
+    @Test
+    public void abortReleasesWaitingVocoder() throws Exception {
+        final HTSParameterGeneration pdf2par = new HTSParameterGeneration();
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread vocoder = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    pdf2par.waitForFrames(1);
+                } catch (Exception e) {
+                    failure.set(e);
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+        vocoder.setDaemon(true);
+        vocoder.start();
+        // give the vocoder a chance to start waiting:
+        assertTrue(!done.await(100, TimeUnit.MILLISECONDS));
+        pdf2par.abortGeneration();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(failure.get() != null);
+    }
+
+    @Test(expected=Exception.class)
+    public void waitingAfterAbortFails() throws Exception {
+        HTSParameterGeneration pdf2par = new HTSParameterGeneration();
+        pdf2par.abortGeneration();
+        pdf2par.waitForFrames(1);
+    }
+}
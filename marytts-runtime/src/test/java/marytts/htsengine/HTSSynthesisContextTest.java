@@ -0,0 +1,65 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.htsengine;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class HTSSynthesisContextTest {
+
+    @Test
+    public void releasedContextIsReused() {
+        HTSSynthesisContext context = HTSSynthesisContext.acquire();
+        assertFalse(context.isPooled());
+        context.release();
+        assertTrue(context.isPooled());
+    }
+
+    @Test
+    public void retainedContextIsPooledAfterLastRelease() {
+        HTSSynthesisContext context = HTSSynthesisContext.acquire();
+        context.retain(); // as by the vocoder
+        context.release(); // the request is done
+        assertFalse(context.isPooled());
+        HTSSynthesisContext other = HTSSynthesisContext.acquire();
+        assertNotSame(context, other);
+        context.release(); // the vocoder is done
+        assertTrue(context.isPooled());
+        other.release();
+    }
+
+    @Test
+    public void contextKeepsItsObjects() {
+        HTSSynthesisContext context = HTSSynthesisContext.acquire();
+        HTSParameterGeneration pdf2par = context.getParameterGeneration();
+        HTSVocoder vocoder = context.getVocoder();
+        context.release();
+        assertSame(pdf2par, context.getParameterGeneration());
+        assertSame(vocoder, context.getVocoder());
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.htsengine;
+
+import java.util.Random;
+
+/**
+ * Compares the sequential parameter generation of {@link HTSPStream#mlpg(HMMData, boolean)} with
+ * the parallel one of {@link HTSPStream#mlpgParallel(HMMData, boolean)}, with global variance,
+ * on random pdfs with the stream sizes of cmu-slt-hsmm (mgc order 25, lf0, 5 strengths, 10 magnitudes).
+ * Not a unit test; run it manually with
+ * <code>java -Dhtsengine.mlpg.threads=4 marytts.htsengine.MlpgBenchmark [numFrames]</code>.
+ *
+ * @author agent
+ *
+ */
+public class MlpgBenchmark {
+
+    private static final int[] VECTOR_SIZES = new int[] {75, 3, 15, 30};
+
+    public static void main(String[] args) throws Exception {
+        int numFrames = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        HMMData htsData = new HMMData();
+
+        int numRuns = 10;
+        for (int run = 0; run < numRuns; run++) {
+            HTSPStream[] sequential = createStreams(numFrames, new Random(run));
+            HTSPStream[] parallel = createStreams(numFrames, new Random(run));
+            long startTime = System.nanoTime();
+            for (HTSPStream pst : sequential) {
+                pst.mlpg(htsData, true);
+            }
+            long sequentialNanos = System.nanoTime() - startTime;
+            startTime = System.nanoTime();
+            for (HTSPStream pst : parallel) {
+                pst.mlpgParallel(htsData, true);
+            }
+            long parallelNanos = System.nanoTime() - startTime;
+            double maxDiff = 0;
+            for (int s = 0; s < sequential.length; s++) {
+                for (int t = 0; t < numFrames; t++) {
+                    for (int m = 0; m < sequential[s].getOrder(); m++) {
+                        maxDiff = Math.max(maxDiff, Math.abs(sequential[s].getPar(t, m) - parallel[s].getPar(t, m)));
+                    }
+                }
+            }
+            System.out.printf("Run %d: sequential %.1f ms, parallel %.1f ms, max. difference %g%n",
+                    run, sequentialNanos / 1e6, parallelNanos / 1e6, maxDiff);
+        }
+    }
+
+    private static HTSPStream[] createStreams(int numFrames, Random random) throws Exception {
+        HTSPStream[] streams = new HTSPStream[VECTOR_SIZES.length];
+        for (int s = 0; s < streams.length; s++) {
+            HTSPStream pst = new HTSPStream(VECTOR_SIZES[s], numFrames, s, 100);
+            int order = pst.getOrder();
+            double[] gvMean = new double[order];
+            double[] gvCovInv = new double[order];
+            for (int m = 0; m < order; m++) {
+                gvMean[m] = 0.5 + random.nextDouble();
+                gvCovInv[m] = 1 + 5 * random.nextDouble();
+            }
+            pst.setGvMeanVar(gvMean, gvCovInv);
+            for (int t = 0; t < numFrames; t++) {
+                for (int k = 0; k < VECTOR_SIZES[s]; k++) {
+                    pst.setMseq(t, k, random.nextGaussian());
+                    pst.setIvseq(t, k, 0.5 + random.nextDouble());
+                }
+            }
+            streams[s] = pst;
+        }
+        return streams;
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ *
+ */
+package marytts.modules.phonemiser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class TranscriptionCacheTest {
+
+	@Test
+	public void findsWhatWasPut() {
+		TranscriptionCache cache = new TranscriptionCache(16);
+		cache.put("record", "NN", "'rE-k@rd", "lexicon");
+		TranscriptionCache.Entry e = cache.get("record", "NN");
+		assertEquals("'rE-k@rd", e.transcription);
+		assertEquals("lexicon", e.g2pMethod);
+	}
+
+	@Test
+	public void distinguishesPartsOfSpeech() {
+		TranscriptionCache cache = new TranscriptionCache(16);
+		cache.put("record", "NN", "'rE-k@rd", "lexicon");
+		assertNull(cache.get("record", "VB"));
+		assertNull(cache.get("record", null));
+		cache.put("record", null, "r@-'kOrd", "lexicon");
+		assertEquals("r@-'kOrd", cache.get("record", null).transcription);
+	}
+
+	@Test
+	public void remembersFailures() {
+		TranscriptionCache cache = new TranscriptionCache(16);
+		cache.put("xyz", null, null, "");
+		TranscriptionCache.Entry e = cache.get("xyz", null);
+		assertNull(e.transcription);
+		assertEquals("", e.g2pMethod);
+	}
+
+	@Test
+	public void countsHitsAndMisses() {
+		TranscriptionCache cache = new TranscriptionCache(16);
+		assertEquals(0, cache.getHitRate(), 0);
+		cache.get("hello", null);
+		cache.put("hello", null, "h@-'lo", "lexicon");
+		cache.get("hello", null);
+		cache.get("hello", null);
+		cache.get("world", null);
+		assertEquals(2, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		assertEquals(0.5, cache.getHitRate(), 1e-10);
+	}
+}
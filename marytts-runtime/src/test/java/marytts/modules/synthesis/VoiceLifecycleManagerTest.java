@@ -0,0 +1,222 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.modules.synthesis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import marytts.exceptions.MaryConfigurationException;
+import marytts.features.FeatureProcessorManager;
+import marytts.features.FeatureRegistry;
+import marytts.server.MaryProperties;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Loading, unloading and eviction of voice data.
+ *
+ * @author agent
+ *
+ */
+public class VoiceLifecycleManagerTest {
+
+    private static final long MB = 1024L * 1024;
+    private static final Locale LOCALE = new Locale("xx");
+
+    private static File allophones;
+
+    /**
+     * A voice whose data is a new object for every load.
+     */
+    private static class TestVoice extends Voice {
+        final AtomicInteger loads = new AtomicInteger();
+
+        TestVoice(String name) throws MaryConfigurationException {
+            super(name, LOCALE, AF16000, null, FEMALE);
+        }
+
+        @Override
+        public boolean hasLoadableData() {
+            return true;
+        }
+
+        @Override
+        protected Object loadData() {
+            loads.incrementAndGet();
+            return new int[] {loads.get()};
+        }
+
+        @Override
+        protected long estimateDataMemory() {
+            return 10 * MB;
+        }
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        allophones = File.createTempFile("allophones", ".xml");
+        Writer out = new OutputStreamWriter(new FileOutputStream(allophones), "UTF-8");
+        out.write("<allophones name=\"test\" xml:lang=\"xx\" features=\"vlng ctype\">\n"
+            + "<silence ph=\"_\"/>\n"
+            + "<vowel ph=\"a\" vlng=\"s\"/>\n"
+            + "<consonant ph=\"t\" ctype=\"s\"/>\n"
+            + "</allophones>\n");
+        out.close();
+        System.setProperty(MaryProperties.localePrefix(LOCALE)+".allophoneset", allophones.getPath());
+        System.setProperty("voice.lifecycle4.memory.mb", "3");
+        FeatureRegistry.setFeatureProcessorManager(LOCALE, new FeatureProcessorManager(LOCALE));
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        System.clearProperty(MaryProperties.localePrefix(LOCALE)+".allophoneset");
+        System.clearProperty("voice.lifecycle4.memory.mb");
+        allophones.delete();
+    }
+
+    @Test
+    public void loadsOnFirstUseOnly() throws Exception {
+        TestVoice voice = new TestVoice("lifecycle1");
+        assertFalse(voice.isLoaded());
+        assertEquals(0, voice.loads.get());
+        Object data = voice.ensureLoaded();
+        assertNotNull(data);
+        assertTrue(voice.isLoaded());
+        assertSame(data, voice.ensureLoaded());
+        assertEquals(1, voice.loads.get());
+        assertEquals(10 * MB, voice.getDataMemory());
+    }
+
+    @Test
+    public void unloadedVoiceIsLoadedAgain() throws Exception {
+        TestVoice voice = new TestVoice("lifecycle1");
+        Object data = voice.ensureLoaded();
+        assertTrue(voice.unload());
+        assertFalse(voice.isLoaded());
+        assertEquals(0, voice.getDataMemory());
+        assertFalse(voice.unload());
+        Object reloaded = voice.ensureLoaded();
+        assertNotSame(data, reloaded);
+        assertEquals(2, voice.loads.get());
+    }
+
+    @Test
+    public void pinnedVoiceIsNotUnloaded() throws Exception {
+        TestVoice voice = new TestVoice("lifecycle1");
+        voice.pin();
+        assertFalse(voice.isLoaded()); // pinning does not load
+        voice.ensureLoaded();
+        assertFalse(voice.unload());
+        assertTrue(voice.isLoaded());
+        voice.unpin();
+        assertTrue(voice.unload());
+    }
+
+    @Test
+    public void configuredMemoryOverridesEstimate() throws Exception {
+        TestVoice voice = new TestVoice("lifecycle4");
+        voice.ensureLoaded();
+        assertEquals(3 * MB, voice.getDataMemory());
+    }
+
+    @Test
+    public void heapBudgetEvictsLeastRecentlyUsedVoices() throws Exception {
+        TestVoice v1 = new TestVoice("lifecycle1");
+        TestVoice v2 = new TestVoice("lifecycle2");
+        TestVoice v3 = new TestVoice("lifecycle3");
+        v1.ensureLoaded();
+        Thread.sleep(5);
+        v2.ensureLoaded();
+        Thread.sleep(5);
+        v3.ensureLoaded();
+        VoiceLifecycleManager.enforceHeapBudget(v3, Arrays.<Voice>asList(v3, v2, v1), 25 * MB);
+        assertFalse(v1.isLoaded());
+        assertTrue(v2.isLoaded());
+        assertTrue(v3.isLoaded());
+        // a pinned voice stays, even if it is the least recently used one:
+        v1.ensureLoaded();
+        Thread.sleep(5);
+        v2.ensureLoaded();
+        Thread.sleep(5);
+        v3.ensureLoaded();
+        v1.pin();
+        try {
+            VoiceLifecycleManager.enforceHeapBudget(v3, Arrays.<Voice>asList(v1, v2, v3), 15 * MB);
+            assertTrue(v1.isLoaded());
+            assertFalse(v2.isLoaded());
+            assertTrue(v3.isLoaded());
+        } finally {
+            v1.unpin();
+        }
+    }
+
+    @Test
+    public void dataIsNeverNullWhileVoiceIsUnloaded() throws Exception {
+        final TestVoice voice = new TestVoice("lifecycle1");
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final long end = System.currentTimeMillis() + 300;
+        ArrayList<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 3; t++) {
+            threads.add(new Thread() {
+                public void run() {
+                    try {
+                        while (System.currentTimeMillis() < end) {
+                            assertNotNull(voice.ensureLoaded());
+                        }
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                }
+            });
+        }
+        threads.add(new Thread() {
+            public void run() {
+                while (System.currentTimeMillis() < end) {
+                    voice.unload();
+                }
+            }
+        });
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertNull(failure.get());
+        assertTrue(voice.loads.get() > 1);
+    }
+}
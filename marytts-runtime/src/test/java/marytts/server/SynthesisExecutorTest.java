@@ -0,0 +1,140 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class SynthesisExecutorTest {
+
+    private CountDownLatch release;
+    private SynthesisExecutor executor;
+
+    @Before
+    public void setUp() {
+        release = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private Callable<Thread> blockingTask() {
+        return new Callable<Thread>() {
+            public Thread call() throws Exception {
+                release.await();
+                return Thread.currentThread();
+            }
+        };
+    }
+
+    private static void assertRejected(SynthesisExecutor executor, Callable<?> task, String voiceName) {
+        try {
+            executor.submit(task, voiceName);
+            fail("task should have been rejected");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void rejectsWhenQueueIsFull() throws Exception {
+        executor = new SynthesisExecutor(1, 1, 0);
+        Future<Thread> running = executor.submit(blockingTask(), (String) null);
+        Future<Thread> queued = executor.submit(blockingTask(), (String) null);
+        assertRejected(executor, blockingTask(), null);
+        release.countDown();
+        running.get(5, TimeUnit.SECONDS);
+        queued.get(5, TimeUnit.SECONDS);
+        assertTrue(executor.getStatistics().contains("rejected=1\n"));
+    }
+
+    @Test
+    public void limitsRequestsPerVoice() throws Exception {
+        executor = new SynthesisExecutor(2, 10, 1);
+        Future<Thread> first = executor.submit(blockingTask(), "voice1");
+        assertRejected(executor, blockingTask(), "voice1");
+        Future<Thread> other = executor.submit(blockingTask(), "voice2");
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        other.get(5, TimeUnit.SECONDS);
+        // the finished request no longer counts:
+        executor.submit(blockingTask(), "voice1").get(5, TimeUnit.SECONDS);
+        assertTrue(executor.getStatistics().contains("voice.voice1.pending=0\n"));
+    }
+
+    @Test
+    public void failedTaskReleasesVoice() throws Exception {
+        executor = new SynthesisExecutor(1, 10, 1);
+        Future<Object> failing = executor.submit(new Callable<Object>() {
+            public Object call() throws Exception {
+                throw new Exception("synthesis failed");
+            }
+        }, "voice1");
+        try {
+            failing.get(5, TimeUnit.SECONDS);
+            fail("task should have failed");
+        } catch (ExecutionException e) {
+            assertEquals("synthesis failed", e.getCause().getMessage());
+        }
+        release.countDown();
+        executor.submit(blockingTask(), "voice1").get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void workerThreadsAreDaemons() throws Exception {
+        executor = new SynthesisExecutor(1, 1, 0);
+        release.countDown();
+        Thread worker = executor.submit(blockingTask(), (String) null).get(5, TimeUnit.SECONDS);
+        assertTrue(worker.isDaemon());
+    }
+
+    @Test
+    public void rejectsAfterShutdown() throws Exception {
+        executor = new SynthesisExecutor(1, 1, 0);
+        executor.shutdown();
+        assertRejected(executor, blockingTask(), null);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void needsAThread() {
+        new SynthesisExecutor(0, 1, 0);
+    }
+}
@@ -0,0 +1,280 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.junit.Test;
+
+/**
+ * Drives the entity the way the I/O reactor does, with a client reading slowly,
+ * and checks that output is suspended and requested again, and that the encoding thread is held back.
+ * {@link StreamingLoadIT} streams to many clients over a real server.
+ *
+ * @author agent
+ *
+ */
+public class AudioStreamNHttpEntityTest {
+
+    private static final AudioFormat FORMAT = new AudioFormat(16000, 16, 1, true, true);
+    private static final long TIMEOUT = 10000;
+
+    /**
+     * The connection, as far as the entity sees it.
+     */
+    private static class TestIOControl implements IOControl {
+        private boolean outputRequested = true;
+        private boolean shutDown = false;
+        int suspensions = 0;
+        int requests = 0;
+
+        public synchronized void requestInput() {}
+
+        public synchronized void suspendInput() {}
+
+        public synchronized void requestOutput() {
+            outputRequested = true;
+            requests++;
+            notifyAll();
+        }
+
+        public synchronized void suspendOutput() {
+            outputRequested = false;
+            suspensions++;
+        }
+
+        public synchronized void shutdown() {
+            shutDown = true;
+            notifyAll();
+        }
+
+        synchronized boolean isShutDown() {
+            return shutDown;
+        }
+
+        /**
+         * Wait until output is requested; return false if the connection is shut down instead.
+         */
+        synchronized boolean awaitOutputRequest() throws InterruptedException {
+            long end = System.currentTimeMillis() + TIMEOUT;
+            while (!outputRequested && !shutDown) {
+                long wait = end - System.currentTimeMillis();
+                if (wait <= 0) {
+                    fail("Output was suspended and never requested again");
+                }
+                wait(wait);
+            }
+            return !shutDown;
+        }
+    }
+
+    /**
+     * A client receiving at most a few bytes each time.
+     */
+    private static class SlowEncoder implements ContentEncoder {
+        private final int maxWrite;
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        private boolean completed = false;
+
+        SlowEncoder(int maxWrite) {
+            this.maxWrite = maxWrite;
+        }
+
+        public int write(ByteBuffer src) {
+            int n = Math.min(maxWrite, src.remaining());
+            for (int i = 0; i < n; i++) {
+                received.write(src.get());
+            }
+            return n;
+        }
+
+        public void complete() {
+            completed = true;
+        }
+
+        public boolean isCompleted() {
+            return completed;
+        }
+    }
+
+    /**
+     * The audio data, counting how much has been read; fails after failAfter bytes, if that is not negative.
+     */
+    private static class SourceStream extends InputStream {
+        private final byte[] data;
+        private final int failAfter;
+        volatile int pos = 0;
+
+        SourceStream(byte[] data, int failAfter) {
+            this.data = data;
+            this.failAfter = failAfter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (failAfter >= 0 && pos >= failAfter) {
+                throw new IOException("Synthesis failed");
+            }
+            if (pos >= data.length) {
+                return -1;
+            }
+            int n = Math.min(len, data.length - pos);
+            if (failAfter >= 0) {
+                n = Math.min(n, failAfter - pos);
+            }
+            System.arraycopy(data, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+    }
+
+    private static byte[] testData(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 7 + i / 256);
+        }
+        return data;
+    }
+
+    private static AudioStreamNHttpEntity entity(SourceStream source) {
+        AudioInputStream audio = new AudioInputStream(source, FORMAT, AudioSystem.NOT_SPECIFIED);
+        return new AudioStreamNHttpEntity(audio, AudioFileFormat.Type.AU, null);
+    }
+
+    /**
+     * Call produceContent() whenever output is requested, until the response is complete or the connection shut down.
+     * @return the largest number of bytes which the encoding thread had read ahead of what the client had received.
+     */
+    private static int serve(AudioStreamNHttpEntity entity, SourceStream source, SlowEncoder encoder, TestIOControl ioctrl)
+    throws Exception {
+        int maxAhead = 0;
+        long end = System.currentTimeMillis() + TIMEOUT;
+        while (!encoder.isCompleted() && ioctrl.awaitOutputRequest()) {
+            entity.produceContent(encoder, ioctrl);
+            maxAhead = Math.max(maxAhead, source.pos - encoder.received.size());
+            Thread.sleep(0, 100000);
+            if (System.currentTimeMillis() > end) {
+                fail("Response not complete after "+TIMEOUT+" ms");
+            }
+        }
+        return maxAhead;
+    }
+
+    @Test
+    public void slowClientReceivesAllAudio() throws Exception {
+        byte[] data = testData(400000);
+        SourceStream source = new SourceStream(data, -1);
+        AudioStreamNHttpEntity entity = entity(source);
+        SlowEncoder encoder = new SlowEncoder(1000);
+        TestIOControl ioctrl = new TestIOControl();
+        Thread writer = new Thread(entity, "HTTPWriter");
+        writer.start();
+        int maxAhead = serve(entity, source, encoder, ioctrl);
+        writer.join(TIMEOUT);
+
+        assertTrue(encoder.isCompleted());
+        assertFalse(ioctrl.isShutDown());
+        byte[] received = encoder.received.toByteArray();
+        assertTrue(received.length > data.length);
+        assertArrayEquals(data, Arrays.copyOfRange(received, received.length - data.length, received.length));
+        // the encoding thread waits for the client instead of reading all audio into memory:
+        assertTrue("read ahead "+maxAhead+" bytes", maxAhead < 2 * 65536);
+        entity.finish();
+    }
+
+    @Test
+    public void fastClientIsSuspendedUntilThereIsAudio() throws Exception {
+        byte[] data = testData(20000);
+        final SourceStream source = new SourceStream(data, -1);
+        AudioStreamNHttpEntity entity = entity(source);
+        SlowEncoder encoder = new SlowEncoder(Integer.MAX_VALUE);
+        TestIOControl ioctrl = new TestIOControl();
+        // nothing has been encoded yet:
+        entity.produceContent(encoder, ioctrl);
+        assertEquals(1, ioctrl.suspensions);
+        assertEquals(0, encoder.received.size());
+        Thread writer = new Thread(entity, "HTTPWriter");
+        writer.start();
+        serve(entity, source, encoder, ioctrl);
+        writer.join(TIMEOUT);
+
+        assertTrue(encoder.isCompleted());
+        assertTrue(ioctrl.requests >= 1);
+        byte[] received = encoder.received.toByteArray();
+        assertArrayEquals(data, Arrays.copyOfRange(received, received.length - data.length, received.length));
+        entity.finish();
+    }
+
+    @Test
+    public void failedSynthesisShutsDownConnection() throws Exception {
+        SourceStream source = new SourceStream(testData(200000), 100000);
+        AudioStreamNHttpEntity entity = entity(source);
+        SlowEncoder encoder = new SlowEncoder(1000);
+        TestIOControl ioctrl = new TestIOControl();
+        Thread writer = new Thread(entity, "HTTPWriter");
+        writer.start();
+        serve(entity, source, encoder, ioctrl);
+        writer.join(TIMEOUT);
+
+        assertTrue(ioctrl.isShutDown());
+        assertFalse("truncated audio must not look complete", encoder.isCompleted());
+        entity.finish();
+    }
+
+    @Test
+    public void failureBeforeFirstOutputShutsDownConnection() throws Exception {
+        SourceStream source = new SourceStream(testData(1000), 0);
+        AudioStreamNHttpEntity entity = entity(source);
+        Thread writer = new Thread(entity, "HTTPWriter");
+        writer.start();
+        writer.join(TIMEOUT);
+
+        SlowEncoder encoder = new SlowEncoder(1000);
+        TestIOControl ioctrl = new TestIOControl();
+        entity.produceContent(encoder, ioctrl);
+        assertTrue(ioctrl.isShutDown());
+        assertFalse(encoder.isCompleted());
+        assertEquals(0, encoder.received.size());
+        entity.finish();
+    }
+}
@@ -0,0 +1,241 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import marytts.server.MaryProperties;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.impl.DefaultConnectionReuseStrategy;
+import org.apache.http.impl.DefaultHttpResponseFactory;
+import org.apache.http.impl.nio.DefaultServerIOEventDispatch;
+import org.apache.http.impl.nio.reactor.DefaultListeningIOReactor;
+import org.apache.http.nio.protocol.BufferingHttpServiceHandler;
+import org.apache.http.nio.reactor.IOEventDispatch;
+import org.apache.http.nio.reactor.ListeningIOReactor;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.CoreConnectionPNames;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.BasicHttpProcessor;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.apache.http.protocol.HttpRequestHandlerRegistry;
+import org.apache.http.protocol.ResponseConnControl;
+import org.apache.http.protocol.ResponseContent;
+import org.apache.http.protocol.ResponseDate;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * A load test for streaming audio over the NIO HTTP server: a local server with few I/O reactor threads
+ * streams audio, produced at roughly real-time speed, to many clients which read slowly.
+ * The audio is encoded on the audio writer threads of {@link SynthesisRequestHandler}, as for real requests.
+ * The test checks that every client gets its complete audio, and that the number of threads does not grow
+ * with the number of clients; it prints the total time and the time to the first audio byte.
+ * <p>
+ * The test takes minutes and opens one socket per client, so it only runs when asked for, e.g. with
+ * <code>mvn verify -Dstreamingload.clients=1000</code>. Further properties:
+ * <code>streamingload.reactorthreads</code> (default: 2), <code>streamingload.seconds</code>, the seconds of audio
+ * per client (default: 5), and <code>server.http.audiowriters</code>, the number of audio writer threads (default: 32).
+ * Each writer serves one stream at a time, so the streams are sent in about
+ * clients / writers rounds of <code>streamingload.seconds</code> each.
+ * The number of clients may be limited by the number of open files allowed per process.
+ *
+ * @author agent
+ */
+public class StreamingLoadIT
+{
+    private static final AudioFormat FORMAT = new AudioFormat(16000, 16, 1, true, true);
+    private static final int PORT = 59126;
+
+    @Test
+    public void slowClientsGetCompleteAudioFromBoundedThreads() throws Exception
+    {
+        String clients = System.getProperty("streamingload.clients");
+        Assume.assumeNotNull(clients);
+        int numClients = Integer.parseInt(clients);
+        int reactorThreads = Integer.getInteger("streamingload.reactorthreads", 2);
+        int audioSeconds = Integer.getInteger("streamingload.seconds", 5);
+        int numWriters = MaryProperties.getInteger("server.http.audiowriters", 32);
+
+        int threadsBefore = Thread.activeCount();
+        startServer(reactorThreads, audioSeconds);
+        Thread.sleep(500);
+
+        // Clients read at most 2 kB every 20 ms, i.e. about three times real time:
+        int readSize = 2048;
+        long readInterval = 20;
+        SocketChannel[] channels = new SocketChannel[numClients];
+        long[] firstByte = new long[numClients];
+        long[] received = new long[numClients];
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < numClients; i++) {
+            channels[i] = SocketChannel.open(new InetSocketAddress("localhost", PORT));
+            channels[i].write(ByteBuffer.wrap("GET /stream HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes("ASCII")));
+            channels[i].configureBlocking(false);
+        }
+        System.out.println(numClients+" clients connected in "+(System.currentTimeMillis() - startTime)+" ms");
+        ByteBuffer buf = ByteBuffer.allocate(readSize);
+        int open = numClients;
+        int maxThreads = 0;
+        while (open > 0) {
+            for (int i = 0; i < numClients; i++) {
+                if (channels[i] == null) continue;
+                buf.clear();
+                int n = channels[i].read(buf);
+                if (n > 0) {
+                    if (received[i] == 0) {
+                        firstByte[i] = System.currentTimeMillis() - startTime;
+                    }
+                    received[i] += n;
+                } else if (n < 0) {
+                    channels[i].close();
+                    channels[i] = null;
+                    open--;
+                }
+            }
+            maxThreads = Math.max(maxThreads, Thread.activeCount());
+            Thread.sleep(readInterval);
+        }
+        long totalTime = System.currentTimeMillis() - startTime;
+
+        long minReceived = Long.MAX_VALUE;
+        long maxFirstByte = 0;
+        long sumFirstByte = 0;
+        for (int i = 0; i < numClients; i++) {
+            minReceived = Math.min(minReceived, received[i]);
+            maxFirstByte = Math.max(maxFirstByte, firstByte[i]);
+            sumFirstByte += firstByte[i];
+        }
+        long audioBytes = (long) audioSeconds * (long) FORMAT.getFrameRate() * FORMAT.getFrameSize();
+        System.out.println(numClients+" streams of "+audioSeconds+" s audio over "+reactorThreads+" reactor threads and "
+                +numWriters+" audio writers took "+totalTime+" ms");
+        System.out.println("Time to first byte: mean "+(sumFirstByte / numClients)+" ms, max "+maxFirstByte+" ms");
+        System.out.println("Smallest response: "+minReceived+" bytes (audio data: "+audioBytes+" bytes)");
+        System.out.println("Threads: "+threadsBefore+" before the test, at most "+maxThreads+" during the test");
+        // each response holds the http and audio file headers and the complete audio data:
+        assertTrue(minReceived > audioBytes);
+        // the server thread, the reactor threads and their dispatcher, and the audio writers:
+        assertTrue(maxThreads <= threadsBefore + 2 + reactorThreads + numWriters);
+    }
+
+    private static void startServer(int reactorThreads, final int audioSeconds) throws IOException
+    {
+        HttpParams params = new BasicHttpParams();
+        params
+            .setIntParameter(CoreConnectionPNames.SO_TIMEOUT, 0)
+            .setIntParameter(CoreConnectionPNames.SOCKET_BUFFER_SIZE, 8 * 1024)
+            .setBooleanParameter(CoreConnectionPNames.STALE_CONNECTION_CHECK, false)
+            .setBooleanParameter(CoreConnectionPNames.TCP_NODELAY, true);
+        BasicHttpProcessor httpproc = new BasicHttpProcessor();
+        httpproc.addInterceptor(new ResponseDate());
+        httpproc.addInterceptor(new ResponseContent());
+        httpproc.addInterceptor(new ResponseConnControl());
+        BufferingHttpServiceHandler handler = new BufferingHttpServiceHandler(
+                httpproc, new DefaultHttpResponseFactory(), new DefaultConnectionReuseStrategy(), params);
+        HttpRequestHandlerRegistry registry = new HttpRequestHandlerRegistry();
+        registry.register("/stream", new HttpRequestHandler() {
+            public void handle(HttpRequest request, HttpResponse response, HttpContext context)
+            throws HttpException, IOException
+            {
+                AudioInputStream audio = new AudioInputStream(new SynthesisLikeStream(audioSeconds), FORMAT, AudioSystem.NOT_SPECIFIED);
+                AudioStreamNHttpEntity entity = new AudioStreamNHttpEntity(audio, AudioFileFormat.Type.AU, null);
+                SynthesisRequestHandler.getAudioWriters().execute(entity);
+                response.setEntity(entity);
+                response.setStatusCode(HttpStatus.SC_OK);
+            }
+        });
+        handler.setHandlerResolver(registry);
+        final IOEventDispatch ioEventDispatch = new DefaultServerIOEventDispatch(handler, params);
+        final ListeningIOReactor ioReactor = new DefaultListeningIOReactor(reactorThreads, params);
+        ioReactor.listen(new InetSocketAddress(PORT));
+        Thread server = new Thread("Server") {
+            public void run() {
+                try {
+                    ioReactor.execute(ioEventDispatch);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        server.setDaemon(true);
+        server.start();
+    }
+
+    /**
+     * Silence, delivered in blocks of 100 ms at about real-time speed, like a synthesiser would.
+     */
+    private static class SynthesisLikeStream extends InputStream
+    {
+        private final int blockSize = (int) (FORMAT.getFrameRate() * FORMAT.getFrameSize() / 10);
+        private long remaining;
+        private int inBlock = 0;
+
+        SynthesisLikeStream(int seconds)
+        {
+            remaining = (long) seconds * 10 * blockSize;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            if (remaining <= 0) {
+                return -1;
+            }
+            if (inBlock == 0) {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    throw new IOException(e.toString());
+                }
+                inBlock = blockSize;
+            }
+            int n = (int) Math.min(Math.min(len, inBlock), remaining);
+            for (int i = 0; i < n; i++) {
+                b[off + i] = 0;
+            }
+            inBlock -= n;
+            remaining -= n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.unitselection.select;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+import marytts.features.FeatureDefinition;
+import marytts.features.FeatureVector;
+import marytts.unitselection.data.DiphoneUnit;
+import marytts.unitselection.data.Unit;
+import marytts.unitselection.weightingfunctions.WeightFunc;
+import marytts.unitselection.weightingfunctions.WeightFunctionManager;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that the batch target cost computation gives the same costs as the per-unit computation.
+ * {@link TargetCostBenchmark} compares the speed of the two on a real voice.
+ *
+ * @author agent
+ *
+ */
+public class FFRTargetCostFunctionTest {
+
+    private static final String FEATURES = "ByteValuedFeatureProcessors\n"
+        + "2 | phone 0 a b c\n"
+        + "0 | unused 0 x y\n"
+        + "1 | stressed 0 1\n"
+        + "ShortValuedFeatureProcessors\n"
+        + "1 | word_numsyls 0 1 2 3 4\n"
+        + "ContinuousFeatureProcessors\n"
+        + "1 linear | unit_duration\n"
+        + "0.5 linear | unit_logf0\n"
+        + "FeatureSimilarity\n"
+        + "phone 0 a b c\n"
+        + "0\n"
+        + "a 0.5\n"
+        + "b 0.2 0.3\n"
+        + "c 0.1 0.4 0.6\n";
+
+    private static final String OTHER_WEIGHTS = FEATURES.replace("2 | phone", "0.5 | phone").replace("1 | stressed", "3 | stressed");
+
+    private static final int NUM_UNITS = 300;
+
+    private Random random;
+    private FeatureVector[] featureVectors;
+
+    private static FeatureDefinition featureDefinition(String text) throws IOException {
+        return new FeatureDefinition(new BufferedReader(new StringReader(text)), true);
+    }
+
+    private static WeightFunc[] linearWeightFunctions(FeatureDefinition def) {
+        WeightFunc[] weightFunctions = new WeightFunc[def.getNumberOfContinuousFeatures()];
+        for (int i = 0; i < weightFunctions.length; i++) {
+            weightFunctions[i] = new WeightFunctionManager().getWeightFunction("linear");
+        }
+        return weightFunctions;
+    }
+
+    private FeatureVector randomFeatureVector(int index) {
+        byte[] bytes = new byte[] {(byte) random.nextInt(4), (byte) random.nextInt(3), (byte) random.nextInt(2)};
+        short[] shorts = new short[] {(short) random.nextInt(5)};
+        float[] floats = new float[] {random.nextFloat(), random.nextInt(10) == 0 ? Float.NaN : 4 + random.nextFloat()};
+        return new FeatureVector(bytes, shorts, floats, index);
+    }
+
+    @Before
+    public void setUp() {
+        random = new Random(1234);
+        featureVectors = new FeatureVector[NUM_UNITS];
+        for (int u = 0; u < NUM_UNITS; u++) {
+            featureVectors[u] = randomFeatureVector(u);
+        }
+    }
+
+    private Unit[] randomCandidates(int numCandidates) {
+        Unit[] units = new Unit[numCandidates];
+        for (int k = 0; k < numCandidates; k++) {
+            units[k] = new Unit(0, 0, random.nextInt(NUM_UNITS));
+        }
+        return units;
+    }
+
+    private void assertBatchEqualsPerUnit(TargetCostFunction tcf, FFRTargetCostFunction batch, Target target) {
+        Unit[] units = randomCandidates(50);
+        double[] costs = new double[units.length];
+        batch.cost(target, units, costs);
+        for (int k = 0; k < units.length; k++) {
+            // the batch computation adds up the same terms in the same order, so the result is identical:
+            assertEquals(tcf.cost(target, units[k]), costs[k], 0);
+        }
+    }
+
+    @Test
+    public void batchCostEqualsPerUnitCost() throws Exception {
+        FFRTargetCostFunction tcf = new FFRTargetCostFunction();
+        tcf.featureDefinition = featureDefinition(FEATURES);
+        tcf.featureVectors = featureVectors;
+        tcf.weightFunction = linearWeightFunctions(tcf.featureDefinition);
+        tcf.rememberWhichWeightsAreNonZero();
+        tcf.buildFeatureColumns();
+        assertTrue(tcf.featureDefinition.hasSimilarityMatrix(0));
+        for (int t = 0; t < 20; t++) {
+            Target target = new Target("t"+t, null);
+            FeatureVector targetFeatures = randomFeatureVector(0);
+            if (t % 5 == 0) {
+                targetFeatures.continuousFeatures[0] = Float.NaN;
+            }
+            target.setFeatureVector(targetFeatures);
+            assertBatchEqualsPerUnit(tcf, tcf, target);
+        }
+    }
+
+    private HalfPhoneFFRTargetCostFunction halfPhoneCostFunction() throws IOException {
+        HalfPhoneFFRTargetCostFunction tcf = new HalfPhoneFFRTargetCostFunction();
+        tcf.leftWeights = featureDefinition(FEATURES);
+        tcf.rightWeights = featureDefinition(OTHER_WEIGHTS);
+        tcf.featureDefinition = tcf.leftWeights;
+        tcf.leftWeightFunction = linearWeightFunctions(tcf.leftWeights);
+        tcf.rightWeightFunction = linearWeightFunctions(tcf.rightWeights);
+        tcf.featureVectors = featureVectors;
+        tcf.rememberWhichWeightsAreNonZero();
+        tcf.buildFeatureColumns();
+        return tcf;
+    }
+
+    @Test
+    public void halfPhoneBatchCostUsesWeightsOfHalf() throws Exception {
+        HalfPhoneFFRTargetCostFunction tcf = halfPhoneCostFunction();
+        for (int t = 0; t < 20; t++) {
+            Target target = new HalfPhoneTarget("t"+t, null, t % 2 == 0);
+            target.setFeatureVector(randomFeatureVector(0));
+            assertBatchEqualsPerUnit(tcf, tcf, target);
+        }
+    }
+
+    @Test
+    public void diphoneBatchCostEqualsPerUnitCost() throws Exception {
+        DiphoneFFRTargetCostFunction tcf = new DiphoneFFRTargetCostFunction();
+        tcf.tcfForHalfphones = halfPhoneCostFunction();
+        for (int t = 0; t < 20; t++) {
+            HalfPhoneTarget left = new HalfPhoneTarget("l"+t+"_R", null, false);
+            left.setFeatureVector(randomFeatureVector(0));
+            HalfPhoneTarget right = new HalfPhoneTarget("r"+t+"_L", null, true);
+            right.setFeatureVector(randomFeatureVector(0));
+            Target target = new DiphoneTarget(left, right);
+            Unit[] units = new Unit[50];
+            for (int k = 0; k < units.length; k++) {
+                int index = random.nextInt(NUM_UNITS - 1);
+                units[k] = new DiphoneUnit(new Unit(0, 0, index), new Unit(0, 0, index + 1));
+            }
+            double[] costs = new double[units.length];
+            tcf.cost(target, units, costs);
+            for (int k = 0; k < units.length; k++) {
+                assertEquals(tcf.cost(target, units[k]), costs[k], 0);
+            }
+        }
+    }
+
+    @Test
+    public void fallsBackToPerUnitCostWithoutColumns() throws Exception {
+        FFRTargetCostFunction tcf = new FFRTargetCostFunction();
+        tcf.featureDefinition = featureDefinition(FEATURES);
+        tcf.featureVectors = featureVectors;
+        tcf.weightFunction = linearWeightFunctions(tcf.featureDefinition);
+        tcf.rememberWhichWeightsAreNonZero();
+        // no call to buildFeatureColumns()
+        Target target = new Target("t", null);
+        target.setFeatureVector(randomFeatureVector(0));
+        assertBatchEqualsPerUnit(tcf, tcf, target);
+    }
+}
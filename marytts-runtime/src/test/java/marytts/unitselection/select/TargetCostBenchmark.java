@@ -0,0 +1,87 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.unitselection.select;
+
+import java.util.Random;
+
+import marytts.features.FeatureProcessorManager;
+import marytts.features.FeatureVector;
+import marytts.unitselection.data.Unit;
+
+/**
+ * Compares the per-unit target cost computation with the batch computation
+ * of {@link FFRTargetCostFunction#cost(Target, Unit[], double[])} on the target cost features of a real voice.
+ * Not a unit test; run it manually with
+ * <code>java marytts.unitselection.select.TargetCostBenchmark halfphoneFeatures_ac.mry locale [numCandidates]</code>.
+ *
+ * @author agent
+ *
+ */
+public class TargetCostBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: TargetCostBenchmark halfphoneFeatures_ac.mry locale [numCandidates]");
+            System.exit(1);
+        }
+        int numCandidates = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        HalfPhoneFFRTargetCostFunction tcf = new HalfPhoneFFRTargetCostFunction();
+        tcf.load(args[0], (String) null, new FeatureProcessorManager(args[1]));
+        FeatureVector[] featureVectors = tcf.getFeatureVectors();
+
+        // Use unit feature vectors as targets, and random units as candidates:
+        Random random = new Random(1234);
+        int numTargets = 200;
+        Target[] targets = new Target[numTargets];
+        Unit[][] candidates = new Unit[numTargets][numCandidates];
+        for (int t = 0; t < numTargets; t++) {
+            targets[t] = new HalfPhoneTarget("t"+t, null, t % 2 == 0);
+            targets[t].setFeatureVector(featureVectors[random.nextInt(featureVectors.length)]);
+            for (int c = 0; c < numCandidates; c++) {
+                candidates[t][c] = new Unit(0, 0, random.nextInt(featureVectors.length));
+            }
+        }
+        double[] costs = new double[numCandidates];
+
+        int numRuns = 10;
+        for (int run = 0; run < numRuns; run++) {
+            double checksum = 0;
+            long startTime = System.nanoTime();
+            for (int t = 0; t < numTargets; t++) {
+                for (int c = 0; c < numCandidates; c++) {
+                    checksum += tcf.cost(targets[t], candidates[t][c]);
+                }
+            }
+            long perUnitNanos = System.nanoTime() - startTime;
+            double batchChecksum = 0;
+            startTime = System.nanoTime();
+            for (int t = 0; t < numTargets; t++) {
+                tcf.cost(targets[t], candidates[t], costs);
+                for (int c = 0; c < numCandidates; c++) {
+                    batchChecksum += costs[c];
+                }
+            }
+            long batchNanos = System.nanoTime() - startTime;
+            long numCosts = (long) numTargets * numCandidates;
+            System.out.printf("Run %d: per unit %.1f ns/cost, batch %.1f ns/cost (checksums %f / %f)%n",
+                    run+1, (double) perUnitNanos / numCosts, (double) batchNanos / numCosts, checksum, batchChecksum);
+        }
+    }
+}
@@ -24,9 +24,10 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
-import java.sql.SQLException;
+import java.io.IOException;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -99,12 +100,12 @@ public class MaryCacheTest
         int numExceptions = 0;
         try {
             c.insertText(inputtype, outputtype, locale, voice, inputtext, targetValue);
-        } catch (SQLException e) {
+        } catch (IOException e) {
             numExceptions++;
         }
         try {
             c.insertAudio(inputtype, locale, voice, inputtext, targetAudio);
-        } catch (SQLException e) {
+        } catch (IOException e) {
             numExceptions++;
         }
         assertEquals(0, numExceptions);
@@ -130,4 +131,43 @@ public class MaryCacheTest
         assertNull(lookupAudio);
     }
     
+    @Test
+    public void countsHitsAndMisses() throws Exception
+    {
+        MaryCache memoryOnly = new MaryCache(null, false, 1024*1024, 0);
+        memoryOnly.insertText(inputtype, outputtype, locale, voice, inputtext, targetValue);
+        assertEquals(targetValue, memoryOnly.lookupText(inputtype, outputtype, locale, voice, inputtext));
+        assertNull(memoryOnly.lookupText(inputtype, outputtype, locale, voice, inputtext2));
+        assertEquals(1, memoryOnly.getMemoryHits());
+        assertEquals(1, memoryOnly.getMisses());
+        memoryOnly.shutdown();
+    }
+    
+    @Test
+    public void evictsWhenMemoryIsFull() throws Exception
+    {
+        // 16 shards of 16 kB each: a 12345 byte record fits, but two of them don't
+        MaryCache memoryOnly = new MaryCache(null, false, 16*16*1024, 0);
+        for (int i=0; i<100; i++) {
+            memoryOnly.insertAudio(inputtype, locale, voice, inputtext+i, targetAudio);
+        }
+        assertTrue(memoryOnly.getEvictions() > 0);
+        memoryOnly.shutdown();
+    }
+    
+    @Test
+    public void promotesFromDisk() throws Exception
+    {
+        File file = new File("tmp/testfiles-promote-deleteme");
+        MaryCache writer = new MaryCache(file, true);
+        writer.insertAudio(inputtype, locale, voice, inputtext, targetAudio);
+        writer.shutdown();
+        MaryCache reader = new MaryCache(file, false);
+        assertArrayEquals(targetAudio, reader.lookupAudio(inputtype, locale, voice, inputtext));
+        assertArrayEquals(targetAudio, reader.lookupAudio(inputtype, locale, voice, inputtext));
+        assertEquals(1, reader.getDiskHits());
+        assertEquals(1, reader.getMemoryHits());
+        reader.shutdown();
+    }
+    
 }
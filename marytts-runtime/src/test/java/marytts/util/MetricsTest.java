@@ -0,0 +1,100 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package marytts.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+
+/**
+ * @author agent
+ *
+ */
+public class MetricsTest
+{
+    @Test
+    public void sameCounterForSameName() {
+        Metrics.Counter c1 = Metrics.counter("test_same_total", "test", "result", "a");
+        Metrics.Counter c2 = Metrics.counter("test_same_total", "test", "result", "a");
+        assertSame(c1, c2);
+        c1.inc();
+        c2.add(2);
+        assertEquals(3, c1.get());
+    }
+
+    @Test
+    public void counterExposition() {
+        Metrics.counter("test_escape_total", "test", "result", "a\"b").inc();
+        String text = Metrics.getExposition();
+        assertTrue(text.contains("# TYPE test_escape_total counter\n"));
+        assertTrue(text.contains("test_escape_total{result=\"a\\\"b\"} 1\n"));
+    }
+
+    @Test
+    public void histogramBucketsAreCumulative() {
+        Metrics.Histogram h = Metrics.histogram("test_duration_seconds", "test", new double[] {0.1, 1});
+        h.observe(0.05);
+        h.observe(0.5);
+        h.observe(3);
+        h.observeNanos(100000000L);
+        assertEquals(4, h.getCount());
+        assertEquals(3.65, h.getSum(), 1e-9);
+        String text = Metrics.getExposition();
+        assertTrue(text.contains("test_duration_seconds_bucket{le=\"0.1\"} 2\n"));
+        assertTrue(text.contains("test_duration_seconds_bucket{le=\"1\"} 3\n"));
+        assertTrue(text.contains("test_duration_seconds_bucket{le=\"+Inf\"} 4\n"));
+        assertTrue(text.contains("test_duration_seconds_count 4\n"));
+    }
+
+    @Test
+    public void histogramCountsFromManyThreads() throws Exception {
+        final Metrics.Histogram h = Metrics.histogram("test_threads_seconds", "test", new double[] {1});
+        Thread[] threads = new Thread[8];
+        for (int t=0; t<threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i=0; i<10000; i++) {
+                        h.observe(i % 2 == 0 ? 0.5 : 2);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(80000, h.getCount());
+        assertEquals(100000, h.getSum(), 1e-6);
+        String text = Metrics.getExposition();
+        assertTrue(text.contains("test_threads_seconds_bucket{le=\"1\"} 40000\n"));
+        assertTrue(text.contains("test_threads_seconds_bucket{le=\"+Inf\"} 80000\n"));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void typeMismatch() {
+        Metrics.counter("test_mismatch", "test");
+        Metrics.histogram("test_mismatch", "test", Metrics.TIME_BUCKETS);
+    }
+}
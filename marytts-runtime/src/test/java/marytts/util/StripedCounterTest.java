@@ -0,0 +1,61 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+
+/**
+ * @author agent
+ *
+ */
+public class StripedCounterTest
+{
+    @Test
+    public void sumsAllStripes() {
+        StripedCounter c = new StripedCounter(4);
+        c.inc();
+        c.add(41);
+        assertEquals(42, c.get());
+    }
+
+    @Test
+    public void countsFromManyThreads() throws Exception {
+        final StripedCounter c = new StripedCounter();
+        Thread[] threads = new Thread[8];
+        for (int t=0; t<threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i=0; i<100000; i++) {
+                        c.inc();
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(800000, c.get());
+    }
+}
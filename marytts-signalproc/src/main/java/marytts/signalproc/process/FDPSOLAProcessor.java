@@ -39,10 +39,12 @@ import marytts.signalproc.analysis.PitchMarks;
 import marytts.signalproc.analysis.PitchReaderWriter;
 import marytts.signalproc.window.DynamicWindow;
 import marytts.signalproc.window.Window;
+import marytts.util.MaryUtils;
 import marytts.util.data.BufferedDoubleDataSource;
 import marytts.util.data.Datagram;
 import marytts.util.data.DatagramDoubleDataSource;
 import marytts.util.data.DoubleDataSource;
+import marytts.util.data.ProducingDoubleDataSource;
 import marytts.util.data.audio.AudioDoubleDataSource;
 import marytts.util.data.audio.DDSAudioInputStream;
 import marytts.util.io.FileUtils;
@@ -366,72 +368,16 @@ public class FDPSOLAProcessor extends VocalTractModifier {
     public DDSAudioInputStream processDecrufted(Datagram[][] datagrams, Datagram[] rightContexts, AudioFormat audioformat,
             boolean[][] voicings, double[][] pitchScales, double[][] timeScales) throws IOException {
 
-        // obscure dependency on several fields:
-        tscaleSingle = -1;
-        origLen = 0;
-        numfrm = 0;
-        for (int i = 0; i < datagrams.length; i++) {
-            for (int j = 0; j < datagrams[i].length; j++) {
-                origLen += datagrams[i][j].getDuration();
-                if (j == datagrams[i].length - 1 && rightContexts != null && rightContexts[i] != null) {
-                    origLen += rightContexts[i].getDuration();
-                }
-            }
-            numfrm += datagrams[i].length;
-        }
+        initDecrufted(datagrams, rightContexts);
 
         // for each unit:
         for (int i = 0; i < datagrams.length; i++) {
             // for each datagram in that unit:
             for (int j = 0; j < datagrams[i].length; j++) {
-
-                // awkwardly determine next Datagram, which defaults to silence as long as this Datagram...
-                int length = datagrams[i][j].getLength();
-                Datagram nextDatagram = new Datagram(length, new byte[2 * length]);
-                // ...unless it's not the last in this unit...
-                if (j < datagrams[i].length - 1) {
-                    nextDatagram = datagrams[i][j + 1];
-                } else
-                // ...or we have a right context...
-                if (rightContexts[i] != null) {
-                    nextDatagram = rightContexts[i];
-                } else
-                // ...or we have a next unit
-                // TODO but what if that unit has no frames?
-                if (i < datagrams.length - 1) {
-                    nextDatagram = datagrams[i + 1][0];
-                }
-                assert nextDatagram.getDuration() > 0;
-
-                // ARG #1, actual frame data for this and the next Datagram:
-                Datagram[] sourceDatagrams = { datagrams[i][j], nextDatagram };
-                DatagramDoubleDataSource dataSource = new DatagramDoubleDataSource(sourceDatagrams);
-                double[] frmIn = dataSource.getAllData();
-
-                // ARG #2, voicing:
-                boolean symbolicVoicing = voicings[i][j];
-                boolean acousticVoicing = SignalProcUtils.getVoicing(frmIn, (int) (audioformat.getSampleRate()));
-                // inflexible hard-coded toggle between symbolic (phonology) and signal based voicing:
-                boolean isVoiced = symbolicVoicing; // one of: symbolicVoicing, acousticVoicing
-
-                // ARGs #5-6, some obscure variables:
-                double escale = 1.0;
-                double vscale = 1.0;
-
-                // ARG #7, is this the last Datagram?
-                boolean bLastInputFrame = (i == datagrams.length - 1) && (j == datagrams[i].length - 1);
-
-                // ARG #8, duration of this Datagram:
-                int currentPeriod = (int) datagrams[i][j].getDuration();
-
-                // ARG #9, number of frames in this and the next Datagram:
-                int inputFrameSize = currentPeriod + (int) nextDatagram.getDuration();
-
-                // actually process the data using the ARGs:
+                // actually process the data:
                 try {
                     int bufferStartIndex = outBuffStart;
-                    processFrame(frmIn, isVoiced, pitchScales[i][j], timeScales[i][j], escale, vscale, bLastInputFrame,
-                            currentPeriod, inputFrameSize);
+                    processDecruftedFrame(datagrams, rightContexts, audioformat, voicings, pitchScales, timeScales, i, j);
                     int bufferEndIndex = outBuffStart;
                     int bufferLength = bufferEndIndex - bufferStartIndex;
                     // extract processed samples for this datagram from buffer:
@@ -469,6 +415,143 @@ public class FDPSOLAProcessor extends VocalTractModifier {
         BufferedDoubleDataSource buffer = new BufferedDoubleDataSource(output);
         DDSAudioInputStream stream = new DDSAudioInputStream(buffer, audioformat);
         return stream;
+    }
+
+    /**
+     * Like {@link #processDecrufted}, but the frames are processed by a separate thread, and the audio for each datagram
+     * can be read from the returned stream as soon as it has been processed, rather than after all datagrams have been processed.
+     * The durations of the datagrams are not updated; the length of the stream is not known in advance.
+     * 
+     * @return modified audio as a DoubleDataSource audio stream, produced datagram by datagram
+     */
+    public DDSAudioInputStream processDecruftedIncrementally(final Datagram[][] datagrams, final Datagram[] rightContexts,
+            final AudioFormat audioformat, final boolean[][] voicings, final double[][] pitchScales, final double[][] timeScales) {
+
+        initDecrufted(datagrams, rightContexts);
+
+        ProducingDoubleDataSource producer = new ProducingDoubleDataSource() {
+            private int handedOver = 0; // the number of samples at the start of outBuff that have already been put
+
+            public void run() {
+                Exception failure = null;
+                try {
+                    for (int i = 0; i < datagrams.length; i++) {
+                        for (int j = 0; j < datagrams[i].length; j++) {
+                            double[] flushed = processDecruftedFrame(datagrams, rightContexts, audioformat, voicings, pitchScales, timeScales, i, j);
+                            putProcessed(flushed, outBuffStart - 1);
+                        }
+                    }
+                    double[] output = writeFinal();
+                    putProcessed(output, 0);
+                } catch (Exception e) {
+                    MaryUtils.getLogger(FDPSOLAProcessor.class).error("Cannot process frames", e);
+                    failure = e;
+                } finally {
+                    // do not leave the reader waiting for data that will never come,
+                    // and do not let it take incomplete audio for complete:
+                    if (failure != null) {
+                        putEndOfStream(failure);
+                    } else {
+                        putEndOfStream();
+                    }
+                }
+            }
+
+            /**
+             * Put the samples that have been written to the output buffer since the last call.
+             * @param flushed if not null, the contents of the output buffer before it was reset, as returned by
+             * {@link FDPSOLAProcessor#processFrame} or {@link FDPSOLAProcessor#writeFinal()}
+             * @param written the number of samples now written to the output buffer
+             */
+            private void putProcessed(double[] flushed, int written) {
+                if (flushed != null) {
+                    putData(flushed, handedOver, flushed.length - handedOver);
+                    handedOver = 0;
+                }
+                if (written > handedOver) {
+                    putData(outBuff, handedOver, written - handedOver);
+                    handedOver = written;
+                }
+            }
+        };
+        producer.start();
+        return new DDSAudioInputStream(producer, audioformat);
+    }
+
+    /**
+     * Initialise the fields used by {@link #processDecrufted} and {@link #processDecruftedIncrementally}.
+     */
+    private void initDecrufted(Datagram[][] datagrams, Datagram[] rightContexts) {
+        // obscure dependency on several fields:
+        tscaleSingle = -1;
+        origLen = 0;
+        numfrm = 0;
+        for (int i = 0; i < datagrams.length; i++) {
+            for (int j = 0; j < datagrams[i].length; j++) {
+                origLen += datagrams[i][j].getDuration();
+                if (j == datagrams[i].length - 1 && rightContexts != null && rightContexts[i] != null) {
+                    origLen += rightContexts[i].getDuration();
+                }
+            }
+            numfrm += datagrams[i].length;
+        }
+    }
+
+    /**
+     * Process datagram j of unit i with {@link #processFrame}, writing the result to the output buffer.
+     * 
+     * @return the samples flushed from the output buffer when it was full, as returned by processFrame, or null
+     * @throws IOException
+     *             if the frame cannot be processed
+     */
+    private double[] processDecruftedFrame(Datagram[][] datagrams, Datagram[] rightContexts, AudioFormat audioformat,
+            boolean[][] voicings, double[][] pitchScales, double[][] timeScales, int i, int j) throws IOException {
+
+        // awkwardly determine next Datagram, which defaults to silence as long as this Datagram...
+        int length = datagrams[i][j].getLength();
+        Datagram nextDatagram = new Datagram(length, new byte[2 * length]);
+        // ...unless it's not the last in this unit...
+        if (j < datagrams[i].length - 1) {
+            nextDatagram = datagrams[i][j + 1];
+        } else
+        // ...or we have a right context...
+        if (rightContexts[i] != null) {
+            nextDatagram = rightContexts[i];
+        } else
+        // ...or we have a next unit
+        // TODO but what if that unit has no frames?
+        if (i < datagrams.length - 1) {
+            nextDatagram = datagrams[i + 1][0];
+        }
+        assert nextDatagram.getDuration() > 0;
+
+        // ARG #1, actual frame data for this and the next Datagram:
+        Datagram[] sourceDatagrams = { datagrams[i][j], nextDatagram };
+        DatagramDoubleDataSource dataSource = new DatagramDoubleDataSource(sourceDatagrams);
+        double[] frmIn = dataSource.getAllData();
+
+        // ARG #2, voicing:
+        boolean symbolicVoicing = voicings[i][j];
+        boolean acousticVoicing = SignalProcUtils.getVoicing(frmIn, (int) (audioformat.getSampleRate()));
+        // inflexible hard-coded toggle between symbolic (phonology) and signal based voicing:
+        boolean isVoiced = symbolicVoicing; // one of: symbolicVoicing, acousticVoicing
+
+        // ARGs #5-6, some obscure variables:
+        double escale = 1.0;
+        double vscale = 1.0;
+
+        // ARG #7, is this the last Datagram?
+        boolean bLastInputFrame = (i == datagrams.length - 1) && (j == datagrams[i].length - 1);
+
+        // ARG #8, duration of this Datagram:
+        int currentPeriod = (int) datagrams[i][j].getDuration();
+
+        // ARG #9, number of frames in this and the next Datagram:
+        int inputFrameSize = currentPeriod + (int) nextDatagram.getDuration();
+
+        // actually process the data using the ARGs:
+        return processFrame(frmIn, isVoiced, pitchScales[i][j], timeScales[i][j], escale, vscale, bLastInputFrame,
+                currentPeriod, inputFrameSize);
     }
 
     //FD-PSOLA using all concatenation units
@@ -0,0 +1,145 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package marytts.util.data;
+
+/**
+ * A bounded ring buffer of primitive doubles for handing data from one producer thread
+ * to one consumer thread. Data is copied in blocks, so that the monitor is acquired
+ * once per block rather than once per data point. A producer writing into a full buffer
+ * blocks until the consumer has made room (backpressure); a consumer reading from an
+ * empty buffer blocks until data arrives or the buffer is closed.
+ *
+ * @author agent
+ *
+ */
+public class DoubleRingBuffer {
+    private final double[] ring;
+    private int readPos = 0;
+    private int count = 0;
+    private boolean closed = false;
+
+    /**
+     * Create a ring buffer that can hold at most capacity data points at any one time.
+     * @param capacity the maximum number of data points the buffer can hold
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public DoubleRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, got "+capacity);
+        }
+        ring = new double[capacity];
+    }
+
+    public int getCapacity() {
+        return ring.length;
+    }
+
+    /**
+     * The number of data points that can currently be read without blocking.
+     * @return the number of data points currently in the buffer
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Whether the producer has signalled that no more data will be written.
+     * Data still in the buffer can be read after the buffer has been closed.
+     * @return true if {@link #close()} has been called
+     */
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Write len data points from data, starting at off, into the buffer.
+     * If the buffer is full, block until the reader has made room.
+     * @param data the array to copy from
+     * @param off the position in data where to start copying
+     * @param len the number of data points to copy
+     * @throws InterruptedException if the calling thread is interrupted while waiting for space
+     * @throws IllegalStateException if the buffer has already been closed, or is closed while waiting for space
+     */
+    public synchronized void put(double[] data, int off, int len) throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Cannot write to a closed buffer");
+        }
+        while (len > 0) {
+            while (count == ring.length) {
+                wait();
+                if (closed) {
+                    throw new IllegalStateException("Buffer was closed while waiting for space");
+                }
+            }
+            int n = Math.min(len, ring.length - count);
+            int writePos = (readPos + count) % ring.length;
+            int first = Math.min(n, ring.length - writePos);
+            System.arraycopy(data, off, ring, writePos, first);
+            System.arraycopy(data, off + first, ring, 0, n - first);
+            count += n;
+            off += n;
+            len -= n;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Read up to len data points into target, starting at off. Blocks until either
+     * len data points have been read, or the buffer is closed and empty.
+     * @param target the array to copy into
+     * @param off the position in target where to start writing
+     * @param len the number of data points requested
+     * @return the number of data points actually read; if this is less than len,
+     * the buffer is closed and all data has been read.
+     * @throws InterruptedException if the calling thread is interrupted while waiting for data
+     */
+    public synchronized int get(double[] target, int off, int len) throws InterruptedException {
+        int read = 0;
+        while (read < len) {
+            while (count == 0 && !closed) {
+                wait();
+            }
+            if (count == 0) { // closed and drained
+                break;
+            }
+            int n = Math.min(len - read, count);
+            int first = Math.min(n, ring.length - readPos);
+            System.arraycopy(ring, readPos, target, off + read, first);
+            System.arraycopy(ring, 0, target, off + read + first, n - first);
+            readPos = (readPos + n) % ring.length;
+            count -= n;
+            read += n;
+            notifyAll();
+        }
+        return read;
+    }
+
+    /**
+     * Signal that no more data will be written. Wakes up a reader waiting for data.
+     * A reader can also close the buffer when it will not read any more data;
+     * a producer waiting for space in {@link #put(double[], int, int)} then fails
+     * instead of waiting forever.
+     */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+}
@@ -20,22 +20,38 @@
 
 package marytts.util.data;
 
-import java.util.concurrent.ArrayBlockingQueue;
-
 import marytts.signalproc.process.InlineDataProcessor;
 
 /**
+ * A double data source whose data is produced by a separate thread.
+ * The producer hands data over to the reader through a {@link DoubleRingBuffer}
+ * in blocks of primitive doubles; single data points passed to {@link #putOneDataPoint(double)}
+ * are collected in a block on the producer side and published when the block is full
+ * or when the end of the stream is reached.
+ * 
  * @author marc
  *
  */
 public abstract class ProducingDoubleDataSource extends BufferedDoubleDataSource implements Runnable {
-    private static final Double END_OF_STREAM = Double.NEGATIVE_INFINITY;
+    /**
+     * The default number of data points that can be queued between producer and reader
+     * before the producer blocks.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+    /**
+     * The default number of data points collected by the producer before they are made
+     * available to the reader.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 256;
     
     
-    protected ArrayBlockingQueue<Double> queue = new ArrayBlockingQueue<Double>(1024);
+    protected final DoubleRingBuffer queue;
+    private final double[] producerBlock;
+    private int producerBlockFill = 0;
     private Thread dataProducingThread = null;
-    private boolean hasSentEndOfStream = false;
     private boolean hasReceivedEndOfStream = false;
+    // set by the producer before it closes the queue, read by the reader after the queue is closed:
+    private volatile Throwable productionFailure = null;
 
 
     
@@ -53,8 +69,26 @@ public abstract class ProducingDoubleDataSource extends BufferedDoubleDataSource
     }
     
     protected ProducingDoubleDataSource(long numDataThatWillBeProduced, InlineDataProcessor dataProcessor) {
+        this(numDataThatWillBeProduced, dataProcessor, DEFAULT_QUEUE_CAPACITY, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param numDataThatWillBeProduced the number of data points that will be produced, or {@link DoubleDataSource#NOT_SPECIFIED}
+     * @param dataProcessor an optional processor to apply to the data as it is read, or null
+     * @param queueCapacity the maximum number of data points waiting to be read before the producer blocks
+     * @param blockSize the number of data points the producer collects before handing them over to the reader;
+     * smaller blocks reduce latency, larger blocks reduce synchronisation overhead
+     * @throws IllegalArgumentException if queueCapacity or blockSize is not positive
+     */
+    protected ProducingDoubleDataSource(long numDataThatWillBeProduced, InlineDataProcessor dataProcessor,
+            int queueCapacity, int blockSize) {
         super((DoubleDataSource)null, dataProcessor);
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive, got "+blockSize);
+        }
         this.dataLength = numDataThatWillBeProduced;
+        this.queue = new DoubleRingBuffer(queueCapacity);
+        this.producerBlock = new double[blockSize];
     }
 
     public void start() {
@@ -64,27 +98,76 @@ public abstract class ProducingDoubleDataSource extends BufferedDoubleDataSource
 
     /**
      * Subclasses must implement this method such that it produces data and sends it through
-     * {@link #putOneDataPoint(double)}.
-     * When all data is sent, the subclass must call {@link #putEndOfStream()} exactly once.
+     * {@link #putOneDataPoint(double)} or {@link #putData(double[], int, int)}.
+     * When all data is sent, the subclass must call {@link #putEndOfStream()} exactly once;
+     * if it fails, it must call {@link #putEndOfStream(Throwable)} instead.
      */
     public abstract void run();
     
     /**
-     * The producing thread tries to put ont data item into the queue.
+     * The producing thread adds one data item to the current block; when the block is full,
+     * it is put into the queue.
      * @param value
      */
     public void putOneDataPoint(double value) {
+        producerBlock[producerBlockFill++] = value;
+        if (producerBlockFill == producerBlock.length) {
+            flushProducerBlock();
+        }
+    }
+
+    /**
+     * The producing thread puts len data items into the queue, blocking while the queue is full.
+     * @param data
+     * @param off
+     * @param len
+     */
+    public void putData(double[] data, int off, int len) {
+        flushProducerBlock();
         try {
-            queue.put(value);
+            queue.put(data, off, len);
         } catch (InterruptedException e) {
             throw new RuntimeException("Unexpected interruption", e);
         }
     }
     
+    private void flushProducerBlock() {
+        if (producerBlockFill == 0) {
+            return;
+        }
+        int len = producerBlockFill;
+        producerBlockFill = 0;
+        putData(producerBlock, 0, len);
+    }
     
     protected void putEndOfStream() {
-        putOneDataPoint(END_OF_STREAM);
-        hasSentEndOfStream  = true;
+        try {
+            flushProducerBlock();
+        } catch (IllegalStateException e) {
+            // production was stopped, nobody reads the rest
+        }
+        queue.close();
+    }
+
+    /**
+     * End the stream because the producer failed. The reader gets the data put so far, and then
+     * a {@link ProductionFailedException} instead of the end of the stream, so that incomplete data
+     * cannot be mistaken for complete data.
+     * @param cause the reason why no more data can be produced
+     */
+    protected void putEndOfStream(Throwable cause) {
+        productionFailure = cause;
+        putEndOfStream();
+    }
+    
+    /**
+     * Tell the producer that the data will not be read any further, e.g. because the reader failed.
+     * A producer putting more data, or blocked because the queue is full, then gets an
+     * IllegalStateException, so that it can end its {@link #run()} method instead of waiting forever.
+     * Data already in the queue can still be read.
+     */
+    public void stopProduction() {
+        queue.close();
     }
     
 
@@ -104,11 +187,7 @@ public abstract class ProducingDoubleDataSource extends BufferedDoubleDataSource
         if (isAllProductionDataRead()) {
             return 0;
         }
-        int inQueue = queue.size();
-        if (hasSentEndOfStream && !hasReceivedEndOfStream) {
-            inQueue -= 1;
-        }
-        return inQueue;
+        return queue.size();
     }
 
 
@@ -118,6 +197,7 @@ public abstract class ProducingDoubleDataSource extends BufferedDoubleDataSource
     {
         checkStarted();
         if (isAllProductionDataRead()) {
+            checkProductionFailure();
             return false;
         }
         if (bufferSpaceLeft()<minLength) {
@@ -128,30 +208,37 @@ public abstract class ProducingDoubleDataSource extends BufferedDoubleDataSource
             compact(); // create a contiguous space for the new data
         }
         // Now we have a buffer that can hold at least minLength new data points
-        int readSum = 0;
-        while (readSum < minLength) {
-            double data = getOneDataPoint();
-            if (data == END_OF_STREAM) {
-                hasReceivedEndOfStream = true;
-                break;
-            }
-            buf[writePos] = data;
-            writePos++;
-            readSum++;
+        int readSum = getDataFromQueue(minLength);
+        if (readSum < minLength) {
+            hasReceivedEndOfStream = true;
         }
+        writePos += readSum;
         if (dataProcessor != null) {
             dataProcessor.applyInline(buf, writePos-readSum, readSum);
         }
+        if (hasReceivedEndOfStream) {
+            checkProductionFailure();
+        }
         return readSum == minLength;
     }
 
     /**
-     * The reading thread tries to get one data item from the queue.
-     * @return
+     * @throws ProductionFailedException if the producer has ended the stream with {@link #putEndOfStream(Throwable)}
      */
-    private double getOneDataPoint() {
+    private void checkProductionFailure() throws ProductionFailedException {
+        if (productionFailure != null) {
+            throw new ProductionFailedException(productionFailure);
+        }
+    }
+
+    /**
+     * The reading thread tries to get length data items from the queue into the buffer,
+     * blocking until they are available or the end of the stream is reached.
+     * @return the number of data items read
+     */
+    private int getDataFromQueue(int length) {
         try {
-            return queue.take();
+            return queue.get(buf, writePos, length);
         } catch (InterruptedException e) {
             throw new RuntimeException("Unexpected interruption", e);
         }
@@ -174,4 +261,13 @@ public abstract class ProducingDoubleDataSource extends BufferedDoubleDataSource
     private boolean isAllProductionDataRead() {
         return hasReceivedEndOfStream;
     }
+
+    /**
+     * Thrown to the reader when the producer could not produce all data.
+     */
+    public static class ProductionFailedException extends RuntimeException {
+        public ProductionFailedException(Throwable cause) {
+            super("Data production failed: "+cause, cause);
+        }
+    }
 }
@@ -27,6 +27,7 @@ import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 
 import marytts.util.data.DoubleDataSource;
+import marytts.util.data.ProducingDoubleDataSource;
 
 /**
  * @author Marc Schr&ouml;der
@@ -92,7 +93,12 @@ public class DDSAudioInputStream extends AudioInputStream {
         do {
             int toRead = nSamples-totalRead;
             if (toRead > sampleBuf.length) toRead = sampleBuf.length;
-            int nRead = source.getData(sampleBuf, 0, toRead);
+            int nRead;
+            try {
+                nRead = source.getData(sampleBuf, 0, toRead);
+            } catch (ProducingDoubleDataSource.ProductionFailedException e) {
+                throw new IOException("Audio could not be generated", e.getCause());
+            }
             //System.err.println("DDSAudioInputStream: read " + nRead + " samples from source");
             if (frameSize == 1) { // bytes per sample
                 for (int i=0; i<nRead; i++, currentPos++) {
@@ -181,6 +187,10 @@ public class DDSAudioInputStream extends AudioInputStream {
      * @throws IOException if an input or output error occurs
      */
     public void close() throws IOException {
+        if (source instanceof ProducingDoubleDataSource) {
+            // nobody will read the rest, so the producer must not wait for room in its queue
+            ((ProducingDoubleDataSource)source).stopProduction();
+        }
     }
     
     /**
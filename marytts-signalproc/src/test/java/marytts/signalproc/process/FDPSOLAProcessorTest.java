@@ -0,0 +1,86 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.signalproc.process;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.sound.sampled.AudioFormat;
+
+import marytts.util.data.Datagram;
+import marytts.util.data.audio.AudioDoubleDataSource;
+
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class FDPSOLAProcessorTest
+{
+    private static Datagram[][] getPeriods(long seed)
+    {
+        Random random = new Random(seed);
+        Datagram[][] datagrams = new Datagram[6][];
+        for (int i=0; i<datagrams.length; i++) {
+            datagrams[i] = new Datagram[5 + random.nextInt(5)];
+            for (int j=0; j<datagrams[i].length; j++) {
+                int period = 80 + random.nextInt(80);
+                byte[] data = new byte[2*period];
+                for (int k=0; k<period; k++) {
+                    short sample = (short) (8000 * Math.sin(2*Math.PI*k/period) + random.nextInt(500));
+                    data[2*k] = (byte) (sample >> 8);
+                    data[2*k+1] = (byte) sample;
+                }
+                datagrams[i][j] = new Datagram(period, data);
+            }
+        }
+        return datagrams;
+    }
+
+    @Test
+    public void incrementalProcessingGivesSameAudio() throws Exception
+    {
+        AudioFormat format = new AudioFormat(16000, 16, 1, true, true);
+        // processDecrufted() changes the durations of the datagrams, so each gets its own copy:
+        Datagram[][] datagrams1 = getPeriods(1);
+        Datagram[][] datagrams2 = getPeriods(1);
+        int n = datagrams1.length;
+        Datagram[] rightContexts = new Datagram[n];
+        boolean[][] voicings = new boolean[n][];
+        double[][] pitchScales = new double[n][];
+        double[][] timeScales = new double[n][];
+        for (int i=0; i<n; i++) {
+            voicings[i] = new boolean[datagrams1[i].length];
+            Arrays.fill(voicings[i], i % 2 == 0);
+            pitchScales[i] = new double[datagrams1[i].length];
+            Arrays.fill(pitchScales[i], 0.8 + 0.1*i);
+            timeScales[i] = new double[datagrams1[i].length];
+            Arrays.fill(timeScales[i], 0.6 + 0.2*i);
+        }
+        double[] expected = new AudioDoubleDataSource(new FDPSOLAProcessor().processDecrufted(datagrams1, rightContexts, format,
+                voicings, pitchScales, timeScales)).getAllData();
+        double[] actual = new AudioDoubleDataSource(new FDPSOLAProcessor().processDecruftedIncrementally(datagrams2, rightContexts, format,
+                voicings, pitchScales, timeScales)).getAllData();
+        assertArrayEquals(expected, actual, 0);
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author agent
+ *
+ */
+public class DoubleRingBufferTest {
+
+    @Test
+    public void dataWrapsAroundUnchanged() throws Exception {
+        DoubleRingBuffer ring = new DoubleRingBuffer(5);
+        double[] out = new double[3];
+        int next = 0;
+        for (int round = 0; round < 10; round++) {
+            ring.put(new double[] {next, next+1, next+2}, 0, 3);
+            assertEquals(3, ring.get(out, 0, 3));
+            for (int i = 0; i < 3; i++) {
+                assertEquals(next+i, out[i], 0);
+            }
+            next += 3;
+        }
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    public void producerBlocksWhileFull() throws Exception {
+        final DoubleRingBuffer ring = new DoubleRingBuffer(4);
+        Thread producer = new Thread() {
+            public void run() {
+                try {
+                    ring.put(new double[6], 0, 6);
+                } catch (InterruptedException e) {
+                }
+            }
+        };
+        producer.start();
+        producer.join(200);
+        assertTrue("producer should wait for room", producer.isAlive());
+        assertEquals(4, ring.size());
+        assertEquals(4, ring.get(new double[4], 0, 4));
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        assertEquals(2, ring.size());
+    }
+
+    @Test
+    public void concurrentTransferKeepsOrder() throws Exception {
+        final int numDoubles = 100000;
+        final DoubleRingBuffer ring = new DoubleRingBuffer(64);
+        Thread producer = new Thread() {
+            public void run() {
+                double[] block = new double[37];
+                int n = 0;
+                try {
+                    while (n < numDoubles) {
+                        int len = Math.min(block.length, numDoubles - n);
+                        for (int i = 0; i < len; i++) {
+                            block[i] = n + i;
+                        }
+                        ring.put(block, 0, len);
+                        n += len;
+                    }
+                } catch (InterruptedException e) {
+                }
+                ring.close();
+            }
+        };
+        producer.start();
+        double[] buf = new double[50];
+        int total = 0;
+        int read;
+        while ((read = ring.get(buf, 0, buf.length)) > 0) {
+            for (int i = 0; i < read; i++) {
+                assertEquals(total + i, buf[i], 0);
+            }
+            total += read;
+        }
+        assertEquals(numDoubles, total);
+    }
+
+    @Test
+    public void readAfterCloseReturnsRest() throws Exception {
+        DoubleRingBuffer ring = new DoubleRingBuffer(8);
+        ring.put(new double[] {1, 2, 3}, 0, 3);
+        ring.close();
+        assertTrue(ring.isClosed());
+        double[] out = new double[8];
+        assertEquals(3, ring.get(out, 0, 8));
+        assertEquals(0, ring.get(out, 0, 8));
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void cannotWriteAfterClose() throws Exception {
+        DoubleRingBuffer ring = new DoubleRingBuffer(8);
+        ring.close();
+        ring.put(new double[1], 0, 1);
+    }
+
+    @Test
+    public void closeReleasesBlockedProducer() throws Exception {
+        final DoubleRingBuffer ring = new DoubleRingBuffer(4);
+        final boolean[] failed = new boolean[1];
+        Thread producer = new Thread() {
+            public void run() {
+                try {
+                    ring.put(new double[6], 0, 6);
+                } catch (IllegalStateException e) {
+                    failed[0] = true;
+                } catch (InterruptedException e) {
+                }
+            }
+        };
+        producer.start();
+        producer.join(200);
+        assertTrue("producer should wait for room", producer.isAlive());
+        ring.close();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        assertTrue(failed[0]);
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright 2026 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util.data;
+
+/**
+ * Simple throughput benchmark for the producer/reader hand-off in {@link ProducingDoubleDataSource}.
+ * Not a unit test; run it manually with
+ * <code>java marytts.util.data.ProducingDoubleDataSourceBenchmark [numSamples] [queueCapacity] [blockSize]</code>.
+ *
+ * @author agent
+ *
+ */
+public class ProducingDoubleDataSourceBenchmark {
+
+    public static void main(String[] args) {
+        long numSamples = args.length > 0 ? Long.parseLong(args[0]) : 20000000;
+        int queueCapacity = args.length > 1 ? Integer.parseInt(args[1]) : ProducingDoubleDataSource.DEFAULT_QUEUE_CAPACITY;
+        int blockSize = args.length > 2 ? Integer.parseInt(args[2]) : ProducingDoubleDataSource.DEFAULT_BLOCK_SIZE;
+        int numRuns = 5;
+        double[] readBuf = new double[1024];
+        for (int run = 0; run < numRuns; run++) {
+            long startTime = System.nanoTime();
+            SineProducer producer = new SineProducer(numSamples, queueCapacity, blockSize);
+            producer.start();
+            long numRead = 0;
+            int read;
+            while ((read = producer.getData(readBuf, 0, readBuf.length)) > 0) {
+                numRead += read;
+            }
+            long nanos = System.nanoTime() - startTime;
+            System.out.printf("Run %d: %d samples in %.1f ms -- %.2f million samples/second%n",
+                    run+1, numRead, nanos / 1.e6, numRead * 1.e3 / nanos);
+        }
+    }
+
+    private static class SineProducer extends ProducingDoubleDataSource {
+        public SineProducer(long numToSend, int queueCapacity, int blockSize) {
+            super(numToSend, null, queueCapacity, blockSize);
+        }
+
+        public void run() {
+            long numToSend = getDataLength();
+            for (long i = 0; i < numToSend; i++) {
+                putOneDataPoint(Math.sin(i * 0.01));
+            }
+            putEndOfStream();
+        }
+    }
+}
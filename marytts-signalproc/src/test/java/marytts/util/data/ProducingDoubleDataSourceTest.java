@@ -1,8 +1,12 @@
 package marytts.util.data;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
@@ -111,6 +115,75 @@ public class ProducingDoubleDataSourceTest {
         }
     }
     
+    @Test
+    public void canReadThroughSmallQueue() {
+        int numDoubles = 4000;
+        CountingProducer producer = new CountingProducer(numDoubles, 16, 7);
+        producer.start();
+        double[] data = producer.getAllData();
+        assertEquals(numDoubles, data.length);
+        for (int i=0; i<numDoubles; i++) {
+            assertEquals(i, data[i], 0);
+        }
+    }
+
+    @Test
+    public void canReadBlocksLargerThanQueue() {
+        int numDoubles = 1000;
+        CountingProducer producer = new CountingProducer(numDoubles, 10, 64);
+        producer.start();
+        double[] data = producer.getAllData();
+        assertEquals(numDoubles, data.length);
+        for (int i=0; i<numDoubles; i++) {
+            assertEquals(i, data[i], 0);
+        }
+    }
+
+    @Test
+    public void closingStreamStopsProducer() throws Exception {
+        // nobody reads, so the producer fills the queue and waits
+        CountingProducer producer = new CountingProducer(100000, 64, 16);
+        producer.start();
+        AudioInputStream ais = new DDSAudioInputStream(producer, getTestAudioFormat());
+        Thread.sleep(100);
+        ais.close();
+        assertTrue(producer.awaitEnd(5000));
+    }
+
+    @Test
+    public void willDeliverPartialBlockAtEndOfStream() {
+        int numDoubles = 3;
+        CountingProducer producer = new CountingProducer(numDoubles, 1024, 256);
+        producer.start();
+        double[] data = producer.getAllData();
+        assertEquals(numDoubles, data.length);
+        assertEquals(0, producer.available());
+    }
+
+    @Test
+    public void failingProducerDeliversDataThenFailure() {
+        FailingProducer producer = new FailingProducer(100);
+        producer.start();
+        double[] data = new double[100];
+        assertEquals(100, producer.getData(data, 0, 100));
+        try {
+            producer.getData(data, 0, 100);
+            fail("Expected the failure of the producer");
+        } catch (ProducingDoubleDataSource.ProductionFailedException e) {
+            assertEquals("test failure", e.getCause().getMessage());
+        }
+    }
+
+    @Test(expected=IOException.class)
+    public void failingProducerFailsAudioStream() throws IOException {
+        FailingProducer producer = new FailingProducer(1000);
+        producer.start();
+        AudioInputStream ais = new DDSAudioInputStream(producer, getTestAudioFormat());
+        byte[] buf = new byte[512];
+        while (ais.read(buf) != -1) {
+            // read until the end, which must not come
+        }
+    }
     
 
     private static class TestProducer extends ProducingDoubleDataSource {
@@ -137,4 +210,45 @@ public class ProducingDoubleDataSourceTest {
         }
         
     }
+
+    private static class FailingProducer extends ProducingDoubleDataSource {
+        private final int numToSend;
+
+        public FailingProducer(int numToSend) {
+            this.numToSend = numToSend;
+        }
+
+        public void run() {
+            for (int i=0; i<numToSend; i++) {
+                putOneDataPoint(0.1);
+            }
+            putEndOfStream(new IOException("test failure"));
+        }
+    }
+
+    private static class CountingProducer extends ProducingDoubleDataSource {
+        private final CountDownLatch ended = new CountDownLatch(1);
+
+        public CountingProducer(int numToSend, int queueCapacity, int blockSize) {
+            super(numToSend, null, queueCapacity, blockSize);
+        }
+
+        public void run() {
+            try {
+                long numToSend = getDataLength();
+                for (int i=0; i<numToSend; i++) {
+                    putOneDataPoint(i);
+                }
+                putEndOfStream();
+            } catch (IllegalStateException e) {
+                // production was stopped
+            } finally {
+                ended.countDown();
+            }
+        }
+
+        boolean awaitEnd(long millis) throws InterruptedException {
+            return ended.await(millis, TimeUnit.MILLISECONDS);
+        }
+    }
 }